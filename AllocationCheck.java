@@ -0,0 +1,83 @@
+import java.lang.management.ManagementFactory;
+
+public class AllocationCheck {
+
+	/**
+	 * The number of frames run before measuring, so that the JIT and any
+	 * caches have settled.
+	 */
+	private static final int WARMUP_FRAMES = 20000;
+
+	/**
+	 * The number of frames measured.
+	 */
+	private static final int MEASURED_FRAMES = 20000;
+
+	/**
+	 * The counters of the running JVM, if they support measuring allocation.
+	 */
+	private static final com.sun.management.ThreadMXBean THREADS = getThreads();
+
+	/**
+	 * Runs the game loop headlessly through {@code WarmUp}, which publishes
+	 * snapshots through the same {@code FramePublisher} as the game and paints
+	 * the board and side panels into images, and measures how many bytes the
+	 * measured frames allocated on this thread. The steady state of the loop
+	 * should allocate nothing, so the check fails with exit status 1 if any
+	 * frame did. The only thing not measured is the event the game's frames
+	 * are queued on the event dispatch thread with, which Swing allocates.
+	 *
+	 * Usage: {@code AllocationCheck [frames]}
+	 *
+	 * @param args The command line arguments.
+	 */
+	public static void main(String[] args) {
+		if (THREADS == null || !THREADS.isThreadAllocatedMemorySupported()) {
+			System.out.println("Thread allocation counters aren't supported by this JVM");
+			System.exit(2);
+		}
+		THREADS.setThreadAllocatedMemoryEnabled(true);
+		int frames = (args.length > 0) ? Integer.parseInt(args[0]) : MEASURED_FRAMES;
+
+		WarmUp loop = new WarmUp(BoardPanel.COL_COUNT, BoardPanel.ROW_COUNT, PieceSet.STANDARD,
+				BoardPanel.TILE_SIZE, 0L);
+		run(loop, WARMUP_FRAMES);
+		long before = THREADS.getCurrentThreadAllocatedBytes();
+		long calibration = THREADS.getCurrentThreadAllocatedBytes() - before;
+		before = THREADS.getCurrentThreadAllocatedBytes();
+		run(loop, frames);
+		long allocated = THREADS.getCurrentThreadAllocatedBytes() - before - calibration;
+
+		double perFrame = (double) allocated / frames;
+		System.out.printf("%d frames, %d bytes allocated, %.3f bytes/frame%n", frames, allocated, perFrame);
+		if (allocated > 0) {
+			System.out.println("FAIL: the frame loop allocates");
+			System.exit(1);
+		}
+		System.out.println("OK");
+	}
+
+	/**
+	 * Runs frames of the loop.
+	 *
+	 * @param loop   The loop.
+	 * @param frames The number of frames to run.
+	 */
+	private static void run(WarmUp loop, int frames) {
+		for (int i = 0; i < frames; i++) {
+			loop.frame();
+		}
+	}
+
+	/**
+	 * Gets the thread counters of the running JVM.
+	 *
+	 * @return The counters, or null if they can't measure allocation.
+	 */
+	private static com.sun.management.ThreadMXBean getThreads() {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		return (threads instanceof com.sun.management.ThreadMXBean) ? (com.sun.management.ThreadMXBean) threads
+				: null;
+	}
+
+}
@@ -0,0 +1,19 @@
+public interface BatchEvaluator {
+
+	/**
+	 * Gets the name of the evaluator, which is shown in benchmarks.
+	 *
+	 * @return The name.
+	 */
+	String getName();
+
+	/**
+	 * Works out the lines, holes, total height and bumpiness of every
+	 * candidate in a batch, as the boards will be once their full rows are
+	 * cleared. Each candidate's results can then be read from the batch.
+	 *
+	 * @param batch The batch.
+	 */
+	void evaluate(CandidateBatch batch);
+
+}
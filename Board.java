@@ -0,0 +1,778 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class Board {
+
+	/**
+	 * The value stored in an empty cell.
+	 */
+	public static final byte EMPTY = 0;
+
+	/**
+	 * The value stored in a cell filled by garbage sent from an opponent.
+	 * Garbage cells are occupied, but don't belong to any tile type.
+	 */
+	public static final byte GARBAGE = Byte.MAX_VALUE;
+
+	/**
+	 * The number of rows stored in each chunk, as a power of two.
+	 */
+	private static final int CHUNK_SHIFT = 6;
+
+	/**
+	 * The number of rows stored in each chunk.
+	 */
+	private static final int CHUNK_ROWS = 1 << CHUNK_SHIFT;
+
+	/**
+	 * Masks a slot number down to its row within a chunk.
+	 */
+	private static final int CHUNK_MASK = CHUNK_ROWS - 1;
+
+	/**
+	 * The widest board that keeps a bitmask of each row. Collision tests on
+	 * these boards compare whole rows of a piece at once.
+	 */
+	public static final int MAX_MASKED_COLS = Long.SIZE;
+
+	/**
+	 * The piece set whose types are stored in the cells.
+	 */
+	private final PieceSet pieces;
+
+	/**
+	 * The number of columns on the board.
+	 */
+	private final int colCount;
+
+	/**
+	 * The number of rows on the board (including the hidden rows).
+	 */
+	private final int rowCount;
+
+	/**
+	 * The storage slot of each row, or -1 if the row is empty. Empty rows
+	 * take up no storage, and clearing a line only moves slot numbers.
+	 */
+	private final int[] rowSlots;
+
+	/**
+	 * The chunks that row storage is allocated from. Each chunk holds the
+	 * cells of {@code CHUNK_ROWS} slots, one row after another. Each cell
+	 * holds {@code EMPTY}, {@code GARBAGE}, or the index of the tile type
+	 * occupying it plus one.
+	 */
+	private byte[][] chunks = new byte[0][];
+
+	/**
+	 * The number of occupied cells in each slot.
+	 */
+	private int[] slotFill = new int[0];
+
+	/**
+	 * The occupied cells of each slot as a bitmask, with the leftmost column in
+	 * the highest bit. Only kept if the board is no wider than
+	 * {@code MAX_MASKED_COLS}.
+	 */
+	private long[] slotBits = new long[0];
+
+	/**
+	 * Whether or not row bitmasks are kept.
+	 */
+	private final boolean isMasked;
+
+	/**
+	 * The slots that aren't holding a row.
+	 */
+	private int[] freeSlots = new int[0];
+
+	/**
+	 * The number of free slots.
+	 */
+	private int freeCount;
+
+	/**
+	 * The highest row (smallest index) that isn't empty, or the row count if
+	 * the board is empty. Every row above it is empty.
+	 */
+	private int stackTop;
+
+	/**
+	 * Creates a new Board with the standard dimensions.
+	 */
+	public Board() {
+		this(BoardPanel.COL_COUNT, BoardPanel.ROW_COUNT);
+	}
+
+	/**
+	 * Creates a new Board.
+	 *
+	 * @param colCount The number of columns.
+	 * @param rowCount The number of rows.
+	 */
+	public Board(int colCount, int rowCount) {
+		this(colCount, rowCount, PieceSet.STANDARD);
+	}
+
+	/**
+	 * Creates a new Board for a piece set.
+	 *
+	 * @param colCount The number of columns.
+	 * @param rowCount The number of rows.
+	 * @param pieces   The piece set played on the board.
+	 */
+	public Board(int colCount, int rowCount, PieceSet pieces) {
+		this.pieces = pieces;
+		this.colCount = colCount;
+		this.isMasked = colCount <= MAX_MASKED_COLS;
+		this.rowCount = rowCount;
+		this.rowSlots = new int[rowCount];
+		Arrays.fill(rowSlots, -1);
+		this.stackTop = rowCount;
+	}
+
+	/**
+	 * Gets the piece set played on the board.
+	 *
+	 * @return The piece set.
+	 */
+	public PieceSet getPieceSet() {
+		return pieces;
+	}
+
+	/**
+	 * Gets the number of columns on the board.
+	 *
+	 * @return The number of columns.
+	 */
+	public int getColCount() {
+		return colCount;
+	}
+
+	/**
+	 * Gets the number of rows on the board.
+	 *
+	 * @return The number of rows.
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Gets the highest row that contains a tile. Every row above it is empty.
+	 *
+	 * @return The row, or the row count if the board is empty.
+	 */
+	public int getStackTop() {
+		return stackTop;
+	}
+
+	/**
+	 * Resets the board and clears away any tiles.
+	 */
+	public void clear() {
+		for (int row = stackTop; row < rowCount; row++) {
+			if (rowSlots[row] >= 0) {
+				release(rowSlots[row]);
+				rowSlots[row] = -1;
+			}
+		}
+		stackTop = rowCount;
+	}
+
+	/**
+	 * Determines whether or not a piece can be placed at the coordinates.
+	 *
+	 * @param type     THe type of piece to use.
+	 * @param x        The x coordinate of the piece.
+	 * @param y        The y coordinate of the piece.
+	 * @param rotation The rotation of the piece.
+	 * @return Whether or not the position is valid.
+	 */
+	public boolean isValidAndEmpty(TileType type, int x, int y, int rotation) {
+
+		// Ensure the piece is in a valid column.
+		if (x < -type.getLeftInset(rotation) || x + type.getDimension() - type.getRightInset(rotation) >= colCount) {
+			return false;
+		}
+
+		// Ensure the piece is in a valid row.
+		if (y < -type.getTopInset(rotation) || y + type.getDimension() - type.getBottomInset(rotation) >= rowCount) {
+			return false;
+		}
+
+		/*
+		 * Line each row of the piece up with the board's row mask and check that
+		 * they don't share any bits. The shift lines the leftmost column of the
+		 * piece up with column x; any columns shifted out are outside the board,
+		 * and we've already checked that the piece has no tiles there.
+		 */
+		if (isMasked) {
+			int shift = Long.SIZE - type.getDimension() - x;
+			int last = type.getDimension() - type.getBottomInset(rotation);
+			for (int row = type.getTopInset(rotation); row <= last; row++) {
+				int slot = rowSlots[y + row];
+				if (slot < 0) {
+					continue;
+				}
+				long piece = type.getRowMask(row, rotation);
+				piece = (shift >= 0) ? piece << shift : piece >>> -shift;
+				if ((piece & slotBits[slot]) != 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/*
+		 * Loop through every tile in the piece and see if it conflicts with an existing
+		 * tile.
+		 *
+		 * Note: It's fine to do this even though it allows for wrapping because we've
+		 * already checked to make sure the piece is in a valid location.
+		 */
+		for (int col = 0; col < type.getDimension(); col++) {
+			for (int row = 0; row < type.getDimension(); row++) {
+				if (type.isTile(col, row, rotation) && isOccupied(x + col, y + row)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the lowest row a piece can fall to from where it is, without
+	 * moving sideways.
+	 *
+	 * @param type     The type of piece.
+	 * @param x        The x coordinate of the piece.
+	 * @param y        The y coordinate of the piece, which must be a valid
+	 *                 position.
+	 * @param rotation The rotation of the piece.
+	 * @return The landing row.
+	 */
+	public int getLandingRow(TileType type, int x, int y, int rotation) {
+		/*
+		 * Every row above the stack is empty, so the piece can fall straight to
+		 * where its lowest tile sits just above the stack top. Only the rows
+		 * within the stack are tested one at a time, so the cost depends on how
+		 * far the piece falls into the stack, not on how high it starts.
+		 */
+		int bottom = type.getDimension() - type.getBottomInset(rotation);
+		int row = Math.max(y, stackTop - 1 - bottom);
+		while (isValidAndEmpty(type, x, row + 1, rotation)) {
+			row++;
+		}
+		return row;
+	}
+
+	/**
+	 * Adds a piece to the game board. Note: Doesn't check for existing pieces,
+	 * and will overwrite them if they exist.
+	 *
+	 * @param type     The type of piece to place.
+	 * @param x        The x coordinate of the piece.
+	 * @param y        The y coordinate of the piece.
+	 * @param rotation The rotation of the piece.
+	 */
+	public void addPiece(TileType type, int x, int y, int rotation) {
+		for (int col = 0; col < type.getDimension(); col++) {
+			for (int row = 0; row < type.getDimension(); row++) {
+				if (type.isTile(col, row, rotation)) {
+					setTile(col + x, row + y, type);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks the board to see if any lines have been cleared, and
+	 * removes them from the game.
+	 *
+	 * @return The number of lines that were cleared.
+	 */
+	public int checkLines() {
+		return checkLines(stackTop, rowCount - 1);
+	}
+
+	/**
+	 * Checks a range of rows to see if any lines have been cleared, and
+	 * removes them from the game. Only the rows a piece was just added to can
+	 * have been completed, so the engine passes just those.
+	 *
+	 * The cost depends on the number of rows in the range and the height of
+	 * the stack above them, never on the height of the board.
+	 *
+	 * @param top    The first row to check.
+	 * @param bottom The last row to check.
+	 * @return The number of lines that were cleared.
+	 */
+	public int checkLines(int top, int bottom) {
+		top = Math.max(top, stackTop);
+		bottom = Math.min(bottom, rowCount - 1);
+
+		/*
+		 * A row is full when its slot's fill count matches the column count,
+		 * so there's no need to look at the cells themselves.
+		 */
+		int lowest = -1;
+		for (int row = bottom; row >= top; row--) {
+			if (isFull(row)) {
+				lowest = row;
+				break;
+			}
+		}
+		if (lowest < 0) {
+			return 0;
+		}
+
+		/*
+		 * Walk up from the lowest full row to the top of the stack, releasing
+		 * full rows and moving every other row down past them. Rows above the
+		 * stack are empty, so they don't need to move.
+		 */
+		int write = lowest;
+		for (int read = lowest; read >= stackTop; read--) {
+			if (read >= top && isFull(read)) {
+				release(rowSlots[read]);
+			} else {
+				rowSlots[write--] = rowSlots[read];
+			}
+		}
+
+		int cleared = write - stackTop + 1;
+		Arrays.fill(rowSlots, stackTop, write + 1, -1);
+		stackTop += cleared;
+		while (stackTop < rowCount && rowSlots[stackTop] < 0) {
+			stackTop++;
+		}
+		return cleared;
+	}
+
+	/**
+	 * Checks whether or not {@code row} is full.
+	 *
+	 * @param row The row to check.
+	 * @return Whether or not this row is full.
+	 */
+	public boolean isFull(int row) {
+		int slot = rowSlots[row];
+		return slot >= 0 && slotFill[slot] == colCount;
+	}
+
+	/**
+	 * Pushes garbage lines up from the bottom of the board. Each line is full
+	 * apart from a single hole.
+	 *
+	 * @param lines The number of lines to add.
+	 * @param hole  The column of the hole in each line.
+	 * @return Whether or not any tiles were pushed off the top of the board.
+	 */
+	public boolean addGarbage(int lines, int hole) {
+		lines = Math.min(lines, rowCount);
+
+		/*
+		 * Any rows in the top lines are pushed off the board.
+		 */
+		boolean overflow = false;
+		for (int row = stackTop; row < lines; row++) {
+			if (rowSlots[row] >= 0) {
+				release(rowSlots[row]);
+				rowSlots[row] = -1;
+				overflow = true;
+			}
+		}
+
+		/*
+		 * Move the stack up, then fill the bottom rows with garbage. A garbage
+		 * line on a one column board is all hole, so it's left empty.
+		 */
+		int from = Math.max(stackTop, lines);
+		System.arraycopy(rowSlots, from, rowSlots, from - lines, rowCount - from);
+		for (int row = rowCount - lines; row < rowCount; row++) {
+			if (colCount == 1) {
+				rowSlots[row] = -1;
+				continue;
+			}
+
+			int slot = allocate();
+			byte[] chunk = chunks[slot >> CHUNK_SHIFT];
+			int offset = (slot & CHUNK_MASK) * colCount;
+			Arrays.fill(chunk, offset, offset + colCount, GARBAGE);
+			chunk[offset + hole] = EMPTY;
+			slotFill[slot] = colCount - 1;
+			if (isMasked) {
+				slotBits[slot] = (-1L << (Long.SIZE - colCount)) & ~getBit(hole);
+			}
+			rowSlots[row] = slot;
+		}
+
+		stackTop = from - lines;
+		while (stackTop < rowCount && rowSlots[stackTop] < 0) {
+			stackTop++;
+		}
+		return overflow;
+	}
+
+	/**
+	 * Checks to see if the tile is already occupied.
+	 *
+	 * @param x The x coordinate to check.
+	 * @param y The y coordinate to check.
+	 * @return Whether or not the tile is occupied.
+	 */
+	public boolean isOccupied(int x, int y) {
+		return getCell(x, y) != EMPTY;
+	}
+
+	/**
+	 * Sets a tile located at the desired column and row.
+	 *
+	 * @param x    The column.
+	 * @param y    The row.
+	 * @param type The value to set to the tile to.
+	 */
+	public void setTile(int x, int y, TileType type) {
+		setCell(x, y, (type == null) ? EMPTY : (byte) (type.getIndex() + 1));
+	}
+
+	/**
+	 * Gets a tile by it's column and row.
+	 *
+	 * @param x The column.
+	 * @param y The row.
+	 * @return The tile, or null if the cell is empty or holds garbage.
+	 */
+	public TileType getTile(int x, int y) {
+		byte cell = getCell(x, y);
+		return (cell == EMPTY || cell == GARBAGE) ? null : pieces.get(cell - 1);
+	}
+
+	/**
+	 * Gets the raw value of a cell.
+	 *
+	 * @param x The column.
+	 * @param y The row.
+	 * @return The cell value.
+	 */
+	private byte getCell(int x, int y) {
+		int slot = rowSlots[y];
+		return (slot < 0) ? EMPTY : chunks[slot >> CHUNK_SHIFT][(slot & CHUNK_MASK) * colCount + x];
+	}
+
+	/**
+	 * Sets the raw value of a cell, allocating storage for the row if it was
+	 * empty and releasing it if it becomes empty.
+	 *
+	 * @param x     The column.
+	 * @param y     The row.
+	 * @param value The cell value.
+	 */
+	private void setCell(int x, int y, byte value) {
+		int slot = rowSlots[y];
+		if (slot < 0) {
+			if (value == EMPTY) {
+				return;
+			}
+			slot = allocate();
+			rowSlots[y] = slot;
+			stackTop = Math.min(stackTop, y);
+		}
+
+		byte[] chunk = chunks[slot >> CHUNK_SHIFT];
+		int index = (slot & CHUNK_MASK) * colCount + x;
+		slotFill[slot] += ((value != EMPTY) ? 1 : 0) - ((chunk[index] != EMPTY) ? 1 : 0);
+		chunk[index] = value;
+		if (isMasked) {
+			slotBits[slot] = (value != EMPTY) ? slotBits[slot] | getBit(x) : slotBits[slot] & ~getBit(x);
+		}
+
+		if (slotFill[slot] == 0) {
+			release(slot);
+			rowSlots[y] = -1;
+			while (stackTop < rowCount && rowSlots[stackTop] < 0) {
+				stackTop++;
+			}
+		}
+	}
+
+	/**
+	 * Gets the bit of a column in a row mask.
+	 *
+	 * @param x The column.
+	 * @return The bit.
+	 */
+	private static long getBit(int x) {
+		return Long.MIN_VALUE >>> x;
+	}
+
+	/**
+	 * Takes an empty slot from the free list, adding a chunk if none are left.
+	 *
+	 * @return The slot.
+	 */
+	private int allocate() {
+		if (freeCount == 0) {
+			int chunk = chunks.length;
+			chunks = Arrays.copyOf(chunks, chunk + 1);
+			chunks[chunk] = new byte[CHUNK_ROWS * colCount];
+			slotFill = Arrays.copyOf(slotFill, (chunk + 1) * CHUNK_ROWS);
+			if (isMasked) {
+				slotBits = Arrays.copyOf(slotBits, (chunk + 1) * CHUNK_ROWS);
+			}
+			freeSlots = Arrays.copyOf(freeSlots, (chunk + 1) * CHUNK_ROWS);
+
+			// Push the new slots so that the lowest is handed out first.
+			for (int i = CHUNK_ROWS - 1; i >= 0; i--) {
+				freeSlots[freeCount++] = (chunk << CHUNK_SHIFT) + i;
+			}
+		}
+		return freeSlots[--freeCount];
+	}
+
+	/**
+	 * Empties a slot and returns it to the free list.
+	 *
+	 * @param slot The slot.
+	 */
+	private void release(int slot) {
+		int offset = (slot & CHUNK_MASK) * colCount;
+		Arrays.fill(chunks[slot >> CHUNK_SHIFT], offset, offset + colCount, EMPTY);
+		slotFill[slot] = 0;
+		if (isMasked) {
+			slotBits[slot] = 0L;
+		}
+		freeSlots[freeCount++] = slot;
+	}
+
+	/**
+	 * Gets the occupancy of a row as a bitmask, with the leftmost column in the
+	 * highest bit. Only boards no wider than {@code MAX_MASKED_COLS} keep
+	 * these.
+	 *
+	 * @param row The row.
+	 * @return The bitmask.
+	 */
+	public long getRowBits(int row) {
+		if (!isMasked) {
+			throw new IllegalStateException("Boards wider than " + MAX_MASKED_COLS + " columns have no row bits");
+		}
+		int slot = rowSlots[row];
+		return (slot < 0) ? 0L : slotBits[slot];
+	}
+
+	/**
+	 * Gets a 64-bit hash of which cells are occupied, ignoring what occupies
+	 * them. Boards with the same hash can be taken to be the same for
+	 * searches, as the chance of two different boards colliding is tiny.
+	 *
+	 * @return The hash.
+	 */
+	public long getHash() {
+		long hash = stackTop;
+		for (int row = stackTop; row < rowCount; row++) {
+			int slot = rowSlots[row];
+			long bits = 0L;
+			if (slot >= 0 && isMasked) {
+				bits = slotBits[slot];
+			} else if (slot >= 0) {
+				byte[] chunk = chunks[slot >> CHUNK_SHIFT];
+				int offset = (slot & CHUNK_MASK) * colCount;
+				for (int col = 0; col < colCount; col++) {
+					bits = bits * 31 + ((chunk[offset + col] != EMPTY) ? col + 1 : 0);
+				}
+			}
+			hash = (hash + bits) * 0x9E3779B97F4A7C15L;
+			hash ^= hash >>> 29;
+		}
+		return hash;
+	}
+
+	/**
+	 * Gets the number of bytes in a row mask.
+	 *
+	 * @return The number of bytes.
+	 */
+	public int getRowMaskSize() {
+		return (colCount + 7) >> 3;
+	}
+
+	/**
+	 * Writes the occupancy of a row as a bitmask, one bit per column with the
+	 * leftmost column in the highest bit of the first byte.
+	 *
+	 * @param row    The row.
+	 * @param dst    The array to write to.
+	 * @param offset The index of the first byte.
+	 */
+	public void getRowMask(int row, byte[] dst, int offset) {
+		int slot = rowSlots[row];
+		if (slot < 0) {
+			Arrays.fill(dst, offset, offset + getRowMaskSize(), (byte) 0);
+			return;
+		}
+
+		/*
+		 * A masked row already has its leftmost column in the highest bit, so
+		 * its bytes are just copied out from the top.
+		 */
+		if (isMasked) {
+			long bits = slotBits[slot];
+			int size = getRowMaskSize();
+			for (int i = 0; i < size; i++) {
+				dst[offset + i] = (byte) (bits >>> (Long.SIZE - Byte.SIZE * (i + 1)));
+			}
+			return;
+		}
+
+		byte[] chunk = chunks[slot >> CHUNK_SHIFT];
+		int start = (slot & CHUNK_MASK) * colCount;
+		int bits = 0;
+		for (int col = 0; col < colCount; col++) {
+			bits = (bits << 1) | (chunk[start + col] != EMPTY ? 1 : 0);
+			if ((col & 7) == 7) {
+				dst[offset++] = (byte) bits;
+				bits = 0;
+			}
+		}
+		if ((colCount & 7) != 0) {
+			dst[offset] = (byte) (bits << (8 - (colCount & 7)));
+		}
+	}
+
+	/**
+	 * Gets the number of bytes needed to snapshot this board.
+	 *
+	 * @return The snapshot size in bytes.
+	 */
+	public int getSnapshotSize() {
+		return rowCount * colCount;
+	}
+
+	/**
+	 * Copies the cells of this board into {@code dst}, starting at
+	 * {@code offset}.
+	 *
+	 * @param dst    The array to write to.
+	 * @param offset The index of the first cell.
+	 */
+	public void writeTo(byte[] dst, int offset) {
+		Arrays.fill(dst, offset, offset + stackTop * colCount, EMPTY);
+		offset += stackTop * colCount;
+		for (int row = stackTop; row < rowCount; row++, offset += colCount) {
+			int slot = rowSlots[row];
+			if (slot < 0) {
+				Arrays.fill(dst, offset, offset + colCount, EMPTY);
+			} else {
+				System.arraycopy(chunks[slot >> CHUNK_SHIFT], (slot & CHUNK_MASK) * colCount, dst, offset, colCount);
+			}
+		}
+	}
+
+	/**
+	 * Overwrites the cells of this board with the cells stored in
+	 * {@code src}, starting at {@code offset}.
+	 *
+	 * @param src    The array to read from.
+	 * @param offset The index of the first cell.
+	 */
+	public void readFrom(byte[] src, int offset) {
+		clear();
+		for (int row = 0; row < rowCount; row++, offset += colCount) {
+			int fill = 0;
+			long bits = 0L;
+			for (int col = 0; col < colCount; col++) {
+				if (src[offset + col] != EMPTY) {
+					fill++;
+					bits |= getBit(col);
+				}
+			}
+			if (fill == 0) {
+				continue;
+			}
+
+			int slot = allocate();
+			System.arraycopy(src, offset, chunks[slot >> CHUNK_SHIFT], (slot & CHUNK_MASK) * colCount, colCount);
+			slotFill[slot] = fill;
+			if (isMasked) {
+				slotBits[slot] = bits;
+			}
+			rowSlots[row] = slot;
+			stackTop = Math.min(stackTop, row);
+		}
+	}
+
+	/**
+	 * Gets the number of bytes needed to store this board in a buffer.
+	 *
+	 * @return The record size in bytes.
+	 */
+	public int getRecordSize() {
+		return Integer.BYTES + rowCount * colCount;
+	}
+
+	/**
+	 * Stores this board in a buffer as a record: the stack top as an int,
+	 * then the cells of each row from the stack top down. Rows above the
+	 * stack top aren't written, so storing a board costs no more than the
+	 * height of its stack. The buffer's position isn't changed.
+	 *
+	 * @param dst    The buffer to write to.
+	 * @param offset The index of the record.
+	 */
+	public void writeTo(ByteBuffer dst, int offset) {
+		dst.putInt(offset, stackTop);
+		offset += Integer.BYTES + stackTop * colCount;
+		for (int row = stackTop; row < rowCount; row++, offset += colCount) {
+			int slot = rowSlots[row];
+			if (slot < 0) {
+				for (int col = 0; col < colCount; col++) {
+					dst.put(offset + col, EMPTY);
+				}
+			} else {
+				dst.put(offset, chunks[slot >> CHUNK_SHIFT], (slot & CHUNK_MASK) * colCount, colCount);
+			}
+		}
+	}
+
+	/**
+	 * Overwrites the cells of this board with a record stored by
+	 * {@code writeTo(ByteBuffer, int)}. The buffer's position isn't changed.
+	 *
+	 * @param src    The buffer to read from.
+	 * @param offset The index of the record.
+	 */
+	public void readFrom(ByteBuffer src, int offset) {
+		clear();
+		int top = src.getInt(offset);
+		offset += Integer.BYTES + top * colCount;
+		for (int row = top; row < rowCount; row++, offset += colCount) {
+			int slot = allocate();
+			byte[] chunk = chunks[slot >> CHUNK_SHIFT];
+			int start = (slot & CHUNK_MASK) * colCount;
+			src.get(offset, chunk, start, colCount);
+
+			int fill = 0;
+			long bits = 0L;
+			for (int col = 0; col < colCount; col++) {
+				if (chunk[start + col] != EMPTY) {
+					fill++;
+					bits |= getBit(col);
+				}
+			}
+			if (fill == 0) {
+				release(slot);
+				continue;
+			}
+
+			slotFill[slot] = fill;
+			if (isMasked) {
+				slotBits[slot] = bits;
+			}
+			rowSlots[row] = slot;
+			stackTop = Math.min(stackTop, row);
+		}
+	}
+
+}
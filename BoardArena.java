@@ -0,0 +1,195 @@
+import java.nio.ByteBuffer;
+
+public class BoardArena {
+
+	/**
+	 * The records, in memory outside the heap so that the garbage collector
+	 * never has to look at them.
+	 */
+	private final ByteBuffer records;
+
+	/**
+	 * The number of columns on the boards.
+	 */
+	private final int colCount;
+
+	/**
+	 * The number of rows on the boards.
+	 */
+	private final int rowCount;
+
+	/**
+	 * The number of bytes in each record.
+	 */
+	private final int recordSize;
+
+	/**
+	 * The number of records the arena can hold.
+	 */
+	private final int capacity;
+
+	/**
+	 * The number of records in use. Records are handed out in order, so
+	 * every record below this is in use.
+	 */
+	private int size;
+
+	/**
+	 * Creates a new BoardArena. All of its memory is allocated up front, and
+	 * it never grows.
+	 *
+	 * @param colCount The number of columns on the boards.
+	 * @param rowCount The number of rows on the boards.
+	 * @param capacity The number of boards the arena can hold.
+	 */
+	public BoardArena(int colCount, int rowCount, int capacity) {
+		this.colCount = colCount;
+		this.rowCount = rowCount;
+		this.recordSize = new Board(colCount, rowCount).getRecordSize();
+		if ((long) recordSize * capacity > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(capacity + " boards don't fit in one buffer");
+		}
+		this.capacity = capacity;
+		this.records = ByteBuffer.allocateDirect(recordSize * capacity);
+	}
+
+	/**
+	 * Stores a board in the next free record.
+	 *
+	 * @param board The board, which must be the size of the arena's boards.
+	 * @return The handle of the record.
+	 * @throws IllegalStateException If the arena is full.
+	 */
+	public int store(Board board) {
+		if (size == capacity) {
+			throw new IllegalStateException("Arena full at " + capacity + " boards");
+		}
+		store(size, board);
+		return size++;
+	}
+
+	/**
+	 * Overwrites a record with a board.
+	 *
+	 * @param handle The handle of the record.
+	 * @param board  The board, which must be the size of the arena's boards.
+	 */
+	public void store(int handle, Board board) {
+		checkBoard(board);
+		board.writeTo(records, getOffset(handle));
+	}
+
+	/**
+	 * Overwrites a board with a record.
+	 *
+	 * @param handle The handle of the record.
+	 * @param board  The board, which must be the size of the arena's boards.
+	 */
+	public void load(int handle, Board board) {
+		checkBoard(board);
+		board.readFrom(records, getOffset(handle));
+	}
+
+	/**
+	 * Gets the stack top of a record, without loading it.
+	 *
+	 * @param handle The handle of the record.
+	 * @return The highest row that isn't empty, or the row count if the board
+	 *         is empty.
+	 */
+	public int getStackTop(int handle) {
+		return records.getInt(getOffset(handle));
+	}
+
+	/**
+	 * Checks whether a cell of a record is occupied, without loading it.
+	 *
+	 * @param handle The handle of the record.
+	 * @param x      The column.
+	 * @param y      The row.
+	 * @return Whether or not the cell is occupied.
+	 */
+	public boolean isOccupied(int handle, int x, int y) {
+		int offset = getOffset(handle);
+		if (y < records.getInt(offset)) {
+			return false;
+		}
+		return records.get(offset + Integer.BYTES + y * colCount + x) != Board.EMPTY;
+	}
+
+	/**
+	 * Gets the number of records in use, which can be passed to
+	 * {@code truncate} to free every record stored after this point.
+	 *
+	 * @return The number of records.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Gets the number of boards the arena can hold.
+	 *
+	 * @return The capacity.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Gets the number of bytes of memory the arena holds.
+	 *
+	 * @return The size in bytes.
+	 */
+	public long getMemorySize() {
+		return (long) recordSize * capacity;
+	}
+
+	/**
+	 * Frees every record stored after the arena had a given size, as when a
+	 * search backs out of a branch.
+	 *
+	 * @param size The size from {@code getSize}.
+	 */
+	public void truncate(int size) {
+		if (size < 0 || size > this.size) {
+			throw new IllegalArgumentException("Can't truncate " + this.size + " records to " + size);
+		}
+		this.size = size;
+	}
+
+	/**
+	 * Frees every record at once, so the arena can be reused for the next
+	 * move or search. Nothing is cleared, since a record is always written
+	 * before it's read.
+	 */
+	public void reset() {
+		size = 0;
+	}
+
+	/**
+	 * Gets the index of a record in the buffer.
+	 *
+	 * @param handle The handle of the record.
+	 * @return The index.
+	 */
+	private int getOffset(int handle) {
+		if (handle < 0 || handle >= capacity) {
+			throw new IndexOutOfBoundsException("No record " + handle + " in an arena of " + capacity);
+		}
+		return handle * recordSize;
+	}
+
+	/**
+	 * Checks that a board is the size of the arena's boards.
+	 *
+	 * @param board The board.
+	 */
+	private void checkBoard(Board board) {
+		if (board.getColCount() != colCount || board.getRowCount() != rowCount) {
+			throw new IllegalArgumentException("Arena holds " + colCount + "x" + rowCount + " boards, not "
+					+ board.getColCount() + "x" + board.getRowCount());
+		}
+	}
+
+}
@@ -2,8 +2,10 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
+import java.awt.Rectangle;
 
 import javax.swing.JPanel;
+import javax.swing.JViewport;
 
 public class BoardPanel extends JPanel {
 
@@ -19,6 +21,21 @@ public class BoardPanel extends JPanel {
 	 */
 	public static final int COLOR_MAX = 255 - COLOR_MIN;
 
+	/**
+	 * The base color of garbage tiles sent by an opponent.
+	 */
+	private static final Color GARBAGE_COLOR = new Color(128, 128, 128);
+
+	/**
+	 * The light shading color of garbage tiles.
+	 */
+	private static final Color GARBAGE_LIGHT = GARBAGE_COLOR.brighter();
+
+	/**
+	 * The dark shading color of garbage tiles.
+	 */
+	private static final Color GARBAGE_DARK = GARBAGE_COLOR.darker();
+
 	/**
 	 * The width of the border around the game board.
 	 */
@@ -32,12 +49,12 @@ public class BoardPanel extends JPanel {
 	/**
 	 * The number of visible rows on the board.
 	 */
-	private static final int VISIBLE_ROW_COUNT = 20;
+	public static final int VISIBLE_ROW_COUNT = 20;
 
 	/**
 	 * The number of rows that are hidden from view.
 	 */
-	private static final int HIDDEN_ROW_COUNT = 2;
+	public static final int HIDDEN_ROW_COUNT = 2;
 
 	/**
 	 * The total number of rows that the board contains.
@@ -54,16 +71,6 @@ public class BoardPanel extends JPanel {
 	 */
 	public static final int SHADE_WIDTH = 4;
 
-	/**
-	 * The central x coordinate on the game board.
-	 */
-	private static final int CENTER_X = COL_COUNT * TILE_SIZE / 2;
-
-	/**
-	 * The central y coordinate on the game board.
-	 */
-	private static final int CENTER_Y = VISIBLE_ROW_COUNT * TILE_SIZE / 2;
-
 	/**
 	 * The total width of the panel.
 	 */
@@ -85,209 +92,169 @@ public class BoardPanel extends JPanel {
 	private static final Font SMALL_FONT = new Font("Tahoma", Font.BOLD, 12);
 
 	/**
-	 * The Tetris instance.
+	 * The game being shown.
 	 */
-	private Tetris tetris;
+	private GameView view;
 
 	/**
-	 * The tiles that make up the board.
+	 * The line clear effects drawn over the board.
 	 */
-	private TileType[][] tiles;
+	private final EffectLayer effects;
 
 	/**
-	 * Crates a new GameBoard instance.
-	 * 
-	 * @param tetris The Tetris instance to use.
+	 * The time the board was last painted, in nanoseconds.
 	 */
-	public BoardPanel(Tetris tetris) {
-		this.tetris = tetris;
-		this.tiles = new TileType[ROW_COUNT][COL_COUNT];
+	private long lastPaint;
 
-		setPreferredSize(new Dimension(PANEL_WIDTH, PANEL_HEIGHT));
-		setBackground(Color.WHITE);
-	}
+	/**
+	 * The part of the panel in view, reused each frame.
+	 */
+	private final Rectangle visible = new Rectangle();
 
 	/**
-	 * Resets the board and clears away any tiles.
+	 * The part of the board being repainted, reused each frame.
 	 */
-	public void clear() {
-		/*
-		 * Loop through every tile index and set it's value
-		 * to null to clear the board.
-		 */
-		for (int i = 0; i < ROW_COUNT; i++) {
-			for (int j = 0; j < COL_COUNT; j++) {
-				tiles[i][j] = null;
-			}
-		}
-	}
+	private final Rectangle clip = new Rectangle();
 
 	/**
-	 * Determines whether or not a piece can be placed at the coordinates.
-	 * 
-	 * @param type     THe type of piece to use.
-	 * @param x        The x coordinate of the piece.
-	 * @param y        The y coordinate of the piece.
-	 * @param rotation The rotation of the piece.
-	 * @return Whether or not the position is valid.
+	 * The area around the piece to keep in view, reused each frame.
 	 */
-	public boolean isValidAndEmpty(TileType type, int x, int y, int rotation) {
+	private final Rectangle follow = new Rectangle();
 
-		// Ensure the piece is in a valid column.
-		if (x < -type.getLeftInset(rotation) || x + type.getDimension() - type.getRightInset(rotation) >= COL_COUNT) {
-			return false;
-		}
+	/**
+	 * The ghost colors of each type in the board's piece set, three to a type
+	 * (base, light and dark). The ghost is drawn faintly over empty cells, so
+	 * these are blended over the background up front, which lets the ghost be
+	 * drawn with opaque colors.
+	 */
+	private Color[] ghostColors;
 
-		// Ensure the piece is in a valid row.
-		if (y < -type.getTopInset(rotation) || y + type.getDimension() - type.getBottomInset(rotation) >= ROW_COUNT) {
-			return false;
-		}
+	/**
+	 * The background the ghost colors were blended over.
+	 */
+	private Color ghostBackground;
 
-		/*
-		 * Loop through every tile in the piece and see if it conflicts with an existing
-		 * tile.
-		 * 
-		 * Note: It's fine to do this even though it allows for wrapping because we've
-		 * already
-		 * checked to make sure the piece is in a valid location.
-		 */
-		for (int col = 0; col < type.getDimension(); col++) {
-			for (int row = 0; row < type.getDimension(); row++) {
-				if (type.isTile(col, row, rotation) && isOccupied(x + col, y + row)) {
-					return false;
-				}
-			}
-		}
-		return true;
-	}
+	/**
+	 * The column the piece was at when the panel last scrolled to it.
+	 */
+	private int followCol = Integer.MIN_VALUE;
 
 	/**
-	 * Adds a piece to the game board. Note: Doesn't check for existing pieces,
-	 * and will overwrite them if they exist.
-	 * 
-	 * @param type     The type of piece to place.
-	 * @param x        The x coordinate of the piece.
-	 * @param y        The y coordinate of the piece.
-	 * @param rotation The rotation of the piece.
+	 * The row the piece was at when the panel last scrolled to it.
 	 */
-	public void addPiece(TileType type, int x, int y, int rotation) {
-		/*
-		 * Loop through every tile within the piece and add it
-		 * to the board only if the boolean that represents that
-		 * tile is set to true.
-		 */
-		for (int col = 0; col < type.getDimension(); col++) {
-			for (int row = 0; row < type.getDimension(); row++) {
-				if (type.isTile(col, row, rotation)) {
-					setTile(col + x, row + y, type);
-				}
-			}
-		}
-	}
+	private int followRow = Integer.MIN_VALUE;
 
 	/**
-	 * Checks the board to see if any lines have been cleared, and
-	 * removes them from the game.
-	 * 
-	 * @return The number of lines that were cleared.
+	 * The number of columns on the board being drawn.
 	 */
-	public int checkLines() {
-		int completedLines = 0;
+	private final int colCount;
 
-		/*
-		 * Here we loop through every line and check it to see if
-		 * it's been cleared or not. If it has, we increment the
-		 * number of completed lines and check the next row.
-		 * 
-		 * The checkLine function handles clearing the line and
-		 * shifting the rest of the board down for us.
-		 */
-		for (int row = 0; row < ROW_COUNT; row++) {
-			if (checkLine(row)) {
-				completedLines++;
-			}
-		}
-		return completedLines;
-	}
+	/**
+	 * The number of visible rows on the board being drawn.
+	 */
+	private final int visibleRowCount;
 
 	/**
-	 * Checks whether or not {@code row} is full.
-	 * 
-	 * @param line The row to check.
-	 * @return Whether or not this row is full.
+	 * The number of pixels that a tile takes up on this panel.
 	 */
-	private boolean checkLine(int line) {
-		/*
-		 * Iterate through every column in this row. If any of them are
-		 * empty, then the row is not full.
-		 */
-		for (int col = 0; col < COL_COUNT; col++) {
-			if (!isOccupied(col, line)) {
-				return false;
-			}
-		}
+	private final int tileSize;
 
-		/*
-		 * Since the line is filled, we need to 'remove' it from the game.
-		 * To do this, we simply shift every row above it down by one.
-		 */
-		for (int row = line - 1; row >= 0; row--) {
-			for (int col = 0; col < COL_COUNT; col++) {
-				setTile(col, row + 1, getTile(col, row));
-			}
-		}
-		return true;
-	}
+	/**
+	 * The width of the shading on this panel's tiles.
+	 */
+	private final int shadeWidth;
 
 	/**
-	 * Checks to see if the tile is already occupied.
+	 * Crates a new GameBoard instance.
 	 * 
-	 * @param x The x coordinate to check.
-	 * @param y The y coordinate to check.
-	 * @return Whether or not the tile is occupied.
+	 * @param view The game to show.
 	 */
-	private boolean isOccupied(int x, int y) {
-		return tiles[y][x] != null;
+	public BoardPanel(GameView view) {
+		this(view, TILE_SIZE);
 	}
 
 	/**
-	 * Sets a tile located at the desired column and row.
+	 * Crates a new GameBoard instance sized to fit the game's board.
 	 * 
-	 * @param x    The column.
-	 * @param y    The row.
-	 * @param type The value to set to the tile to.
+	 * @param view     The game to show.
+	 * @param tileSize The number of pixels that a tile takes up.
 	 */
-	private void setTile(int x, int y, TileType type) {
-		tiles[y][x] = type;
+	public BoardPanel(GameView view, int tileSize) {
+		this.view = view;
+		this.effects = new EffectLayer(Tetris.FRAME_BUDGET);
+		this.colCount = view.getBoard().getColCount();
+		this.visibleRowCount = view.getBoard().getRowCount() - HIDDEN_ROW_COUNT;
+		this.tileSize = tileSize;
+		this.shadeWidth = Math.max(1, tileSize * SHADE_WIDTH / TILE_SIZE);
+
+		setPreferredSize(new Dimension(colCount * tileSize + BORDER_WIDTH * 2,
+				visibleRowCount * tileSize + BORDER_WIDTH * 2));
+		setBackground(Color.WHITE);
 	}
 
 	/**
-	 * Gets a tile by it's column and row.
-	 * 
-	 * @param x The column.
-	 * @param y The row.
-	 * @return The tile.
+	 * Gets the line clear effects drawn over the board.
+	 *
+	 * @return The effects.
+	 */
+	public EffectLayer getEffects() {
+		return effects;
+	}
+
+	/**
+	 * Scrolls the panel, if it's in a scroll pane, so that the current piece is
+	 * in view. Nothing is done unless the piece has moved.
 	 */
-	private TileType getTile(int x, int y) {
-		return tiles[y][x];
+	public void followPiece() {
+		if (!(getParent() instanceof JViewport) || view.isNewGame() || view.isGameOver()) {
+			return;
+		}
+		if (view.getPieceCol() == followCol && view.getPieceRow() == followRow) {
+			return;
+		}
+		followCol = view.getPieceCol();
+		followRow = view.getPieceRow();
+
+		int size = view.getPieceType().getDimension() * tileSize;
+		int x = BORDER_WIDTH + followCol * tileSize;
+		int y = BORDER_WIDTH + (followRow - HIDDEN_ROW_COUNT) * tileSize;
+		follow.setBounds(x - size, y - size, size * 3, size * 3);
+		scrollRectToVisible(follow);
 	}
 
 	@Override
 	public void paintComponent(Graphics g) {
-		super.paintComponent(g);
+		long start = System.nanoTime();
+
+		/*
+		 * Fill the background directly rather than through the superclass, which
+		 * makes a copy of the graphics object every frame.
+		 */
+		g.setColor(getBackground());
+		g.fillRect(0, 0, getWidth(), getHeight());
 
 		// This helps simplify the positioning of things.
 		g.translate(BORDER_WIDTH, BORDER_WIDTH);
 
 		/*
 		 * Draw the board differently depending on the current game state.
+		 * Messages are centered on the part of the board that's in view, which
+		 * is all of it unless the board is too large for the window.
 		 */
-		if (tetris.isPaused()) {
+		int centerX = 0;
+		int centerY = 0;
+		if (view.isPaused() || view.isNewGame() || view.isGameOver()) {
+			computeVisibleRect(visible);
+			centerX = visible.x - BORDER_WIDTH + visible.width / 2;
+			centerY = visible.y - BORDER_WIDTH + visible.height / 2;
+		}
+
+		if (view.isPaused()) {
 			g.setFont(LARGE_FONT);
 			g.setColor(Color.WHITE);
 			String msg = "PAUSED";
-			g.drawString(msg, CENTER_X - g.getFontMetrics().stringWidth(msg) / 2, CENTER_Y);
-		} else if (tetris.isNewGame() || tetris.isGameOver()) {
+			g.drawString(msg, centerX - g.getFontMetrics().stringWidth(msg) / 2, centerY);
+		} else if (view.isNewGame() || view.isGameOver()) {
 			g.setFont(LARGE_FONT);
 			g.setColor(Color.WHITE);
 
@@ -296,21 +263,37 @@ public class BoardPanel extends JPanel {
 			 * we can handle them together and just use a ternary operator to change
 			 * the messages that are displayed.
 			 */
-			String msg = tetris.isNewGame() ? "TETRIS" : "GAME OVER";
-			g.drawString(msg, CENTER_X - g.getFontMetrics().stringWidth(msg) / 2, 150);
+			String msg = view.isNewGame() ? "TETRIS" : "GAME OVER";
+			g.drawString(msg, centerX - g.getFontMetrics().stringWidth(msg) / 2, centerY - 90);
 			g.setFont(SMALL_FONT);
-			msg = "Press Enter to Play" + (tetris.isNewGame() ? "" : " Again");
-			g.drawString(msg, CENTER_X - g.getFontMetrics().stringWidth(msg) / 2, 300);
+			msg = view.isNewGame() ? "Press Enter to Play" : "Press Enter to Play Again";
+			g.drawString(msg, centerX - g.getFontMetrics().stringWidth(msg) / 2, centerY + 60);
 		} else {
 
+			/*
+			 * Work out which columns and rows are inside the clip, so that only the
+			 * part of the board being repainted is drawn. Rows above the top of the
+			 * stack are empty, so tiles are only looked up from there down.
+			 */
+			Board board = view.getBoard();
+			clip.setBounds(0, 0, colCount * tileSize, visibleRowCount * tileSize);
+			g.getClipBounds(clip);
+			int minCol = Math.max(0, clip.x / tileSize);
+			int maxCol = Math.min(colCount - 1, (clip.x + clip.width) / tileSize);
+			int minRow = Math.max(0, clip.y / tileSize);
+			int maxRow = Math.min(visibleRowCount - 1, (clip.y + clip.height) / tileSize);
+
 			/*
 			 * Draw the tiles onto the board.
 			 */
-			for (int x = 0; x < COL_COUNT; x++) {
-				for (int y = HIDDEN_ROW_COUNT; y < ROW_COUNT; y++) {
-					TileType tile = getTile(x, y);
+			int firstRow = Math.max(minRow, board.getStackTop() - HIDDEN_ROW_COUNT);
+			for (int x = minCol; x <= maxCol; x++) {
+				for (int y = firstRow; y <= maxRow; y++) {
+					TileType tile = board.getTile(x, y + HIDDEN_ROW_COUNT);
 					if (tile != null) {
-						drawTile(tile, x * TILE_SIZE, (y - HIDDEN_ROW_COUNT) * TILE_SIZE, g);
+						drawTile(tile, x * tileSize, y * tileSize, g);
+					} else if (board.isOccupied(x, y + HIDDEN_ROW_COUNT)) {
+						drawTile(GARBAGE_COLOR, GARBAGE_LIGHT, GARBAGE_DARK, x * tileSize, y * tileSize, g);
 					}
 				}
 			}
@@ -321,16 +304,16 @@ public class BoardPanel extends JPanel {
 			 * part of the board, it would need to be removed every frame which
 			 * would just be slow and confusing.
 			 */
-			TileType type = tetris.getPieceType();
-			int pieceCol = tetris.getPieceCol();
-			int pieceRow = tetris.getPieceRow();
-			int rotation = tetris.getPieceRotation();
+			TileType type = view.getPieceType();
+			int pieceCol = view.getPieceCol();
+			int pieceRow = view.getPieceRow();
+			int rotation = view.getPieceRotation();
 
 			// Draw the piece onto the board.
 			for (int col = 0; col < type.getDimension(); col++) {
 				for (int row = 0; row < type.getDimension(); row++) {
 					if (pieceRow + row >= 2 && type.isTile(col, row, rotation)) {
-						drawTile(type, (pieceCol + col) * TILE_SIZE, (pieceRow + row - HIDDEN_ROW_COUNT) * TILE_SIZE,
+						drawTile(type, (pieceCol + col) * tileSize, (pieceRow + row - HIDDEN_ROW_COUNT) * tileSize,
 								g);
 					}
 				}
@@ -338,33 +321,18 @@ public class BoardPanel extends JPanel {
 
 			/*
 			 * Draw the ghost (semi-transparent piece that shows where the current piece
-			 * will land). I couldn't think of
-			 * a better way to implement this so it'll have to do for now. We simply take
-			 * the current position and move
-			 * down until we hit a row that would cause a collision.
+			 * will land). The engine keeps the landing row up to date, so it isn't
+			 * searched for here.
 			 */
-			Color base = type.getBaseColor();
-			base = new Color(base.getRed(), base.getGreen(), base.getBlue(), 20);
-			for (int lowest = pieceRow; lowest < ROW_COUNT; lowest++) {
-				// If no collision is detected, try the next row.
-				if (isValidAndEmpty(type, pieceCol, lowest, rotation)) {
-					continue;
-				}
-
-				// Draw the ghost one row higher than the one the collision took place at.
-				lowest--;
-
-				// Draw the ghost piece.
-				for (int col = 0; col < type.getDimension(); col++) {
-					for (int row = 0; row < type.getDimension(); row++) {
-						if (lowest + row >= 2 && type.isTile(col, row, rotation)) {
-							drawTile(base, base.brighter(), base.darker(), (pieceCol + col) * TILE_SIZE,
-									(lowest + row - HIDDEN_ROW_COUNT) * TILE_SIZE, g);
-						}
+			int ghost = getGhostColors(board.getPieceSet(), type);
+			int lowest = view.getLandingRow();
+			for (int col = 0; col < type.getDimension(); col++) {
+				for (int row = 0; row < type.getDimension(); row++) {
+					if (lowest + row >= 2 && type.isTile(col, row, rotation)) {
+						drawTile(ghostColors[ghost], ghostColors[ghost + 1], ghostColors[ghost + 2],
+								(pieceCol + col) * tileSize, (lowest + row - HIDDEN_ROW_COUNT) * tileSize, g);
 					}
 				}
-
-				break;
 			}
 
 			/*
@@ -372,19 +340,69 @@ public class BoardPanel extends JPanel {
 			 * for players, and makes the pieces look nicer by breaking them up.
 			 */
 			g.setColor(Color.DARK_GRAY);
-			for (int x = 0; x < COL_COUNT; x++) {
-				for (int y = 0; y < VISIBLE_ROW_COUNT; y++) {
-					g.drawLine(0, y * TILE_SIZE, COL_COUNT * TILE_SIZE, y * TILE_SIZE);
-					g.drawLine(x * TILE_SIZE, 0, x * TILE_SIZE, VISIBLE_ROW_COUNT * TILE_SIZE);
-				}
+			for (int y = minRow; y <= maxRow; y++) {
+				g.drawLine(minCol * tileSize, y * tileSize, (maxCol + 1) * tileSize, y * tileSize);
+			}
+			for (int x = minCol; x <= maxCol; x++) {
+				g.drawLine(x * tileSize, minRow * tileSize, x * tileSize, (maxRow + 1) * tileSize);
 			}
 		}
 
+		/*
+		 * Advance and draw the effects over everything else, and let them know
+		 * how long the frame took so they can scale themselves down if the
+		 * board is taking too long to draw.
+		 */
+		effects.update((start - lastPaint) / 1e9f);
+		lastPaint = start;
+		if (!view.isPaused()) {
+			effects.paint(g, tileSize, colCount);
+		}
+		effects.recordFrame(System.nanoTime() - start);
+
 		/*
 		 * Draw the outline.
 		 */
 		g.setColor(Color.WHITE);
-		g.drawRect(0, 0, TILE_SIZE * COL_COUNT, TILE_SIZE * VISIBLE_ROW_COUNT);
+		g.drawRect(0, 0, tileSize * colCount, tileSize * visibleRowCount);
+	}
+
+	/**
+	 * Finds the ghost colors of a type, blending the colors of every type in
+	 * the set over the background if they haven't been yet.
+	 * 
+	 * @param pieces The piece set of the board.
+	 * @param type   The type.
+	 * @return The index of the type's base ghost color in {@code ghostColors}.
+	 */
+	private int getGhostColors(PieceSet pieces, TileType type) {
+		Color background = getBackground();
+		if (ghostColors == null || ghostBackground != background) {
+			ghostColors = new Color[pieces.size() * 3];
+			ghostBackground = background;
+			for (int i = 0; i < pieces.size(); i++) {
+				Color base = pieces.get(i).getBaseColor();
+				base = new Color(base.getRed(), base.getGreen(), base.getBlue(), 20);
+				ghostColors[i * 3] = blend(base, background);
+				ghostColors[i * 3 + 1] = blend(base.brighter(), background);
+				ghostColors[i * 3 + 2] = blend(base.darker(), background);
+			}
+		}
+		return type.getIndex() * 3;
+	}
+
+	/**
+	 * Blends a translucent color over an opaque one.
+	 * 
+	 * @param color      The translucent color.
+	 * @param background The opaque color.
+	 * @return The blended opaque color.
+	 */
+	private static Color blend(Color color, Color background) {
+		float alpha = color.getAlpha() / 255.0f;
+		return new Color(Math.round(background.getRed() + (color.getRed() - background.getRed()) * alpha),
+				Math.round(background.getGreen() + (color.getGreen() - background.getGreen()) * alpha),
+				Math.round(background.getBlue() + (color.getBlue() - background.getBlue()) * alpha));
 	}
 
 	/**
@@ -415,14 +433,14 @@ public class BoardPanel extends JPanel {
 		 * Fill the entire tile with the base color.
 		 */
 		g.setColor(base);
-		g.fillRect(x, y, TILE_SIZE, TILE_SIZE);
+		g.fillRect(x, y, tileSize, tileSize);
 
 		/*
 		 * Fill the bottom and right edges of the tile with the dark shading color.
 		 */
 		g.setColor(dark);
-		g.fillRect(x, y + TILE_SIZE - SHADE_WIDTH, TILE_SIZE, SHADE_WIDTH);
-		g.fillRect(x + TILE_SIZE - SHADE_WIDTH, y, SHADE_WIDTH, TILE_SIZE);
+		g.fillRect(x, y + tileSize - shadeWidth, tileSize, shadeWidth);
+		g.fillRect(x + tileSize - shadeWidth, y, shadeWidth, tileSize);
 
 		/*
 		 * Fill the top and left edges with the light shading. We draw a single line
@@ -430,9 +448,9 @@ public class BoardPanel extends JPanel {
 		 * looking diagonal where the light and dark shading meet.
 		 */
 		g.setColor(light);
-		for (int i = 0; i < SHADE_WIDTH; i++) {
-			g.drawLine(x, y + i, x + TILE_SIZE - i - 1, y + i);
-			g.drawLine(x + i, y, x + i, y + TILE_SIZE - i - 1);
+		for (int i = 0; i < shadeWidth; i++) {
+			g.drawLine(x, y + i, x + tileSize - i - 1, y + i);
+			g.drawLine(x + i, y, x + i, y + tileSize - i - 1);
 		}
 	}
 
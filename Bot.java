@@ -0,0 +1,23 @@
+public interface Bot {
+
+	/**
+	 * Gets the name of the bot, which is shown in its statistics.
+	 *
+	 * @return The name.
+	 */
+	String getName();
+
+	/**
+	 * Decides how to play the current piece. This is called on the bot's own
+	 * thread, never the game loop's, and must return before
+	 * {@code view.getDeadline()}. A bot that runs over is interrupted and its
+	 * move is discarded, so long searches should check
+	 * {@code Thread.interrupted()} or {@code view.getTimeLeft()} and return
+	 * the best move found so far.
+	 *
+	 * @param view The state of the game when the piece spawned.
+	 * @return The move, or null to let the piece fall where it will.
+	 */
+	BotMove decide(BotView view);
+
+}
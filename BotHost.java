@@ -0,0 +1,242 @@
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+public class BotHost {
+
+	/**
+	 * The bot being hosted.
+	 */
+	private final Bot bot;
+
+	/**
+	 * The time the bot has to decide each move, in nanoseconds.
+	 */
+	private final long budget;
+
+	/**
+	 * How long each decision took, including any that ran over.
+	 */
+	private final LatencyRecorder latency = new LatencyRecorder();
+
+	/**
+	 * The thread the bot decides on. It's replaced when a bot runs over its
+	 * budget, in case the bot ignores being interrupted.
+	 */
+	private ExecutorService thread;
+
+	/**
+	 * The decision in progress, or null if there isn't one.
+	 */
+	private Future<BotMove> pending;
+
+	/**
+	 * The time the decision in progress was started, from
+	 * {@code System.nanoTime()}.
+	 */
+	private long started;
+
+	/**
+	 * The move being played, or null if there isn't one.
+	 */
+	private BotMove move;
+
+	/**
+	 * The number of inputs the move being played has sent.
+	 */
+	private int step;
+
+	/**
+	 * The type of the piece the bot last decided for.
+	 */
+	private TileType lastType;
+
+	/**
+	 * The row the piece was in when last checked. A piece higher than this is
+	 * a new one, or has been pushed up by garbage.
+	 */
+	private int lastRow = Integer.MAX_VALUE;
+
+	/**
+	 * The number of decisions that finished in time.
+	 */
+	private int decisions;
+
+	/**
+	 * The number of decisions that were cancelled for running over.
+	 */
+	private int timeouts;
+
+	/**
+	 * The number of decisions that threw.
+	 */
+	private int failures;
+
+	/**
+	 * Creates a new BotHost.
+	 *
+	 * @param bot    The bot.
+	 * @param budget The time the bot has to decide each move, in
+	 *               nanoseconds.
+	 */
+	public BotHost(Bot bot, long budget) {
+		this.bot = bot;
+		this.budget = budget;
+		this.thread = createThread();
+	}
+
+	/**
+	 * Gets the input to apply this frame. This never waits for the bot: when a
+	 * new piece appears, a decision is started on the bot's thread, and until
+	 * it's made no input is sent. A decision that runs over the budget is
+	 * cancelled, and the piece is left to gravity.
+	 *
+	 * @param engine The engine the bot is playing.
+	 * @return One of the {@code VersusProtocol.INPUT_*} constants, or 0 for no
+	 *         input.
+	 */
+	public byte nextInput(GameEngine engine) {
+		if (engine.getPieceRow() < lastRow || engine.getPieceType() != lastType) {
+			startDecision(engine);
+		}
+		lastRow = engine.getPieceRow();
+		lastType = engine.getPieceType();
+
+		if (pending != null) {
+			long elapsed = System.nanoTime() - started;
+			if (pending.isDone()) {
+				latency.record(elapsed);
+				try {
+					move = pending.get();
+					decisions++;
+				} catch (ExecutionException e) {
+					failures++;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				pending = null;
+			} else if (elapsed > budget) {
+				cancel();
+				latency.record(elapsed);
+				timeouts++;
+			}
+		}
+
+		if (move == null) {
+			return 0;
+		}
+		byte input = move.nextInput(engine, step);
+		step++;
+		return input;
+	}
+
+	/**
+	 * Cancels the decision in progress and starts deciding for the current
+	 * piece.
+	 *
+	 * @param engine The engine the bot is playing.
+	 */
+	private void startDecision(GameEngine engine) {
+		if (pending != null) {
+			cancel();
+		}
+		move = null;
+		step = 0;
+		started = System.nanoTime();
+		final BotView view = new BotView(engine, started + budget);
+		pending = thread.submit(new Callable<BotMove>() {
+
+			@Override
+			public BotMove call() {
+				return bot.decide(view);
+			}
+
+		});
+	}
+
+	/**
+	 * Cancels the decision in progress. The bot's thread is interrupted and
+	 * abandoned, and later decisions are made on a new one, so that a bot
+	 * which ignores the interrupt can't hold them up.
+	 */
+	private void cancel() {
+		pending.cancel(true);
+		pending = null;
+		thread.shutdownNow();
+		thread = createThread();
+	}
+
+	/**
+	 * Creates the thread the bot decides on. It's a daemon, so a bot that
+	 * never returns can't keep the program running.
+	 *
+	 * @return The thread.
+	 */
+	private ExecutorService createThread() {
+		return Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "Bot " + bot.getName());
+				thread.setDaemon(true);
+				return thread;
+			}
+
+		});
+	}
+
+	/**
+	 * Stops the bot, cancelling any decision in progress.
+	 */
+	public void close() {
+		if (pending != null) {
+			pending.cancel(true);
+			pending = null;
+		}
+		thread.shutdownNow();
+	}
+
+	/**
+	 * Gets the bot being hosted.
+	 *
+	 * @return The bot.
+	 */
+	public Bot getBot() {
+		return bot;
+	}
+
+	/**
+	 * Gets how long the bot's decisions have taken.
+	 *
+	 * @return The decision times.
+	 */
+	public LatencyRecorder getLatency() {
+		return latency;
+	}
+
+	/**
+	 * Gets the number of decisions that were cancelled for running over the
+	 * budget.
+	 *
+	 * @return The number of timeouts.
+	 */
+	public int getTimeouts() {
+		return timeouts;
+	}
+
+	/**
+	 * Formats the bot's decision statistics.
+	 *
+	 * @return The summary.
+	 */
+	@Override
+	public String toString() {
+		return String.format("%s: p50=%dus p99=%dus, %d decided, %d timed out, %d failed", bot.getName(),
+				latency.getPercentile(0.50) / 1000L, latency.getPercentile(0.99) / 1000L, decisions, timeouts,
+				failures);
+	}
+
+}
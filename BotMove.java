@@ -0,0 +1,108 @@
+import java.util.Arrays;
+
+public final class BotMove {
+
+	/**
+	 * The column of the placement, if this is one.
+	 */
+	private final int col;
+
+	/**
+	 * The rotation of the placement, or -1 if this is an input sequence.
+	 */
+	private final int rotation;
+
+	/**
+	 * The inputs of the sequence, or null if this is a placement.
+	 */
+	private final byte[] inputs;
+
+	/**
+	 * Creates a new BotMove.
+	 *
+	 * @param col      The column of the placement.
+	 * @param rotation The rotation of the placement, or -1.
+	 * @param inputs   The input sequence, or null.
+	 */
+	private BotMove(int col, int rotation, byte[] inputs) {
+		this.col = col;
+		this.rotation = rotation;
+		this.inputs = inputs;
+	}
+
+	/**
+	 * Creates a move that places the piece at a column and rotation. The host
+	 * rotates the piece clockwise until it's at the rotation, moves it to the
+	 * column and then drops it.
+	 *
+	 * @param col      The column.
+	 * @param rotation The rotation.
+	 * @return The move.
+	 */
+	public static BotMove place(int col, int rotation) {
+		if (rotation < 0 || rotation >= TileType.ROTATION_COUNT) {
+			throw new IllegalArgumentException("Invalid rotation " + rotation);
+		}
+		return new BotMove(col, rotation, null);
+	}
+
+	/**
+	 * Creates a move that sends a sequence of inputs, one per frame. The piece
+	 * is left to gravity once they run out.
+	 *
+	 * @param inputs The inputs, each one of the {@code VersusProtocol.INPUT_*}
+	 *               constants.
+	 * @return The move.
+	 */
+	public static BotMove inputs(byte... inputs) {
+		for (byte input : inputs) {
+			if (input < VersusProtocol.INPUT_LEFT || input > VersusProtocol.INPUT_DROP) {
+				throw new IllegalArgumentException("Invalid input " + input);
+			}
+		}
+		return new BotMove(0, -1, inputs.clone());
+	}
+
+	/**
+	 * Gets the input this move sends next.
+	 *
+	 * @param engine The engine playing the move.
+	 * @param step   The number of inputs this move has already sent.
+	 * @return The input, or 0 if the move has none left.
+	 */
+	public byte nextInput(GameEngine engine, int step) {
+		if (inputs != null) {
+			return (step < inputs.length) ? inputs[step] : 0;
+		}
+		return inputToward(engine, col, rotation);
+	}
+
+	/**
+	 * Gets the input that brings a piece closer to a placement: it's rotated
+	 * first, then moved sideways, then dropped.
+	 *
+	 * @param engine   The engine.
+	 * @param col      The column of the placement.
+	 * @param rotation The rotation of the placement.
+	 * @return The input.
+	 */
+	public static byte inputToward(GameEngine engine, int col, int rotation) {
+		if (engine.getPieceRotation() != rotation) {
+			return VersusProtocol.INPUT_ROTATE_CW;
+		} else if (engine.getPieceCol() > col) {
+			return VersusProtocol.INPUT_LEFT;
+		} else if (engine.getPieceCol() < col) {
+			return VersusProtocol.INPUT_RIGHT;
+		}
+		return VersusProtocol.INPUT_DROP;
+	}
+
+	@Override
+	public String toString() {
+		if (inputs != null) {
+			return "inputs " + Arrays.toString(inputs);
+		}
+		return "place at column " + col + ", rotation " + rotation;
+	}
+
+}
@@ -0,0 +1,231 @@
+public final class BotView {
+
+	/**
+	 * The number of columns on the board.
+	 */
+	private final int colCount;
+
+	/**
+	 * The number of rows on the board.
+	 */
+	private final int rowCount;
+
+	/**
+	 * The piece set of the board.
+	 */
+	private final PieceSet pieces;
+
+	/**
+	 * The cells of the board, row by row, as {@code Board.writeTo} stores
+	 * them.
+	 */
+	private final byte[] cells;
+
+	/**
+	 * The type of the current piece.
+	 */
+	private final TileType pieceType;
+
+	/**
+	 * The type of the next piece.
+	 */
+	private final TileType nextPieceType;
+
+	/**
+	 * The column of the current piece.
+	 */
+	private final int pieceCol;
+
+	/**
+	 * The row of the current piece.
+	 */
+	private final int pieceRow;
+
+	/**
+	 * The rotation of the current piece.
+	 */
+	private final int pieceRotation;
+
+	/**
+	 * The score.
+	 */
+	private final int score;
+
+	/**
+	 * The level.
+	 */
+	private final int level;
+
+	/**
+	 * The time by which the bot must decide, from {@code System.nanoTime()}.
+	 */
+	private final long deadline;
+
+	/**
+	 * Creates a view of the current state of a game. The board is copied, so
+	 * the view doesn't change as the game goes on.
+	 *
+	 * @param engine   The engine.
+	 * @param deadline The time by which the bot must decide, from
+	 *                 {@code System.nanoTime()}.
+	 */
+	public BotView(GameEngine engine, long deadline) {
+		Board board = engine.getBoard();
+		this.colCount = board.getColCount();
+		this.rowCount = board.getRowCount();
+		this.pieces = board.getPieceSet();
+		this.cells = new byte[board.getSnapshotSize()];
+		board.writeTo(cells, 0);
+		this.pieceType = engine.getPieceType();
+		this.nextPieceType = engine.getNextPieceType();
+		this.pieceCol = engine.getPieceCol();
+		this.pieceRow = engine.getPieceRow();
+		this.pieceRotation = engine.getPieceRotation();
+		this.score = engine.getScore();
+		this.level = engine.getLevel();
+		this.deadline = deadline;
+	}
+
+	/**
+	 * Gets the number of columns on the board.
+	 *
+	 * @return The number of columns.
+	 */
+	public int getColCount() {
+		return colCount;
+	}
+
+	/**
+	 * Gets the number of rows on the board, including the hidden rows at the
+	 * top.
+	 *
+	 * @return The number of rows.
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Gets the piece set of the game.
+	 *
+	 * @return The piece set.
+	 */
+	public PieceSet getPieceSet() {
+		return pieces;
+	}
+
+	/**
+	 * Checks whether or not a cell has a tile or garbage in it.
+	 *
+	 * @param x The column.
+	 * @param y The row.
+	 * @return Whether or not the cell is occupied.
+	 */
+	public boolean isOccupied(int x, int y) {
+		return cells[y * colCount + x] != Board.EMPTY;
+	}
+
+	/**
+	 * Creates a board holding the cells of this view, which the bot is free to
+	 * change, for example to try placements out on.
+	 *
+	 * @return The board.
+	 */
+	public Board toBoard() {
+		Board board = new Board(colCount, rowCount, pieces);
+		board.readFrom(cells, 0);
+		return board;
+	}
+
+	/**
+	 * Copies the cells of this view into a board of the same size.
+	 *
+	 * @param board The board to overwrite.
+	 */
+	public void copyTo(Board board) {
+		board.readFrom(cells, 0);
+	}
+
+	/**
+	 * Gets the type of the current piece.
+	 *
+	 * @return The type.
+	 */
+	public TileType getPieceType() {
+		return pieceType;
+	}
+
+	/**
+	 * Gets the type of the next piece.
+	 *
+	 * @return The type.
+	 */
+	public TileType getNextPieceType() {
+		return nextPieceType;
+	}
+
+	/**
+	 * Gets the column of the current piece.
+	 *
+	 * @return The column.
+	 */
+	public int getPieceCol() {
+		return pieceCol;
+	}
+
+	/**
+	 * Gets the row of the current piece.
+	 *
+	 * @return The row.
+	 */
+	public int getPieceRow() {
+		return pieceRow;
+	}
+
+	/**
+	 * Gets the rotation of the current piece.
+	 *
+	 * @return The rotation.
+	 */
+	public int getPieceRotation() {
+		return pieceRotation;
+	}
+
+	/**
+	 * Gets the score.
+	 *
+	 * @return The score.
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * Gets the level.
+	 *
+	 * @return The level.
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * Gets the time by which the bot must decide.
+	 *
+	 * @return The deadline, from {@code System.nanoTime()}.
+	 */
+	public long getDeadline() {
+		return deadline;
+	}
+
+	/**
+	 * Gets the time the bot has left to decide.
+	 *
+	 * @return The time in nanoseconds, which is negative once the deadline
+	 *         has passed.
+	 */
+	public long getTimeLeft() {
+		return deadline - System.nanoTime();
+	}
+
+}
@@ -0,0 +1,211 @@
+public class CandidateBatch {
+
+	/**
+	 * The widest board a batch can hold, since each row is kept in an int.
+	 */
+	public static final int MAX_COLS = Integer.SIZE;
+
+	/**
+	 * The number of candidates the capacity is rounded up to a multiple of,
+	 * which is the most lanes a vector evaluator uses. Evaluators work on
+	 * whole multiples of it, so they never need a scalar tail.
+	 */
+	public static final int LANE_ALIGNMENT = 16;
+
+	/**
+	 * The number of columns on the boards.
+	 */
+	private final int colCount;
+
+	/**
+	 * The number of rows on the boards.
+	 */
+	private final int rowCount;
+
+	/**
+	 * The number of candidates the batch can hold.
+	 */
+	private final int capacity;
+
+	/**
+	 * The occupancy of each row of each candidate, with the rightmost column
+	 * in the lowest bit. The rows of a candidate are {@code capacity} apart,
+	 * so the same row of neighbouring candidates is contiguous and a vector
+	 * of candidates can be loaded in one go.
+	 */
+	final int[] masks;
+
+	/**
+	 * The number of full rows of each candidate.
+	 */
+	final int[] lines;
+
+	/**
+	 * The number of covered holes of each candidate.
+	 */
+	final int[] holes;
+
+	/**
+	 * The total height of the columns of each candidate, once its full rows
+	 * are cleared.
+	 */
+	final int[] totalHeight;
+
+	/**
+	 * The sum of the height differences between neighbouring columns of each
+	 * candidate.
+	 */
+	final int[] bumpiness;
+
+	/**
+	 * The number of candidates added.
+	 */
+	private int size;
+
+	/**
+	 * Creates a new CandidateBatch.
+	 *
+	 * @param colCount The number of columns on the boards, at most
+	 *                 {@code MAX_COLS}.
+	 * @param rowCount The number of rows on the boards.
+	 * @param capacity The most candidates the batch needs to hold.
+	 */
+	public CandidateBatch(int colCount, int rowCount, int capacity) {
+		if (colCount > MAX_COLS) {
+			throw new IllegalArgumentException("Batches hold boards of at most " + MAX_COLS + " columns");
+		}
+		this.colCount = colCount;
+		this.rowCount = rowCount;
+		this.capacity = (capacity + LANE_ALIGNMENT - 1) / LANE_ALIGNMENT * LANE_ALIGNMENT;
+		this.masks = new int[rowCount * this.capacity];
+		this.lines = new int[this.capacity];
+		this.holes = new int[this.capacity];
+		this.totalHeight = new int[this.capacity];
+		this.bumpiness = new int[this.capacity];
+	}
+
+	/**
+	 * Adds a candidate board, with its piece placed but its lines not yet
+	 * cleared. The evaluated features are those of the board once its lines
+	 * are cleared.
+	 *
+	 * @param board The board, which must be no wider than {@code MAX_COLS}.
+	 * @return The index of the candidate.
+	 */
+	public int add(Board board) {
+		int lane = size++;
+		int shift = Long.SIZE - colCount;
+		int top = Math.max(0, board.getStackTop());
+		for (int row = 0; row < top; row++) {
+			masks[row * capacity + lane] = 0;
+		}
+		for (int row = top; row < rowCount; row++) {
+			masks[row * capacity + lane] = (int) (board.getRowBits(row) >>> shift);
+		}
+		return lane;
+	}
+
+	/**
+	 * Removes every candidate. The masks are left as they are, since lanes
+	 * past the size are evaluated along with the rest and then ignored.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Gets the mask of a full row.
+	 *
+	 * @return The mask.
+	 */
+	int getFullMask() {
+		return (int) (-1L >>> (Long.SIZE - colCount));
+	}
+
+	/**
+	 * Gets the mask of every column but the leftmost, which picks out the
+	 * pairs of neighbouring columns once a row is shifted by one.
+	 *
+	 * @return The mask.
+	 */
+	int getPairMask() {
+		return getFullMask() >>> 1;
+	}
+
+	/**
+	 * Gets the number of candidates added.
+	 *
+	 * @return The number of candidates.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the number of candidates the batch can hold.
+	 *
+	 * @return The capacity, a multiple of {@code LANE_ALIGNMENT}.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Gets the number of columns on the boards.
+	 *
+	 * @return The number of columns.
+	 */
+	public int getColCount() {
+		return colCount;
+	}
+
+	/**
+	 * Gets the number of rows on the boards.
+	 *
+	 * @return The number of rows.
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Gets the number of lines an evaluated candidate clears.
+	 *
+	 * @param index The index of the candidate.
+	 * @return The number of lines.
+	 */
+	public int getLines(int index) {
+		return lines[index];
+	}
+
+	/**
+	 * Gets the number of covered holes in an evaluated candidate.
+	 *
+	 * @param index The index of the candidate.
+	 * @return The number of holes.
+	 */
+	public int getHoles(int index) {
+		return holes[index];
+	}
+
+	/**
+	 * Gets the total column height of an evaluated candidate.
+	 *
+	 * @param index The index of the candidate.
+	 * @return The total height.
+	 */
+	public int getTotalHeight(int index) {
+		return totalHeight[index];
+	}
+
+	/**
+	 * Gets the bumpiness of an evaluated candidate.
+	 *
+	 * @param index The index of the candidate.
+	 * @return The bumpiness.
+	 */
+	public int getBumpiness(int index) {
+		return bumpiness[index];
+	}
+
+}
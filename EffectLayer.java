@@ -0,0 +1,302 @@
+import java.awt.Color;
+import java.awt.Graphics;
+
+public class EffectLayer {
+
+	/**
+	 * The most particles that can be alive at once.
+	 */
+	public static final int MAX_PARTICLES = 2048;
+
+	/**
+	 * The most line flashes that can be showing at once.
+	 */
+	private static final int MAX_FLASHES = 64;
+
+	/**
+	 * The number of particles thrown from each cell of a cleared line at full
+	 * quality.
+	 */
+	private static final int PARTICLES_PER_CELL = 6;
+
+	/**
+	 * How long a cleared line flashes for, in seconds.
+	 */
+	private static final float FLASH_TIME = 0.3f;
+
+	/**
+	 * How long a particle lives for, in seconds.
+	 */
+	private static final float PARTICLE_TIME = 0.8f;
+
+	/**
+	 * The downwards acceleration of particles, in tiles per second squared.
+	 */
+	private static final float GRAVITY = 30.0f;
+
+	/**
+	 * The longest step a frame can advance the effects by, in seconds, so that
+	 * effects don't jump after a stall.
+	 */
+	private static final float MAX_STEP = 0.05f;
+
+	/**
+	 * The x position of each particle, in tiles.
+	 */
+	private final float[] particleX = new float[MAX_PARTICLES];
+
+	/**
+	 * The y position of each particle, in visible rows.
+	 */
+	private final float[] particleY = new float[MAX_PARTICLES];
+
+	/**
+	 * The x velocity of each particle, in tiles per second.
+	 */
+	private final float[] velocityX = new float[MAX_PARTICLES];
+
+	/**
+	 * The y velocity of each particle, in tiles per second.
+	 */
+	private final float[] velocityY = new float[MAX_PARTICLES];
+
+	/**
+	 * The time each particle has left, in seconds.
+	 */
+	private final float[] particleLife = new float[MAX_PARTICLES];
+
+	/**
+	 * The color of each particle. These are the colors of existing tile types,
+	 * so nothing is created to fill this.
+	 */
+	private final Color[] particleColor = new Color[MAX_PARTICLES];
+
+	/**
+	 * The number of live particles, which are kept at the start of the arrays.
+	 */
+	private int particleCount;
+
+	/**
+	 * The visible row of each flash.
+	 */
+	private final int[] flashRow = new int[MAX_FLASHES];
+
+	/**
+	 * The time each flash has left, in seconds.
+	 */
+	private final float[] flashLife = new float[MAX_FLASHES];
+
+	/**
+	 * The number of showing flashes, which are kept at the start of the arrays.
+	 */
+	private int flashCount;
+
+	/**
+	 * The state of the random number generator used to scatter particles.
+	 */
+	private int seed = 0x2545F491;
+
+	/**
+	 * The fraction of particles that are spawned, which drops when frames take
+	 * longer than the budget.
+	 */
+	private float quality = 1.0f;
+
+	/**
+	 * The number of nanoseconds a frame may take before the effects are scaled
+	 * down.
+	 */
+	private final long frameBudget;
+
+	/**
+	 * The average time a frame has taken, in nanoseconds.
+	 */
+	private float averageFrame;
+
+	/**
+	 * Whether or not effects are shown.
+	 */
+	private boolean isEnabled = true;
+
+	/**
+	 * Creates a new EffectLayer.
+	 *
+	 * @param frameBudget The number of nanoseconds a frame may take before
+	 *                    the effects are scaled down.
+	 */
+	public EffectLayer(long frameBudget) {
+		this.frameBudget = frameBudget;
+	}
+
+	/**
+	 * Sets whether or not effects are shown. Disabling the effects removes any
+	 * that are showing.
+	 *
+	 * @param enabled Whether or not effects are shown.
+	 */
+	public void setEnabled(boolean enabled) {
+		this.isEnabled = enabled;
+		if (!enabled) {
+			clear();
+		}
+	}
+
+	/**
+	 * Checks whether or not effects are shown.
+	 *
+	 * @return Whether or not effects are shown.
+	 */
+	public boolean isEnabled() {
+		return isEnabled;
+	}
+
+	/**
+	 * Gets the fraction of particles currently being spawned.
+	 *
+	 * @return The quality, from 0 to 1.
+	 */
+	public float getQuality() {
+		return quality;
+	}
+
+	/**
+	 * Removes every effect.
+	 */
+	public void clear() {
+		particleCount = 0;
+		flashCount = 0;
+	}
+
+	/**
+	 * Starts the effect for a cleared line: the row flashes, and particles in
+	 * the piece's colors burst out of it.
+	 *
+	 * @param row      The visible row that was cleared.
+	 * @param colCount The number of columns on the board.
+	 * @param color    The color of the piece that cleared the line.
+	 */
+	public void addLineClear(int row, int colCount, Color color) {
+		if (!isEnabled) {
+			return;
+		}
+
+		if (flashCount < MAX_FLASHES) {
+			flashRow[flashCount] = row;
+			flashLife[flashCount] = FLASH_TIME;
+			flashCount++;
+		}
+
+		int count = (int) (colCount * PARTICLES_PER_CELL * quality);
+		for (int i = 0; i < count && particleCount < MAX_PARTICLES; i++) {
+			int p = particleCount++;
+			particleX[p] = nextFloat() * colCount;
+			particleY[p] = row + nextFloat();
+			velocityX[p] = (nextFloat() - 0.5f) * 12.0f;
+			velocityY[p] = -nextFloat() * 12.0f;
+			particleLife[p] = PARTICLE_TIME * (0.5f + nextFloat() * 0.5f);
+			particleColor[p] = ((i & 3) == 0) ? Color.WHITE : color;
+		}
+	}
+
+	/**
+	 * Advances every effect, removing those that have finished.
+	 *
+	 * @param seconds The time since the last update.
+	 */
+	public void update(float seconds) {
+		float dt = Math.min(seconds, MAX_STEP);
+
+		/*
+		 * Finished effects are replaced by the last live one, which keeps the
+		 * live effects packed at the start of the arrays.
+		 */
+		for (int i = 0; i < flashCount;) {
+			flashLife[i] -= dt;
+			if (flashLife[i] <= 0.0f) {
+				flashCount--;
+				flashRow[i] = flashRow[flashCount];
+				flashLife[i] = flashLife[flashCount];
+			} else {
+				i++;
+			}
+		}
+
+		for (int i = 0; i < particleCount;) {
+			particleLife[i] -= dt;
+			if (particleLife[i] <= 0.0f) {
+				particleCount--;
+				particleX[i] = particleX[particleCount];
+				particleY[i] = particleY[particleCount];
+				velocityX[i] = velocityX[particleCount];
+				velocityY[i] = velocityY[particleCount];
+				particleLife[i] = particleLife[particleCount];
+				particleColor[i] = particleColor[particleCount];
+			} else {
+				velocityY[i] += GRAVITY * dt;
+				particleX[i] += velocityX[i] * dt;
+				particleY[i] += velocityY[i] * dt;
+				i++;
+			}
+		}
+	}
+
+	/**
+	 * Draws every effect.
+	 *
+	 * @param g        The graphics object, translated to the top left of the
+	 *                 visible rows.
+	 * @param tileSize The number of pixels that a tile takes up.
+	 * @param colCount The number of columns on the board.
+	 */
+	public void paint(Graphics g, int tileSize, int colCount) {
+		/*
+		 * Flashes are drawn as opaque bars that close in on the middle of the
+		 * row, since translucent fills allocate inside Java2D on every call.
+		 */
+		g.setColor(Color.WHITE);
+		for (int i = 0; i < flashCount; i++) {
+			int height = (int) (flashLife[i] / FLASH_TIME * tileSize);
+			g.fillRect(0, flashRow[i] * tileSize + (tileSize - height) / 2, colCount * tileSize, height);
+		}
+
+		int size = Math.max(2, tileSize / 6);
+		for (int i = 0; i < particleCount; i++) {
+			g.setColor(particleColor[i]);
+			g.fillRect((int) (particleX[i] * tileSize), (int) (particleY[i] * tileSize), size, size);
+		}
+	}
+
+	/**
+	 * Records how long a frame took, and scales the number of particles down
+	 * while frames take longer than the budget, or back up once they don't.
+	 * If even the lowest quality is over budget, the particles are dropped.
+	 *
+	 * @param nanos The time the frame took, in nanoseconds.
+	 */
+	public void recordFrame(long nanos) {
+		averageFrame += (nanos - averageFrame) * 0.1f;
+		if (averageFrame > frameBudget) {
+			quality *= 0.5f;
+			if (quality < 0.05f) {
+				quality = 0.0f;
+				particleCount = 0;
+			}
+			averageFrame = frameBudget;
+		} else if (averageFrame < frameBudget / 2) {
+			quality = Math.min(1.0f, quality + 0.01f);
+		}
+	}
+
+	/**
+	 * Gets a random number between 0 and 1 from an xorshift generator.
+	 *
+	 * @return The number.
+	 */
+	private float nextFloat() {
+		seed ^= seed << 13;
+		seed ^= seed >>> 17;
+		seed ^= seed << 5;
+		return (seed >>> 8) * 0x1.0p-24f;
+	}
+
+}
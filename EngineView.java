@@ -0,0 +1,113 @@
+public class EngineView implements GameView {
+
+	/**
+	 * The engine being shown.
+	 */
+	private final GameEngine engine;
+
+	/**
+	 * The stats of the player, or null if they aren't kept.
+	 */
+	private final PlayerStats stats;
+
+	/**
+	 * Creates a new EngineView.
+	 *
+	 * @param engine The engine to show.
+	 */
+	public EngineView(GameEngine engine) {
+		this(engine, null);
+	}
+
+	/**
+	 * Creates a new EngineView that shows the stats of the player too.
+	 *
+	 * @param engine The engine to show.
+	 * @param stats  The stats of the player, which must be kept up to date
+	 *               on the same thread as the engine.
+	 */
+	public EngineView(GameEngine engine, PlayerStats stats) {
+		this.engine = engine;
+		this.stats = stats;
+	}
+
+	/**
+	 * Gets the engine being shown.
+	 *
+	 * @return The engine.
+	 */
+	public GameEngine getEngine() {
+		return engine;
+	}
+
+	@Override
+	public boolean isPaused() {
+		return false;
+	}
+
+	@Override
+	public boolean isNewGame() {
+		return false;
+	}
+
+	@Override
+	public boolean isGameOver() {
+		return engine.isGameOver();
+	}
+
+	@Override
+	public int getScore() {
+		return engine.getScore();
+	}
+
+	@Override
+	public int getBestScore() {
+		return 0;
+	}
+
+	@Override
+	public int getLevel() {
+		return engine.getLevel();
+	}
+
+	@Override
+	public Board getBoard() {
+		return engine.getBoard();
+	}
+
+	@Override
+	public TileType getPieceType() {
+		return engine.getPieceType();
+	}
+
+	@Override
+	public TileType getNextPieceType() {
+		return engine.getNextPieceType();
+	}
+
+	@Override
+	public int getPieceCol() {
+		return engine.getPieceCol();
+	}
+
+	@Override
+	public int getPieceRow() {
+		return engine.getPieceRow();
+	}
+
+	@Override
+	public int getLandingRow() {
+		return engine.getLandingRow();
+	}
+
+	@Override
+	public int getPieceRotation() {
+		return engine.getPieceRotation();
+	}
+
+	@Override
+	public PlayerStats getStats() {
+		return stats;
+	}
+
+}
@@ -0,0 +1,149 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+public class EnvironmentClient {
+
+	/**
+	 * Creates environments on an environment server over loopback and steps
+	 * them all in batches, choosing each placement at random the way an agent
+	 * exploring would, and reports how many steps per second the server plays.
+	 *
+	 * Usage: {@code EnvironmentClient [port] [environments] [seconds]}
+	 *
+	 * @param args The command line arguments.
+	 * @throws IOException If the connection failed.
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = (args.length > 0) ? Integer.parseInt(args[0]) : EnvironmentServer.DEFAULT_PORT;
+		int count = (args.length > 1) ? Integer.parseInt(args[1]) : 1024;
+		int seconds = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+		int colCount = BoardPanel.COL_COUNT;
+		int rowCount = BoardPanel.ROW_COUNT;
+
+		/*
+		 * If nothing is listening on the port, host a server in this process so the
+		 * tool can be run on its own.
+		 */
+		EnvironmentServer server = null;
+		InetSocketAddress address = new InetSocketAddress("127.0.0.1", port);
+		try {
+			/* This only connects if a server is already running. */
+			SocketChannel.open(address).close();
+		} catch (IOException e) {
+			server = new EnvironmentServer(address);
+			new Thread(server, "environment-server").start();
+		}
+
+		SocketChannel channel = SocketChannel.open(address);
+		channel.socket().setTcpNoDelay(true);
+		int observationSize = EnvironmentProtocol.getObservationSize(colCount, rowCount);
+		ByteBuffer out = ByteBuffer.allocate(EnvironmentProtocol.HEADER_SIZE
+				+ Math.max(EnvironmentProtocol.CREATE_SIZE, EnvironmentProtocol.RANGE_SIZE + count * 2));
+		ByteBuffer in = ByteBuffer.allocate(EnvironmentProtocol.HEADER_SIZE + EnvironmentProtocol.RANGE_SIZE
+				+ count * (EnvironmentProtocol.RESULT_SIZE + observationSize));
+
+		EnvironmentProtocol.writeHeader(out, EnvironmentProtocol.REQ_CREATE, EnvironmentProtocol.CREATE_SIZE);
+		out.putInt(count);
+		out.putShort((short) colCount);
+		out.putShort((short) rowCount);
+		out.putLong(0L);
+		send(channel, out);
+		receive(channel, in, EnvironmentProtocol.MSG_CREATED);
+
+		EnvironmentProtocol.writeRange(out, EnvironmentProtocol.REQ_RESET, 0, count);
+		send(channel, out);
+		receive(channel, in, EnvironmentProtocol.MSG_OBSERVATIONS);
+
+		Random random = new Random(0L);
+		long steps = 0;
+		long invalid = 0;
+		long episodes = 0;
+		long lines = 0;
+		long start = System.nanoTime();
+		long end = start + seconds * 1000000000L;
+		while (System.nanoTime() < end) {
+			EnvironmentProtocol.writeHeader(out, EnvironmentProtocol.REQ_STEP, EnvironmentProtocol.RANGE_SIZE + count * 2);
+			out.putInt(0);
+			out.putInt(count);
+			for (int i = 0; i < count; i++) {
+				out.putShort((short) ((random.nextInt(colCount) << 2) | random.nextInt(4)));
+			}
+			send(channel, out);
+			receive(channel, in, EnvironmentProtocol.MSG_STEPPED);
+
+			for (int i = 0; i < count; i++) {
+				int result = EnvironmentProtocol.HEADER_SIZE + EnvironmentProtocol.RANGE_SIZE
+						+ i * (EnvironmentProtocol.RESULT_SIZE + observationSize);
+				byte flags = in.get(result);
+				if ((flags & EnvironmentProtocol.FLAG_INVALID) != 0) {
+					invalid++;
+				}
+				if ((flags & EnvironmentProtocol.FLAG_DONE) != 0) {
+					episodes++;
+				}
+				lines += in.get(result + 1);
+			}
+			steps += count;
+		}
+		double elapsed = (System.nanoTime() - start) / 1e9;
+
+		System.out.printf("%d environments: %d steps in %.1fs (%.0f steps/s)%n", count, steps, elapsed,
+				steps / elapsed);
+		System.out.printf("%.1f%% invalid, %d episodes finished, %d lines cleared%n", 100.0 * invalid / steps,
+				episodes, lines);
+
+		channel.close();
+		if (server != null) {
+			server.stop();
+		}
+	}
+
+	/**
+	 * Sends the request written to a buffer, and clears the buffer.
+	 *
+	 * @param channel The channel.
+	 * @param out     The buffer.
+	 * @throws IOException If the write failed.
+	 */
+	private static void send(SocketChannel channel, ByteBuffer out) throws IOException {
+		out.flip();
+		while (out.hasRemaining()) {
+			channel.write(out);
+		}
+		out.clear();
+	}
+
+	/**
+	 * Reads a whole reply into a buffer, from the start.
+	 *
+	 * @param channel The channel.
+	 * @param in      The buffer.
+	 * @param type    The type of reply expected.
+	 * @throws IOException If the read failed, or the server replied with
+	 *                     something else.
+	 */
+	private static void receive(SocketChannel channel, ByteBuffer in, byte type) throws IOException {
+		in.clear();
+		while (in.position() < EnvironmentProtocol.HEADER_SIZE
+				|| in.position() < EnvironmentProtocol.HEADER_SIZE + in.getInt(0)) {
+			if (channel.read(in) < 0) {
+				throw new IOException("Server closed the connection");
+			}
+		}
+
+		byte received = in.get(4);
+		if (received == EnvironmentProtocol.MSG_ERROR) {
+			byte[] text = new byte[in.getInt(0)];
+			in.get(EnvironmentProtocol.HEADER_SIZE, text);
+			throw new IOException(new String(text, StandardCharsets.US_ASCII));
+		}
+		if (received != type) {
+			throw new IOException("Expected reply " + type + " but got " + received);
+		}
+	}
+
+}
@@ -0,0 +1,171 @@
+import java.nio.ByteBuffer;
+
+public final class EnvironmentProtocol {
+
+	/**
+	 * Request that creates the connection's environments, replacing any it
+	 * had. The payload is the number of environments (int), the number of
+	 * columns and rows of their boards (two shorts), and the seed of the
+	 * first (long); each later environment is seeded with the next number.
+	 * The reply is {@code MSG_CREATED}.
+	 */
+	public static final byte REQ_CREATE = 1;
+
+	/**
+	 * Request that starts new games in a range of environments. The payload
+	 * is the first environment and the number of environments (two ints). The
+	 * reply is {@code MSG_OBSERVATIONS}.
+	 */
+	public static final byte REQ_RESET = 2;
+
+	/**
+	 * Request that plays an action in each of a range of environments. The
+	 * payload is the first environment and the number of environments (two
+	 * ints), followed by an action (short) for each. An action is a placement,
+	 * the column shifted up two bits plus the rotation, as in
+	 * {@code HeuristicBot}. The reply is {@code MSG_STEPPED}.
+	 */
+	public static final byte REQ_STEP = 3;
+
+	/**
+	 * Request for the observations of a range of environments, without
+	 * changing them. The payload is laid out as for {@code REQ_RESET}, and so
+	 * is the reply.
+	 */
+	public static final byte REQ_OBSERVE = 4;
+
+	/**
+	 * Reply to {@code REQ_CREATE}. The payload is the number of environments
+	 * and the number of bytes in each observation (two ints).
+	 */
+	public static final byte MSG_CREATED = 1;
+
+	/**
+	 * Reply holding observations. The payload is the first environment and the
+	 * number of environments (two ints), followed by an observation of each.
+	 * An observation is every row of the board as a bitmask, top row first,
+	 * as {@code Board.getRowMask} writes them, followed by the indices of the
+	 * current and next pieces (a byte each).
+	 */
+	public static final byte MSG_OBSERVATIONS = 2;
+
+	/**
+	 * Reply to {@code REQ_STEP}. The payload is the first environment and the
+	 * number of environments (two ints), followed for each by its flags and
+	 * the number of lines the action cleared (a byte each), then its
+	 * observation. An environment whose game ended is reset at once, so its
+	 * observation is the start of the next game.
+	 */
+	public static final byte MSG_STEPPED = 3;
+
+	/**
+	 * Reply to a request that couldn't be carried out. The payload is a
+	 * message in ASCII. The connection stays open, and the request has no
+	 * effect.
+	 */
+	public static final byte MSG_ERROR = 4;
+
+	/**
+	 * Flag set when an action ended the game.
+	 */
+	public static final byte FLAG_DONE = 1;
+
+	/**
+	 * Flag set when an action's placement couldn't be reached, in which case
+	 * the environment is left as it was.
+	 */
+	public static final byte FLAG_INVALID = 2;
+
+	/**
+	 * The number of bytes in a message header (a four byte payload length
+	 * followed by the message type).
+	 */
+	public static final int HEADER_SIZE = 5;
+
+	/**
+	 * The number of bytes in a range (the first environment and the number of
+	 * environments).
+	 */
+	public static final int RANGE_SIZE = 8;
+
+	/**
+	 * The number of bytes in a step result before the observation.
+	 */
+	public static final int RESULT_SIZE = 2;
+
+	/**
+	 * The number of bytes in a create request's payload.
+	 */
+	public static final int CREATE_SIZE = 16;
+
+	/**
+	 * The most environments a connection can create.
+	 */
+	public static final int MAX_ENVIRONMENTS = 1 << 16;
+
+	/**
+	 * The longest message that can be sent either way, in bytes.
+	 */
+	public static final int MAX_MESSAGE_SIZE = 1 << 24;
+
+	private EnvironmentProtocol() {
+	}
+
+	/**
+	 * Gets the number of bytes in an observation of a board.
+	 *
+	 * @param colCount The number of columns.
+	 * @param rowCount The number of rows.
+	 * @return The observation size in bytes.
+	 */
+	public static int getObservationSize(int colCount, int rowCount) {
+		return rowCount * ((colCount + 7) >> 3) + 2;
+	}
+
+	/**
+	 * Writes a message header.
+	 *
+	 * @param out    The buffer to write to.
+	 * @param type   The message type.
+	 * @param length The number of bytes in the payload.
+	 */
+	public static void writeHeader(ByteBuffer out, byte type, int length) {
+		out.putInt(length);
+		out.put(type);
+	}
+
+	/**
+	 * Writes a range request.
+	 *
+	 * @param out   The buffer to write to.
+	 * @param type  The request type.
+	 * @param first The first environment.
+	 * @param count The number of environments.
+	 */
+	public static void writeRange(ByteBuffer out, byte type, int first, int count) {
+		writeHeader(out, type, RANGE_SIZE);
+		out.putInt(first);
+		out.putInt(count);
+	}
+
+	/**
+	 * Writes an observation of a game. The rows are written straight into the
+	 * buffer's array, so nothing is allocated.
+	 *
+	 * @param out    The buffer to write to, which must have a backing array.
+	 * @param engine The engine of the game.
+	 */
+	public static void writeObservation(ByteBuffer out, GameEngine engine) {
+		Board board = engine.getBoard();
+		int size = board.getRowMaskSize();
+		byte[] array = out.array();
+		int offset = out.arrayOffset() + out.position();
+		for (int row = 0; row < board.getRowCount(); row++, offset += size) {
+			board.getRowMask(row, array, offset);
+		}
+		out.position(offset - out.arrayOffset());
+		out.put((byte) engine.getPieceType().getIndex());
+		out.put((byte) engine.getNextPieceType().getIndex());
+	}
+
+}
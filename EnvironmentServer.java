@@ -0,0 +1,524 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+public class EnvironmentServer implements Runnable {
+
+	/**
+	 * The default port to listen on.
+	 */
+	public static final int DEFAULT_PORT = 7778;
+
+	/**
+	 * The fewest columns and rows a board can have, which is enough for every
+	 * standard piece to spawn.
+	 */
+	private static final int MIN_BOARD_SIZE = TileType.TypeI.getDimension();
+
+	/**
+	 * The size of the input buffer of a connection that hasn't created its
+	 * environments yet, which holds a create request.
+	 */
+	private static final int INITIAL_IN_CAPACITY = 64;
+
+	/**
+	 * The size of the output buffer of a connection that hasn't created its
+	 * environments yet, which holds a created or error reply.
+	 */
+	private static final int INITIAL_OUT_CAPACITY = 256;
+
+	/**
+	 * The selector that every channel is registered with.
+	 */
+	private final Selector selector;
+
+	/**
+	 * The channel accepting new connections.
+	 */
+	private final ServerSocketChannel server;
+
+	/**
+	 * The number of actions played.
+	 */
+	private long steps;
+
+	/**
+	 * Whether or not the server should keep running.
+	 */
+	private volatile boolean isRunning;
+
+	/**
+	 * Creates a new EnvironmentServer and binds it to the address.
+	 *
+	 * @param address The address to listen on.
+	 * @throws IOException If the server could not be bound.
+	 */
+	public EnvironmentServer(InetSocketAddress address) throws IOException {
+		this.selector = Selector.open();
+		this.server = ServerSocketChannel.open();
+		server.bind(address, 64);
+		server.configureBlocking(false);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+	}
+
+	/**
+	 * Gets the port the server is listening on.
+	 *
+	 * @return The port.
+	 */
+	public int getPort() {
+		return server.socket().getLocalPort();
+	}
+
+	/**
+	 * Gets the number of actions played.
+	 *
+	 * @return The number of steps.
+	 */
+	public long getSteps() {
+		return steps;
+	}
+
+	/**
+	 * Runs the server until {@code stop} is called. Requests are handled as
+	 * they arrive; nothing moves between requests, so an agent can take as
+	 * long as it likes to choose its actions.
+	 */
+	@Override
+	public void run() {
+		isRunning = true;
+		try {
+			while (isRunning) {
+				selector.select();
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					handle(key);
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			close();
+		}
+	}
+
+	/**
+	 * Stops the server. The server closes every connection before
+	 * {@code run} returns.
+	 */
+	public void stop() {
+		isRunning = false;
+		selector.wakeup();
+	}
+
+	/**
+	 * Handles a network event.
+	 *
+	 * @param key The key of the channel the event occurred on.
+	 * @throws IOException If accepting a connection failed.
+	 */
+	private void handle(SelectionKey key) throws IOException {
+		if (!key.isValid()) {
+			return;
+		}
+
+		if (key.isAcceptable()) {
+			SocketChannel channel;
+			while ((channel = server.accept()) != null) {
+				channel.configureBlocking(false);
+				channel.socket().setTcpNoDelay(true);
+				Connection connection = new Connection(channel);
+				connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+			}
+			return;
+		}
+
+		Connection connection = (Connection) key.attachment();
+		try {
+			if (key.isWritable()) {
+				flush(connection);
+			}
+			if (key.isValid() && key.isReadable() && connection.channel.read(connection.in) < 0) {
+				disconnect(connection);
+				return;
+			}
+			serve(connection);
+			flush(connection);
+		} catch (IOException e) {
+			disconnect(connection);
+		}
+	}
+
+	/**
+	 * Carries out every complete request a connection has sent, for as long
+	 * as there's room to queue the replies. A request whose reply doesn't fit
+	 * waits in the input buffer until the queued replies have been sent.
+	 *
+	 * @param connection The connection.
+	 * @throws IOException If the connection sent a request too large to read.
+	 */
+	private void serve(Connection connection) throws IOException {
+		ByteBuffer in = connection.in;
+		in.flip();
+		try {
+			while (in.remaining() >= EnvironmentProtocol.HEADER_SIZE) {
+				int length = in.getInt(in.position());
+				if (length < 0 || EnvironmentProtocol.HEADER_SIZE + length > connection.requestSize) {
+					throw new IOException("Request of " + length + " bytes is too large");
+				}
+				if (in.remaining() < EnvironmentProtocol.HEADER_SIZE + length
+						|| connection.out.remaining() < connection.getMaxReplySize()) {
+					break;
+				}
+
+				int start = in.position() + EnvironmentProtocol.HEADER_SIZE;
+				byte type = in.get(in.position() + 4);
+				in.position(start);
+				request(connection, type, in, length);
+				in.position(start + length);
+			}
+		} finally {
+			in.compact();
+		}
+	}
+
+	/**
+	 * Carries out a request and queues its reply.
+	 *
+	 * @param connection The connection.
+	 * @param type       The request type.
+	 * @param in         The buffer, positioned at the payload.
+	 * @param length     The number of bytes in the payload.
+	 */
+	private void request(Connection connection, byte type, ByteBuffer in, int length) {
+		if (type == EnvironmentProtocol.REQ_CREATE) {
+			if (length != EnvironmentProtocol.CREATE_SIZE) {
+				error(connection, "Create requests have " + EnvironmentProtocol.CREATE_SIZE + " bytes");
+				return;
+			}
+			create(connection, in.getInt(), in.getShort(), in.getShort(), in.getLong());
+			return;
+		}
+
+		if (length < EnvironmentProtocol.RANGE_SIZE) {
+			error(connection, "Request " + type + " has no range");
+			return;
+		}
+		int first = in.getInt();
+		int count = in.getInt();
+		GameEngine[] environments = connection.environments;
+		if (environments == null || first < 0 || count < 0 || first > environments.length - count) {
+			error(connection, "No environments " + first + " to " + ((long) first + count - 1));
+			return;
+		}
+
+		switch (type) {
+			case EnvironmentProtocol.REQ_RESET:
+				for (int i = first; i < first + count; i++) {
+					environments[i].reset();
+				}
+				observe(connection, first, count);
+				break;
+
+			case EnvironmentProtocol.REQ_OBSERVE:
+				observe(connection, first, count);
+				break;
+
+			case EnvironmentProtocol.REQ_STEP:
+				if (length != EnvironmentProtocol.RANGE_SIZE + count * 2) {
+					error(connection, "Step requests need an action for each environment");
+					return;
+				}
+				step(connection, first, count, in);
+				break;
+
+			default:
+				error(connection, "Unknown request " + type);
+				break;
+		}
+	}
+
+	/**
+	 * Creates a connection's environments, each with a new game started, and
+	 * sizes its buffers to hold the largest requests and replies they need.
+	 *
+	 * @param connection The connection.
+	 * @param count      The number of environments.
+	 * @param colCount   The number of columns on their boards.
+	 * @param rowCount   The number of rows on their boards.
+	 * @param seed       The seed of the first environment.
+	 */
+	private void create(Connection connection, int count, int colCount, int rowCount, long seed) {
+		if (count < 1 || count > EnvironmentProtocol.MAX_ENVIRONMENTS) {
+			error(connection, "Between 1 and " + EnvironmentProtocol.MAX_ENVIRONMENTS + " environments can be created");
+			return;
+		}
+		if (colCount < MIN_BOARD_SIZE || colCount > Board.MAX_MASKED_COLS || rowCount < MIN_BOARD_SIZE) {
+			error(connection, "Boards must be " + MIN_BOARD_SIZE + " to " + Board.MAX_MASKED_COLS
+					+ " columns wide and at least " + MIN_BOARD_SIZE + " rows high");
+			return;
+		}
+		int observationSize = EnvironmentProtocol.getObservationSize(colCount, rowCount);
+		long replySize = EnvironmentProtocol.HEADER_SIZE + EnvironmentProtocol.RANGE_SIZE
+				+ (long) count * (EnvironmentProtocol.RESULT_SIZE + observationSize);
+		if (replySize > EnvironmentProtocol.MAX_MESSAGE_SIZE) {
+			error(connection, count + " environments of this size don't fit in a message");
+			return;
+		}
+
+		GameEngine[] environments = new GameEngine[count];
+		for (int i = 0; i < count; i++) {
+			environments[i] = new GameEngine(new Board(colCount, rowCount, PieceSet.STANDARD));
+			environments[i].setSeed(seed + i);
+			environments[i].reset();
+		}
+
+		/*
+		 * The input buffer is only replaced once its requests have been read,
+		 * but the output buffer may still hold replies, so those are carried
+		 * over.
+		 */
+		int requestSize = EnvironmentProtocol.HEADER_SIZE + EnvironmentProtocol.RANGE_SIZE + count * 2;
+		ByteBuffer out = ByteBuffer.allocate((int) replySize + INITIAL_OUT_CAPACITY);
+		connection.out.flip();
+		out.put(connection.out);
+		connection.out = out;
+		connection.requestSize = Math.max(requestSize, INITIAL_IN_CAPACITY);
+		connection.replySize = (int) replySize;
+		connection.environments = environments;
+
+		EnvironmentProtocol.writeHeader(out, EnvironmentProtocol.MSG_CREATED, 8);
+		out.putInt(count);
+		out.putInt(observationSize);
+	}
+
+	/**
+	 * Plays an action in each of a range of environments and queues the
+	 * results. Games that end are reset straight away.
+	 *
+	 * @param connection The connection.
+	 * @param first      The first environment.
+	 * @param count      The number of environments.
+	 * @param in         The buffer, positioned at the actions.
+	 */
+	private void step(Connection connection, int first, int count, ByteBuffer in) {
+		ByteBuffer out = connection.out;
+		GameEngine[] environments = connection.environments;
+		int observationSize = connection.getObservationSize();
+		EnvironmentProtocol.writeHeader(out, EnvironmentProtocol.MSG_STEPPED,
+				EnvironmentProtocol.RANGE_SIZE + count * (EnvironmentProtocol.RESULT_SIZE + observationSize));
+		out.putInt(first);
+		out.putInt(count);
+		for (int i = first; i < first + count; i++) {
+			GameEngine engine = environments[i];
+			int action = in.getShort();
+			byte flags = 0;
+			int lines = 0;
+			if (engine.place(HeuristicBot.getColumn(action), HeuristicBot.getRotation(action))) {
+				lines = engine.getLinesCleared();
+				if (engine.isGameOver()) {
+					flags |= EnvironmentProtocol.FLAG_DONE;
+					engine.reset();
+				}
+			} else {
+				flags |= EnvironmentProtocol.FLAG_INVALID;
+			}
+			out.put(flags);
+			out.put((byte) lines);
+			EnvironmentProtocol.writeObservation(out, engine);
+		}
+		steps += count;
+	}
+
+	/**
+	 * Queues the observations of a range of environments.
+	 *
+	 * @param connection The connection.
+	 * @param first      The first environment.
+	 * @param count      The number of environments.
+	 */
+	private void observe(Connection connection, int first, int count) {
+		ByteBuffer out = connection.out;
+		GameEngine[] environments = connection.environments;
+		EnvironmentProtocol.writeHeader(out, EnvironmentProtocol.MSG_OBSERVATIONS,
+				EnvironmentProtocol.RANGE_SIZE + count * connection.getObservationSize());
+		out.putInt(first);
+		out.putInt(count);
+		for (int i = first; i < first + count; i++) {
+			EnvironmentProtocol.writeObservation(out, environments[i]);
+		}
+	}
+
+	/**
+	 * Queues an error reply.
+	 *
+	 * @param connection The connection.
+	 * @param message    The message.
+	 */
+	private void error(Connection connection, String message) {
+		byte[] text = message.getBytes(StandardCharsets.US_ASCII);
+		ByteBuffer out = connection.out;
+		int length = Math.min(text.length, out.remaining() - EnvironmentProtocol.HEADER_SIZE);
+		EnvironmentProtocol.writeHeader(out, EnvironmentProtocol.MSG_ERROR, length);
+		out.put(text, 0, length);
+	}
+
+	/**
+	 * Writes as much of a connection's queued replies as the socket accepts,
+	 * and waits for the socket to become writable if anything is left. Once a
+	 * create request has been carried out, this also grows the input buffer
+	 * to hold the largest request its environments need.
+	 *
+	 * @param connection The connection.
+	 * @throws IOException If the write failed.
+	 */
+	private void flush(Connection connection) throws IOException {
+		ByteBuffer out = connection.out;
+		if (out.position() > 0) {
+			out.flip();
+			connection.channel.write(out);
+			out.compact();
+		}
+
+		ByteBuffer in = connection.in;
+		if (in.capacity() < connection.requestSize) {
+			connection.in = ByteBuffer.allocate(connection.requestSize);
+			in.flip();
+			connection.in.put(in);
+		}
+
+		/*
+		 * Stop reading while a reply is waiting to be sent, so that a client
+		 * that never reads can't make the server queue work for it.
+		 */
+		int ops = (out.position() > 0) ? SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+		if (connection.key.interestOps() != ops) {
+			connection.key.interestOps(ops);
+		}
+	}
+
+	/**
+	 * Closes a connection, discarding its environments.
+	 *
+	 * @param connection The connection.
+	 */
+	private void disconnect(Connection connection) {
+		connection.key.cancel();
+		try {
+			connection.channel.close();
+		} catch (IOException e) {
+			// Nothing left to do with the channel.
+		}
+		connection.environments = null;
+	}
+
+	/**
+	 * Closes the server and every connection.
+	 */
+	private void close() {
+		for (SelectionKey key : selector.keys()) {
+			try {
+				key.channel().close();
+			} catch (IOException e) {
+				// Nothing left to do with the channel.
+			}
+		}
+		try {
+			selector.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * A client connected to the server, and its environments.
+	 */
+	private static class Connection {
+
+		/**
+		 * The channel of the client.
+		 */
+		private final SocketChannel channel;
+
+		/**
+		 * The buffer requests are read into.
+		 */
+		private ByteBuffer in = ByteBuffer.allocate(INITIAL_IN_CAPACITY);
+
+		/**
+		 * The buffer replies are queued in until the socket accepts them.
+		 */
+		private ByteBuffer out = ByteBuffer.allocate(INITIAL_OUT_CAPACITY);
+
+		/**
+		 * The selection key of the channel.
+		 */
+		private SelectionKey key;
+
+		/**
+		 * The environments, or null if none have been created.
+		 */
+		private GameEngine[] environments;
+
+		/**
+		 * The size of the largest request the environments need.
+		 */
+		private int requestSize = INITIAL_IN_CAPACITY;
+
+		/**
+		 * The size of the largest reply the environments need.
+		 */
+		private int replySize;
+
+		private Connection(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * Gets the room a request's reply might need in the output buffer.
+		 *
+		 * @return The size in bytes.
+		 */
+		private int getMaxReplySize() {
+			return Math.max(replySize, INITIAL_OUT_CAPACITY);
+		}
+
+		/**
+		 * Gets the number of bytes in an observation of the environments.
+		 *
+		 * @return The observation size.
+		 */
+		private int getObservationSize() {
+			Board board = environments[0].getBoard();
+			return EnvironmentProtocol.getObservationSize(board.getColCount(), board.getRowCount());
+		}
+
+	}
+
+	/**
+	 * Starts an environment server on the loopback interface, so that only
+	 * agents on this machine can connect.
+	 *
+	 * Usage: {@code EnvironmentServer [port]}
+	 *
+	 * @param args The command line arguments.
+	 * @throws IOException If the server could not be bound.
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		EnvironmentServer server = new EnvironmentServer(
+				new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		System.out.println("Listening on port " + server.getPort());
+		server.run();
+	}
+
+}
@@ -0,0 +1,185 @@
+import java.util.ArrayList;
+import java.util.List;
+
+public class EvaluatorBenchmark {
+
+	/**
+	 * The number of times each evaluator goes over the batches before it's
+	 * timed, so that it's been compiled.
+	 */
+	private static final int WARMUP_PASSES = 20;
+
+	/**
+	 * Compares the scalar and vector batch evaluators on the placements of
+	 * real games. A bot plays until enough pieces have spawned, and every
+	 * placement of each piece is added to that piece's batch. Both evaluators
+	 * then score every batch, their results are checked against each other,
+	 * and each is timed over the same batches.
+	 *
+	 * The vector evaluator has to be compiled and the JVM started with
+	 * {@code --add-modules jdk.incubator.vector}; otherwise only the scalar
+	 * evaluator is measured.
+	 *
+	 * Usage: {@code EvaluatorBenchmark [pieces] [passes] [bot]}
+	 *
+	 * @param args The command line arguments.
+	 */
+	public static void main(String[] args) {
+		int pieces = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+		int passes = (args.length > 1) ? Integer.parseInt(args[1]) : 200;
+		HeuristicBot bot = HeuristicBot.forName((args.length > 2) ? args[2] : "balanced");
+		if (bot == null) {
+			System.out.println("Unknown bot " + args[2]);
+			System.exit(2);
+		}
+
+		List<CandidateBatch> batches = record(new GameEngine(), bot, pieces);
+		long candidates = 0;
+		for (CandidateBatch batch : batches) {
+			candidates += batch.size();
+		}
+		System.out.printf("%d batches, %d candidates (%.1f per batch)%n", batches.size(), candidates,
+				candidates / (double) batches.size());
+
+		BatchEvaluator scalar = new ScalarEvaluator();
+		BatchEvaluator fastest = ScalarEvaluator.createFastest();
+		if (fastest instanceof ScalarEvaluator) {
+			System.out.println("Vector evaluator unavailable; run with --add-modules jdk.incubator.vector");
+		} else {
+			int mismatches = compare(batches, scalar, fastest);
+			System.out.println(mismatches + " candidates scored differently");
+		}
+
+		double scalarRate = measure(batches, scalar, passes, candidates);
+		if (!(fastest instanceof ScalarEvaluator)) {
+			double vectorRate = measure(batches, fastest, passes, candidates);
+			System.out.printf("Speedup: %.2fx%n", vectorRate / scalarRate);
+		}
+	}
+
+	/**
+	 * Plays games with a bot, and records a batch of every placement of each
+	 * piece.
+	 *
+	 * @param engine The engine to play on.
+	 * @param bot    The bot.
+	 * @param pieces The number of pieces to record.
+	 * @return The batches.
+	 */
+	private static List<CandidateBatch> record(GameEngine engine, HeuristicBot bot, int pieces) {
+		List<CandidateBatch> batches = new ArrayList<CandidateBatch>();
+		Board board = engine.getBoard();
+		Board scratch = new Board(board.getColCount(), board.getRowCount(), board.getPieceSet());
+		byte[] original = new byte[board.getSnapshotSize()];
+		int capacity = TileType.ROTATION_COUNT * (board.getColCount() + TileType.MAX_DIMENSION);
+
+		long seed = 0;
+		engine.setSeed(seed);
+		engine.reset();
+		while (batches.size() < pieces) {
+			TileType type = engine.getPieceType();
+			int row = engine.getPieceRow();
+			CandidateBatch batch = new CandidateBatch(board.getColCount(), board.getRowCount(), capacity);
+			board.writeTo(original, 0);
+			for (int r = 0; r < TileType.ROTATION_COUNT; r++) {
+				for (int x = -type.getDimension(); x < board.getColCount(); x++) {
+					if (!board.isValidAndEmpty(type, x, row, r)) {
+						continue;
+					}
+					int landing = board.getLandingRow(type, x, row, r);
+					scratch.readFrom(original, 0);
+					scratch.addPiece(type, x, landing, r);
+					batch.add(scratch);
+				}
+			}
+			batches.add(batch);
+
+			/*
+			 * Play the bot's placement the way TrainingExport does, so the
+			 * boards look like those of a real game.
+			 */
+			int placement = bot.choose(engine);
+			int col = HeuristicBot.getColumn(placement);
+			int rotation = HeuristicBot.getRotation(placement);
+			for (int turn = 0; turn < TileType.ROTATION_COUNT && engine.getPieceRotation() != rotation; turn++) {
+				engine.rotatePiece((engine.getPieceRotation() + 1) % TileType.ROTATION_COUNT);
+			}
+			boolean moved = true;
+			while (moved && engine.getPieceCol() != col) {
+				moved = (engine.getPieceCol() > col) ? engine.moveLeft() : engine.moveRight();
+			}
+			boolean locked = false;
+			for (int drop = 0; drop <= board.getRowCount() && !locked; drop++) {
+				locked = engine.update();
+			}
+			if (engine.isGameOver()) {
+				engine.setSeed(++seed);
+				engine.reset();
+			}
+		}
+		return batches;
+	}
+
+	/**
+	 * Scores every batch with two evaluators and counts the candidates they
+	 * disagree on.
+	 *
+	 * @param batches The batches.
+	 * @param first   The first evaluator.
+	 * @param second  The second evaluator.
+	 * @return The number of candidates with different results.
+	 */
+	private static int compare(List<CandidateBatch> batches, BatchEvaluator first, BatchEvaluator second) {
+		int mismatches = 0;
+		for (CandidateBatch batch : batches) {
+			first.evaluate(batch);
+			int[] expected = new int[batch.size() * 4];
+			for (int i = 0; i < batch.size(); i++) {
+				expected[i * 4] = batch.getLines(i);
+				expected[i * 4 + 1] = batch.getHoles(i);
+				expected[i * 4 + 2] = batch.getTotalHeight(i);
+				expected[i * 4 + 3] = batch.getBumpiness(i);
+			}
+			second.evaluate(batch);
+			for (int i = 0; i < batch.size(); i++) {
+				if (expected[i * 4] != batch.getLines(i) || expected[i * 4 + 1] != batch.getHoles(i)
+						|| expected[i * 4 + 2] != batch.getTotalHeight(i)
+						|| expected[i * 4 + 3] != batch.getBumpiness(i)) {
+					mismatches++;
+				}
+			}
+		}
+		return mismatches;
+	}
+
+	/**
+	 * Times an evaluator over every batch and reports its throughput.
+	 *
+	 * @param batches    The batches.
+	 * @param evaluator  The evaluator.
+	 * @param passes     The number of times to go over the batches.
+	 * @param candidates The number of candidates in the batches.
+	 * @return The number of candidates evaluated per second.
+	 */
+	private static double measure(List<CandidateBatch> batches, BatchEvaluator evaluator, int passes,
+			long candidates) {
+		for (int pass = 0; pass < WARMUP_PASSES; pass++) {
+			for (CandidateBatch batch : batches) {
+				evaluator.evaluate(batch);
+			}
+		}
+
+		long start = System.nanoTime();
+		for (int pass = 0; pass < passes; pass++) {
+			for (CandidateBatch batch : batches) {
+				evaluator.evaluate(batch);
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		double rate = candidates * (double) passes / (elapsed / 1e9);
+		System.out.printf("%-12s %.1f ns/candidate (%.0f candidates/s)%n", evaluator.getName(),
+				elapsed / (double) (candidates * passes), rate);
+		return rate;
+	}
+
+}
@@ -0,0 +1,268 @@
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public class EventBus {
+
+	/**
+	 * A piece locked. The first value is the index of its type, and the
+	 * second is where it locked, as a placement like those of
+	 * {@code HeuristicBot}: its column shifted up two bits, plus its rotation.
+	 */
+	public static final int PIECE_LOCKED = 1;
+
+	/**
+	 * A piece cleared lines. The first value is the number of lines, and the
+	 * second is the total lines cleared in the game.
+	 */
+	public static final int LINES_CLEARED = 2;
+
+	/**
+	 * The level went up. The first value is the new level, and the second is
+	 * the bits of the new game speed as a float.
+	 */
+	public static final int LEVEL_CHANGED = 3;
+
+	/**
+	 * The game ended. The first value is the final score, and the second is
+	 * the total lines cleared.
+	 */
+	public static final int GAME_OVER = 4;
+
+	/**
+	 * The player moved, rotated or dropped the current piece. The first value
+	 * is one of the {@code VersusProtocol.INPUT_*} constants, and the second
+	 * is unused.
+	 */
+	public static final int INPUT = 5;
+
+	/**
+	 * The number of longs each event takes up: its type, the time it was
+	 * published, and its two values.
+	 */
+	private static final int EVENT_WIDTH = 4;
+
+	/**
+	 * How long a consumer thread sleeps when there are no events, in
+	 * nanoseconds.
+	 */
+	private static final long IDLE_NANOS = 1000000L;
+
+	/**
+	 * The events, {@code EVENT_WIDTH} longs to a slot. They're preallocated,
+	 * so publishing never allocates.
+	 */
+	private final long[] slots;
+
+	/**
+	 * The number of slots minus one, as the slot count is a power of two.
+	 */
+	private final int mask;
+
+	/**
+	 * The sequence of the event being written. Consumers check it after
+	 * reading a slot to see whether the slot was overwritten while they read.
+	 */
+	private final AtomicLong claimed = new AtomicLong(-1L);
+
+	/**
+	 * The sequence of the last event that was fully written.
+	 */
+	private final AtomicLong published = new AtomicLong(-1L);
+
+	/**
+	 * The sequence of the next event, which is only used by the producer.
+	 */
+	private long next;
+
+	/**
+	 * Creates a new EventBus.
+	 *
+	 * @param capacity The number of events kept for consumers that fall
+	 *                 behind, which is rounded up to a power of two.
+	 */
+	public EventBus(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		this.slots = new long[size * EVENT_WIDTH];
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Publishes an event. This must only be called from one thread at a
+	 * time. It never waits: consumers that fall more than the capacity
+	 * behind miss the oldest events instead of holding up the producer.
+	 *
+	 * @param type   One of the event type constants.
+	 * @param first  The first value.
+	 * @param second The second value.
+	 */
+	public void publish(int type, long first, long second) {
+		long sequence = next++;
+		claimed.setPlain(sequence);
+		VarHandle.storeStoreFence();
+
+		int offset = (int) (sequence & mask) * EVENT_WIDTH;
+		slots[offset] = type;
+		slots[offset + 1] = System.nanoTime();
+		slots[offset + 2] = first;
+		slots[offset + 3] = second;
+		published.setRelease(sequence);
+	}
+
+	/**
+	 * Gets the number of events published.
+	 *
+	 * @return The number of events.
+	 */
+	public long getPublished() {
+		return next;
+	}
+
+	/**
+	 * Subscribes a consumer, which sees every event published from now on.
+	 *
+	 * @return The consumer's subscription.
+	 */
+	public Subscription subscribe() {
+		return new Subscription(published.getAcquire() + 1);
+	}
+
+	/**
+	 * Starts a daemon thread that hands events to a handler as they arrive.
+	 * The thread sleeps briefly whenever it runs out of events, so it never
+	 * needs to be woken by the producer.
+	 *
+	 * @param name    The name of the thread.
+	 * @param handler The handler.
+	 * @return The subscription, whose counts show how the consumer keeps up.
+	 */
+	public Subscription startConsumer(String name, final Handler handler) {
+		final Subscription subscription = subscribe();
+		Thread thread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				while (!Thread.currentThread().isInterrupted()) {
+					if (subscription.poll(handler) == 0) {
+						LockSupport.parkNanos(IDLE_NANOS);
+					}
+				}
+			}
+
+		}, name);
+		thread.setDaemon(true);
+		thread.start();
+		return subscription;
+	}
+
+	/**
+	 * Receives the events of a subscription.
+	 */
+	public interface Handler {
+
+		/**
+		 * Handles an event. This is called on the consumer's own thread.
+		 *
+		 * @param type   One of the event type constants.
+		 * @param time   When the event was published, from
+		 *               {@code System.nanoTime()}.
+		 * @param first  The first value.
+		 * @param second The second value.
+		 */
+		void onEvent(int type, long time, long first, long second);
+
+	}
+
+	/**
+	 * A consumer's place in the bus. Each consumer has its own, and must only
+	 * use it from one thread at a time.
+	 */
+	public class Subscription {
+
+		/**
+		 * The sequence of the next event to read.
+		 */
+		private long cursor;
+
+		/**
+		 * The number of events read.
+		 */
+		private volatile long received;
+
+		/**
+		 * The number of events that were overwritten before they were read.
+		 */
+		private volatile long missed;
+
+		/**
+		 * Creates a new Subscription.
+		 *
+		 * @param cursor The sequence of the first event to read.
+		 */
+		private Subscription(long cursor) {
+			this.cursor = cursor;
+		}
+
+		/**
+		 * Hands every event published since the last poll to a handler. If the
+		 * consumer has fallen so far behind that events were overwritten, it
+		 * skips ahead to the oldest event still in the bus.
+		 *
+		 * @param handler The handler.
+		 * @return The number of events handled.
+		 */
+		public int poll(Handler handler) {
+			long last = published.getAcquire();
+			int handled = 0;
+			while (cursor <= last) {
+				long oldest = claimed.getAcquire() - mask;
+				if (cursor < oldest) {
+					missed += oldest - cursor;
+					cursor = oldest;
+					continue;
+				}
+
+				/*
+				 * Copy the event out, then check that the producer hadn't started
+				 * overwriting the slot while it was being copied.
+				 */
+				int offset = (int) (cursor & mask) * EVENT_WIDTH;
+				int type = (int) slots[offset];
+				long time = slots[offset + 1];
+				long first = slots[offset + 2];
+				long second = slots[offset + 3];
+				VarHandle.loadLoadFence();
+				if (claimed.getPlain() - mask > cursor) {
+					continue;
+				}
+
+				cursor++;
+				handled++;
+				handler.onEvent(type, time, first, second);
+			}
+			received += handled;
+			return handled;
+		}
+
+		/**
+		 * Gets the number of events read.
+		 *
+		 * @return The number of events.
+		 */
+		public long getReceived() {
+			return received;
+		}
+
+		/**
+		 * Gets the number of events that were overwritten before they were
+		 * read.
+		 *
+		 * @return The number of events.
+		 */
+		public long getMissed() {
+			return missed;
+		}
+
+	}
+
+}
@@ -0,0 +1,101 @@
+import java.util.concurrent.locks.LockSupport;
+
+public class EventBusCheck {
+
+	/**
+	 * How long the slow consumer sleeps over each event, in nanoseconds, as if
+	 * it were waiting on a disk or a network.
+	 */
+	private static final long SLOW_NANOS = 200000L;
+
+	/**
+	 * Plays games with a bot as fast as the engine allows, first with no
+	 * event bus and then publishing to one with a fast consumer and a slow
+	 * one, and compares how many pieces are placed per second. The fast
+	 * consumer should see every event and the slow one should miss events
+	 * rather than hold up the game, so the two rates should match.
+	 *
+	 * Usage: {@code EventBusCheck [pieces] [capacity]}
+	 *
+	 * @param args The command line arguments.
+	 */
+	public static void main(String[] args) {
+		int pieces = (args.length > 0) ? Integer.parseInt(args[0]) : 200000;
+		int capacity = (args.length > 1) ? Integer.parseInt(args[1]) : 1024;
+
+		play(new GameEngine(), pieces);
+		double plain = play(new GameEngine(), pieces);
+		System.out.printf("No bus:    %.0f pieces/s%n", plain);
+
+		EventBus events = new EventBus(capacity);
+		final long[] counts = new long[EventBus.GAME_OVER + 1];
+		EventBus.Subscription fast = events.startConsumer("Fast consumer", new EventBus.Handler() {
+
+			@Override
+			public void onEvent(int type, long time, long first, long second) {
+				counts[type]++;
+			}
+
+		});
+		EventBus.Subscription slow = events.startConsumer("Slow consumer", new EventBus.Handler() {
+
+			@Override
+			public void onEvent(int type, long time, long first, long second) {
+				LockSupport.parkNanos(SLOW_NANOS);
+			}
+
+		});
+
+		GameEngine engine = new GameEngine();
+		engine.setEventBus(events);
+		double published = play(engine, pieces);
+		long deadline = System.currentTimeMillis() + 1000L;
+		while (fast.getReceived() + fast.getMissed() < events.getPublished() && System.currentTimeMillis() < deadline) {
+			Thread.yield();
+		}
+
+		System.out.printf("With bus:  %.0f pieces/s (%.1f%% of no bus)%n", published, 100.0 * published / plain);
+		System.out.printf("Published: %d events (%d locked, %d cleared, %d level, %d game over)%n",
+				events.getPublished(), counts[EventBus.PIECE_LOCKED], counts[EventBus.LINES_CLEARED],
+				counts[EventBus.LEVEL_CHANGED], counts[EventBus.GAME_OVER]);
+		System.out.printf("Fast consumer: %d received, %d missed%n", fast.getReceived(), fast.getMissed());
+		System.out.printf("Slow consumer: %d received, %d missed%n", slow.getReceived(), slow.getMissed());
+	}
+
+	/**
+	 * Places pieces with a bot, starting a new game whenever one ends.
+	 *
+	 * @param engine The engine to play on.
+	 * @param pieces The number of pieces to place.
+	 * @return The number of pieces placed per second.
+	 */
+	private static double play(GameEngine engine, int pieces) {
+		HeuristicBot bot = HeuristicBot.forName("careless");
+		long seed = 0;
+		engine.setSeed(seed);
+		engine.reset();
+		long start = System.nanoTime();
+		for (int i = 0; i < pieces; i++) {
+			int placement = bot.choose(engine);
+			int col = HeuristicBot.getColumn(placement);
+			int rotation = HeuristicBot.getRotation(placement);
+			for (int turn = 0; turn < TileType.ROTATION_COUNT && engine.getPieceRotation() != rotation; turn++) {
+				engine.rotatePiece((engine.getPieceRotation() + 1) % TileType.ROTATION_COUNT);
+			}
+			boolean moved = true;
+			while (moved && engine.getPieceCol() != col) {
+				moved = (engine.getPieceCol() > col) ? engine.moveLeft() : engine.moveRight();
+			}
+			boolean locked = false;
+			for (int drop = 0; drop <= engine.getBoard().getRowCount() && !locked; drop++) {
+				locked = engine.update();
+			}
+			if (engine.isGameOver()) {
+				engine.setSeed(++seed);
+				engine.reset();
+			}
+		}
+		return pieces / ((System.nanoTime() - start) / 1e9);
+	}
+
+}
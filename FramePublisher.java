@@ -0,0 +1,90 @@
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class FramePublisher {
+
+	/**
+	 * The game that snapshots are copied from.
+	 */
+	private final GameView source;
+
+	/**
+	 * The snapshots handed from the game's thread to the thread that paints.
+	 */
+	private final TripleBuffer<RenderSnapshot> snapshots;
+
+	/**
+	 * The view of the latest snapshot, which the panels paint from.
+	 */
+	private final SnapshotView view;
+
+	/**
+	 * The executor that runs frames on the thread that paints.
+	 */
+	private final Executor display;
+
+	/**
+	 * The frame that's handed to the display. There's only ever one queued, so
+	 * the same one is handed over every time.
+	 */
+	private final Runnable frame;
+
+	/**
+	 * Whether or not a frame is queued and hasn't started painting yet.
+	 */
+	private final AtomicBoolean isFrameQueued = new AtomicBoolean();
+
+	/**
+	 * Creates a new FramePublisher. Every snapshot starts as a copy of the
+	 * game as it is now.
+	 *
+	 * @param source  The game, which is only read on the thread that calls
+	 *                {@code publish}.
+	 * @param display The executor that runs frames on the thread that paints.
+	 * @param render  Paints a frame from the view. This is run by the display.
+	 */
+	public FramePublisher(GameView source, Executor display, final Runnable render) {
+		this.source = source;
+		this.display = display;
+		RenderSnapshot[] initial = new RenderSnapshot[3];
+		for (int i = 0; i < initial.length; i++) {
+			initial[i] = new RenderSnapshot();
+			initial[i].copyFrom(source);
+		}
+		this.snapshots = new TripleBuffer<RenderSnapshot>(initial[0], initial[1], initial[2]);
+		this.view = new SnapshotView(snapshots);
+		this.frame = new Runnable() {
+			@Override
+			public void run() {
+				isFrameQueued.set(false);
+				render.run();
+			}
+		};
+	}
+
+	/**
+	 * Gets the view of the latest snapshot. It only moves on to a newer
+	 * snapshot when it's refreshed, which the renderer does at the start of
+	 * each frame.
+	 *
+	 * @return The view.
+	 */
+	public SnapshotView getView() {
+		return view;
+	}
+
+	/**
+	 * Publishes a snapshot of the game, and asks the display for a frame to be
+	 * painted from it. If the last frame hasn't been painted yet, it will pick
+	 * up this snapshot instead, so a slow paint never queues up frames. This is
+	 * called on the game's thread, and allocates nothing.
+	 */
+	public void publish() {
+		snapshots.getBack().copyFrom(source);
+		snapshots.publish();
+		if (isFrameQueued.compareAndSet(false, true)) {
+			display.execute(frame);
+		}
+	}
+
+}
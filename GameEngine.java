@@ -0,0 +1,820 @@
+import java.util.Random;
+
+public class GameEngine {
+
+	/**
+	 * The number of times per second {@code tick} is called by the game loops.
+	 */
+	public static final int TICKS_PER_SECOND = 50;
+
+	/**
+	 * The fastest the current piece falls, in rows per tick. At this speed a
+	 * piece lands on the tick it spawns on any board up to 20 rows high.
+	 */
+	public static final float MAX_GRAVITY = 20.0f;
+
+	/**
+	 * The speed the current piece falls at while it's soft dropped, in rows
+	 * per tick, unless gravity is already faster.
+	 */
+	public static final float SOFT_DROP_GRAVITY = 0.5f;
+
+	/**
+	 * The number of ticks a piece rests on the stack before it locks.
+	 */
+	public static final int LOCK_DELAY = 25;
+
+	/**
+	 * The number of times moving or rotating a resting piece can restart its
+	 * lock delay, so that it can't be kept from locking forever.
+	 */
+	public static final int MAX_LOCK_RESETS = 15;
+
+	/**
+	 * The landing row when it needs to be worked out again.
+	 */
+	private static final int UNKNOWN_ROW = Integer.MIN_VALUE;
+
+	/**
+	 * The number of bytes at the start of a snapshot that hold the piece
+	 * and scoring state. The board cells follow directly after.
+	 */
+	private static final int SNAPSHOT_HEADER = 32;
+
+	/**
+	 * The board the game is played on.
+	 */
+	private Board board;
+
+	/**
+	 * The piece set pieces are picked from, which is the board's.
+	 */
+	private PieceSet pieces;
+
+	/**
+	 * The random number generator used to pick pieces.
+	 */
+	private Random random;
+
+	/**
+	 * Whether or not the game is over.
+	 */
+	private boolean isGameOver;
+
+	/**
+	 * The current level.
+	 */
+	private int level;
+
+	/**
+	 * The level the current game was started on.
+	 */
+	private int startLevel;
+
+	/**
+	 * The seed the piece generator was last seeded with.
+	 */
+	private long seed;
+
+	/**
+	 * The current score.
+	 */
+	private int score;
+
+	/**
+	 * The type of the piece we're currently controlling.
+	 */
+	private TileType currentType;
+
+	/**
+	 * The type of the next piece.
+	 */
+	private TileType nextType;
+
+	/**
+	 * The column of the current piece.
+	 */
+	private int currentCol;
+
+	/**
+	 * The row of the current piece.
+	 */
+	private int currentRow;
+
+	/**
+	 * The rotation of the current piece.
+	 */
+	private int currentRotation;
+
+	/**
+	 * The number of lines cleared when the last piece was locked.
+	 */
+	private int linesCleared;
+
+	/**
+	 * The rows that were cleared when the last piece was locked, as they were
+	 * numbered before the lines above them fell.
+	 */
+	private final int[] clearedRows = new int[TileType.MAX_DIMENSION];
+
+	/**
+	 * The total number of lines cleared this game.
+	 */
+	private int totalLines;
+
+	/**
+	 * The speed of the game in cycles per second.
+	 */
+	private float gameSpeed;
+
+	/**
+	 * The bus game events are published to, or null if they aren't.
+	 */
+	private EventBus events;
+
+	/**
+	 * The fraction of a row the current piece has fallen since it last moved
+	 * down.
+	 */
+	private float fallen;
+
+	/**
+	 * The lowest row the current piece can fall to, or {@code UNKNOWN_ROW} if
+	 * it has moved or the board has changed since that was worked out.
+	 */
+	private int landingRow = UNKNOWN_ROW;
+
+	/**
+	 * A count that changes whenever the landing row is forgotten.
+	 */
+	private int landingVersion;
+
+	/**
+	 * The number of ticks the current piece has rested on the stack.
+	 */
+	private int lockTimer;
+
+	/**
+	 * The number of times the current piece's lock delay has been restarted.
+	 */
+	private int lockResets;
+
+	/**
+	 * Creates a new GameEngine on a standard board.
+	 */
+	public GameEngine() {
+		this(new Board());
+	}
+
+	/**
+	 * Creates a new GameEngine.
+	 *
+	 * @param board The board to play on. Pieces are picked from its piece set.
+	 */
+	public GameEngine(Board board) {
+		this.board = board;
+		this.pieces = board.getPieceSet();
+		this.random = new Random();
+		this.gameSpeed = getStartSpeed(level);
+	}
+
+	/**
+	 * Sets the bus that pieces locking, lines clearing, the level changing and
+	 * the game ending are published to. Publishing never waits for the bus's
+	 * consumers.
+	 *
+	 * @param events The bus, or null to stop publishing.
+	 */
+	public void setEventBus(EventBus events) {
+		this.events = events;
+	}
+
+	/**
+	 * Gets the bus game events are published to.
+	 *
+	 * @return The bus, or null if events aren't published.
+	 */
+	public EventBus getEventBus() {
+		return events;
+	}
+
+	/**
+	 * Gets the starting speed for a level chosen from the menu.
+	 *
+	 * @param level The level.
+	 * @return The speed in cycles per second.
+	 */
+	public static float getStartSpeed(int level) {
+		switch (level) {
+			case 2:
+				return 1.5f;
+			case 3:
+				return 2.0f;
+			default:
+				return 1.0f; // Default to level 1 if level is not recognized
+		}
+	}
+
+	/**
+	 * Resets the game variables to their default values at the start
+	 * of a new game.
+	 */
+	public void reset() {
+		this.gameSpeed = getStartSpeed(level);
+		this.startLevel = level;
+		this.score = 0;
+		this.linesCleared = 0;
+		this.totalLines = 0;
+		this.nextType = pieces.get(random.nextInt(pieces.size()));
+		this.isGameOver = false;
+		board.clear();
+		spawnPiece();
+	}
+
+	/**
+	 * Reseeds the piece generator so that a game can be replayed.
+	 *
+	 * @param seed The seed.
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+		random.setSeed(seed);
+	}
+
+	/**
+	 * Gets the seed the piece generator was last seeded with.
+	 *
+	 * @return The seed.
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Updates the game and handles logic. This moves the current piece down by
+	 * one row, or locks it in place if it can't move any further.
+	 *
+	 * @return Whether or not the current piece was locked.
+	 */
+	public boolean update() {
+		/*
+		 * Check to see if the piece's position can move down to the next row.
+		 */
+		if (board.isValidAndEmpty(currentType, currentCol, currentRow + 1, currentRotation)) {
+			// Increment the current row if it's safe to do so.
+			currentRow++;
+			return false;
+		}
+
+		/*
+		 * We've either reached the bottom of the board, or landed on another piece, so
+		 * we need to add the piece to the board.
+		 */
+		board.addPiece(currentType, currentCol, currentRow, currentRotation);
+
+		/*
+		 * Check to see if adding the new piece resulted in any cleared lines. If so,
+		 * increase the player's score. (Up to 4 lines can be cleared in a single go;
+		 * [1 = 100pts, 2 = 200pts, 3 = 400pts, 4 = 800pts]). Only the rows the piece
+		 * covers can have been completed, so those are the only ones checked.
+		 */
+		int bottom = Math.min(currentRow + currentType.getDimension(), board.getRowCount()) - 1;
+		int full = 0;
+		for (int row = Math.max(currentRow, 0); row <= bottom; row++) {
+			if (board.isFull(row)) {
+				clearedRows[full++] = row;
+			}
+		}
+		linesCleared = board.checkLines(currentRow, bottom);
+		if (linesCleared > 0) {
+			score += 50 << linesCleared;
+			totalLines += linesCleared;
+		}
+		if (events != null) {
+			events.publish(EventBus.PIECE_LOCKED, currentType.getIndex(), (currentCol << 2) | currentRotation);
+			if (linesCleared > 0) {
+				events.publish(EventBus.LINES_CLEARED, linesCleared, totalLines);
+			}
+		}
+
+		/*
+		 * Increase the speed slightly for the next piece, until pieces land as
+		 * soon as they spawn.
+		 */
+		gameSpeed = Math.min(gameSpeed + 0.035f, MAX_GRAVITY * TICKS_PER_SECOND);
+
+		/*
+		 * Update the difficulty level. This has no effect on the game, and is only
+		 * used in the "Level" string in the SidePanel.
+		 */
+		int oldLevel = level;
+		level = (int) (gameSpeed * 1.70f);
+		if (events != null && level != oldLevel) {
+			events.publish(EventBus.LEVEL_CHANGED, level, Float.floatToIntBits(gameSpeed));
+		}
+
+		/*
+		 * Spawn a new piece to control.
+		 */
+		spawnPiece();
+		return true;
+	}
+
+	/**
+	 * Advances the game by one tick. The current piece falls by the gravity
+	 * of the current speed, which can be a fraction of a row or many rows at
+	 * once, straight to the row it lands on if that's nearer. Once it rests on
+	 * the stack it locks after {@code LOCK_DELAY} ticks, or on the next tick
+	 * if it's soft dropped. The work done doesn't depend on the speed.
+	 *
+	 * @param softDrop Whether or not the piece is being soft dropped.
+	 * @return Whether or not the current piece was locked.
+	 */
+	public boolean tick(boolean softDrop) {
+		if (isGameOver) {
+			return false;
+		}
+
+		float rows = softDrop ? Math.max(getGravity(), SOFT_DROP_GRAVITY) : getGravity();
+		int landing = getLandingRow();
+		if (currentRow < landing) {
+			fallen += rows;
+			int drop = (int) fallen;
+			fallen -= drop;
+			if (drop > 0) {
+				currentRow = Math.min(currentRow + drop, landing);
+				lockTimer = 0;
+			}
+			return false;
+		}
+
+		/*
+		 * The piece was already resting on the stack, so count down to locking
+		 * it. It's locked by update, which finds that it can't move down.
+		 */
+		fallen = 0.0f;
+		if (softDrop || ++lockTimer >= LOCK_DELAY) {
+			return update();
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the lowest row the current piece can fall to. It's only worked out
+	 * again once the piece moves sideways or rotates or the board changes, so
+	 * calling this every tick or frame is cheap.
+	 *
+	 * @return The landing row, or the current row if no piece has spawned.
+	 */
+	public int getLandingRow() {
+		if (currentType == null) {
+			return currentRow;
+		}
+		if (landingRow == UNKNOWN_ROW) {
+			landingRow = board.getLandingRow(currentType, currentCol, currentRow, currentRotation);
+		}
+		return landingRow;
+	}
+
+	/**
+	 * Gets a count that changes whenever the current piece moves sideways,
+	 * rotates or is replaced, or the board under it changes. While it stays
+	 * the same, a piece resting on the stack is still in the same place.
+	 *
+	 * @return The landing version.
+	 */
+	public int getLandingVersion() {
+		return landingVersion;
+	}
+
+	/**
+	 * Gets how fast the current piece falls at the current speed.
+	 *
+	 * @return The gravity in rows per tick, at most {@code MAX_GRAVITY}.
+	 */
+	public float getGravity() {
+		return Math.min(gameSpeed / TICKS_PER_SECOND, MAX_GRAVITY);
+	}
+
+	/**
+	 * Notes that the current piece moved sideways or rotated. Its landing row
+	 * has to be worked out again, and if it was resting on the stack its lock
+	 * delay restarts, up to {@code MAX_LOCK_RESETS} times.
+	 */
+	private void pieceMoved() {
+		landingRow = UNKNOWN_ROW;
+		landingVersion++;
+		if (lockTimer > 0 && lockResets < MAX_LOCK_RESETS) {
+			lockTimer = 0;
+			lockResets++;
+		}
+	}
+
+	/**
+	 * Plays a placement in one go: turns the current piece to a rotation,
+	 * moves it to a column, drops it straight down and locks it. This is how
+	 * a placement chosen by an agent is played, without stepping through the
+	 * inputs that would reach it.
+	 *
+	 * @param col      The column to lock the piece in.
+	 * @param rotation The rotation to lock the piece in.
+	 * @return Whether or not the piece was placed. It can only be placed if it
+	 *         fits at the column and rotation in the row it's in now; if it
+	 *         doesn't, nothing changes.
+	 */
+	public boolean place(int col, int rotation) {
+		if (isGameOver || !board.isValidAndEmpty(currentType, col, currentRow, rotation)) {
+			return false;
+		}
+		currentCol = col;
+		currentRotation = rotation;
+		currentRow = board.getLandingRow(currentType, col, currentRow, rotation);
+		update();
+		return true;
+	}
+
+	/**
+	 * Adds garbage lines sent by an opponent to the bottom of the board. The
+	 * current piece is pushed up along with the stack if it would otherwise
+	 * overlap the new lines.
+	 *
+	 * @param lines The number of lines to add.
+	 * @param hole  The column of the hole in each line.
+	 */
+	public void addGarbage(int lines, int hole) {
+		landingRow = UNKNOWN_ROW;
+		landingVersion++;
+		if (board.addGarbage(lines, hole)) {
+			endGame();
+			return;
+		}
+
+		for (int i = 0; i < lines; i++) {
+			if (board.isValidAndEmpty(currentType, currentCol, currentRow, currentRotation)) {
+				return;
+			}
+			currentRow--;
+		}
+		if (!board.isValidAndEmpty(currentType, currentCol, currentRow, currentRotation)) {
+			endGame();
+		}
+	}
+
+	/**
+	 * Spawns a new piece and resets our piece's variables to their default
+	 * values.
+	 */
+	private void spawnPiece() {
+		/*
+		 * Poll the last piece and reset our position and rotation to
+		 * their default variables, then pick the next piece to use.
+		 */
+		this.currentType = nextType;
+		this.currentCol = getSpawnCol(board, currentType);
+		this.currentRow = currentType.getSpawnRow();
+		this.currentRotation = 0;
+		this.nextType = pieces.get(random.nextInt(pieces.size()));
+		resetFall();
+
+		/*
+		 * If the spawn point is invalid, we flag that we've lost because it
+		 * means that the pieces on the board have gotten too high.
+		 */
+		if (!board.isValidAndEmpty(currentType, currentCol, currentRow, currentRotation)) {
+			endGame();
+		}
+	}
+
+	/**
+	 * Forgets how far the current piece has fallen and how long it has
+	 * rested, as for a piece that has just spawned.
+	 */
+	private void resetFall() {
+		this.fallen = 0.0f;
+		this.landingRow = UNKNOWN_ROW;
+		this.landingVersion++;
+		this.lockTimer = 0;
+		this.lockResets = 0;
+	}
+
+	/**
+	 * Flags that the game has been lost, and publishes the final score the
+	 * first time.
+	 */
+	private void endGame() {
+		boolean wasOver = isGameOver;
+		this.isGameOver = true;
+		if (events != null && !wasOver) {
+			events.publish(EventBus.GAME_OVER, score, totalLines);
+		}
+	}
+
+	/**
+	 * Attempts to move the current piece one column to the left.
+	 *
+	 * @return Whether or not the piece was moved.
+	 */
+	public boolean moveLeft() {
+		if (board.isValidAndEmpty(currentType, currentCol - 1, currentRow, currentRotation)) {
+			currentCol--;
+			pieceMoved();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Attempts to move the current piece one column to the right.
+	 *
+	 * @return Whether or not the piece was moved.
+	 */
+	public boolean moveRight() {
+		if (board.isValidAndEmpty(currentType, currentCol + 1, currentRow, currentRotation)) {
+			currentCol++;
+			pieceMoved();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Attempts to set the rotation of the current piece to newRotation, kicking
+	 * it away from walls and the stack as the Super Rotation System does.
+	 *
+	 * @param newRotation The rotation of the new peice.
+	 * @return Whether or not the piece was rotated.
+	 */
+	public boolean rotatePiece(int newRotation) {
+		int kick = findKick(board, currentType, currentCol, currentRow, currentRotation, newRotation);
+		if (kick < 0) {
+			return false;
+		}
+		currentCol += currentType.getKickX(currentRotation, newRotation, kick);
+		currentRow += currentType.getKickY(currentRotation, newRotation, kick);
+		currentRotation = newRotation;
+		pieceMoved();
+		return true;
+	}
+
+	/**
+	 * Finds the wall kick that lets a piece rotate. This is the rule
+	 * {@code rotatePiece} plays by, for searches that need to follow it
+	 * without an engine.
+	 *
+	 * @param board       The board.
+	 * @param type        The type of the piece.
+	 * @param col         The column of the piece.
+	 * @param row         The row of the piece.
+	 * @param rotation    The rotation of the piece.
+	 * @param newRotation The rotation to turn it to.
+	 * @return The index of the kick, or -1 if the piece can't rotate.
+	 */
+	public static int findKick(Board board, TileType type, int col, int row, int rotation, int newRotation) {
+		/*
+		 * Try each of the piece's wall kicks in order, and take the first
+		 * position that fits. The first kick is always the rotation in place, so
+		 * a piece only moves when it has to. The kicks are looked up from the
+		 * piece's precomputed table, and each test compares row masks, so this is
+		 * cheap enough to call from a search.
+		 */
+		int kicks = type.getKickCount(rotation, newRotation);
+		for (int kick = 0; kick < kicks; kick++) {
+			int newColumn = col + type.getKickX(rotation, newRotation, kick);
+			int newRow = row + type.getKickY(rotation, newRotation, kick);
+			if (board.isValidAndEmpty(type, newColumn, newRow, newRotation)) {
+				return kick;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets the column a piece spawns in, which centers it on the board
+	 * whatever its width.
+	 *
+	 * @param board The board.
+	 * @param type  The type of the piece.
+	 * @return The column.
+	 */
+	public static int getSpawnCol(Board board, TileType type) {
+		return (board.getColCount() >> 1) - (type.getDimension() >> 1);
+	}
+
+	/**
+	 * Gets the number of bytes needed to snapshot this game.
+	 *
+	 * @return The snapshot size in bytes.
+	 */
+	public int getSnapshotSize() {
+		return SNAPSHOT_HEADER + board.getSnapshotSize();
+	}
+
+	/**
+	 * Writes the full game state (board, current piece, position, rotation,
+	 * next piece, score, level, speed, lines and starting level) into
+	 * {@code dst}. The array must be at least {@code getSnapshotSize()} bytes
+	 * long.
+	 *
+	 * @param dst The array to write to.
+	 */
+	public void snapshot(byte[] dst) {
+		dst[0] = (byte) (currentType == null ? 0 : currentType.getIndex() + 1);
+		dst[1] = (byte) (nextType == null ? 0 : nextType.getIndex() + 1);
+		dst[2] = (byte) currentRotation;
+		dst[3] = (byte) (isGameOver ? 1 : 0);
+		putInt(dst, 4, currentCol);
+		putInt(dst, 8, currentRow);
+		putInt(dst, 12, score);
+		putInt(dst, 16, Float.floatToRawIntBits(gameSpeed));
+		putInt(dst, 20, level);
+		putInt(dst, 24, totalLines);
+		putInt(dst, 28, startLevel);
+		board.writeTo(dst, SNAPSHOT_HEADER);
+	}
+
+	/**
+	 * Restores the game state previously written by {@code snapshot}.
+	 *
+	 * @param src The array to read from.
+	 */
+	public void restore(byte[] src) {
+		this.currentType = (src[0] == 0) ? null : pieces.get(src[0] - 1);
+		this.nextType = (src[1] == 0) ? null : pieces.get(src[1] - 1);
+		this.currentRotation = src[2];
+		this.isGameOver = (src[3] != 0);
+		this.currentCol = getInt(src, 4);
+		this.currentRow = getInt(src, 8);
+		this.score = getInt(src, 12);
+		this.gameSpeed = Float.intBitsToFloat(getInt(src, 16));
+		this.level = getInt(src, 20);
+		this.totalLines = getInt(src, 24);
+		this.startLevel = getInt(src, 28);
+		board.readFrom(src, SNAPSHOT_HEADER);
+		resetFall();
+	}
+
+	/**
+	 * Writes a big-endian int into a byte array.
+	 *
+	 * @param dst    The array.
+	 * @param offset The index of the first byte.
+	 * @param value  The value to write.
+	 */
+	private static void putInt(byte[] dst, int offset, int value) {
+		dst[offset] = (byte) (value >>> 24);
+		dst[offset + 1] = (byte) (value >>> 16);
+		dst[offset + 2] = (byte) (value >>> 8);
+		dst[offset + 3] = (byte) value;
+	}
+
+	/**
+	 * Reads a big-endian int from a byte array.
+	 *
+	 * @param src    The array.
+	 * @param offset The index of the first byte.
+	 * @return The value.
+	 */
+	private static int getInt(byte[] src, int offset) {
+		return (src[offset] << 24) | ((src[offset + 1] & 0xFF) << 16) | ((src[offset + 2] & 0xFF) << 8)
+				| (src[offset + 3] & 0xFF);
+	}
+
+	/**
+	 * Gets the board the game is played on.
+	 *
+	 * @return The board.
+	 */
+	public Board getBoard() {
+		return board;
+	}
+
+	/**
+	 * Checks to see whether or not the game is over.
+	 *
+	 * @return Whether or not the game is over.
+	 */
+	public boolean isGameOver() {
+		return isGameOver;
+	}
+
+	/**
+	 * Gets the current score.
+	 *
+	 * @return The score.
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * Gets the current level.
+	 *
+	 * @return The level.
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * Sets the level. The starting speed of the next game is based on it.
+	 *
+	 * @param level The level.
+	 */
+	public void setLevel(int level) {
+		this.level = level;
+		this.gameSpeed = getStartSpeed(level);
+	}
+
+	/**
+	 * Gets the level the current game was started on.
+	 *
+	 * @return The level.
+	 */
+	public int getStartLevel() {
+		return startLevel;
+	}
+
+	/**
+	 * Gets the total number of lines cleared this game.
+	 *
+	 * @return The number of lines.
+	 */
+	public int getTotalLines() {
+		return totalLines;
+	}
+
+	/**
+	 * Gets the speed of the game.
+	 *
+	 * @return The speed in cycles per second.
+	 */
+	public float getGameSpeed() {
+		return gameSpeed;
+	}
+
+	/**
+	 * Gets the number of lines cleared when the last piece was locked.
+	 *
+	 * @return The number of lines.
+	 */
+	public int getLinesCleared() {
+		return linesCleared;
+	}
+
+	/**
+	 * Gets a row that was cleared when the last piece was locked, numbered as
+	 * it was before the lines above it fell.
+	 *
+	 * @param index The index of the line, less than {@code getLinesCleared()}.
+	 * @return The row.
+	 */
+	public int getClearedRow(int index) {
+		return clearedRows[index];
+	}
+
+	/**
+	 * Gets the current type of piece we're using.
+	 *
+	 * @return The piece type.
+	 */
+	public TileType getPieceType() {
+		return currentType;
+	}
+
+	/**
+	 * Gets the next type of piece we're using.
+	 *
+	 * @return The next piece.
+	 */
+	public TileType getNextPieceType() {
+		return nextType;
+	}
+
+	/**
+	 * Gets the column of the current piece.
+	 *
+	 * @return The column.
+	 */
+	public int getPieceCol() {
+		return currentCol;
+	}
+
+	/**
+	 * Gets the row of the current piece.
+	 *
+	 * @return The row.
+	 */
+	public int getPieceRow() {
+		return currentRow;
+	}
+
+	/**
+	 * Gets the rotation of the current piece.
+	 *
+	 * @return The rotation.
+	 */
+	public int getPieceRotation() {
+		return currentRotation;
+	}
+
+}
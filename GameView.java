@@ -0,0 +1,102 @@
+public interface GameView {
+
+	/**
+	 * Checks to see whether or not the game is paused.
+	 *
+	 * @return Whether or not the game is paused.
+	 */
+	boolean isPaused();
+
+	/**
+	 * Checks to see whether or not we're on a new game.
+	 *
+	 * @return Whether or not this is a new game.
+	 */
+	boolean isNewGame();
+
+	/**
+	 * Checks to see whether or not the game is over.
+	 *
+	 * @return Whether or not the game is over.
+	 */
+	boolean isGameOver();
+
+	/**
+	 * Gets the current score.
+	 *
+	 * @return The score.
+	 */
+	int getScore();
+
+	/**
+	 * Gets the best recorded score on the level the game was started on.
+	 *
+	 * @return The best score.
+	 */
+	int getBestScore();
+
+	/**
+	 * Gets the current level.
+	 *
+	 * @return The level.
+	 */
+	int getLevel();
+
+	/**
+	 * Gets the board the game is played on.
+	 *
+	 * @return The board.
+	 */
+	Board getBoard();
+
+	/**
+	 * Gets the current type of piece we're using.
+	 *
+	 * @return The piece type.
+	 */
+	TileType getPieceType();
+
+	/**
+	 * Gets the next type of piece we're using.
+	 *
+	 * @return The next piece.
+	 */
+	TileType getNextPieceType();
+
+	/**
+	 * Gets the column of the current piece.
+	 *
+	 * @return The column.
+	 */
+	int getPieceCol();
+
+	/**
+	 * Gets the row of the current piece.
+	 *
+	 * @return The row.
+	 */
+	int getPieceRow();
+
+	/**
+	 * Gets the lowest row the current piece can fall to, which is where its
+	 * ghost is drawn.
+	 *
+	 * @return The landing row.
+	 */
+	int getLandingRow();
+
+	/**
+	 * Gets the rotation of the current piece.
+	 *
+	 * @return The rotation.
+	 */
+	int getPieceRotation();
+
+	/**
+	 * Gets the live stats of the player.
+	 *
+	 * @return The stats, or null if they aren't kept.
+	 */
+	PlayerStats getStats();
+
+}
@@ -0,0 +1,290 @@
+public class HeuristicBot implements Bot {
+
+	/**
+	 * Bots with a few different styles of play, which can be picked by name.
+	 */
+	public static final HeuristicBot[] PRESETS = { new HeuristicBot("balanced", 0.76, 0.51, 0.36, 0.18),
+			new HeuristicBot("flat", 0.20, 0.30, 0.50, 0.60), new HeuristicBot("greedy", 2.00, 0.20, 0.20, 0.10),
+			new HeuristicBot("careless", 0.76, 0.51, 0.05, 0.05), new HeuristicBot("tall", 0.76, 0.10, 0.36, 0.18) };
+
+	/**
+	 * The evaluator that scores each batch of placements, which is shared as
+	 * it keeps no state.
+	 */
+	private static final BatchEvaluator EVALUATOR = ScalarEvaluator.createFastest();
+
+	/**
+	 * The name of the bot.
+	 */
+	private final String name;
+
+	/**
+	 * The reward for each line a placement clears.
+	 */
+	private final double linesWeight;
+
+	/**
+	 * The penalty for each row of height summed across the columns.
+	 */
+	private final double heightWeight;
+
+	/**
+	 * The penalty for each empty cell with a tile somewhere above it.
+	 */
+	private final double holesWeight;
+
+	/**
+	 * The penalty for each row of difference between neighbouring columns.
+	 */
+	private final double bumpinessWeight;
+
+	/**
+	 * The board placements are tried out on.
+	 */
+	private Board scratch;
+
+	/**
+	 * The board being played, copied so it can be restored into the scratch
+	 * board before each placement.
+	 */
+	private byte[] original;
+
+	/**
+	 * The height of each column, reused between evaluations of boards too
+	 * wide to batch.
+	 */
+	private int[] heights;
+
+	/**
+	 * The boards of the placements being scored, or null if the board is too
+	 * wide to batch.
+	 */
+	private CandidateBatch batch;
+
+	/**
+	 * The placement of each candidate in the batch.
+	 */
+	private int[] placements;
+
+	/**
+	 * The landings already scored for the current piece. Pieces with
+	 * symmetric rotations land on the same cells from more than one
+	 * placement, and each landing only needs scoring once.
+	 */
+	private LongSet seen;
+
+	/**
+	 * Creates a new HeuristicBot, which places each piece wherever a weighted
+	 * sum of the resulting board's features is best.
+	 *
+	 * @param name            The name of the bot.
+	 * @param linesWeight     The reward for each line cleared.
+	 * @param heightWeight    The penalty for each row of total column height.
+	 * @param holesWeight     The penalty for each covered hole.
+	 * @param bumpinessWeight The penalty for each row of difference between
+	 *                        neighbouring columns.
+	 */
+	public HeuristicBot(String name, double linesWeight, double heightWeight, double holesWeight,
+			double bumpinessWeight) {
+		this.name = name;
+		this.linesWeight = linesWeight;
+		this.heightWeight = heightWeight;
+		this.holesWeight = holesWeight;
+		this.bumpinessWeight = bumpinessWeight;
+	}
+
+	/**
+	 * Finds a preset by name.
+	 *
+	 * @param name The name.
+	 * @return A copy of the preset, or null if there's no preset by that name.
+	 */
+	public static HeuristicBot forName(String name) {
+		for (HeuristicBot preset : PRESETS) {
+			if (preset.name.equals(name)) {
+				return preset.copy();
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Creates a bot with the same name and weights as this one, which can be
+	 * used on another thread.
+	 *
+	 * @return The copy.
+	 */
+	public HeuristicBot copy() {
+		return new HeuristicBot(name, linesWeight, heightWeight, holesWeight, bumpinessWeight);
+	}
+
+	@Override
+	public BotMove decide(BotView view) {
+		Board board = view.toBoard();
+		int placement = choose(board, view.getPieceType(), view.getPieceCol(), view.getPieceRow(),
+				view.getPieceRotation());
+		return BotMove.place(getColumn(placement), getRotation(placement));
+	}
+
+	/**
+	 * Chooses where to place the current piece of an engine.
+	 *
+	 * @param engine The engine whose piece to place.
+	 * @return The placement, with the rotation in the low two bits and the
+	 *         column above them; see {@code getColumn} and {@code getRotation}.
+	 */
+	public int choose(GameEngine engine) {
+		return choose(engine.getBoard(), engine.getPieceType(), engine.getPieceCol(), engine.getPieceRow(),
+				engine.getPieceRotation());
+	}
+
+	/**
+	 * Chooses where to place a piece. Every rotation and column the piece
+	 * fits at in its current row is dropped straight down and scored.
+	 *
+	 * @param board    The board, which is left as it is.
+	 * @param type     The type of the piece.
+	 * @param col      The column of the piece.
+	 * @param row      The row of the piece.
+	 * @param rotation The rotation of the piece.
+	 * @return The placement, with the rotation in the low two bits and the
+	 *         column above them.
+	 */
+	private int choose(Board board, TileType type, int col, int row, int rotation) {
+		if (scratch == null || scratch.getColCount() != board.getColCount()
+				|| scratch.getRowCount() != board.getRowCount() || scratch.getPieceSet() != board.getPieceSet()) {
+			scratch = new Board(board.getColCount(), board.getRowCount(), board.getPieceSet());
+			original = new byte[board.getSnapshotSize()];
+			heights = new int[board.getColCount()];
+			int candidates = TileType.ROTATION_COUNT * (board.getColCount() + TileType.MAX_DIMENSION);
+			seen = new LongSet(candidates);
+			if (board.getColCount() <= CandidateBatch.MAX_COLS) {
+				batch = new CandidateBatch(board.getColCount(), board.getRowCount(), candidates);
+				placements = new int[batch.getCapacity()];
+			} else {
+				batch = null;
+			}
+		}
+		board.writeTo(original, 0);
+		seen.clear();
+		if (batch != null) {
+			batch.clear();
+		}
+
+		int best = (col << 2) | rotation;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		for (int r = 0; r < TileType.ROTATION_COUNT; r++) {
+			for (int x = -type.getDimension(); x < board.getColCount(); x++) {
+				if (!board.isValidAndEmpty(type, x, row, r)) {
+					continue;
+				}
+				int landing = board.getLandingRow(type, x, row, r);
+
+				/*
+				 * A landing is told apart by its shape and where its top left
+				 * tile ends up. One that's already been scored would score the
+				 * same again, and the placement that made it first wins ties
+				 * anyway, so it isn't scored twice.
+				 */
+				long key = ((long) (landing + type.getTopInset(r)) << 32)
+						| ((x + type.getLeftInset(r)) << 2 | type.getShapeRotation(r));
+				if (!seen.add(key)) {
+					continue;
+				}
+
+				scratch.readFrom(original, 0);
+				scratch.addPiece(type, x, landing, r);
+				if (batch != null) {
+					placements[batch.add(scratch)] = (x << 2) | r;
+					continue;
+				}
+				double score = linesWeight * scratch.checkLines() - evaluate(scratch);
+				if (score > bestScore) {
+					bestScore = score;
+					best = (x << 2) | r;
+				}
+			}
+		}
+
+		/*
+		 * The batch is scored in the order the placements were tried, so ties
+		 * go to the same placement as they would one at a time.
+		 */
+		if (batch != null) {
+			EVALUATOR.evaluate(batch);
+			for (int i = 0; i < batch.size(); i++) {
+				double score = linesWeight * batch.getLines(i) - (heightWeight * batch.getTotalHeight(i)
+						+ holesWeight * batch.getHoles(i) + bumpinessWeight * batch.getBumpiness(i));
+				if (score > bestScore) {
+					bestScore = score;
+					best = placements[i];
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Works out the penalty of a board from its column heights, holes and
+	 * bumpiness.
+	 *
+	 * @param board The board.
+	 * @return The penalty.
+	 */
+	private double evaluate(Board board) {
+		int rowCount = board.getRowCount();
+		int holes = 0;
+		int totalHeight = 0;
+		for (int x = 0; x < heights.length; x++) {
+			int top = Math.max(0, board.getStackTop());
+			while (top < rowCount && !board.isOccupied(x, top)) {
+				top++;
+			}
+			heights[x] = rowCount - top;
+			totalHeight += heights[x];
+			for (int y = top + 1; y < rowCount; y++) {
+				if (!board.isOccupied(x, y)) {
+					holes++;
+				}
+			}
+		}
+
+		int bumpiness = 0;
+		for (int x = 1; x < heights.length; x++) {
+			bumpiness += Math.abs(heights[x] - heights[x - 1]);
+		}
+		return heightWeight * totalHeight + holesWeight * holes + bumpinessWeight * bumpiness;
+	}
+
+	/**
+	 * Gets the column of a placement.
+	 *
+	 * @param placement The placement.
+	 * @return The column.
+	 */
+	public static int getColumn(int placement) {
+		return placement >> 2;
+	}
+
+	/**
+	 * Gets the rotation of a placement.
+	 *
+	 * @param placement The placement.
+	 * @return The rotation.
+	 */
+	public static int getRotation(int placement) {
+		return placement & 3;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s (lines %.2f, height %.2f, holes %.2f, bumpiness %.2f)", name, linesWeight,
+				heightWeight, holesWeight, bumpinessWeight);
+	}
+
+}
@@ -0,0 +1,117 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class HostingBenchmark {
+
+	/**
+	 * The number of seconds to let the matches start before measuring.
+	 */
+	private static final int WARMUP_SECONDS = 2;
+
+	/**
+	 * Compares hosting matches on a ThreadedVersusServer with one virtual
+	 * thread per task against a fixed pool of platform threads. For each mode
+	 * the given number of matches are played over loopback, and the tick
+	 * throughput and how late ticks ran are reported.
+	 *
+	 * Every match blocks three tasks for its whole duration (its loop and a
+	 * reader for each player), so the pool defaults to three threads per
+	 * match. A smaller pool leaves matches that never get a thread. Virtual
+	 * threads need Java 21; on older JVMs only the pool is measured.
+	 *
+	 * Usage: {@code HostingBenchmark [matches] [seconds] [pool size]}
+	 *
+	 * @param args The command line arguments.
+	 * @throws Exception If the benchmark failed.
+	 */
+	public static void main(String[] args) throws Exception {
+		int matches = (args.length > 0) ? Integer.parseInt(args[0]) : 1000;
+		int seconds = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+		int poolSize = (args.length > 2) ? Integer.parseInt(args[2]) : matches * (VersusMatch.SEATS + 1);
+
+		System.out.println("Matches: " + matches + ", expected ticks/s: " + matches * VersusMatch.TICKS_PER_SECOND);
+		ExecutorService virtual = ThreadedVersusServer.newVirtualThreadExecutor();
+		if (virtual != null) {
+			run("virtual threads", virtual, matches, seconds);
+		} else {
+			System.out.println("virtual threads        unavailable before Java 21");
+		}
+		run("platform pool (" + poolSize + ")", Executors.newFixedThreadPool(poolSize), matches, seconds);
+	}
+
+	/**
+	 * Hosts the matches on a server using the executor and reports the results.
+	 *
+	 * @param name     The name of the mode.
+	 * @param executor The executor for the server.
+	 * @param matches  The number of matches.
+	 * @param seconds  The number of seconds to measure for.
+	 * @throws Exception If the benchmark failed.
+	 */
+	private static void run(String name, ExecutorService executor, int matches, int seconds) throws Exception {
+		ThreadedVersusServer server = new ThreadedVersusServer(new InetSocketAddress("127.0.0.1", 0), executor);
+		Thread acceptor = new Thread(server, "acceptor");
+		acceptor.start();
+
+		/*
+		 * The clients run the same way in both modes, on virtual threads where
+		 * there are any, so that only the server's threading differs. Each joins
+		 * the queue and then just reads.
+		 */
+		ExecutorService clients = ThreadedVersusServer.newVirtualThreadExecutor();
+		if (clients == null) {
+			clients = Executors.newCachedThreadPool();
+		}
+		final Socket[] sockets = new Socket[matches * VersusMatch.SEATS];
+		for (int i = 0; i < sockets.length; i++) {
+			final Socket socket = new Socket("127.0.0.1", server.getPort());
+			sockets[i] = socket;
+			socket.getOutputStream().write(VersusProtocol.INPUT_DROP);
+			clients.execute(new Runnable() {
+				@Override
+				public void run() {
+					drain(socket);
+				}
+			});
+		}
+
+		Thread.sleep(WARMUP_SECONDS * 1000L);
+		server.getTickLateness().reset();
+		long startTicks = server.getTickCount();
+		long start = System.nanoTime();
+		Thread.sleep(seconds * 1000L);
+		long ticks = server.getTickCount() - startTicks;
+		double elapsed = (System.nanoTime() - start) / 1e9;
+
+		System.out.printf("%-22s ticks/s=%.0f  lateness %s%n", name, ticks / elapsed, server.getTickLateness());
+
+		server.stop();
+		for (Socket socket : sockets) {
+			socket.close();
+		}
+		clients.shutdownNow();
+		acceptor.join();
+	}
+
+	/**
+	 * Reads and discards everything sent to a client until it closes.
+	 *
+	 * @param socket The client's socket.
+	 */
+	private static void drain(Socket socket) {
+		byte[] buffer = new byte[4096];
+		try {
+			InputStream in = socket.getInputStream();
+			while (in.read(buffer) >= 0) {
+				// Discard the messages.
+			}
+		} catch (IOException e) {
+			// The socket was closed.
+		}
+	}
+
+}
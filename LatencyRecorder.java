@@ -0,0 +1,119 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class LatencyRecorder {
+
+	/**
+	 * The number of sub-buckets each power of two is split into. Recorded values
+	 * are accurate to within 1 / SUB_BUCKETS of their magnitude.
+	 */
+	private static final int SUB_BUCKETS = 8;
+
+	/**
+	 * The number of bits needed to index a sub-bucket.
+	 */
+	private static final int SUB_BITS = 3;
+
+	/**
+	 * The number of values recorded in each bucket.
+	 */
+	private final AtomicLongArray counts = new AtomicLongArray(64 * SUB_BUCKETS);
+
+	/**
+	 * Records a value. This is safe to call from any number of threads and
+	 * never allocates.
+	 *
+	 * @param nanos The value, in nanoseconds. Negative values count as 0.
+	 */
+	public void record(long nanos) {
+		counts.incrementAndGet(indexOf(Math.max(nanos, 0L)));
+	}
+
+	/**
+	 * Gets the total number of values recorded.
+	 *
+	 * @return The number of values.
+	 */
+	public long getCount() {
+		long total = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			total += counts.get(i);
+		}
+		return total;
+	}
+
+	/**
+	 * Gets the value below which the given fraction of recorded values fall.
+	 *
+	 * @param fraction The fraction, between 0 and 1 (0.99 for the 99th
+	 *                 percentile).
+	 * @return The value in nanoseconds, or 0 if nothing was recorded.
+	 */
+	public long getPercentile(double fraction) {
+		long total = getCount();
+		if (total == 0) {
+			return 0L;
+		}
+
+		long target = (long) Math.ceil(total * fraction);
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if (seen >= Math.max(target, 1L)) {
+				return valueOf(i);
+			}
+		}
+		return valueOf(counts.length() - 1);
+	}
+
+	/**
+	 * Discards every recorded value.
+	 */
+	public void reset() {
+		for (int i = 0; i < counts.length(); i++) {
+			counts.set(i, 0L);
+		}
+	}
+
+	/**
+	 * Gets the bucket a value falls in. Values below SUB_BUCKETS get a bucket
+	 * each, and larger values are bucketed by their highest bits.
+	 *
+	 * @param value The value.
+	 * @return The bucket index.
+	 */
+	private static int indexOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * Gets the upper bound of the values in a bucket.
+	 *
+	 * @param index The bucket index.
+	 * @return The largest value that falls in the bucket.
+	 */
+	private static long valueOf(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+		long sub = index % SUB_BUCKETS;
+		return ((SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+	}
+
+	/**
+	 * Formats the 50th, 99th and 99.9th percentiles in microseconds.
+	 *
+	 * @return The summary.
+	 */
+	@Override
+	public String toString() {
+		return String.format("p50=%dus p99=%dus p99.9=%dus (n=%d)", getPercentile(0.50) / 1000L,
+				getPercentile(0.99) / 1000L, getPercentile(0.999) / 1000L, getCount());
+	}
+
+}
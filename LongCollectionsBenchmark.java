@@ -0,0 +1,176 @@
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public class LongCollectionsBenchmark {
+
+	/**
+	 * The number of rounds each structure runs before it's timed, so that it's
+	 * been compiled.
+	 */
+	private static final int WARMUP_ROUNDS = 5;
+
+	/**
+	 * Compares LongSet and LongIntMap against HashSet and HashMap with boxed
+	 * keys, as a search uses them: each round adds a batch of keys, looks up
+	 * as many again of which about half are present, and clears the structure
+	 * for the next search. The keys are hashes of boards from random play, like
+	 * the ones Perft keeps in its transposition table.
+	 *
+	 * Usage: {@code LongCollectionsBenchmark [keys] [rounds]}
+	 *
+	 * @param args The command line arguments.
+	 */
+	public static void main(String[] args) {
+		int keyCount = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+		int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 50;
+
+		long[] keys = createKeys(keyCount * 2);
+		System.out.printf("%d keys added and %d looked up per round, %d rounds%n", keyCount, keyCount, rounds);
+
+		final LongSet longSet = new LongSet(keyCount);
+		final Set<Long> hashSet = new HashSet<Long>(keyCount * 2);
+		final LongIntMap longIntMap = new LongIntMap(keyCount);
+		final Map<Long, Integer> hashMap = new HashMap<Long, Integer>(keyCount * 2);
+
+		double setTime = measure("LongSet", keys, keyCount, rounds, new Workload() {
+
+			@Override
+			public long run(long[] keys, int count) {
+				long found = 0;
+				longSet.clear();
+				for (int i = 0; i < count; i++) {
+					longSet.add(keys[i]);
+				}
+				for (int i = count / 2; i < count + count / 2; i++) {
+					found += longSet.contains(keys[i]) ? 1 : 0;
+				}
+				return found;
+			}
+
+		});
+		double boxedSetTime = measure("HashSet<Long>", keys, keyCount, rounds, new Workload() {
+
+			@Override
+			public long run(long[] keys, int count) {
+				long found = 0;
+				hashSet.clear();
+				for (int i = 0; i < count; i++) {
+					hashSet.add(keys[i]);
+				}
+				for (int i = count / 2; i < count + count / 2; i++) {
+					found += hashSet.contains(keys[i]) ? 1 : 0;
+				}
+				return found;
+			}
+
+		});
+		double mapTime = measure("LongIntMap", keys, keyCount, rounds, new Workload() {
+
+			@Override
+			public long run(long[] keys, int count) {
+				long found = 0;
+				longIntMap.clear();
+				for (int i = 0; i < count; i++) {
+					longIntMap.put(keys[i], i);
+				}
+				for (int i = count / 2; i < count + count / 2; i++) {
+					found += longIntMap.get(keys[i], 0);
+				}
+				return found;
+			}
+
+		});
+		double boxedMapTime = measure("HashMap<Long,Integer>", keys, keyCount, rounds, new Workload() {
+
+			@Override
+			public long run(long[] keys, int count) {
+				long found = 0;
+				hashMap.clear();
+				for (int i = 0; i < count; i++) {
+					hashMap.put(keys[i], i);
+				}
+				for (int i = count / 2; i < count + count / 2; i++) {
+					Integer value = hashMap.get(keys[i]);
+					found += (value != null) ? value : 0;
+				}
+				return found;
+			}
+
+		});
+
+		System.out.printf("Set speedup: %.2fx, map speedup: %.2fx%n", boxedSetTime / setTime, boxedMapTime / mapTime);
+	}
+
+	/**
+	 * Plays random pieces onto a board and hashes the board after each one.
+	 * The board is cleared whenever it tops out.
+	 *
+	 * @param count The number of keys.
+	 * @return The keys.
+	 */
+	private static long[] createKeys(int count) {
+		Random random = new Random(1);
+		Board board = new Board();
+		PieceSet pieces = board.getPieceSet();
+		long[] keys = new long[count];
+		for (int i = 0; i < count; i++) {
+			TileType type = pieces.get(random.nextInt(pieces.size()));
+			int rotation = random.nextInt(TileType.ROTATION_COUNT);
+			int col = random.nextInt(board.getColCount() - type.getDimension() + 1);
+			if (!board.isValidAndEmpty(type, col, 0, rotation)) {
+				board.clear();
+			}
+			int row = board.getLandingRow(type, col, 0, rotation);
+			board.addPiece(type, col, row, rotation);
+			board.checkLines();
+			keys[i] = board.getHash();
+		}
+		return keys;
+	}
+
+	/**
+	 * Times a workload and reports its cost per operation.
+	 *
+	 * @param name     The name of the structure.
+	 * @param keys     The keys.
+	 * @param count    The number of keys to add each round.
+	 * @param rounds   The number of rounds to time.
+	 * @param workload The workload.
+	 * @return The time per operation in nanoseconds.
+	 */
+	private static double measure(String name, long[] keys, int count, int rounds, Workload workload) {
+		long check = 0;
+		for (int round = 0; round < WARMUP_ROUNDS; round++) {
+			check += workload.run(keys, count);
+		}
+
+		long start = System.nanoTime();
+		for (int round = 0; round < rounds; round++) {
+			check += workload.run(keys, count);
+		}
+		double perOperation = (System.nanoTime() - start) / ((double) rounds * count * 2);
+		System.out.printf("%-22s %6.1f ns/op  (check %d)%n", name, perOperation, check);
+		return perOperation;
+	}
+
+	/**
+	 * A round of adding and looking up keys.
+	 */
+	private interface Workload {
+
+		/**
+		 * Clears the structure, then adds and looks up keys.
+		 *
+		 * @param keys  The keys.
+		 * @param count The number of keys to add.
+		 * @return A sum of what was found, so the lookups aren't optimized
+		 *         away.
+		 */
+		long run(long[] keys, int count);
+
+	}
+
+}
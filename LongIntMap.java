@@ -0,0 +1,165 @@
+import java.util.Arrays;
+
+public class LongIntMap {
+
+	/**
+	 * The smallest number of slots a map has.
+	 */
+	private static final int MIN_CAPACITY = 16;
+
+	/**
+	 * The key in each slot.
+	 */
+	private long[] keys;
+
+	/**
+	 * The value in each slot.
+	 */
+	private int[] values;
+
+	/**
+	 * The generation each slot was last written in. A slot from an earlier
+	 * generation is empty, so bumping the generation empties every slot.
+	 */
+	private int[] stamps;
+
+	/**
+	 * The current generation.
+	 */
+	private int generation = 1;
+
+	/**
+	 * The number of keys in the map.
+	 */
+	private int size;
+
+	/**
+	 * Creates a new LongIntMap.
+	 *
+	 * @param expected The number of keys expected, which the map is sized for
+	 *                 so that it doesn't need to grow.
+	 */
+	public LongIntMap(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, expected * 2 - 1)) << 1;
+		this.keys = new long[capacity];
+		this.values = new int[capacity];
+		this.stamps = new int[capacity];
+	}
+
+	/**
+	 * Gets the value of a key.
+	 *
+	 * @param key     The key.
+	 * @param missing The value to return if the key isn't in the map.
+	 * @return The value.
+	 */
+	public int get(long key, int missing) {
+		int mask = keys.length - 1;
+		for (int slot = getSlot(key, mask); stamps[slot] == generation; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				return values[slot];
+			}
+		}
+		return missing;
+	}
+
+	/**
+	 * Checks whether a key is in the map.
+	 *
+	 * @param key The key.
+	 * @return Whether or not the key is in the map.
+	 */
+	public boolean containsKey(long key) {
+		int mask = keys.length - 1;
+		for (int slot = getSlot(key, mask); stamps[slot] == generation; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Sets the value of a key.
+	 *
+	 * @param key   The key.
+	 * @param value The value.
+	 */
+	public void put(long key, int value) {
+		int mask = keys.length - 1;
+		int slot = getSlot(key, mask);
+		while (stamps[slot] == generation) {
+			if (keys[slot] == key) {
+				values[slot] = value;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		stamps[slot] = generation;
+		if (++size * 2 > keys.length) {
+			grow();
+		}
+	}
+
+	/**
+	 * Gets the number of keys in the map.
+	 *
+	 * @return The number of keys.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes every key. This takes constant time, as the slots are only
+	 * marked empty by moving to a new generation.
+	 */
+	public void clear() {
+		size = 0;
+		if (++generation == 0) {
+			Arrays.fill(stamps, 0);
+			generation = 1;
+		}
+	}
+
+	/**
+	 * Doubles the number of slots, keeping the map at most half full so that
+	 * probes stay short.
+	 */
+	private void grow() {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		int[] oldStamps = stamps;
+		keys = new long[oldKeys.length * 2];
+		values = new int[oldKeys.length * 2];
+		stamps = new int[oldKeys.length * 2];
+		int mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldStamps[i] == generation) {
+				int slot = getSlot(oldKeys[i], mask);
+				while (stamps[slot] == generation) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+				stamps[slot] = generation;
+			}
+		}
+	}
+
+	/**
+	 * Gets the slot a key's probe starts at. The key is mixed first, since
+	 * keys like packed positions differ only in a few bits.
+	 *
+	 * @param key  The key.
+	 * @param mask The number of slots minus one.
+	 * @return The slot.
+	 */
+	static int getSlot(long key, int mask) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+}
@@ -0,0 +1,126 @@
+import java.util.Arrays;
+
+public class LongSet {
+
+	/**
+	 * The smallest number of slots a set has.
+	 */
+	private static final int MIN_CAPACITY = 16;
+
+	/**
+	 * The key in each slot.
+	 */
+	private long[] keys;
+
+	/**
+	 * The generation each slot was last written in. A slot from an earlier
+	 * generation is empty, so bumping the generation empties every slot.
+	 */
+	private int[] stamps;
+
+	/**
+	 * The current generation.
+	 */
+	private int generation = 1;
+
+	/**
+	 * The number of keys in the set.
+	 */
+	private int size;
+
+	/**
+	 * Creates a new LongSet.
+	 *
+	 * @param expected The number of keys expected, which the set is sized for
+	 *                 so that it doesn't need to grow.
+	 */
+	public LongSet(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, expected * 2 - 1)) << 1;
+		this.keys = new long[capacity];
+		this.stamps = new int[capacity];
+	}
+
+	/**
+	 * Adds a key to the set.
+	 *
+	 * @param key The key.
+	 * @return Whether or not the key was added, which it isn't if it was
+	 *         already in the set.
+	 */
+	public boolean add(long key) {
+		int mask = keys.length - 1;
+		int slot = LongIntMap.getSlot(key, mask);
+		while (stamps[slot] == generation) {
+			if (keys[slot] == key) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		stamps[slot] = generation;
+		if (++size * 2 > keys.length) {
+			grow();
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether a key is in the set.
+	 *
+	 * @param key The key.
+	 * @return Whether or not the key is in the set.
+	 */
+	public boolean contains(long key) {
+		int mask = keys.length - 1;
+		for (int slot = LongIntMap.getSlot(key, mask); stamps[slot] == generation; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the number of keys in the set.
+	 *
+	 * @return The number of keys.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes every key. This takes constant time, as the slots are only
+	 * marked empty by moving to a new generation.
+	 */
+	public void clear() {
+		size = 0;
+		if (++generation == 0) {
+			Arrays.fill(stamps, 0);
+			generation = 1;
+		}
+	}
+
+	/**
+	 * Doubles the number of slots, keeping the set at most half full so that
+	 * probes stay short.
+	 */
+	private void grow() {
+		long[] oldKeys = keys;
+		int[] oldStamps = stamps;
+		keys = new long[oldKeys.length * 2];
+		stamps = new int[oldKeys.length * 2];
+		int mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldStamps[i] == generation) {
+				int slot = LongIntMap.getSlot(oldKeys[i], mask);
+				while (stamps[slot] == generation) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				stamps[slot] = generation;
+			}
+		}
+	}
+
+}
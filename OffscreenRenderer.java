@@ -0,0 +1,478 @@
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+public class OffscreenRenderer {
+
+	/**
+	 * The number of frames between each tick of a live game, as in the game
+	 * loop.
+	 */
+	private static final int FRAMES_PER_TICK = 2;
+
+	/**
+	 * The number of frames a live game runs for if no count is given.
+	 */
+	private static final int LIVE_FRAMES = 3000;
+
+	/**
+	 * The number of frames each worker may have queued or finished ahead of
+	 * the frame being written.
+	 */
+	private static final int FRAMES_PER_WORKER = 2;
+
+	/**
+	 * The number of columns on the board being rendered.
+	 */
+	private final int colCount;
+
+	/**
+	 * The number of rows on the board being rendered.
+	 */
+	private final int rowCount;
+
+	/**
+	 * The piece set of the game being rendered.
+	 */
+	private final PieceSet pieces;
+
+	/**
+	 * The tile size the board is drawn at.
+	 */
+	private final int tileSize;
+
+	/**
+	 * The panels and image each worker thread renders with. Panels keep caches
+	 * between frames, so each thread has its own rather than sharing them.
+	 */
+	private final ThreadLocal<Context> contexts = new ThreadLocal<Context>() {
+
+		@Override
+		protected Context initialValue() {
+			return new Context();
+		}
+
+	};
+
+	/**
+	 * Creates a new OffscreenRenderer.
+	 *
+	 * @param colCount The number of columns on the board.
+	 * @param rowCount The number of rows on the board, including hidden ones.
+	 * @param pieces   The piece set of the game.
+	 * @param tileSize The number of pixels that a tile takes up.
+	 */
+	public OffscreenRenderer(int colCount, int rowCount, PieceSet pieces, int tileSize) {
+		this.colCount = colCount;
+		this.rowCount = rowCount;
+		this.pieces = pieces;
+		this.tileSize = tileSize;
+	}
+
+	/**
+	 * Gets the width of the frames rendered, which have the board and side
+	 * panels side by side.
+	 *
+	 * @return The width in pixels.
+	 */
+	public int getFrameWidth() {
+		return contexts.get().image.getWidth();
+	}
+
+	/**
+	 * Gets the height of the frames rendered.
+	 *
+	 * @return The height in pixels.
+	 */
+	public int getFrameHeight() {
+		return contexts.get().image.getHeight();
+	}
+
+	/**
+	 * Renders a game headlessly, either from a replay file or from a game
+	 * played in-process, to a directory of PNG frames or to a raw RGB stream.
+	 * Frames are painted and encoded on a pool of worker threads, and a frame
+	 * is only written once every frame before it has been. The frame size is
+	 * printed, since a raw stream has no header; to encode it with ffmpeg, for
+	 * example, use {@code -f rawvideo -pix_fmt rgb24 -s <width>x<height>}.
+	 *
+	 * A live game is given as {@code live:<seed>[:<frames>]}, and is driven by
+	 * the same fixed inputs as {@code AllocationCheck}, from
+	 * {@code ScriptedInput}. Giving an output file ending in {@code .replay}
+	 * records it instead of rendering it.
+	 *
+	 * Usage:
+	 * {@code OffscreenRenderer <replay | live:seed[:frames]> <directory | file.rgb | file.replay> [threads] [piece file]}
+	 *
+	 * @param args The command line arguments.
+	 * @throws Exception If the game couldn't be read or the frames written.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.out.println(
+					"Usage: OffscreenRenderer <replay | live:seed[:frames]> <directory | file.rgb | file.replay> [threads] [piece file]");
+			System.exit(2);
+		}
+		System.setProperty("java.awt.headless", "true");
+		File output = new File(args[1]);
+		int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		PieceSet pieces = (args.length > 3) ? PieceSet.load(new File(args[3])) : PieceSet.STANDARD;
+
+		long start = System.nanoTime();
+		int frames;
+		if (args[0].startsWith("live:")) {
+			String[] parts = args[0].split(":");
+			GameEngine engine = new GameEngine(new Board(BoardPanel.COL_COUNT, BoardPanel.ROW_COUNT, pieces));
+			engine.setSeed(Long.parseLong(parts[1]));
+			engine.reset();
+			int count = (parts.length > 2) ? Integer.parseInt(parts[2]) : LIVE_FRAMES;
+			if (output.getName().endsWith(".replay")) {
+				frames = record(engine, count, output);
+			} else {
+				OffscreenRenderer renderer = new OffscreenRenderer(BoardPanel.COL_COUNT, BoardPanel.ROW_COUNT, pieces,
+						BoardPanel.TILE_SIZE);
+				System.out.println("Frames are " + renderer.getFrameWidth() + "x" + renderer.getFrameHeight());
+				frames = renderer.render(new LiveSource(engine, count), output, threads);
+			}
+		} else {
+			try (ReplayFile.Reader replay = new ReplayFile.Reader(new File(args[0]))) {
+				GameEngine engine = replay.createEngine(pieces);
+				Board board = engine.getBoard();
+				OffscreenRenderer renderer = new OffscreenRenderer(board.getColCount(), board.getRowCount(), pieces,
+						BoardPanel.TILE_SIZE);
+				System.out.println("Frames are " + renderer.getFrameWidth() + "x" + renderer.getFrameHeight());
+				frames = renderer.render(new ReplaySource(replay), output, threads);
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%d frames in %.2fs (%.1f frames/s)%n", frames, seconds, frames / seconds);
+	}
+
+	/**
+	 * Records frames of a live game to a replay file.
+	 *
+	 * @param engine The engine, with a game started.
+	 * @param frames The number of frames to record.
+	 * @param file   The replay file.
+	 * @return The number of frames recorded.
+	 * @throws IOException If the replay couldn't be written.
+	 */
+	private static int record(GameEngine engine, int frames, File file) throws IOException {
+		LiveSource source = new LiveSource(engine, frames);
+		try (ReplayFile.Writer writer = new ReplayFile.Writer(file, engine)) {
+			int count = 0;
+			while (source.advance()) {
+				writer.write(engine);
+				count++;
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * Renders every frame of a source.
+	 *
+	 * @param source  The frames to render.
+	 * @param output  A directory to write numbered PNG frames into, or a file
+	 *                ending in {@code .rgb} to write a raw stream to.
+	 * @param threads The number of worker threads.
+	 * @return The number of frames rendered.
+	 * @throws IOException If a frame couldn't be written.
+	 */
+	public int render(FrameSource source, File output, int threads) throws IOException {
+		final boolean isRaw = output.getName().endsWith(".rgb");
+		if (!isRaw && !output.isDirectory() && !output.mkdirs()) {
+			throw new IOException("Couldn't create " + output);
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		ArrayDeque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+		int window = threads * FRAMES_PER_WORKER;
+		int frames = 0;
+		try (OutputStream out = isRaw ? new BufferedOutputStream(new FileOutputStream(output), 1 << 20) : null) {
+
+			/*
+			 * Each frame is copied out of the source and handed to a worker. Only
+			 * a window of frames is allowed to be in flight, so that a slow disk
+			 * holds the source back rather than frames piling up in memory.
+			 */
+			byte[] frame = new byte[source.getFrameSize()];
+			while (source.read(frame)) {
+				final byte[] snapshot = frame.clone();
+				final File file = isRaw ? null : new File(output, String.format("frame%06d.png", frames));
+				pending.add(pool.submit(new Callable<byte[]>() {
+
+					@Override
+					public byte[] call() throws IOException {
+						BufferedImage image = contexts.get().paint(snapshot);
+						if (isRaw) {
+							return toRGB(image);
+						}
+						ImageIO.write(image, "png", file);
+						return null;
+					}
+
+				}));
+				frames++;
+				if (pending.size() >= window) {
+					write(pending.poll(), out);
+				}
+			}
+			while (!pending.isEmpty()) {
+				write(pending.poll(), out);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		return frames;
+	}
+
+	/**
+	 * Waits for a frame to finish and writes it to the raw stream, if there
+	 * is one.
+	 *
+	 * @param frame The frame.
+	 * @param out   The raw stream, or null if frames write themselves.
+	 * @throws IOException If the frame couldn't be rendered or written.
+	 */
+	private static void write(Future<byte[]> frame, OutputStream out) throws IOException {
+		byte[] pixels;
+		try {
+			pixels = frame.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while rendering", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Couldn't render a frame", e.getCause());
+		}
+		if (out != null) {
+			out.write(pixels);
+		}
+	}
+
+	/**
+	 * Packs the pixels of an image into RGB bytes.
+	 *
+	 * @param image The image, which must be {@code TYPE_INT_RGB}.
+	 * @return The pixels, three bytes each, row by row.
+	 */
+	private static byte[] toRGB(BufferedImage image) {
+		int[] pixels = ((java.awt.image.DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		byte[] rgb = new byte[pixels.length * 3];
+		for (int i = 0, j = 0; i < pixels.length; i++, j += 3) {
+			int pixel = pixels[i];
+			rgb[j] = (byte) (pixel >> 16);
+			rgb[j + 1] = (byte) (pixel >> 8);
+			rgb[j + 2] = (byte) pixel;
+		}
+		return rgb;
+	}
+
+	/**
+	 * The panels, engine and image a worker thread renders with. Frames are
+	 * restored into the engine, and both panels are painted side by side into
+	 * the image.
+	 */
+	private class Context {
+
+		/**
+		 * The engine frames are restored into.
+		 */
+		private final GameEngine engine = new GameEngine(new Board(colCount, rowCount, pieces));
+
+		/**
+		 * The board panel.
+		 */
+		private final BoardPanel board;
+
+		/**
+		 * The side panel.
+		 */
+		private final SidePanel side;
+
+		/**
+		 * The image the panels are painted into.
+		 */
+		private final BufferedImage image;
+
+		/**
+		 * Creates a new Context.
+		 */
+		private Context() {
+			EngineView view = new EngineView(engine);
+			this.board = new BoardPanel(view, tileSize);
+			this.side = new SidePanel(view);
+			board.setSize(board.getPreferredSize());
+			side.setSize(side.getPreferredSize());
+
+			/*
+			 * Line clear effects carry over from frame to frame, which they can't
+			 * when consecutive frames are painted by different threads.
+			 */
+			board.getEffects().setEnabled(false);
+			this.image = new BufferedImage(board.getWidth() + side.getWidth(),
+					Math.max(board.getHeight(), side.getHeight()), BufferedImage.TYPE_INT_RGB);
+		}
+
+		/**
+		 * Paints a frame.
+		 *
+		 * @param snapshot The engine snapshot of the frame.
+		 * @return The image, which is reused by the next frame on this thread.
+		 */
+		private BufferedImage paint(byte[] snapshot) {
+			engine.restore(snapshot);
+
+			/*
+			 * Each panel is painted through its own copy of the graphics, since
+			 * the board panel leaves its graphics translated.
+			 */
+			Graphics g = image.createGraphics();
+			Graphics boardGraphics = g.create(0, 0, board.getWidth(), board.getHeight());
+			board.paintComponent(boardGraphics);
+			boardGraphics.dispose();
+			Graphics sideGraphics = g.create(board.getWidth(), 0, side.getWidth(), side.getHeight());
+			side.paintComponent(sideGraphics);
+			sideGraphics.dispose();
+			g.dispose();
+			return image;
+		}
+
+	}
+
+	/**
+	 * A sequence of engine snapshots to render.
+	 */
+	public interface FrameSource {
+
+		/**
+		 * Gets the number of bytes in each frame.
+		 *
+		 * @return The frame size.
+		 */
+		int getFrameSize();
+
+		/**
+		 * Reads the next frame.
+		 *
+		 * @param frame The buffer to read into.
+		 * @return Whether or not there was a frame left to read.
+		 * @throws IOException If the frame couldn't be read.
+		 */
+		boolean read(byte[] frame) throws IOException;
+
+	}
+
+	/**
+	 * The frames of a replay file.
+	 */
+	private static class ReplaySource implements FrameSource {
+
+		/**
+		 * The replay.
+		 */
+		private final ReplayFile.Reader replay;
+
+		/**
+		 * Creates a new ReplaySource.
+		 *
+		 * @param replay The replay.
+		 */
+		private ReplaySource(ReplayFile.Reader replay) {
+			this.replay = replay;
+		}
+
+		@Override
+		public int getFrameSize() {
+			return replay.getFrameSize();
+		}
+
+		@Override
+		public boolean read(byte[] frame) throws IOException {
+			return replay.read(frame);
+		}
+
+	}
+
+	/**
+	 * The frames of a game played in-process. The piece is moved left, right
+	 * and rotated on a fixed pattern of frames, and a new game is started
+	 * whenever one ends.
+	 */
+	private static class LiveSource implements FrameSource {
+
+		/**
+		 * The engine playing the game.
+		 */
+		private final GameEngine engine;
+
+		/**
+		 * The number of frames to play.
+		 */
+		private final int frames;
+
+		/**
+		 * The number of frames played.
+		 */
+		private int frame;
+
+		/**
+		 * Creates a new LiveSource.
+		 *
+		 * @param engine The engine, with a game started.
+		 * @param frames The number of frames to play.
+		 */
+		private LiveSource(GameEngine engine, int frames) {
+			this.engine = engine;
+			this.frames = frames;
+		}
+
+		/**
+		 * Plays the next frame.
+		 *
+		 * @return Whether or not there was a frame left to play.
+		 */
+		private boolean advance() {
+			if (frame >= frames) {
+				return false;
+			}
+			ScriptedInput.play(engine, frame);
+			if (frame % FRAMES_PER_TICK == 0) {
+				engine.update();
+				if (engine.isGameOver()) {
+					engine.reset();
+				}
+			}
+			frame++;
+			return true;
+		}
+
+		@Override
+		public int getFrameSize() {
+			return engine.getSnapshotSize();
+		}
+
+		@Override
+		public boolean read(byte[] frame) {
+			if (!advance()) {
+				return false;
+			}
+			engine.snapshot(frame);
+			return true;
+		}
+
+	}
+
+}
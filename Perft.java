@@ -0,0 +1,538 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class Perft {
+
+	/**
+	 * The margin around the board that piece positions may fall in, since a
+	 * piece's position is the corner of its bounding box rather than of its
+	 * tiles.
+	 */
+	private static final int MARGIN = TileType.MAX_DIMENSION;
+
+	/**
+	 * The most counts the transposition table keeps before it's cleared, so
+	 * that deep searches stay within a fixed amount of memory.
+	 */
+	private static final int MAX_RESULTS = 1 << 22;
+
+	/**
+	 * The board at each level of the search. The first is the starting board,
+	 * and each after it has one more piece locked.
+	 */
+	private final Board[] boards;
+
+	/**
+	 * The board at each level, stored off the heap in the record numbered by
+	 * the level. The next level's board is restored from it before each
+	 * placement.
+	 */
+	private final BoardArena snapshots;
+
+	/**
+	 * The type of the piece placed at each level.
+	 */
+	private final TileType[] types;
+
+	/**
+	 * For the piece at each level and each of its rotations, the lowest
+	 * rotation with the same shape, and the column and row offsets to move a
+	 * position into that rotation. Rotations of symmetric pieces that cover
+	 * the same cells count as the same lock position.
+	 */
+	private final int[][] canonical;
+
+	/**
+	 * The lock positions found at each level.
+	 */
+	private final int[][] locks;
+
+	/**
+	 * The number of lock positions found at each level.
+	 */
+	private final long[] counts;
+
+	/**
+	 * The generation each position was last visited in.
+	 */
+	private final int[] visited;
+
+	/**
+	 * The generation each canonical lock position was last found in.
+	 */
+	private final int[] found;
+
+	/**
+	 * The positions waiting to be searched.
+	 */
+	private final int[] queue;
+
+	/**
+	 * The current generation, which is bumped instead of clearing the visited
+	 * and found marks before each search.
+	 */
+	private int generation;
+
+	/**
+	 * The boards already searched, keyed by their hash and level, with the
+	 * index in {@code results} of the counts found below them. Different
+	 * orders of placements often lead to the same board, and its subtree
+	 * only needs to be searched once.
+	 */
+	private final LongIntMap transpositions = new LongIntMap(1 << 10);
+
+	/**
+	 * The counts below each board in the transposition table: for a board at
+	 * level {@code n}, the lock positions found at level {@code n} and at
+	 * every level below it.
+	 */
+	private long[] results = new long[1 << 10];
+
+	/**
+	 * The number of counts in {@code results}.
+	 */
+	private int resultCount;
+
+	/**
+	 * The counts at each level when the search of the board at each level
+	 * started, so that what the search found can be worked out afterwards.
+	 */
+	private final long[][] before;
+
+	/**
+	 * The width of the position space, including the margins.
+	 */
+	private final int width;
+
+	/**
+	 * The height of the position space, including the margins.
+	 */
+	private final int height;
+
+	/**
+	 * Creates a new Perft.
+	 *
+	 * @param board    The starting board, which is copied.
+	 * @param sequence The pieces to place, which are repeated if the search
+	 *                 is deeper than the sequence is long.
+	 * @param first    The index in the sequence of the first piece.
+	 * @param depth    The number of pieces to place.
+	 */
+	public Perft(Board board, TileType[] sequence, int first, int depth) {
+		this.width = board.getColCount() + MARGIN * 2;
+		this.height = board.getRowCount() + MARGIN * 2;
+		int positions = width * height * TileType.ROTATION_COUNT;
+
+		this.boards = new Board[depth + 1];
+		this.snapshots = new BoardArena(board.getColCount(), board.getRowCount(), depth + 1);
+		this.types = new TileType[depth];
+		this.canonical = new int[depth][];
+		this.locks = new int[depth][];
+		this.counts = new long[depth];
+		this.before = new long[depth][depth];
+		for (int level = 0; level <= depth; level++) {
+			boards[level] = new Board(board.getColCount(), board.getRowCount(), board.getPieceSet());
+		}
+		for (int level = 0; level < depth; level++) {
+			types[level] = sequence[(first + level) % sequence.length];
+			canonical[level] = getCanonical(types[level]);
+			locks[level] = new int[positions];
+		}
+		for (int level = 0; level <= depth; level++) {
+			snapshots.store(boards[level]);
+		}
+		snapshots.store(0, board);
+		snapshots.load(0, boards[0]);
+
+		this.visited = new int[positions];
+		this.found = new int[positions];
+		this.queue = new int[positions];
+	}
+
+	/**
+	 * Counts the leaves of the search: every distinct sequence of lock
+	 * positions for the pieces.
+	 *
+	 * @return The number of leaves.
+	 */
+	public long count() {
+		return count(0);
+	}
+
+	/**
+	 * Gets the number of lock positions found at each level of the search,
+	 * which for level {@code n} is the count for a search {@code n + 1}
+	 * pieces deep.
+	 *
+	 * @return The counts, which are updated by later searches.
+	 */
+	public long[] getCounts() {
+		return counts;
+	}
+
+	/**
+	 * Counts the leaves below a level. A board that has been searched before
+	 * at the same level has its counts taken from the transposition table.
+	 *
+	 * @param level The level.
+	 * @return The number of leaves.
+	 */
+	private long count(int level) {
+		if (level == types.length) {
+			return 1;
+		}
+		long key = boards[level].getHash() * 31 + level;
+		int stored = transpositions.get(key, -1);
+		if (stored >= 0) {
+			for (int l = level; l < types.length; l++) {
+				counts[l] += results[stored + l - level];
+			}
+			return results[stored + types.length - 1 - level];
+		}
+		System.arraycopy(counts, level, before[level], level, types.length - level);
+
+		int lockCount = findLocks(level);
+		counts[level] += lockCount;
+		long total = lockCount;
+		if (level < types.length - 1) {
+			snapshots.store(level, boards[level]);
+			total = 0;
+			for (int i = 0; i < lockCount; i++) {
+				place(level, locks[level][i]);
+				total += count(level + 1);
+			}
+		}
+		remember(level, key);
+		return total;
+	}
+
+	/**
+	 * Adds the counts found below the board at a level to the transposition
+	 * table. If the table is full it's cleared first, which takes constant
+	 * time.
+	 *
+	 * @param level The level.
+	 * @param key   The key of the board.
+	 */
+	private void remember(int level, long key) {
+		int length = types.length - level;
+		if (resultCount + length > MAX_RESULTS) {
+			transpositions.clear();
+			resultCount = 0;
+		}
+		if (resultCount + length > results.length) {
+			results = Arrays.copyOf(results, Math.min(MAX_RESULTS, results.length * 2));
+		}
+		for (int l = level; l < types.length; l++) {
+			results[resultCount + l - level] = counts[l] - before[level][l];
+		}
+		transpositions.put(key, resultCount);
+		resultCount += length;
+	}
+
+	/**
+	 * Sets up the next level's board with a piece locked at a position.
+	 *
+	 * @param level    The level of the piece.
+	 * @param position The lock position.
+	 */
+	private void place(int level, int position) {
+		Board board = boards[level + 1];
+		snapshots.load(level, board);
+		board.addPiece(types[level], getCol(position), getRow(position), getRotation(position));
+		board.checkLines();
+	}
+
+	/**
+	 * Finds every distinct position the piece at a level can lock in, by
+	 * searching every position reachable from its spawn with the moves the
+	 * engine allows: left, right, down, and rotating either way with wall
+	 * kicks. A position locks if the piece can't move down from it.
+	 *
+	 * @param level The level.
+	 * @return The number of lock positions, which are stored in
+	 *         {@code locks[level]}.
+	 */
+	private int findLocks(int level) {
+		Board board = boards[level];
+		TileType type = types[level];
+		int col = GameEngine.getSpawnCol(board, type);
+		int row = type.getSpawnRow();
+		if (!board.isValidAndEmpty(type, col, row, 0)) {
+			return 0;
+		}
+
+		generation++;
+		int head = 0;
+		int tail = 0;
+		int start = encode(col, row, 0);
+		visited[start] = generation;
+		queue[tail++] = start;
+
+		int lockCount = 0;
+		int[] shapes = canonical[level];
+		while (head < tail) {
+			int position = queue[head++];
+			col = getCol(position);
+			row = getRow(position);
+			int rotation = getRotation(position);
+
+			if (board.isValidAndEmpty(type, col, row + 1, rotation)) {
+				tail = visit(encode(col, row + 1, rotation), tail);
+			} else {
+				int shape = rotation * 3;
+				int key = encode(col + shapes[shape + 1], row + shapes[shape + 2], shapes[shape]);
+				if (found[key] != generation) {
+					found[key] = generation;
+					locks[level][lockCount++] = position;
+				}
+			}
+
+			if (board.isValidAndEmpty(type, col - 1, row, rotation)) {
+				tail = visit(encode(col - 1, row, rotation), tail);
+			}
+			if (board.isValidAndEmpty(type, col + 1, row, rotation)) {
+				tail = visit(encode(col + 1, row, rotation), tail);
+			}
+			for (int turn = 1; turn < TileType.ROTATION_COUNT; turn += 2) {
+				int newRotation = (rotation + turn) % TileType.ROTATION_COUNT;
+				int kick = GameEngine.findKick(board, type, col, row, rotation, newRotation);
+				if (kick >= 0) {
+					tail = visit(encode(col + type.getKickX(rotation, newRotation, kick),
+							row + type.getKickY(rotation, newRotation, kick), newRotation), tail);
+				}
+			}
+		}
+		return lockCount;
+	}
+
+	/**
+	 * Queues a position, unless it has been visited already.
+	 *
+	 * @param position The position.
+	 * @param tail     The end of the queue.
+	 * @return The new end of the queue.
+	 */
+	private int visit(int position, int tail) {
+		if (visited[position] != generation) {
+			visited[position] = generation;
+			queue[tail++] = position;
+		}
+		return tail;
+	}
+
+	/**
+	 * Packs a piece position into an index.
+	 *
+	 * @param col      The column.
+	 * @param row      The row.
+	 * @param rotation The rotation.
+	 * @return The index.
+	 */
+	private int encode(int col, int row, int rotation) {
+		return (rotation * height + row + MARGIN) * width + col + MARGIN;
+	}
+
+	/**
+	 * Gets the column of a packed position.
+	 *
+	 * @param position The position.
+	 * @return The column.
+	 */
+	private int getCol(int position) {
+		return position % width - MARGIN;
+	}
+
+	/**
+	 * Gets the row of a packed position.
+	 *
+	 * @param position The position.
+	 * @return The row.
+	 */
+	private int getRow(int position) {
+		return (position / width) % height - MARGIN;
+	}
+
+	/**
+	 * Gets the rotation of a packed position.
+	 *
+	 * @param position The position.
+	 * @return The rotation.
+	 */
+	private int getRotation(int position) {
+		return position / (width * height);
+	}
+
+	/**
+	 * Works out, for each rotation of a type, the lowest rotation that covers
+	 * the same shape, and how far a position must move to cover the same
+	 * cells in it.
+	 *
+	 * @param type The type.
+	 * @return The rotation and the column and row offsets, three to a
+	 *         rotation.
+	 */
+	private static int[] getCanonical(TileType type) {
+		int[] result = new int[TileType.ROTATION_COUNT * 3];
+		for (int rotation = 0; rotation < TileType.ROTATION_COUNT; rotation++) {
+			int other = type.getShapeRotation(rotation);
+			result[rotation * 3] = other;
+			result[rotation * 3 + 1] = type.getLeftInset(rotation) - type.getLeftInset(other);
+			result[rotation * 3 + 2] = type.getTopInset(rotation) - type.getTopInset(other);
+		}
+		return result;
+	}
+
+	/**
+	 * Counts the distinct lock positions reachable by placing a sequence of
+	 * pieces, as chess engines count moves, to check that changes to the
+	 * engine haven't changed its rules and to measure how fast it searches.
+	 * The subtree below each placement of the first piece is counted on its
+	 * own thread. The count at every depth up to the one given is printed.
+	 * Boards reached by more than one order of placements are only searched
+	 * once, with their counts kept in a transposition table.
+	 *
+	 * Pieces are given by name, or by the last letter of their names, so
+	 * "TIO" places a T, then an I, then an O. The sequence repeats if it's
+	 * shorter than the depth. The board file, if any, holds rows of '#' and
+	 * '.', which fill the bottom of the board.
+	 *
+	 * Usage: {@code Perft <depth> <pieces> [threads] [board file] [piece file]}
+	 *
+	 * @param args The command line arguments.
+	 * @throws Exception If a file couldn't be read.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.out.println("Usage: Perft <depth> <pieces> [threads] [board file] [piece file]");
+			System.exit(2);
+		}
+		final int depth = Integer.parseInt(args[0]);
+		int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		PieceSet pieces = (args.length > 4) ? PieceSet.load(new File(args[4])) : PieceSet.STANDARD;
+		final TileType[] sequence = parseSequence(args[1], pieces);
+		final Board board = new Board(BoardPanel.COL_COUNT, BoardPanel.ROW_COUNT, pieces);
+		if (args.length > 3) {
+			loadBoard(new File(args[3]), board);
+		}
+
+		long start = System.nanoTime();
+		Perft root = new Perft(board, sequence, 0, 1);
+		long[] counts = new long[depth];
+		counts[0] = root.count();
+		if (depth > 1) {
+			/*
+			 * Each placement of the first piece gets its own search, which starts
+			 * from the board with that piece locked.
+			 */
+			ExecutorService pool = Executors.newFixedThreadPool(threads);
+			List<Future<long[]>> subtrees = new ArrayList<Future<long[]>>();
+			for (int i = 0; i < counts[0]; i++) {
+				root.place(0, root.locks[0][i]);
+				final Board after = new Board(board.getColCount(), board.getRowCount(), pieces);
+				byte[] afterCells = new byte[board.getSnapshotSize()];
+				root.boards[1].writeTo(afterCells, 0);
+				after.readFrom(afterCells, 0);
+				subtrees.add(pool.submit(new Callable<long[]>() {
+
+					@Override
+					public long[] call() {
+						Perft perft = new Perft(after, sequence, 1, depth - 1);
+						perft.count();
+						return perft.getCounts();
+					}
+
+				}));
+			}
+			try {
+				for (Future<long[]> subtree : subtrees) {
+					long[] subtreeCounts = subtree.get();
+					for (int level = 0; level < subtreeCounts.length; level++) {
+						counts[level + 1] += subtreeCounts[level];
+					}
+				}
+			} catch (ExecutionException e) {
+				throw new IOException("A subtree failed", e.getCause());
+			} finally {
+				pool.shutdown();
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		long nodes = 0;
+		for (int level = 0; level < depth; level++) {
+			nodes += counts[level];
+			System.out.printf("perft(%d) = %d%n", level + 1, counts[level]);
+		}
+		System.out.printf("%d nodes on %d threads in %.3fs (%.0f nodes/s)%n", nodes, threads, seconds,
+				nodes / seconds);
+	}
+
+	/**
+	 * Parses a sequence of pieces.
+	 *
+	 * @param names  The pieces, as described in {@code main}.
+	 * @param pieces The piece set.
+	 * @return The types.
+	 */
+	private static TileType[] parseSequence(String names, PieceSet pieces) {
+		String[] parts = names.contains(",") ? names.split(",") : names.split("");
+		TileType[] sequence = new TileType[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			for (int j = 0; j < pieces.size() && sequence[i] == null; j++) {
+				String name = pieces.get(j).getName();
+				if (name.equals(parts[i]) || name.endsWith(parts[i])) {
+					sequence[i] = pieces.get(j);
+				}
+			}
+			if (sequence[i] == null) {
+				throw new IllegalArgumentException("No piece named " + parts[i] + " in " + pieces);
+			}
+		}
+		return sequence;
+	}
+
+	/**
+	 * Fills the bottom of a board from a file of '#' and '.' rows.
+	 *
+	 * @param file  The file.
+	 * @param board The board.
+	 * @throws IOException If the file couldn't be read or is too large for
+	 *                     the board.
+	 */
+	private static void loadBoard(File file, Board board) throws IOException {
+		List<String> rows = new ArrayList<String>();
+		try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (!line.trim().isEmpty()) {
+					rows.add(line.trim());
+				}
+			}
+		}
+		if (rows.size() > board.getRowCount()) {
+			throw new IOException(file + " has more rows than the board");
+		}
+
+		int top = board.getRowCount() - rows.size();
+		for (int y = 0; y < rows.size(); y++) {
+			String row = rows.get(y);
+			for (int x = 0; x < Math.min(row.length(), board.getColCount()); x++) {
+				if (row.charAt(x) == '#') {
+					board.setTile(x, top + y, board.getPieceSet().get(0));
+				}
+			}
+		}
+	}
+
+}
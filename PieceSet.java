@@ -0,0 +1,241 @@
+import java.awt.Color;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class PieceSet {
+
+	/**
+	 * The most types a set can hold. Board cells store a type's index plus one
+	 * in a byte, and {@code Board.GARBAGE} is reserved.
+	 */
+	public static final int MAX_TYPES = Board.GARBAGE - 1;
+
+	/**
+	 * The seven standard tetrominoes.
+	 */
+	public static final PieceSet STANDARD = new PieceSet("standard", new TileType[] { TileType.TypeI,
+			TileType.TypeJ, TileType.TypeL, TileType.TypeO, TileType.TypeS, TileType.TypeT, TileType.TypeZ });
+
+	/**
+	 * The name of the set.
+	 */
+	private final String name;
+
+	/**
+	 * The types in the set, indexed by {@code TileType.getIndex()}.
+	 */
+	private final TileType[] types;
+
+	/**
+	 * Creates a new PieceSet.
+	 *
+	 * @param name  The name of the set.
+	 * @param types The types, each of which must have its position in the
+	 *              array as its index.
+	 */
+	public PieceSet(String name, TileType[] types) {
+		if (types.length == 0 || types.length > MAX_TYPES) {
+			throw new IllegalArgumentException("A piece set must have between 1 and " + MAX_TYPES + " types");
+		}
+		for (int i = 0; i < types.length; i++) {
+			if (types[i].getIndex() != i) {
+				throw new IllegalArgumentException(types[i] + " has index " + types[i].getIndex() + ", not " + i);
+			}
+		}
+		this.name = name;
+		this.types = types.clone();
+	}
+
+	/**
+	 * Gets the name of the set.
+	 *
+	 * @return The name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the number of types in the set.
+	 *
+	 * @return The number of types.
+	 */
+	public int size() {
+		return types.length;
+	}
+
+	/**
+	 * Gets a type by its index.
+	 *
+	 * @param index The index.
+	 * @return The type.
+	 */
+	public TileType get(int index) {
+		return types[index];
+	}
+
+	/**
+	 * Loads a piece set from a definition file. Each piece starts with a line
+	 * naming it and giving its color in hex, followed by the rows of its spawn
+	 * rotation using '#' for a tile and '.' for a gap. The rows must form a
+	 * square, which the piece rotates about the center of. The piece line may
+	 * also name the wall kicks to use ("srs", "srs-i" or "none"), which are
+	 * otherwise picked by {@code WallKicks.forDimension}. Blank lines and
+	 * lines starting with '//' are ignored. For example:
+	 *
+	 * <pre>
+	 * piece T 802380 srs
+	 * .#.
+	 * ###
+	 * ...
+	 * </pre>
+	 *
+	 * @param file The file.
+	 * @return The piece set, named after the file.
+	 * @throws IOException If the file couldn't be read or isn't a valid
+	 *                     definition.
+	 */
+	public static PieceSet load(File file) throws IOException {
+		List<TileType> types = new ArrayList<TileType>();
+		try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+			String name = null;
+			Color color = null;
+			int[][] kicks = null;
+			List<String> shape = new ArrayList<String>();
+			int lineNumber = 0;
+			int start = 0;
+			String line;
+			while (true) {
+				line = in.readLine();
+				lineNumber++;
+				String trimmed = (line == null) ? "" : line.trim();
+				if (trimmed.startsWith("//")) {
+					continue;
+				}
+
+				/*
+				 * A new piece, a blank line or the end of the file completes the
+				 * piece being read.
+				 */
+				if (line == null || trimmed.isEmpty() || trimmed.startsWith("piece ")) {
+					if (name != null) {
+						types.add(compile(file, start, name, types.size(), color, kicks, shape));
+						name = null;
+						shape.clear();
+					}
+					if (line == null) {
+						break;
+					}
+					if (trimmed.isEmpty()) {
+						continue;
+					}
+
+					String[] parts = trimmed.split("\\s+");
+					if (parts.length != 3 && parts.length != 4) {
+						throw new IOException(file + ":" + lineNumber + ": expected 'piece <name> <color> [kicks]'");
+					}
+					name = parts[1];
+					color = parseColor(file, lineNumber, parts[2]);
+					kicks = null;
+					if (parts.length == 4) {
+						kicks = WallKicks.forName(parts[3]);
+						if (kicks == null) {
+							throw new IOException(file + ":" + lineNumber + ": unknown kicks '" + parts[3] + "'");
+						}
+					}
+					start = lineNumber;
+				} else if (name == null) {
+					throw new IOException(file + ":" + lineNumber + ": expected 'piece <name> <color> [kicks]'");
+				} else {
+					shape.add(trimmed);
+				}
+			}
+		}
+
+		if (types.isEmpty()) {
+			throw new IOException(file + ": no pieces defined");
+		}
+		String name = file.getName();
+		int dot = name.lastIndexOf('.');
+		return new PieceSet((dot > 0) ? name.substring(0, dot) : name, types.toArray(new TileType[types.size()]));
+	}
+
+	/**
+	 * Compiles one piece of a definition file.
+	 *
+	 * @param file  The file, for error messages.
+	 * @param line  The line the piece starts on, for error messages.
+	 * @param name  The name of the piece.
+	 * @param index The index of the piece.
+	 * @param color The base color of the piece.
+	 * @param kicks The wall kicks of the piece, or null to pick them by its
+	 *              size.
+	 * @param shape The rows of the piece.
+	 * @return The type.
+	 * @throws IOException If the piece isn't valid.
+	 */
+	private static TileType compile(File file, int line, String name, int index, Color color, int[][] kicks,
+			List<String> shape) throws IOException {
+		if (index >= MAX_TYPES) {
+			throw new IOException(file + ":" + line + ": a piece set can have at most " + MAX_TYPES + " pieces");
+		}
+		for (String row : shape) {
+			for (int i = 0; i < row.length(); i++) {
+				if (row.charAt(i) != '#' && row.charAt(i) != '.') {
+					throw new IOException(file + ":" + line + ": " + name + " may only contain '#' and '.'");
+				}
+			}
+		}
+
+		try {
+			String[] rows = shape.toArray(new String[shape.size()]);
+			if (kicks == null) {
+				kicks = WallKicks.forDimension(rows.length);
+			}
+			return new TileType(name, index, color, rows, kicks);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(file + ":" + line + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Parses a hex color, bringing each component into the range the tile
+	 * shading needs.
+	 *
+	 * @param file  The file, for error messages.
+	 * @param line  The line of the color, for error messages.
+	 * @param value The hex color.
+	 * @return The color.
+	 * @throws IOException If the color isn't valid hex.
+	 */
+	private static Color parseColor(File file, int line, String value) throws IOException {
+		int rgb;
+		try {
+			rgb = Integer.parseInt(value.startsWith("#") ? value.substring(1) : value, 16);
+		} catch (NumberFormatException e) {
+			throw new IOException(file + ":" + line + ": '" + value + "' is not a hex color");
+		}
+		return new Color(clamp((rgb >> 16) & 0xFF), clamp((rgb >> 8) & 0xFF), clamp(rgb & 0xFF));
+	}
+
+	/**
+	 * Clamps a color component between {@code BoardPanel.COLOR_MIN} and
+	 * {@code BoardPanel.COLOR_MAX}.
+	 *
+	 * @param component The component.
+	 * @return The clamped component.
+	 */
+	private static int clamp(int component) {
+		return Math.max(BoardPanel.COLOR_MIN, Math.min(BoardPanel.COLOR_MAX, component));
+	}
+
+	@Override
+	public String toString() {
+		return name + " (" + types.length + " pieces)";
+	}
+
+}
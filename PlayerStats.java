@@ -0,0 +1,278 @@
+import java.util.Arrays;
+
+public class PlayerStats implements EventBus.Handler {
+
+	/**
+	 * The number of kinds of line clear counted, from singles up to clears of
+	 * four or more lines.
+	 */
+	public static final int CLEAR_KINDS = 4;
+
+	/**
+	 * The number of nanoseconds in a millisecond.
+	 */
+	private static final long NANOS_PER_MILLI = 1000000L;
+
+	/**
+	 * The piece set the locked pieces come from.
+	 */
+	private final PieceSet pieceSet;
+
+	/**
+	 * The board the game is played on, which pieces spawn in the middle of.
+	 */
+	private final Board board;
+
+	/**
+	 * The number of pieces locked.
+	 */
+	private int pieces;
+
+	/**
+	 * The number of inputs, counting moves, rotations and drops.
+	 */
+	private int inputs;
+
+	/**
+	 * The number of moves and rotations made since the last piece locked.
+	 */
+	private int pieceInputs;
+
+	/**
+	 * The number of pieces that took more moves and rotations than they
+	 * needed to.
+	 */
+	private int finesseFaults;
+
+	/**
+	 * The number of pieces that cleared each number of lines, starting with
+	 * singles.
+	 */
+	private final int[] clears = new int[CLEAR_KINDS];
+
+	/**
+	 * The number of pieces in a row that have cleared lines.
+	 */
+	private int streak;
+
+	/**
+	 * Whether or not the last piece to lock cleared lines.
+	 */
+	private boolean lastCleared;
+
+	/**
+	 * The longest combo, which is the number of pieces in a row that cleared
+	 * lines, less the first.
+	 */
+	private int maxCombo;
+
+	/**
+	 * The time spent actually playing, in nanoseconds.
+	 */
+	private long playTime;
+
+	/**
+	 * Creates a new PlayerStats.
+	 *
+	 * @param board The board the game is played on. Only its size and piece
+	 *              set are used, so it may be a copy.
+	 */
+	public PlayerStats(Board board) {
+		this.board = board;
+		this.pieceSet = board.getPieceSet();
+	}
+
+	/**
+	 * Counts an event. Every event takes a fixed amount of work, so nothing
+	 * needs to be worked out again when the stats are shown.
+	 */
+	@Override
+	public void onEvent(int type, long time, long first, long second) {
+		switch (type) {
+			case EventBus.INPUT:
+				inputs++;
+				if (first != VersusProtocol.INPUT_DROP) {
+					pieceInputs++;
+				}
+				break;
+
+			case EventBus.PIECE_LOCKED:
+				pieces++;
+				if (pieceInputs > getFinesseInputs(pieceSet.get((int) first), (int) second)) {
+					finesseFaults++;
+				}
+				pieceInputs = 0;
+				if (!lastCleared) {
+					streak = 0;
+				}
+				lastCleared = false;
+				break;
+
+			case EventBus.LINES_CLEARED:
+				clears[Math.min((int) first, CLEAR_KINDS) - 1]++;
+				lastCleared = true;
+				streak++;
+				maxCombo = Math.max(maxCombo, streak - 1);
+				break;
+		}
+	}
+
+	/**
+	 * Works out the fewest moves and rotations that bring a piece from where
+	 * it spawns to where it locked, on an open board. Any rotation that covers
+	 * the same cells counts, so symmetric pieces are never faulted for taking
+	 * the shorter way round.
+	 *
+	 * @param type      The type of the piece.
+	 * @param placement Where it locked, as its column shifted up two bits
+	 *                  plus its rotation.
+	 * @return The number of inputs.
+	 */
+	private int getFinesseInputs(TileType type, int placement) {
+		int col = HeuristicBot.getColumn(placement);
+		int rotation = HeuristicBot.getRotation(placement);
+		int spawnCol = GameEngine.getSpawnCol(board, type);
+		int shape = type.getShapeRotation(rotation);
+		int best = Integer.MAX_VALUE;
+		for (int r = 0; r < TileType.ROTATION_COUNT; r++) {
+			if (type.getShapeRotation(r) != shape) {
+				continue;
+			}
+
+			/*
+			 * The piece rotates in place at the spawn, then moves over to the
+			 * column that lines its tiles up with where it locked.
+			 */
+			int turns = Math.min(r, TileType.ROTATION_COUNT - r);
+			int target = col + type.getLeftInset(rotation) - type.getLeftInset(r);
+			best = Math.min(best, turns + Math.abs(target - spawnCol));
+		}
+		return best;
+	}
+
+	/**
+	 * Clears every stat for a new game.
+	 */
+	public void reset() {
+		this.pieces = 0;
+		this.inputs = 0;
+		this.pieceInputs = 0;
+		this.finesseFaults = 0;
+		this.streak = 0;
+		this.lastCleared = false;
+		this.maxCombo = 0;
+		this.playTime = 0L;
+		Arrays.fill(clears, 0);
+	}
+
+	/**
+	 * Copies the stats of another player, as a snapshot for the renderer.
+	 *
+	 * @param source The stats to copy.
+	 */
+	public void copyFrom(PlayerStats source) {
+		this.pieces = source.pieces;
+		this.inputs = source.inputs;
+		this.pieceInputs = source.pieceInputs;
+		this.finesseFaults = source.finesseFaults;
+		this.streak = source.streak;
+		this.lastCleared = source.lastCleared;
+		this.maxCombo = source.maxCombo;
+		this.playTime = source.playTime;
+		System.arraycopy(source.clears, 0, clears, 0, CLEAR_KINDS);
+	}
+
+	/**
+	 * Sets the time spent actually playing, which the rates are worked out
+	 * over.
+	 *
+	 * @param playTime The time in nanoseconds.
+	 */
+	public void setPlayTime(long playTime) {
+		this.playTime = playTime;
+	}
+
+	/**
+	 * Gets the number of pieces locked.
+	 *
+	 * @return The number of pieces.
+	 */
+	public int getPieces() {
+		return pieces;
+	}
+
+	/**
+	 * Gets the number of moves, rotations and drops.
+	 *
+	 * @return The number of inputs.
+	 */
+	public int getInputs() {
+		return inputs;
+	}
+
+	/**
+	 * Gets the number of pieces locked per second of play.
+	 *
+	 * @return The rate, or 0 before any time has passed.
+	 */
+	public double getPiecesPerSecond() {
+		return (playTime > 0) ? pieces * 1e9 / playTime : 0.0;
+	}
+
+	/**
+	 * Gets the number of inputs per minute of play.
+	 *
+	 * @return The rate, or 0 before any time has passed.
+	 */
+	public double getActionsPerMinute() {
+		return (playTime > 0) ? inputs * 60e9 / playTime : 0.0;
+	}
+
+	/**
+	 * Gets the average time each piece took.
+	 *
+	 * @return The time in milliseconds, or 0 before any piece has locked.
+	 */
+	public long getPieceTime() {
+		return (pieces > 0) ? playTime / pieces / NANOS_PER_MILLI : 0L;
+	}
+
+	/**
+	 * Gets the number of pieces that took more moves and rotations than they
+	 * needed to.
+	 *
+	 * @return The number of pieces.
+	 */
+	public int getFinesseFaults() {
+		return finesseFaults;
+	}
+
+	/**
+	 * Gets the number of pieces that cleared a number of lines.
+	 *
+	 * @param lines The number of lines, from 1 to {@code CLEAR_KINDS}. Clears
+	 *              of more lines are counted with the largest.
+	 * @return The number of pieces.
+	 */
+	public int getClears(int lines) {
+		return clears[lines - 1];
+	}
+
+	/**
+	 * Gets the longest combo, which is the number of pieces in a row that
+	 * cleared lines, less the first.
+	 *
+	 * @return The combo.
+	 */
+	public int getMaxCombo() {
+		return maxCombo;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("pieces=%d pps=%.2f apm=%.1f pieceTime=%dms finesse=%d maxCombo=%d clears=%d/%d/%d/%d",
+				pieces, getPiecesPerSecond(), getActionsPerMinute(), getPieceTime(), finesseFaults, maxCombo,
+				clears[0], clears[1], clears[2], clears[3]);
+	}
+
+}
@@ -0,0 +1,193 @@
+import java.nio.ByteBuffer;
+
+public class RenderSnapshot implements GameView {
+
+	/**
+	 * A copy of the board.
+	 */
+	private Board board;
+
+	/**
+	 * The board as a record, which is copied through so that only the rows of
+	 * the stack are copied.
+	 */
+	private ByteBuffer record;
+
+	/**
+	 * Whether or not the game was paused.
+	 */
+	private boolean isPaused;
+
+	/**
+	 * Whether or not the game was waiting to start.
+	 */
+	private boolean isNewGame;
+
+	/**
+	 * Whether or not the game was over.
+	 */
+	private boolean isGameOver;
+
+	/**
+	 * The score.
+	 */
+	private int score;
+
+	/**
+	 * The best recorded score.
+	 */
+	private int bestScore;
+
+	/**
+	 * The level.
+	 */
+	private int level;
+
+	/**
+	 * The type of the current piece.
+	 */
+	private TileType pieceType;
+
+	/**
+	 * The type of the next piece.
+	 */
+	private TileType nextPieceType;
+
+	/**
+	 * The column of the current piece.
+	 */
+	private int pieceCol;
+
+	/**
+	 * The row of the current piece.
+	 */
+	private int pieceRow;
+
+	/**
+	 * The lowest row the current piece could fall to.
+	 */
+	private int landingRow;
+
+	/**
+	 * The rotation of the current piece.
+	 */
+	private int pieceRotation;
+
+	/**
+	 * A copy of the stats of the player, or null if they aren't kept.
+	 */
+	private PlayerStats stats;
+
+	/**
+	 * Copies the state of a game. This is done by the thread that runs the
+	 * game, into a snapshot the renderer isn't holding, so the renderer never
+	 * sees a snapshot change.
+	 *
+	 * @param source The game.
+	 */
+	public void copyFrom(GameView source) {
+		Board sourceBoard = source.getBoard();
+		if (board == null || board.getColCount() != sourceBoard.getColCount()
+				|| board.getRowCount() != sourceBoard.getRowCount()
+				|| board.getPieceSet() != sourceBoard.getPieceSet()) {
+			board = new Board(sourceBoard.getColCount(), sourceBoard.getRowCount(), sourceBoard.getPieceSet());
+			record = ByteBuffer.allocate(board.getRecordSize());
+		}
+		sourceBoard.writeTo(record, 0);
+		board.readFrom(record, 0);
+
+		this.isPaused = source.isPaused();
+		this.isNewGame = source.isNewGame();
+		this.isGameOver = source.isGameOver();
+		this.score = source.getScore();
+		this.bestScore = source.getBestScore();
+		this.level = source.getLevel();
+		this.pieceType = source.getPieceType();
+		this.nextPieceType = source.getNextPieceType();
+		this.pieceCol = source.getPieceCol();
+		this.pieceRow = source.getPieceRow();
+		this.landingRow = source.getLandingRow();
+		this.pieceRotation = source.getPieceRotation();
+
+		PlayerStats sourceStats = source.getStats();
+		if (sourceStats == null) {
+			stats = null;
+		} else {
+			if (stats == null) {
+				stats = new PlayerStats(board);
+			}
+			stats.copyFrom(sourceStats);
+		}
+	}
+
+	@Override
+	public boolean isPaused() {
+		return isPaused;
+	}
+
+	@Override
+	public boolean isNewGame() {
+		return isNewGame;
+	}
+
+	@Override
+	public boolean isGameOver() {
+		return isGameOver;
+	}
+
+	@Override
+	public int getScore() {
+		return score;
+	}
+
+	@Override
+	public int getBestScore() {
+		return bestScore;
+	}
+
+	@Override
+	public int getLevel() {
+		return level;
+	}
+
+	@Override
+	public Board getBoard() {
+		return board;
+	}
+
+	@Override
+	public TileType getPieceType() {
+		return pieceType;
+	}
+
+	@Override
+	public TileType getNextPieceType() {
+		return nextPieceType;
+	}
+
+	@Override
+	public int getPieceCol() {
+		return pieceCol;
+	}
+
+	@Override
+	public int getPieceRow() {
+		return pieceRow;
+	}
+
+	@Override
+	public int getLandingRow() {
+		return landingRow;
+	}
+
+	@Override
+	public int getPieceRotation() {
+		return pieceRotation;
+	}
+
+	@Override
+	public PlayerStats getStats() {
+		return stats;
+	}
+
+}
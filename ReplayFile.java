@@ -0,0 +1,168 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public final class ReplayFile {
+
+	/**
+	 * The first four bytes of every replay file.
+	 */
+	private static final int MAGIC = 0x54525031;
+
+	private ReplayFile() {
+	}
+
+	/**
+	 * Records a game as a compressed sequence of engine snapshots, one per
+	 * frame. Consecutive snapshots are mostly identical, so they compress
+	 * well.
+	 */
+	public static class Writer implements Closeable {
+
+		/**
+		 * The compressed output.
+		 */
+		private final DataOutputStream out;
+
+		/**
+		 * The buffer each frame is snapshotted into.
+		 */
+		private final byte[] frame;
+
+		/**
+		 * Creates a replay file for games on the engine's board.
+		 *
+		 * @param file   The file.
+		 * @param engine The engine that will be recorded.
+		 * @throws IOException If the file couldn't be created.
+		 */
+		public Writer(File file, GameEngine engine) throws IOException {
+			this.out = new DataOutputStream(
+					new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(file)), 1 << 16));
+			this.frame = new byte[engine.getSnapshotSize()];
+			out.writeInt(MAGIC);
+			out.writeInt(engine.getBoard().getColCount());
+			out.writeInt(engine.getBoard().getRowCount());
+			out.writeInt(frame.length);
+		}
+
+		/**
+		 * Records the current state of the engine as the next frame.
+		 *
+		 * @param engine The engine.
+		 * @throws IOException If the frame couldn't be written.
+		 */
+		public void write(GameEngine engine) throws IOException {
+			engine.snapshot(frame);
+			out.write(frame);
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.close();
+		}
+
+	}
+
+	/**
+	 * Reads the frames of a replay file back.
+	 */
+	public static class Reader implements Closeable {
+
+		/**
+		 * The decompressed input.
+		 */
+		private final DataInputStream in;
+
+		/**
+		 * The number of columns on the recorded board.
+		 */
+		private final int colCount;
+
+		/**
+		 * The number of rows on the recorded board.
+		 */
+		private final int rowCount;
+
+		/**
+		 * The number of bytes in each frame.
+		 */
+		private final int frameSize;
+
+		/**
+		 * Opens a replay file.
+		 *
+		 * @param file The file.
+		 * @throws IOException If the file couldn't be opened or isn't a replay.
+		 */
+		public Reader(File file) throws IOException {
+			this.in = new DataInputStream(
+					new GZIPInputStream(new BufferedInputStream(new FileInputStream(file)), 1 << 16));
+			if (in.readInt() != MAGIC) {
+				in.close();
+				throw new IOException(file + " is not a replay");
+			}
+			this.colCount = in.readInt();
+			this.rowCount = in.readInt();
+			this.frameSize = in.readInt();
+		}
+
+		/**
+		 * Creates an engine that frames of this replay can be restored into.
+		 *
+		 * @param pieces The piece set the replay was recorded with.
+		 * @return The engine.
+		 * @throws IOException If the engine's snapshots don't match the
+		 *                     replay's frames.
+		 */
+		public GameEngine createEngine(PieceSet pieces) throws IOException {
+			GameEngine engine = new GameEngine(new Board(colCount, rowCount, pieces));
+			if (engine.getSnapshotSize() != frameSize) {
+				throw new IOException("Replay frames are " + frameSize + " bytes, not " + engine.getSnapshotSize());
+			}
+			return engine;
+		}
+
+		/**
+		 * Gets the number of bytes in each frame.
+		 *
+		 * @return The frame size.
+		 */
+		public int getFrameSize() {
+			return frameSize;
+		}
+
+		/**
+		 * Reads the next frame.
+		 *
+		 * @param frame The buffer to read into, {@code getFrameSize()} bytes
+		 *              long.
+		 * @return Whether or not there was a frame left to read.
+		 * @throws IOException If the frame couldn't be read.
+		 */
+		public boolean read(byte[] frame) throws IOException {
+			try {
+				in.readFully(frame, 0, frameSize);
+				return true;
+			} catch (EOFException e) {
+				return false;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+
+	}
+
+}
@@ -0,0 +1,415 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+public class SampleWriter {
+
+	/**
+	 * The first four bytes of every shard.
+	 */
+	public static final int MAGIC = 0x54534D31;
+
+	/**
+	 * The number of bytes in a shard's header: the magic, the column and row
+	 * counts, and the record size, as big-endian ints.
+	 */
+	public static final int HEADER_SIZE = 16;
+
+	/**
+	 * The number of bytes after the board in each record: the current and
+	 * next piece indices, the placement's column and rotation, and the reward
+	 * as a big-endian float.
+	 */
+	private static final int TRAILER_SIZE = 8;
+
+	/**
+	 * The number of buffers samples are written into. One is filled while the
+	 * others wait for, or are being written by, the writer thread.
+	 */
+	private static final int BUFFER_COUNT = 4;
+
+	/**
+	 * The approximate size of each buffer, in bytes.
+	 */
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * The directory shards are written to.
+	 */
+	private final File directory;
+
+	/**
+	 * The name each shard starts with.
+	 */
+	private final String prefix;
+
+	/**
+	 * The number of samples in each shard before a new one is started.
+	 */
+	private final long samplesPerShard;
+
+	/**
+	 * The number of columns on the board.
+	 */
+	private final int colCount;
+
+	/**
+	 * The number of rows on the board.
+	 */
+	private final int rowCount;
+
+	/**
+	 * The number of bytes in each row of the board.
+	 */
+	private final int rowSize;
+
+	/**
+	 * The number of bytes in each sample.
+	 */
+	private final int recordSize;
+
+	/**
+	 * Buffers that are free to fill.
+	 */
+	private final BlockingQueue<Buffer> free = new ArrayBlockingQueue<Buffer>(BUFFER_COUNT);
+
+	/**
+	 * Buffers waiting for the writer thread, followed by an empty buffer once
+	 * the writer is closed.
+	 */
+	private final BlockingQueue<Buffer> full = new ArrayBlockingQueue<Buffer>(BUFFER_COUNT + 1);
+
+	/**
+	 * The thread that writes full buffers to the shards.
+	 */
+	private final Thread writer;
+
+	/**
+	 * The buffer being filled.
+	 */
+	private Buffer current;
+
+	/**
+	 * Whether or not a sample has been captured and is waiting for its reward.
+	 */
+	private boolean isCaptured;
+
+	/**
+	 * The number of samples committed.
+	 */
+	private long samples;
+
+	/**
+	 * The time spent waiting for a free buffer, in nanoseconds. This is only
+	 * above zero if the disk can't keep up.
+	 */
+	private long stallTime;
+
+	/**
+	 * The number of shards written, which is only changed by the writer
+	 * thread.
+	 */
+	private volatile int shards;
+
+	/**
+	 * The error the writer thread failed with, if any.
+	 */
+	private volatile IOException error;
+
+	/**
+	 * Creates a new SampleWriter and starts its writer thread.
+	 *
+	 * @param directory       The directory to write shards to, which is
+	 *                        created if needed.
+	 * @param prefix          The name each shard starts with.
+	 * @param samplesPerShard The number of samples in each shard.
+	 * @param board           A board of the size the samples will come from.
+	 * @throws IOException If the directory couldn't be created.
+	 */
+	public SampleWriter(File directory, String prefix, long samplesPerShard, Board board) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Couldn't create " + directory);
+		}
+		this.directory = directory;
+		this.prefix = prefix;
+		this.samplesPerShard = samplesPerShard;
+		this.colCount = board.getColCount();
+		this.rowCount = board.getRowCount();
+		this.rowSize = board.getRowMaskSize();
+		this.recordSize = rowCount * rowSize + TRAILER_SIZE;
+
+		/*
+		 * Each buffer holds a whole number of records, so that a shard can be
+		 * cut off at any record in a buffer.
+		 */
+		int records = Math.max(1, BUFFER_SIZE / recordSize);
+		for (int i = 0; i < BUFFER_COUNT; i++) {
+			free.add(new Buffer(records * recordSize));
+		}
+		this.current = free.poll();
+
+		this.writer = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				writeShards();
+			}
+
+		}, "Sample writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Gets the number of bytes in each sample.
+	 *
+	 * @return The record size.
+	 */
+	public int getRecordSize() {
+		return recordSize;
+	}
+
+	/**
+	 * Captures the state of a game and the placement of its current piece,
+	 * which should have landed but not yet locked. The sample isn't written
+	 * until {@code commit} gives its reward, and a later capture replaces it.
+	 *
+	 * @param engine The engine.
+	 * @throws IOException If the writer thread has failed.
+	 */
+	public void capture(GameEngine engine) throws IOException {
+		if (error != null) {
+			throw error;
+		}
+
+		Board board = engine.getBoard();
+		byte[] data = current.data;
+		int offset = current.length;
+		for (int row = 0; row < rowCount; row++, offset += rowSize) {
+			board.getRowMask(row, data, offset);
+		}
+		data[offset] = (byte) engine.getPieceType().getIndex();
+		data[offset + 1] = (byte) engine.getNextPieceType().getIndex();
+		data[offset + 2] = (byte) engine.getPieceCol();
+		data[offset + 3] = (byte) engine.getPieceRotation();
+		isCaptured = true;
+	}
+
+	/**
+	 * Gives the captured sample its reward and adds it to the stream. Nothing
+	 * is done if no sample was captured.
+	 *
+	 * @param reward The reward for the placement.
+	 * @throws IOException If the writer thread has failed, or this thread was
+	 *                     interrupted waiting for it.
+	 */
+	public void commit(float reward) throws IOException {
+		if (!isCaptured) {
+			return;
+		}
+		isCaptured = false;
+
+		int offset = current.length + recordSize - 4;
+		int bits = Float.floatToIntBits(reward);
+		current.data[offset] = (byte) (bits >>> 24);
+		current.data[offset + 1] = (byte) (bits >>> 16);
+		current.data[offset + 2] = (byte) (bits >>> 8);
+		current.data[offset + 3] = (byte) bits;
+		current.length += recordSize;
+		samples++;
+
+		if (current.length == current.data.length) {
+			flush();
+		}
+	}
+
+	/**
+	 * Hands the buffer being filled to the writer thread, and waits for a
+	 * free one to take its place.
+	 *
+	 * @throws IOException If this thread was interrupted.
+	 */
+	private void flush() throws IOException {
+		try {
+			full.put(current);
+			long start = System.nanoTime();
+			current = free.take();
+			stallTime += System.nanoTime() - start;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the sample writer");
+		}
+	}
+
+	/**
+	 * Writes any samples that are left, and waits for the writer thread to
+	 * finish.
+	 *
+	 * @throws IOException If a shard couldn't be written.
+	 */
+	public void close() throws IOException {
+		if (current.length > 0) {
+			flush();
+		}
+		try {
+			full.put(new Buffer(0));
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the sample writer");
+		}
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * Gets the number of samples committed.
+	 *
+	 * @return The number of samples.
+	 */
+	public long getSamples() {
+		return samples;
+	}
+
+	/**
+	 * Gets the number of shards started.
+	 *
+	 * @return The number of shards.
+	 */
+	public int getShards() {
+		return shards;
+	}
+
+	/**
+	 * Gets the time the recording thread has spent waiting for the writer
+	 * thread.
+	 *
+	 * @return The time in nanoseconds.
+	 */
+	public long getStallTime() {
+		return stallTime;
+	}
+
+	/**
+	 * Writes full buffers to the shards until an empty one arrives, starting a
+	 * new shard whenever the current one has as many samples as it may hold.
+	 * This runs on the writer thread.
+	 */
+	private void writeShards() {
+		OutputStream out = null;
+		long shardSamples = 0;
+		try {
+			while (true) {
+				Buffer buffer = full.take();
+				if (buffer.data.length == 0) {
+					break;
+				}
+
+				int offset = 0;
+				while (offset < buffer.length) {
+					if (out == null || shardSamples == samplesPerShard) {
+						if (out != null) {
+							out.close();
+						}
+						out = openShard(shards);
+						shards++;
+						shardSamples = 0;
+					}
+					int count = (int) Math.min((buffer.length - offset) / recordSize, samplesPerShard - shardSamples);
+					out.write(buffer.data, offset, count * recordSize);
+					offset += count * recordSize;
+					shardSamples += count;
+				}
+				buffer.length = 0;
+				free.put(buffer);
+			}
+		} catch (IOException e) {
+			this.error = e;
+		} catch (InterruptedException e) {
+			this.error = new InterruptedIOException("Sample writer interrupted");
+		} finally {
+			try {
+				if (out != null) {
+					out.close();
+				}
+			} catch (IOException e) {
+				if (error == null) {
+					this.error = e;
+				}
+			}
+		}
+
+		/*
+		 * If the writer failed, keep handing buffers back unwritten so the
+		 * recording thread doesn't block forever; it finds the error on its next
+		 * capture.
+		 */
+		if (error != null) {
+			try {
+				while (true) {
+					Buffer buffer = full.take();
+					if (buffer.data.length == 0) {
+						break;
+					}
+					buffer.length = 0;
+					free.put(buffer);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Creates a shard and writes its header.
+	 *
+	 * @param index The number of the shard.
+	 * @return The stream to write the shard's samples to.
+	 * @throws IOException If the shard couldn't be created.
+	 */
+	private OutputStream openShard(int index) throws IOException {
+		OutputStream out = new FileOutputStream(new File(directory, String.format("%s-%05d.samples", prefix, index)));
+		byte[] header = new byte[HEADER_SIZE];
+		int[] values = { MAGIC, colCount, rowCount, recordSize };
+		for (int i = 0; i < values.length; i++) {
+			header[i * 4] = (byte) (values[i] >>> 24);
+			header[i * 4 + 1] = (byte) (values[i] >>> 16);
+			header[i * 4 + 2] = (byte) (values[i] >>> 8);
+			header[i * 4 + 3] = (byte) values[i];
+		}
+		out.write(header);
+		return out;
+	}
+
+	/**
+	 * A buffer of whole samples.
+	 */
+	private static class Buffer {
+
+		/**
+		 * The bytes of the samples.
+		 */
+		private final byte[] data;
+
+		/**
+		 * The number of bytes filled.
+		 */
+		private int length;
+
+		/**
+		 * Creates a new Buffer.
+		 *
+		 * @param size The size of the buffer in bytes.
+		 */
+		private Buffer(int size) {
+			this.data = new byte[size];
+		}
+
+	}
+
+}
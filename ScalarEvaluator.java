@@ -0,0 +1,73 @@
+public class ScalarEvaluator implements BatchEvaluator {
+
+	/**
+	 * The name of the class that evaluates with the Vector API. It's compiled
+	 * separately, since it needs the {@code jdk.incubator.vector} module.
+	 */
+	private static final String VECTOR_EVALUATOR = "VectorEvaluator";
+
+	/**
+	 * Creates the fastest evaluator this JVM can run. The vector evaluator is
+	 * used if it was compiled and the {@code jdk.incubator.vector} module was
+	 * added, and this evaluator otherwise.
+	 *
+	 * @return The evaluator.
+	 */
+	public static BatchEvaluator createFastest() {
+		try {
+			return (BatchEvaluator) Class.forName(VECTOR_EVALUATOR).getConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			return new ScalarEvaluator();
+		} catch (LinkageError e) {
+			return new ScalarEvaluator();
+		}
+	}
+
+	@Override
+	public String getName() {
+		return "scalar";
+	}
+
+	/**
+	 * Evaluates each candidate in turn, going down its rows. Full rows are
+	 * counted and skipped, as they'll be cleared. Every other row adds to a
+	 * mask of the columns covered so far, and the features come from that
+	 * mask: each covered column adds one to its height, each covered empty
+	 * cell is a hole, and each pair of neighbouring columns where only one is
+	 * covered adds one to the bumpiness. Since a column stays covered once it
+	 * is, that last count adds up to the difference of their heights.
+	 *
+	 * @param batch The batch.
+	 */
+	@Override
+	public void evaluate(CandidateBatch batch) {
+		int capacity = batch.getCapacity();
+		int rowCount = batch.getRowCount();
+		int full = batch.getFullMask();
+		int pairs = batch.getPairMask();
+		int[] masks = batch.masks;
+		for (int lane = 0; lane < batch.size(); lane++) {
+			int covered = 0;
+			int lines = 0;
+			int holes = 0;
+			int totalHeight = 0;
+			int bumpiness = 0;
+			for (int row = 0, index = lane; row < rowCount; row++, index += capacity) {
+				int mask = masks[index];
+				if (mask == full) {
+					lines++;
+					continue;
+				}
+				covered |= mask;
+				holes += Integer.bitCount(covered & ~mask);
+				totalHeight += Integer.bitCount(covered);
+				bumpiness += Integer.bitCount((covered ^ (covered >>> 1)) & pairs);
+			}
+			batch.lines[lane] = lines;
+			batch.holes[lane] = holes;
+			batch.totalHeight[lane] = totalHeight;
+			batch.bumpiness[lane] = bumpiness;
+		}
+	}
+
+}
@@ -0,0 +1,96 @@
+public final class ScoreRecord {
+
+	/**
+	 * The final score.
+	 */
+	private final int score;
+
+	/**
+	 * The level the game was started on.
+	 */
+	private final int level;
+
+	/**
+	 * The number of lines cleared.
+	 */
+	private final int lines;
+
+	/**
+	 * How long the game was played for, in milliseconds.
+	 */
+	private final long duration;
+
+	/**
+	 * The seed of the piece sequence.
+	 */
+	private final long seed;
+
+	/**
+	 * Creates a new ScoreRecord.
+	 *
+	 * @param score    The final score.
+	 * @param level    The level the game was started on.
+	 * @param lines    The number of lines cleared.
+	 * @param duration How long the game was played for, in milliseconds.
+	 * @param seed     The seed of the piece sequence.
+	 */
+	public ScoreRecord(int score, int level, int lines, long duration, long seed) {
+		this.score = score;
+		this.level = level;
+		this.lines = lines;
+		this.duration = duration;
+		this.seed = seed;
+	}
+
+	/**
+	 * Gets the final score.
+	 *
+	 * @return The score.
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * Gets the level the game was started on.
+	 *
+	 * @return The level.
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * Gets the number of lines cleared.
+	 *
+	 * @return The number of lines.
+	 */
+	public int getLines() {
+		return lines;
+	}
+
+	/**
+	 * Gets how long the game was played for.
+	 *
+	 * @return The duration in milliseconds.
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	/**
+	 * Gets the seed of the piece sequence.
+	 *
+	 * @return The seed.
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	@Override
+	public String toString() {
+		return "score=" + score + " level=" + level + " lines=" + lines + " duration=" + duration + "ms seed="
+				+ seed;
+	}
+
+}
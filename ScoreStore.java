@@ -0,0 +1,422 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+public class ScoreStore implements Closeable {
+
+	/**
+	 * The number of scores kept in each level's index.
+	 */
+	public static final int TOP_K = 1 << 20;
+
+	/**
+	 * The number of bytes in a log record: score, level, lines, padding,
+	 * duration and seed.
+	 */
+	private static final int RECORD_SIZE = 32;
+
+	/**
+	 * The number of bytes in an index entry: score and record number.
+	 */
+	private static final int ENTRY_SIZE = 8;
+
+	/**
+	 * The number of bytes before the first index entry: the entry count,
+	 * padding, and the number of log records the index has seen.
+	 */
+	private static final int INDEX_HEADER = 16;
+
+	/**
+	 * The number of log records read at a time while catching an index up.
+	 */
+	private static final int REPLAY_BATCH = 2048;
+
+	/**
+	 * The size of the buffer used to shift index entries.
+	 */
+	private static final int SHIFT_BUFFER = 64 * 1024;
+
+	/**
+	 * The directory the store lives in.
+	 */
+	private final File directory;
+
+	/**
+	 * The append-only log of every finished game.
+	 */
+	private final FileChannel log;
+
+	/**
+	 * The index of each level, opened on first use.
+	 */
+	private final HashMap<Integer, LevelIndex> indexes = new HashMap<Integer, LevelIndex>();
+
+	/**
+	 * A buffer holding one log record.
+	 */
+	private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+
+	/**
+	 * A buffer used to move index entries.
+	 */
+	private final byte[] shift = new byte[SHIFT_BUFFER];
+
+	/**
+	 * The number of records in the log.
+	 */
+	private long recordCount;
+
+	/**
+	 * Opens a store, creating it if it doesn't exist.
+	 *
+	 * @param directory The directory to keep the store in.
+	 * @throws IOException If the store couldn't be opened.
+	 */
+	public ScoreStore(File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create " + directory);
+		}
+		this.directory = directory;
+		this.log = FileChannel.open(new File(directory, "games.log").toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		/*
+		 * A record that was only partly written when the game last exited is
+		 * dropped.
+		 */
+		this.recordCount = log.size() / RECORD_SIZE;
+		log.truncate(recordCount * RECORD_SIZE);
+	}
+
+	/**
+	 * Appends a finished game to the log and adds it to its level's index.
+	 *
+	 * @param game The game.
+	 * @return The rank of the game on its level (1 being the best), or -1 if
+	 *         it didn't make the top {@code TOP_K}.
+	 * @throws IOException If the game couldn't be stored.
+	 */
+	public synchronized int record(ScoreRecord game) throws IOException {
+		LevelIndex index = getIndex(game.getLevel());
+
+		long id = recordCount;
+		record.clear();
+		record.putInt(game.getScore());
+		record.putInt(game.getLevel());
+		record.putInt(game.getLines());
+		record.putInt(0);
+		record.putLong(game.getDuration());
+		record.putLong(game.getSeed());
+		record.flip();
+		while (record.hasRemaining()) {
+			log.write(record, id * RECORD_SIZE + record.position());
+		}
+		recordCount++;
+
+		int rank = index.insert(game.getScore(), (int) id);
+		index.setSynced(recordCount);
+		return rank;
+	}
+
+	/**
+	 * Gets the rank a score would have on a level.
+	 *
+	 * @param level The level.
+	 * @param score The score.
+	 * @return The rank (1 being the best), or -1 if the score is below the top
+	 *         {@code TOP_K}.
+	 * @throws IOException If the index couldn't be opened.
+	 */
+	public synchronized int getRank(int level, int score) throws IOException {
+		LevelIndex index = getIndex(level);
+		int position = index.search(score);
+		return (position < TOP_K) ? position + 1 : -1;
+	}
+
+	/**
+	 * Gets the best games played on a level, best first. Only the returned
+	 * records are read from the log.
+	 *
+	 * @param level The level.
+	 * @param count The maximum number of games to return.
+	 * @return The games.
+	 * @throws IOException If the store couldn't be read.
+	 */
+	public synchronized List<ScoreRecord> getTop(int level, int count) throws IOException {
+		LevelIndex index = getIndex(level);
+		int n = Math.min(count, index.count);
+		List<ScoreRecord> top = new ArrayList<ScoreRecord>(n);
+		for (int i = 0; i < n; i++) {
+			top.add(read(index.getId(i) & 0xFFFFFFFFL));
+		}
+		return top;
+	}
+
+	/**
+	 * Gets the best score on a level.
+	 *
+	 * @param level The level.
+	 * @return The best score, or 0 if no games have been played on it.
+	 * @throws IOException If the index couldn't be opened.
+	 */
+	public synchronized int getBest(int level) throws IOException {
+		LevelIndex index = getIndex(level);
+		return (index.count == 0) ? 0 : index.getScore(0);
+	}
+
+	/**
+	 * Gets the number of games in the log.
+	 *
+	 * @return The number of games.
+	 */
+	public synchronized long getGameCount() {
+		return recordCount;
+	}
+
+	/**
+	 * Reads a record from the log.
+	 *
+	 * @param id The record number.
+	 * @return The record.
+	 * @throws IOException If the log couldn't be read.
+	 */
+	private ScoreRecord read(long id) throws IOException {
+		record.clear();
+		while (record.hasRemaining()) {
+			if (log.read(record, id * RECORD_SIZE + record.position()) < 0) {
+				throw new IOException("Record " + id + " is past the end of the log");
+			}
+		}
+		record.flip();
+		int score = record.getInt();
+		int level = record.getInt();
+		int lines = record.getInt();
+		record.getInt();
+		return new ScoreRecord(score, level, lines, record.getLong(), record.getLong());
+	}
+
+	/**
+	 * Gets the index of a level, opening it and catching it up with the log if
+	 * necessary.
+	 *
+	 * @param level The level.
+	 * @return The index.
+	 * @throws IOException If the index couldn't be opened.
+	 */
+	private LevelIndex getIndex(int level) throws IOException {
+		LevelIndex index = indexes.get(level);
+		if (index == null) {
+			index = new LevelIndex(new File(directory, "level-" + level + ".idx"));
+			indexes.put(level, index);
+			replay(index, level);
+		}
+		return index;
+	}
+
+	/**
+	 * Adds every log record the index hasn't seen yet. This streams the log in
+	 * batches, so only happens in full for a brand new index.
+	 *
+	 * @param index The index.
+	 * @param level The level of the index.
+	 * @throws IOException If the log couldn't be read.
+	 */
+	private void replay(LevelIndex index, int level) throws IOException {
+		ByteBuffer batch = ByteBuffer.allocate(REPLAY_BATCH * RECORD_SIZE);
+		long id = index.getSynced();
+		while (id < recordCount) {
+			batch.clear();
+			batch.limit((int) Math.min(batch.capacity(), (recordCount - id) * RECORD_SIZE));
+			while (batch.hasRemaining()) {
+				log.read(batch, id * RECORD_SIZE + batch.position());
+			}
+			batch.flip();
+			while (batch.hasRemaining()) {
+				int score = batch.getInt(batch.position());
+				if (batch.getInt(batch.position() + 4) == level) {
+					index.insert(score, (int) id);
+				}
+				batch.position(batch.position() + RECORD_SIZE);
+				id++;
+			}
+		}
+		index.setSynced(recordCount);
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		for (LevelIndex index : indexes.values()) {
+			index.close();
+		}
+		indexes.clear();
+		log.force(true);
+		log.close();
+	}
+
+	/**
+	 * The best scores on one level, kept sorted in a memory-mapped file.
+	 */
+	private class LevelIndex {
+
+		/**
+		 * The channel of the index file.
+		 */
+		private final FileChannel channel;
+
+		/**
+		 * The mapped contents of the index file.
+		 */
+		private final MappedByteBuffer map;
+
+		/**
+		 * The number of entries in the index.
+		 */
+		private int count;
+
+		/**
+		 * Opens an index file, creating it if it doesn't exist.
+		 *
+		 * @param file The file.
+		 * @throws IOException If the file couldn't be opened.
+		 */
+		private LevelIndex(File file) throws IOException {
+			this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			this.map = channel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER + (long) TOP_K * ENTRY_SIZE);
+			this.count = map.getInt(0);
+		}
+
+		/**
+		 * Finds the position a score would be inserted at. Equal scores keep the
+		 * order they were recorded in, so this is after any equal scores.
+		 *
+		 * @param score The score.
+		 * @return The position.
+		 */
+		private int search(int score) {
+			int low = 0;
+			int high = count;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (getScore(middle) >= score) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+
+		/**
+		 * Inserts a score, dropping the lowest score if the index is full.
+		 *
+		 * @param score The score.
+		 * @param id    The record number of the game.
+		 * @return The rank of the score, or -1 if it was too low to be kept.
+		 */
+		private int insert(int score, int id) {
+			int position = search(score);
+			if (position >= TOP_K) {
+				return -1;
+			}
+
+			/*
+			 * Move every lower entry down by one, starting from the end so that
+			 * nothing is overwritten before it's been moved.
+			 */
+			int last = Math.min(count, TOP_K - 1);
+			int end = INDEX_HEADER + last * ENTRY_SIZE;
+			int start = INDEX_HEADER + position * ENTRY_SIZE;
+			while (end > start) {
+				int length = Math.min(shift.length, end - start);
+				map.get(end - length, shift, 0, length);
+				map.put(end - length + ENTRY_SIZE, shift, 0, length);
+				end -= length;
+			}
+
+			map.putInt(start, score);
+			map.putInt(start + 4, id);
+			count = last + 1;
+			map.putInt(0, count);
+			return position + 1;
+		}
+
+		/**
+		 * Gets the score of an entry.
+		 *
+		 * @param position The position of the entry.
+		 * @return The score.
+		 */
+		private int getScore(int position) {
+			return map.getInt(INDEX_HEADER + position * ENTRY_SIZE);
+		}
+
+		/**
+		 * Gets the record number of an entry.
+		 *
+		 * @param position The position of the entry.
+		 * @return The record number.
+		 */
+		private int getId(int position) {
+			return map.getInt(INDEX_HEADER + position * ENTRY_SIZE + 4);
+		}
+
+		/**
+		 * Gets the number of log records this index has seen.
+		 *
+		 * @return The number of records.
+		 */
+		private long getSynced() {
+			return map.getLong(8);
+		}
+
+		/**
+		 * Sets the number of log records this index has seen.
+		 *
+		 * @param synced The number of records.
+		 */
+		private void setSynced(long synced) {
+			map.putLong(8, synced);
+		}
+
+		/**
+		 * Writes the index back to disk and closes it.
+		 *
+		 * @throws IOException If the index couldn't be closed.
+		 */
+		private void close() throws IOException {
+			map.force();
+			channel.close();
+		}
+
+	}
+
+	/**
+	 * Prints the best games on a level.
+	 *
+	 * Usage: {@code ScoreStore [directory] [level] [count]}
+	 *
+	 * @param args The command line arguments.
+	 * @throws IOException If the store couldn't be read.
+	 */
+	public static void main(String[] args) throws IOException {
+		File directory = new File((args.length > 0) ? args[0] : "scores");
+		int level = (args.length > 1) ? Integer.parseInt(args[1]) : 1;
+		int count = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+		try (ScoreStore store = new ScoreStore(directory)) {
+			System.out.println(store.getGameCount() + " games recorded");
+			int rank = 1;
+			for (ScoreRecord game : store.getTop(level, count)) {
+				System.out.println((rank++) + ". " + game);
+			}
+		}
+	}
+
+}
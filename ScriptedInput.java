@@ -0,0 +1,63 @@
+public final class ScriptedInput {
+
+	/**
+	 * Returned for frames that have no input.
+	 */
+	public static final byte NONE = 0;
+
+	/**
+	 * The number of frames the script takes before it repeats.
+	 */
+	private static final int PERIOD = 7;
+
+	private ScriptedInput() {
+	}
+
+	/**
+	 * Gets the input the script plays on a frame. Every period it moves the
+	 * piece left, then right, then rotates it clockwise, which keeps pieces
+	 * moving without a bot while still stacking them up until the game ends.
+	 *
+	 * @param frame The number of the frame.
+	 * @return The input, one of the {@code VersusProtocol.INPUT_*} constants,
+	 *         or {@code NONE}.
+	 */
+	public static byte get(int frame) {
+		switch (frame % PERIOD) {
+			case 0:
+				return VersusProtocol.INPUT_LEFT;
+			case 3:
+				return VersusProtocol.INPUT_RIGHT;
+			case 5:
+				return VersusProtocol.INPUT_ROTATE_CW;
+			default:
+				return NONE;
+		}
+	}
+
+	/**
+	 * Plays the input the script has for a frame on an engine. Nothing is
+	 * allocated, so this can be used to drive loops that are measured.
+	 *
+	 * @param engine The engine.
+	 * @param frame  The number of the frame.
+	 * @return The input played, one of the {@code VersusProtocol.INPUT_*}
+	 *         constants, or {@code NONE}.
+	 */
+	public static byte play(GameEngine engine, int frame) {
+		byte input = get(frame);
+		switch (input) {
+			case VersusProtocol.INPUT_LEFT:
+				engine.moveLeft();
+				break;
+			case VersusProtocol.INPUT_RIGHT:
+				engine.moveRight();
+				break;
+			case VersusProtocol.INPUT_ROTATE_CW:
+				engine.rotatePiece((engine.getPieceRotation() + 1) & 3);
+				break;
+		}
+		return input;
+	}
+
+}
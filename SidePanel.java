@@ -2,6 +2,7 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
+import java.awt.image.BufferedImage;
 
 import javax.swing.JPanel;
 
@@ -50,17 +51,27 @@ public class SidePanel extends JPanel {
 	/**
 	 * The y coordinate of the stats category.
 	 */
-	private static final int STATS_INSET = 175;
+	private static final int STATS_INSET = 160;
 	
 	/**
 	 * The y coordinate of the controls category.
 	 */
-	private static final int CONTROLS_INSET = 300;
+	private static final int CONTROLS_INSET = 345;
 	
 	/**
 	 * The number of pixels to offset between each string.
 	 */
-	private static final int TEXT_STRIDE = 25;
+	private static final int TEXT_STRIDE = 16;
+	
+	/**
+	 * The x coordinate of the first line clear count.
+	 */
+	private static final int CLEARS_INSET = 88;
+	
+	/**
+	 * The number of pixels between each line clear count.
+	 */
+	private static final int CLEARS_STRIDE = 26;
 	
 	/**
 	 * The small font.
@@ -78,16 +89,74 @@ public class SidePanel extends JPanel {
 	private static final Color DRAW_COLOR = new Color(128, 192, 128);
 	
 	/**
-	 * The Tetris instance.
+	 * The game being shown.
+	 */
+	private GameView view;
+	
+	/**
+	 * The background and the text that never changes, drawn once.
+	 */
+	private BufferedImage labels;
+	
+	/**
+	 * The level text.
+	 */
+	private final StatLabel levelLabel = new StatLabel("Level: ");
+	
+	/**
+	 * The score text.
+	 */
+	private final StatLabel scoreLabel = new StatLabel("Score: ");
+	
+	/**
+	 * The best score text.
+	 */
+	private final StatLabel bestLabel = new StatLabel("Best: ");
+	
+	/**
+	 * The pieces placed text.
+	 */
+	private final StatLabel piecesLabel = new StatLabel("Pieces: ");
+	
+	/**
+	 * The pieces per second text.
+	 */
+	private final StatLabel ppsLabel = new StatLabel("PPS: ", 2);
+	
+	/**
+	 * The actions per minute text.
+	 */
+	private final StatLabel apmLabel = new StatLabel("APM: ", 1);
+	
+	/**
+	 * The time per piece text.
+	 */
+	private final StatLabel pieceTimeLabel = new StatLabel("Piece ms: ");
+	
+	/**
+	 * The finesse faults text.
+	 */
+	private final StatLabel finesseLabel = new StatLabel("Finesse: ");
+	
+	/**
+	 * The longest combo text.
+	 */
+	private final StatLabel comboLabel = new StatLabel("Max Combo: ");
+	
+	/**
+	 * The counts of each kind of line clear, from singles up.
 	 */
-	private Tetris tetris;
+	private final StatLabel[] clearLabels = new StatLabel[PlayerStats.CLEAR_KINDS];
 	
 	/**
 	 * Creates a new SidePanel and sets it's display properties.
-	 * @param tetris The Tetris instance to use.
+	 * @param view The game to show.
 	 */
-	public SidePanel(Tetris tetris) {
-		this.tetris = tetris;
+	public SidePanel(GameView view) {
+		this.view = view;
+		for(int i = 0; i < clearLabels.length; i++) {
+			clearLabels[i] = new StatLabel("");
+		}
 		
 		setPreferredSize(new Dimension(200, BoardPanel.PANEL_HEIGHT));
 		setBackground(Color.BLACK);
@@ -95,54 +164,56 @@ public class SidePanel extends JPanel {
 	
 	@Override
 	public void paintComponent(Graphics g) {
-		super.paintComponent(g);
-		
-		//Set the color for drawing.
-		g.setColor(DRAW_COLOR);
-		
 		/*
-		 * This variable stores the current y coordinate of the string.
-		 * This way we can re-order, add, or remove new strings if necessary
-		 * without needing to change the other strings.
+		 * Draw the background and all of the text that never changes from an
+		 * image made on the first frame. Drawing it directly would mean switching
+		 * fonts several times a frame, and Java2D allocates on every switch.
 		 */
-		int offset;
+		if(labels == null || labels.getWidth() != getWidth() || labels.getHeight() != getHeight()) {
+			labels = new BufferedImage(Math.max(1, getWidth()), Math.max(1, getHeight()), BufferedImage.TYPE_INT_RGB);
+			Graphics labelGraphics = labels.createGraphics();
+			drawLabels(labelGraphics);
+			labelGraphics.dispose();
+		}
+		g.drawImage(labels, 0, 0, null);
 		
-		/*
-		 * Draw the "Stats" category.
-		 */
-		g.setFont(LARGE_FONT);
-		g.drawString("Stats", SMALL_INSET, offset = STATS_INSET);
-		g.setFont(SMALL_FONT);
-		g.drawString("Level: " + tetris.getLevel(), LARGE_INSET, offset += TEXT_STRIDE);
-		g.drawString("Score: " + tetris.getScore(), LARGE_INSET, offset += TEXT_STRIDE);
+		//Set the color for drawing.
+		g.setColor(DRAW_COLOR);
 		
 		/*
-		 * Draw the "Controls" category.
+		 * Draw the values of the "Stats" category.
 		 */
-		g.setFont(LARGE_FONT);
-		g.drawString("Controls", SMALL_INSET, offset = CONTROLS_INSET);
+		int offset = STATS_INSET;
 		g.setFont(SMALL_FONT);
-		g.drawString("A - Move Left", LARGE_INSET, offset += TEXT_STRIDE);
-		g.drawString("D - Move Right", LARGE_INSET, offset += TEXT_STRIDE);
-		g.drawString("Q - Rotate Anticlockwise", LARGE_INSET, offset += TEXT_STRIDE);
-		g.drawString("E - Rotate Clockwise", LARGE_INSET, offset += TEXT_STRIDE);
-		g.drawString("S - Drop", LARGE_INSET, offset += TEXT_STRIDE);
-		g.drawString("P - Pause Game", LARGE_INSET, offset += TEXT_STRIDE);
+		levelLabel.draw(view.getLevel(), LARGE_INSET, offset += TEXT_STRIDE, g);
+		scoreLabel.draw(view.getScore(), LARGE_INSET, offset += TEXT_STRIDE, g);
+		bestLabel.draw(view.getBestScore(), LARGE_INSET, offset += TEXT_STRIDE, g);
 		
 		/*
-		 * Draw the next piece preview box.
+		 * Draw the player's stats, if they're kept. They're counted as the game
+		 * goes, so drawing them only reads them.
 		 */
-		g.setFont(LARGE_FONT);
-		g.drawString("Next Piece:", SMALL_INSET, 70);
-		g.drawRect(SQUARE_CENTER_X - SQUARE_SIZE, SQUARE_CENTER_Y - SQUARE_SIZE, SQUARE_SIZE * 2, SQUARE_SIZE * 2);
+		PlayerStats stats = view.getStats();
+		if(stats != null) {
+			piecesLabel.draw(stats.getPieces(), LARGE_INSET, offset += TEXT_STRIDE, g);
+			ppsLabel.draw(Math.round(stats.getPiecesPerSecond() * 100.0), LARGE_INSET, offset += TEXT_STRIDE, g);
+			apmLabel.draw(Math.round(stats.getActionsPerMinute() * 10.0), LARGE_INSET, offset += TEXT_STRIDE, g);
+			pieceTimeLabel.draw(stats.getPieceTime(), LARGE_INSET, offset += TEXT_STRIDE, g);
+			finesseLabel.draw(stats.getFinesseFaults(), LARGE_INSET, offset += TEXT_STRIDE, g);
+			comboLabel.draw(stats.getMaxCombo(), LARGE_INSET, offset += TEXT_STRIDE, g);
+			offset += TEXT_STRIDE;
+			for(int i = 0; i < clearLabels.length; i++) {
+				clearLabels[i].draw(stats.getClears(i + 1), CLEARS_INSET + i * CLEARS_STRIDE, offset, g);
+			}
+		}
 		
 		/*
 		 * Draw a preview of the next piece that will be spawned. The code is pretty much
 		 * identical to the drawing code on the board, just smaller and centered, rather
 		 * than constrained to a grid.
 		 */
-		TileType type = tetris.getNextPieceType();
-		if(!tetris.isGameOver() && type != null) {
+		TileType type = view.getNextPieceType();
+		if(!view.isGameOver() && type != null) {
 			/*
 			 * Get the size properties of the current piece.
 			 */
@@ -176,6 +247,62 @@ public class SidePanel extends JPanel {
 		}
 	}
 	
+	/**
+	 * Draws the background and the text that never changes.
+	 * @param g The graphics object.
+	 */
+	private void drawLabels(Graphics g) {
+		g.setColor(getBackground());
+		g.fillRect(0, 0, getWidth(), getHeight());
+		
+		//Set the color for drawing.
+		g.setColor(DRAW_COLOR);
+		
+		/*
+		 * This variable stores the current y coordinate of the string.
+		 * This way we can re-order, add, or remove new strings if necessary
+		 * without needing to change the other strings.
+		 */
+		int offset;
+		
+		/*
+		 * Draw the "Stats" category.
+		 */
+		g.setFont(LARGE_FONT);
+		g.drawString("Stats", SMALL_INSET, offset = STATS_INSET);
+		
+		/*
+		 * Label the line clear counts, which share a line below the other
+		 * stats.
+		 */
+		if(view.getStats() != null) {
+			g.setFont(SMALL_FONT);
+			g.drawString("Clears:", LARGE_INSET, offset + TEXT_STRIDE * 10);
+		}
+		
+		/*
+		 * Draw the "Controls" category.
+		 */
+		g.setFont(LARGE_FONT);
+		g.drawString("Controls", SMALL_INSET, offset = CONTROLS_INSET);
+		g.setFont(SMALL_FONT);
+		g.drawString("A - Move Left", LARGE_INSET, offset += TEXT_STRIDE);
+		g.drawString("D - Move Right", LARGE_INSET, offset += TEXT_STRIDE);
+		g.drawString("Q - Rotate Anticlockwise", LARGE_INSET, offset += TEXT_STRIDE);
+		g.drawString("E - Rotate Clockwise", LARGE_INSET, offset += TEXT_STRIDE);
+		g.drawString("S - Drop", LARGE_INSET, offset += TEXT_STRIDE);
+		g.drawString("P - Pause Game", LARGE_INSET, offset += TEXT_STRIDE);
+		g.drawString("U - Undo Piece", LARGE_INSET, offset += TEXT_STRIDE);
+		g.drawString("F - Toggle Effects", LARGE_INSET, offset += TEXT_STRIDE);
+		
+		/*
+		 * Draw the next piece preview box.
+		 */
+		g.setFont(LARGE_FONT);
+		g.drawString("Next Piece:", SMALL_INSET, 70);
+		g.drawRect(SQUARE_CENTER_X - SQUARE_SIZE, SQUARE_CENTER_Y - SQUARE_SIZE, SQUARE_SIZE * 2, SQUARE_SIZE * 2);
+	}
+	
 	/**
 	 * Draws a tile onto the preview window.
 	 * @param type The type of tile to draw.
@@ -209,4 +336,109 @@ public class SidePanel extends JPanel {
 		}
 	}
 	
+	/**
+	 * A line of text showing a number. The digits are written into a character
+	 * buffer, so painting never creates a string, even when the number changes.
+	 */
+	private static class StatLabel {
+		
+		/**
+		 * The longest a number can be, including its sign, decimal point and
+		 * leading zero.
+		 */
+		private static final int MAX_DIGITS = 22;
+		
+		/**
+		 * The text before the number, followed by room for the number.
+		 */
+		private final char[] text;
+		
+		/**
+		 * The length of the text before the number.
+		 */
+		private final int prefixLength;
+		
+		/**
+		 * The number of digits shown after the decimal point.
+		 */
+		private final int decimals;
+		
+		/**
+		 * The length of the text.
+		 */
+		private int length;
+		
+		/**
+		 * The number the text was last written for.
+		 */
+		private long value;
+		
+		/**
+		 * Creates a new StatLabel for whole numbers.
+		 * @param prefix The text before the number.
+		 */
+		private StatLabel(String prefix) {
+			this(prefix, 0);
+		}
+		
+		/**
+		 * Creates a new StatLabel.
+		 * @param prefix The text before the number.
+		 * @param decimals The number of digits shown after the decimal point.
+		 * Numbers are passed scaled up by that many powers of ten.
+		 */
+		private StatLabel(String prefix, int decimals) {
+			this.prefixLength = prefix.length();
+			this.decimals = decimals;
+			this.text = new char[prefixLength + MAX_DIGITS];
+			prefix.getChars(0, prefixLength, text, 0);
+			setValue(0);
+		}
+		
+		/**
+		 * Draws the text for a number.
+		 * @param value The number.
+		 * @param x The x coordinate of the text.
+		 * @param y The y coordinate of the baseline.
+		 * @param g The graphics object.
+		 */
+		private void draw(long value, int x, int y, Graphics g) {
+			if(value != this.value) {
+				setValue(value);
+			}
+			g.drawChars(text, 0, length, x, y);
+		}
+		
+		/**
+		 * Writes the digits of a number after the prefix.
+		 * @param value The number.
+		 */
+		private void setValue(long value) {
+			this.value = value;
+			
+			/*
+			 * Write the digits backwards from the end of the buffer, then move
+			 * them up against the prefix.
+			 */
+			int end = text.length;
+			int start = end;
+			long remaining = Math.abs(value);
+			int digits = 0;
+			do {
+				if(digits == decimals && digits > 0) {
+					text[--start] = '.';
+				}
+				text[--start] = (char) ('0' + (int) Math.abs(remaining % 10));
+				remaining /= 10;
+				digits++;
+			} while(remaining != 0 || digits <= decimals);
+			if(value < 0) {
+				text[--start] = '-';
+			}
+			System.arraycopy(text, start, text, prefixLength, end - start);
+			this.length = prefixLength + end - start;
+		}
+		
+	}
+	
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+public class SnapshotRing {
+
+	/**
+	 * The preallocated snapshot slots.
+	 */
+	private final byte[][] slots;
+
+	/**
+	 * The index of the slot the next snapshot will be written to.
+	 */
+	private int head;
+
+	/**
+	 * The number of snapshots currently held.
+	 */
+	private int size;
+
+	/**
+	 * Creates a new SnapshotRing sized for snapshots of the given engine.
+	 *
+	 * @param engine   The engine whose snapshots will be stored.
+	 * @param capacity The maximum number of snapshots to keep. Once full,
+	 *                 the oldest snapshot is overwritten.
+	 */
+	public SnapshotRing(GameEngine engine, int capacity) {
+		this.slots = new byte[capacity][engine.getSnapshotSize()];
+	}
+
+	/**
+	 * Records the current state of the engine.
+	 *
+	 * @param engine The engine to snapshot.
+	 */
+	public void push(GameEngine engine) {
+		engine.snapshot(slots[head]);
+		head = (head + 1) % slots.length;
+		if (size < slots.length) {
+			size++;
+		}
+	}
+
+	/**
+	 * Restores the most recent snapshot into the engine and discards it.
+	 *
+	 * @param engine The engine to restore.
+	 * @return Whether or not there was a snapshot to restore.
+	 */
+	public boolean pop(GameEngine engine) {
+		if (size == 0) {
+			return false;
+		}
+		head = (head == 0) ? slots.length - 1 : head - 1;
+		size--;
+		engine.restore(slots[head]);
+		return true;
+	}
+
+	/**
+	 * Gets the number of snapshots currently held.
+	 *
+	 * @return The number of snapshots.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Discards every snapshot.
+	 */
+	public void clear() {
+		head = 0;
+		size = 0;
+	}
+
+}
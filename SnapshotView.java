@@ -0,0 +1,102 @@
+public class SnapshotView implements GameView {
+
+	/**
+	 * The snapshots the game publishes.
+	 */
+	private final TripleBuffer<RenderSnapshot> snapshots;
+
+	/**
+	 * The snapshot being shown.
+	 */
+	private RenderSnapshot current;
+
+	/**
+	 * Creates a new SnapshotView.
+	 *
+	 * @param snapshots The snapshots the game publishes.
+	 */
+	public SnapshotView(TripleBuffer<RenderSnapshot> snapshots) {
+		this.snapshots = snapshots;
+		this.current = snapshots.acquire();
+	}
+
+	/**
+	 * Moves on to the latest snapshot published. This is only called on the
+	 * thread that paints, once per frame, so that everything painted in a
+	 * frame comes from the same snapshot.
+	 */
+	public void refresh() {
+		current = snapshots.acquire();
+	}
+
+	@Override
+	public boolean isPaused() {
+		return current.isPaused();
+	}
+
+	@Override
+	public boolean isNewGame() {
+		return current.isNewGame();
+	}
+
+	@Override
+	public boolean isGameOver() {
+		return current.isGameOver();
+	}
+
+	@Override
+	public int getScore() {
+		return current.getScore();
+	}
+
+	@Override
+	public int getBestScore() {
+		return current.getBestScore();
+	}
+
+	@Override
+	public int getLevel() {
+		return current.getLevel();
+	}
+
+	@Override
+	public Board getBoard() {
+		return current.getBoard();
+	}
+
+	@Override
+	public TileType getPieceType() {
+		return current.getPieceType();
+	}
+
+	@Override
+	public TileType getNextPieceType() {
+		return current.getNextPieceType();
+	}
+
+	@Override
+	public int getPieceCol() {
+		return current.getPieceCol();
+	}
+
+	@Override
+	public int getPieceRow() {
+		return current.getPieceRow();
+	}
+
+	@Override
+	public int getLandingRow() {
+		return current.getLandingRow();
+	}
+
+	@Override
+	public int getPieceRotation() {
+		return current.getPieceRotation();
+	}
+
+	@Override
+	public PlayerStats getStats() {
+		return current.getStats();
+	}
+
+}
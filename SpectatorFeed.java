@@ -0,0 +1,327 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+public class SpectatorFeed {
+
+	/**
+	 * The number of ticks between keyframes. A keyframe holds every row of
+	 * both boards, so a spectator can start watching from it.
+	 */
+	public static final int KEYFRAME_INTERVAL = 50;
+
+	/**
+	 * The maximum number of frames queued for a spectator. A spectator that
+	 * falls further behind has its queue dropped and resumes at the next
+	 * keyframe.
+	 */
+	public static final int QUEUE_CAPACITY = 64;
+
+	/**
+	 * The number of frame slots in the shared buffer. A slot is only reused
+	 * once no spectator can still be holding a view of it, which is the case
+	 * after {@code QUEUE_CAPACITY + KEYFRAME_INTERVAL} ticks.
+	 */
+	private static final int SLOT_COUNT = 128;
+
+	/**
+	 * The number of bytes written for each seat before its changed rows.
+	 */
+	private static final int SEAT_HEADER = 15;
+
+	/**
+	 * The match being watched.
+	 */
+	private final VersusMatch match;
+
+	/**
+	 * The buffer every frame is encoded into. It is split into fixed-size slots
+	 * which are reused in turn. Most matches are never watched, so this is
+	 * only allocated when the first spectator subscribes.
+	 */
+	private ByteBuffer frames;
+
+	/**
+	 * The size of each slot in bytes.
+	 */
+	private final int slotSize;
+
+	/**
+	 * The number of bytes in a row mask.
+	 */
+	private final int maskSize;
+
+	/**
+	 * The row masks each seat's board had in the previous frame.
+	 */
+	private final byte[][] previous = new byte[VersusMatch.SEATS][];
+
+	/**
+	 * A scratch row mask.
+	 */
+	private final byte[] mask;
+
+	/**
+	 * The frames published since (and including) the last keyframe. These are
+	 * handed to spectators that join between keyframes.
+	 */
+	private final ArrayList<ByteBuffer> history = new ArrayList<ByteBuffer>(KEYFRAME_INTERVAL);
+
+	/**
+	 * The spectators watching the match.
+	 */
+	private final ArrayList<Subscriber> subscribers = new ArrayList<Subscriber>();
+
+	/**
+	 * The number of frames published.
+	 */
+	private int tick;
+
+	/**
+	 * The slot the next frame will be written to.
+	 */
+	private int slot;
+
+	/**
+	 * Whether or not the next frame must be a keyframe.
+	 */
+	private boolean forceKeyframe = true;
+
+	/**
+	 * Creates a new SpectatorFeed for a match.
+	 *
+	 * @param match The match.
+	 */
+	public SpectatorFeed(VersusMatch match) {
+		Board board = match.getEngine(0).getBoard();
+		this.match = match;
+		this.maskSize = board.getRowMaskSize();
+		this.mask = new byte[maskSize];
+		this.slotSize = VersusProtocol.HEADER_SIZE + 4
+				+ VersusMatch.SEATS * (SEAT_HEADER + board.getRowCount() * (2 + maskSize));
+		for (int seat = 0; seat < VersusMatch.SEATS; seat++) {
+			previous[seat] = new byte[board.getRowCount() * maskSize];
+		}
+	}
+
+	/**
+	 * Adds a spectator. If the feed is running, the spectator is sent the last
+	 * keyframe and every frame after it, otherwise the next frame is made a
+	 * keyframe.
+	 *
+	 * @param subscriber The spectator.
+	 */
+	public void subscribe(Subscriber subscriber) {
+		if (frames == null) {
+			frames = ByteBuffer.allocateDirect(slotSize * SLOT_COUNT);
+		}
+		subscriber.pending.clear();
+		subscriber.needsKeyframe = history.isEmpty();
+		for (ByteBuffer frame : history) {
+			subscriber.pending.add(frame.duplicate());
+		}
+		if (history.isEmpty()) {
+			forceKeyframe = true;
+		}
+		subscribers.add(subscriber);
+	}
+
+	/**
+	 * Removes a spectator.
+	 *
+	 * @param subscriber The spectator.
+	 */
+	public void unsubscribe(Subscriber subscriber) {
+		subscribers.remove(subscriber);
+		if (subscribers.isEmpty()) {
+			history.clear();
+			forceKeyframe = true;
+		}
+	}
+
+	/**
+	 * Gets the number of spectators.
+	 *
+	 * @return The number of spectators.
+	 */
+	public int getSubscriberCount() {
+		return subscribers.size();
+	}
+
+	/**
+	 * Encodes the current state of the match and queues it for every
+	 * spectator. The frame is written once; each spectator receives a view of
+	 * the same memory. Nothing is encoded while no one is watching.
+	 */
+	public void publish() {
+		if (subscribers.isEmpty()) {
+			return;
+		}
+
+		boolean isKeyframe = forceKeyframe || (tick % KEYFRAME_INTERVAL == 0);
+		forceKeyframe = false;
+		ByteBuffer frame = encode(isKeyframe);
+		if (isKeyframe) {
+			history.clear();
+		}
+		history.add(frame);
+
+		for (int i = 0; i < subscribers.size(); i++) {
+			Subscriber subscriber = subscribers.get(i);
+			if (subscriber.needsKeyframe && !isKeyframe) {
+				continue;
+			}
+			if (subscriber.pending.size() >= QUEUE_CAPACITY) {
+				/*
+				 * The spectator is too far behind. Drop the queue and wait for the
+				 * next keyframe. If even the oldest frame is still half sent, the
+				 * socket isn't moving at all and the spectator is flagged as
+				 * stalled, since its slot will soon be reused.
+				 */
+				ByteBuffer partial = subscriber.pending.peek();
+				subscriber.pending.clear();
+				if (partial.position() > 0) {
+					subscriber.pending.add(partial);
+					subscriber.isStalled = true;
+				}
+				subscriber.needsKeyframe = true;
+				continue;
+			}
+			subscriber.needsKeyframe = false;
+			subscriber.pending.add(frame.duplicate());
+		}
+	}
+
+	/**
+	 * Encodes a frame into the next slot.
+	 *
+	 * @param isKeyframe Whether or not every row should be written.
+	 * @return A read-only view of the frame.
+	 */
+	private ByteBuffer encode(boolean isKeyframe) {
+		int start = slot * slotSize;
+		slot = (slot + 1) % SLOT_COUNT;
+
+		ByteBuffer out = frames;
+		out.clear();
+		out.position(start + 2);
+		out.put(isKeyframe ? VersusProtocol.MSG_KEYFRAME : VersusProtocol.MSG_DELTA);
+		out.putInt(tick++);
+
+		for (int seat = 0; seat < VersusMatch.SEATS; seat++) {
+			GameEngine engine = match.getEngine(seat);
+			Board board = engine.getBoard();
+			TileType type = engine.getPieceType();
+			TileType next = engine.getNextPieceType();
+			out.putInt(engine.getScore());
+			out.put((byte) (type == null ? 0 : type.getIndex() + 1));
+			out.put((byte) (next == null ? 0 : next.getIndex() + 1));
+			out.put((byte) engine.getPieceRotation());
+			out.putShort((short) engine.getPieceCol());
+			out.putShort((short) engine.getPieceRow());
+			out.put((byte) (engine.isGameOver() ? 1 : 0));
+
+			/*
+			 * Write the changed rows, then go back and fill in how many there were.
+			 */
+			int countAt = out.position();
+			out.putShort((short) 0);
+			int changed = 0;
+			byte[] last = previous[seat];
+			for (int row = 0; row < board.getRowCount(); row++) {
+				board.getRowMask(row, mask, 0);
+				int offset = row * maskSize;
+				if (!isKeyframe && equals(mask, last, offset)) {
+					continue;
+				}
+				System.arraycopy(mask, 0, last, offset, maskSize);
+				out.putShort((short) row);
+				out.put(mask, 0, maskSize);
+				changed++;
+			}
+			out.putShort(countAt, (short) changed);
+		}
+
+		int end = out.position();
+		out.putShort(start, (short) (end - start - VersusProtocol.HEADER_SIZE));
+		out.position(start);
+		out.limit(end);
+		return out.slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * Compares a row mask against the stored row mask at an offset.
+	 *
+	 * @param mask   The row mask.
+	 * @param last   The stored row masks.
+	 * @param offset The offset of the stored row mask.
+	 * @return Whether or not they're equal.
+	 */
+	private boolean equals(byte[] mask, byte[] last, int offset) {
+		for (int i = 0; i < maskSize; i++) {
+			if (mask[i] != last[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * A spectator's queue of frames waiting to be sent.
+	 */
+	public static class Subscriber {
+
+		/**
+		 * The frames waiting to be sent, oldest first. The first frame may have
+		 * been partly sent already.
+		 */
+		private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<ByteBuffer>(QUEUE_CAPACITY + 1);
+
+		/**
+		 * Whether or not the spectator is waiting for a keyframe.
+		 */
+		private boolean needsKeyframe;
+
+		/**
+		 * Whether or not the spectator stopped accepting data altogether.
+		 */
+		private boolean isStalled;
+
+		/**
+		 * Gets the frame that should be sent next.
+		 *
+		 * @return The frame, or null if there's nothing to send.
+		 */
+		public ByteBuffer peek() {
+			return pending.peek();
+		}
+
+		/**
+		 * Discards the frame at the head of the queue once it has been sent.
+		 */
+		public void poll() {
+			pending.poll();
+		}
+
+		/**
+		 * Checks to see whether or not any frames are waiting to be sent.
+		 *
+		 * @return Whether or not there are frames to send.
+		 */
+		public boolean hasPending() {
+			return !pending.isEmpty();
+		}
+
+		/**
+		 * Checks to see whether or not the spectator stopped accepting data
+		 * altogether. A stalled spectator should be disconnected.
+		 *
+		 * @return Whether or not the spectator is stalled.
+		 */
+		public boolean isStalled() {
+			return isStalled;
+		}
+
+	}
+
+}
@@ -0,0 +1,500 @@
+import java.awt.Color;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+public class TerminalRenderer {
+
+	/**
+	 * The escape character that starts every control sequence.
+	 */
+	private static final byte ESC = 0x1B;
+
+	/**
+	 * The cell code of an empty cell.
+	 */
+	private static final int EMPTY = 0;
+
+	/**
+	 * The cell code of a garbage cell. Tile cells are their type's index plus
+	 * one, which is always below this.
+	 */
+	private static final int GARBAGE = Board.GARBAGE;
+
+	/**
+	 * The offset added to a type's cell code for its ghost.
+	 */
+	private static final int GHOST = 0x100;
+
+	/**
+	 * The style of the last text written, which no cell code can have, so the
+	 * first cell always sets its style.
+	 */
+	private static final int TEXT_STYLE = -1;
+
+	/**
+	 * The color of garbage cells.
+	 */
+	private static final Color GARBAGE_COLOR = new Color(128, 128, 128);
+
+	/**
+	 * The terminal column that the stats start at.
+	 */
+	private static final int STATS_OFFSET = 4;
+
+	/**
+	 * The labels of the stats, in the order they're shown.
+	 */
+	private static final String[] STAT_NAMES = { "Score: ", "Best:  ", "Level: ", "Next:  ", "" };
+
+	/**
+	 * The game being shown.
+	 */
+	private final GameView view;
+
+	/**
+	 * The terminal.
+	 */
+	private final OutputStream out;
+
+	/**
+	 * The number of columns on the board.
+	 */
+	private final int colCount;
+
+	/**
+	 * The number of rows of the board that are shown.
+	 */
+	private final int visibleRowCount;
+
+	/**
+	 * The cell codes on the terminal, as of the last frame.
+	 */
+	private final int[] shown;
+
+	/**
+	 * The cell codes of the frame being drawn.
+	 */
+	private final int[] cells;
+
+	/**
+	 * The values of the stats on the terminal, as of the last frame.
+	 */
+	private final int[] shownStats = new int[STAT_NAMES.length];
+
+	/**
+	 * The values of the stats of the frame being drawn.
+	 */
+	private final int[] stats = new int[STAT_NAMES.length];
+
+	/**
+	 * The bytes of the frame being drawn, which are written all at once.
+	 */
+	private byte[] buffer = new byte[1 << 14];
+
+	/**
+	 * The number of bytes in the buffer.
+	 */
+	private int length;
+
+	/**
+	 * The style of the last cell written, so that runs of cells with the same
+	 * style only set it once.
+	 */
+	private int style;
+
+	/**
+	 * The terminal row the cursor is on, counting from 1.
+	 */
+	private int cursorRow;
+
+	/**
+	 * The terminal column the cursor is on, counting from 1.
+	 */
+	private int cursorCol;
+
+	/**
+	 * Whether or not the next frame must redraw everything.
+	 */
+	private boolean isInvalid = true;
+
+	/**
+	 * Creates a new TerminalRenderer.
+	 *
+	 * @param view The game to show.
+	 * @param out  The terminal to write to.
+	 */
+	public TerminalRenderer(GameView view, OutputStream out) {
+		this.view = view;
+		this.out = out;
+		this.colCount = view.getBoard().getColCount();
+		this.visibleRowCount = view.getBoard().getRowCount() - BoardPanel.HIDDEN_ROW_COUNT;
+		this.shown = new int[colCount * visibleRowCount];
+		this.cells = new int[colCount * visibleRowCount];
+	}
+
+	/**
+	 * Makes the next frame clear the terminal and redraw everything, for when
+	 * something else has written to it.
+	 */
+	public void invalidate() {
+		isInvalid = true;
+	}
+
+	/**
+	 * Draws a frame. Only the cells and stats that have changed since the last
+	 * frame are written, each by moving the cursor to it and setting its color
+	 * if the cell before it didn't leave the right one set, and the whole frame
+	 * goes to the terminal in a single write.
+	 *
+	 * @throws IOException If the terminal couldn't be written to.
+	 */
+	public void render() throws IOException {
+		length = 0;
+		if (isInvalid) {
+			/*
+			 * Clear the terminal, hide the cursor and draw the frame around the
+			 * board, and then mark every cell and stat as unknown so they're all
+			 * drawn below.
+			 */
+			append(ESC).append('[').append("2J");
+			append(ESC).append('[').append("?25l");
+			style = TEXT_STYLE;
+			resetStyle();
+			for (int y = 0; y <= visibleRowCount; y++) {
+				moveTo(y + 1, 1);
+				append('|');
+				moveTo(y + 1, colCount * 2 + 2);
+				append('|');
+			}
+			moveTo(visibleRowCount + 1, 1);
+			append('+');
+			for (int x = 0; x < colCount * 2; x++) {
+				append('-');
+			}
+			append('+');
+			Arrays.fill(shown, -1);
+			Arrays.fill(shownStats, -1);
+			cursorRow = -1;
+			isInvalid = false;
+		}
+
+		fillCells();
+		for (int y = 0; y < visibleRowCount; y++) {
+			for (int x = 0; x < colCount; x++) {
+				int i = y * colCount + x;
+				if (cells[i] != shown[i]) {
+					moveTo(y + 1, x * 2 + 2);
+					drawCell(cells[i]);
+					shown[i] = cells[i];
+				}
+			}
+		}
+		drawStats();
+
+		if (length > 0) {
+			out.write(buffer, 0, length);
+			out.flush();
+		}
+	}
+
+	/**
+	 * Restores the terminal's colors and cursor and moves the cursor below the
+	 * board.
+	 *
+	 * @throws IOException If the terminal couldn't be written to.
+	 */
+	public void close() throws IOException {
+		length = 0;
+		resetStyle();
+		moveTo(visibleRowCount + 2, 1);
+		append(ESC).append('[').append("?25h");
+		out.write(buffer, 0, length);
+		out.flush();
+	}
+
+	/**
+	 * Works out the code of every visible cell: the board's tiles, then the
+	 * ghost, then the current piece over both.
+	 */
+	private void fillCells() {
+		Board board = view.getBoard();
+		int hidden = BoardPanel.HIDDEN_ROW_COUNT;
+		int firstRow = Math.max(0, board.getStackTop() - hidden);
+		Arrays.fill(cells, 0, firstRow * colCount, EMPTY);
+		for (int y = firstRow; y < visibleRowCount; y++) {
+			for (int x = 0; x < colCount; x++) {
+				TileType tile = board.getTile(x, y + hidden);
+				int code = EMPTY;
+				if (tile != null) {
+					code = tile.getIndex() + 1;
+				} else if (board.isOccupied(x, y + hidden)) {
+					code = GARBAGE;
+				}
+				cells[y * colCount + x] = code;
+			}
+		}
+
+		if (view.isNewGame() || view.isGameOver()) {
+			return;
+		}
+		TileType type = view.getPieceType();
+		int pieceCol = view.getPieceCol();
+		int pieceRow = view.getPieceRow();
+		int rotation = view.getPieceRotation();
+		fillPiece(type, pieceCol, view.getLandingRow(), rotation, type.getIndex() + 1 + GHOST);
+		fillPiece(type, pieceCol, pieceRow, rotation, type.getIndex() + 1);
+	}
+
+	/**
+	 * Sets the code of every visible cell a piece covers.
+	 *
+	 * @param type     The type of the piece.
+	 * @param pieceCol The column of the piece.
+	 * @param pieceRow The row of the piece, including hidden rows.
+	 * @param rotation The rotation of the piece.
+	 * @param code     The code to set.
+	 */
+	private void fillPiece(TileType type, int pieceCol, int pieceRow, int rotation, int code) {
+		for (int row = 0; row < type.getDimension(); row++) {
+			int y = pieceRow + row - BoardPanel.HIDDEN_ROW_COUNT;
+			if (y < 0 || y >= visibleRowCount) {
+				continue;
+			}
+			for (int col = 0; col < type.getDimension(); col++) {
+				int x = pieceCol + col;
+				if (x >= 0 && x < colCount && type.isTile(col, row, rotation)) {
+					cells[y * colCount + x] = code;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Draws a cell at the cursor. Tiles are drawn as two spaces on their
+	 * color, and ghosts as brackets in the color of their type.
+	 *
+	 * @param code The code of the cell.
+	 */
+	private void drawCell(int code) {
+		if (code != style) {
+			resetStyle();
+			if (code == GARBAGE) {
+				appendColor(48, GARBAGE_COLOR);
+			} else if (code >= GHOST) {
+				appendColor(38, view.getBoard().getPieceSet().get(code - GHOST - 1).getBaseColor());
+			} else if (code != EMPTY) {
+				appendColor(48, view.getBoard().getPieceSet().get(code - 1).getBaseColor());
+			}
+			style = code;
+		}
+		if (code >= GHOST) {
+			append('[').append(']');
+		} else {
+			append(' ').append(' ');
+		}
+		cursorCol += 2;
+	}
+
+	/**
+	 * Draws the stats beside the board, rewriting only the lines whose values
+	 * have changed.
+	 */
+	private void drawStats() {
+		int state = view.isGameOver() ? 1 : view.isNewGame() ? 2 : view.isPaused() ? 3 : 0;
+		TileType next = view.getNextPieceType();
+		int[] values = stats;
+		values[0] = view.getScore();
+		values[1] = view.getBestScore();
+		values[2] = view.getLevel();
+		values[3] = (next == null) ? -1 : next.getIndex();
+		values[4] = state;
+		int col = colCount * 2 + 2 + STATS_OFFSET;
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] == shownStats[i]) {
+				continue;
+			}
+			shownStats[i] = values[i];
+			moveTo(i * 2 + 2, col);
+			if (style != TEXT_STYLE) {
+				resetStyle();
+				style = TEXT_STYLE;
+			}
+			append(ESC).append('[').append('K');
+			append(STAT_NAMES[i]);
+			if (i == 3) {
+				append((next == null) ? "" : next.getName());
+			} else if (i == 4) {
+				append((state == 1) ? "GAME OVER" : (state == 2) ? "NEW GAME" : (state == 3) ? "PAUSED" : "");
+			} else {
+				appendInt(values[i]);
+			}
+			cursorRow = -1;
+		}
+	}
+
+	/**
+	 * Moves the cursor, unless it's already there.
+	 *
+	 * @param row The terminal row, counting from 1.
+	 * @param col The terminal column, counting from 1.
+	 */
+	private void moveTo(int row, int col) {
+		if (row == cursorRow && col == cursorCol) {
+			return;
+		}
+		append(ESC).append('[');
+		appendInt(row);
+		append(';');
+		appendInt(col);
+		append('H');
+		cursorRow = row;
+		cursorCol = col;
+	}
+
+	/**
+	 * Resets the colors to the terminal's defaults.
+	 */
+	private void resetStyle() {
+		append(ESC).append('[').append('0').append('m');
+	}
+
+	/**
+	 * Sets a 24-bit color.
+	 *
+	 * @param layer 38 for the foreground, or 48 for the background.
+	 * @param color The color.
+	 */
+	private void appendColor(int layer, Color color) {
+		append(ESC).append('[');
+		appendInt(layer);
+		append(";2;");
+		appendInt(color.getRed());
+		append(';');
+		appendInt(color.getGreen());
+		append(';');
+		appendInt(color.getBlue());
+		append('m');
+	}
+
+	/**
+	 * Appends a number in decimal without creating a string.
+	 *
+	 * @param value The number.
+	 */
+	private void appendInt(int value) {
+		if (value < 0) {
+			append('-');
+			value = -value;
+		}
+		int digits = 1;
+		for (int n = value; n >= 10; n /= 10) {
+			digits++;
+		}
+		ensureCapacity(digits);
+		for (int i = length + digits - 1; i >= length; i--) {
+			buffer[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		length += digits;
+	}
+
+	/**
+	 * Appends ASCII text.
+	 *
+	 * @param text The text.
+	 * @return This renderer.
+	 */
+	private TerminalRenderer append(String text) {
+		ensureCapacity(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			buffer[length++] = (byte) text.charAt(i);
+		}
+		return this;
+	}
+
+	/**
+	 * Appends an ASCII character.
+	 *
+	 * @param c The character.
+	 * @return This renderer.
+	 */
+	private TerminalRenderer append(char c) {
+		ensureCapacity(1);
+		buffer[length++] = (byte) c;
+		return this;
+	}
+
+	/**
+	 * Appends a byte.
+	 *
+	 * @param b The byte.
+	 * @return This renderer.
+	 */
+	private TerminalRenderer append(byte b) {
+		ensureCapacity(1);
+		buffer[length++] = b;
+		return this;
+	}
+
+	/**
+	 * Grows the buffer, if needed, to fit more bytes.
+	 *
+	 * @param count The number of bytes about to be appended.
+	 */
+	private void ensureCapacity(int count) {
+		if (length + count > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + count));
+		}
+	}
+
+	/**
+	 * Runs a game in the terminal, driven by the same fixed inputs as
+	 * {@code AllocationCheck} from {@code ScriptedInput}, and draws it every
+	 * few ticks. Running it at a high tick rate shows how little is written
+	 * per frame.
+	 *
+	 * Usage: {@code TerminalRenderer [seed] [ticks] [ticks per frame] [frame delay ms]}
+	 *
+	 * @param args The command line arguments.
+	 * @throws Exception If the terminal couldn't be written to.
+	 */
+	public static void main(String[] args) throws Exception {
+		long seed = (args.length > 0) ? Long.parseLong(args[0]) : 1;
+		int ticks = (args.length > 1) ? Integer.parseInt(args[1]) : 100000;
+		int ticksPerFrame = (args.length > 2) ? Integer.parseInt(args[2]) : 1;
+		int delay = (args.length > 3) ? Integer.parseInt(args[3]) : 16;
+
+		GameEngine engine = new GameEngine();
+		engine.setSeed(seed);
+		engine.reset();
+		OutputStream terminal = new FileOutputStream(FileDescriptor.out);
+		TerminalRenderer renderer = new TerminalRenderer(new EngineView(engine), terminal);
+
+		long start = System.nanoTime();
+		int frames = 0;
+		try {
+			for (int tick = 0; tick < ticks; tick++) {
+				ScriptedInput.play(engine, tick);
+				engine.update();
+				if (engine.isGameOver()) {
+					engine.reset();
+				}
+				if (tick % ticksPerFrame == 0) {
+					renderer.render();
+					frames++;
+					if (delay > 0) {
+						Thread.sleep(delay);
+					}
+				}
+			}
+		} finally {
+			renderer.close();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%d ticks, %d frames in %.2fs (%.0f frames/s)%n", ticks, frames, seconds, frames / seconds);
+	}
+
+}
@@ -10,165 +10,257 @@ import javax.sound.sampled.Clip;
 import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.UnsupportedAudioFileException;
 import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
-public class Tetris extends JFrame {
+public class Tetris extends JFrame implements GameView {
 
-	private static final long FRAME_TIME = 1000L / 50L;
+	private static final long FRAME_TIME = 1000L / GameEngine.TICKS_PER_SECOND;
 
-	private static final int TYPE_COUNT = TileType.values().length;
+	/**
+	 * The number of nanoseconds the board may take to paint before its effects
+	 * are scaled down. This is half a frame, leaving the rest for the logic and
+	 * the side panel.
+	 */
+	public static final long FRAME_BUDGET = FRAME_TIME * 1000000L / 2;
+
+	/**
+	 * The number of piece placements that can be undone in practice.
+	 */
+	private static final int UNDO_DEPTH = 64;
+
+	/**
+	 * The most memory the undo buffer may use, in bytes. Large boards get
+	 * fewer undo steps so that their snapshots fit.
+	 */
+	private static final int UNDO_BUDGET = 16 * 1024 * 1024;
+
+	/**
+	 * The largest width the board is shown at before it scrolls.
+	 */
+	private static final int MAX_VIEW_WIDTH = 1000;
+
+	/**
+	 * The largest height the board is shown at before it scrolls.
+	 */
+	private static final int MAX_VIEW_HEIGHT = 720;
+
+	/**
+	 * The time a bot has to decide each move, in nanoseconds.
+	 */
+	private static final long BOT_BUDGET = 200L * 1000000L;
+
+	/**
+	 * The directory finished games are recorded in.
+	 */
+	private static final String SCORES_DIRECTORY = "scores";
+
+	/**
+	 * The file in the scores directory that a summary of each finished game
+	 * is appended to.
+	 */
+	private static final String SUMMARY_FILE = "summaries.txt";
+
+	/**
+	 * The number of game events kept for consumers that fall behind.
+	 */
+	private static final int EVENT_CAPACITY = 1024;
+
+	/**
+	 * The number of key presses that can wait for the logic thread before
+	 * more are dropped.
+	 */
+	private static final int KEY_QUEUE_SIZE = 64;
+
+	/**
+	 * The longest the game is warmed up for while the menu is shown, in
+	 * nanoseconds.
+	 */
+	public static final long WARMUP_TIME = 3000L * 1000000L;
 
 	private BoardPanel board;
 
 	private SidePanel side;
 
+	private GameEngine engine;
+
+	private SnapshotRing undoBuffer;
+
 	private boolean isPaused;
 
 	private boolean isNewGame;
 
-	private boolean isGameOver;
+	private boolean isSoftDropping;
 
-	private int level;
+	private int dropCooldown;
 
-	private int score;
+	private ScoreStore scores;
 
-	private Random random;
+	private Random seeds;
 
-	private Clock logicTimer;
+	private int bestScore;
 
-	private TileType currentType;
+	private long playTime;
 
-	private TileType nextType;
+	private long lastFrame;
 
-	private int currentCol;
+	private BotHost bot;
 
-	private int currentRow;
+	private File exportDirectory;
 
-	private int currentRotation;
+	private SampleWriter samples;
 
-	private int dropCooldown;
+	/**
+	 * The landing version of the engine when the last sample was captured, so
+	 * that a resting piece is only captured again once it has moved.
+	 */
+	private int sampledVersion;
 
-	private float gameSpeed;
+	private EventBus events;
 
-	public Tetris() {
-		super("Tetris");
-		setDefaultCloseOperation(EXIT_ON_CLOSE);
-		setResizable(false);
-		this.board = new BoardPanel(this);
-		this.side = new SidePanel(this);
-		add(board, BorderLayout.CENTER);
-		add(side, BorderLayout.EAST);
+	private PlayerStats stats;
 
-		addKeyListener(new KeyAdapter() {
+	private EventBus.Subscription statsEvents;
 
-			@Override
-			public void keyPressed(KeyEvent e) {
+	private ScheduledExecutorService logicThread;
 
-				switch (e.getKeyCode()) {
-
-					/*
-					 * Drop - When pressed, we check to see that the game is not
-					 * paused and that there is no drop cooldown, then set the
-					 * logic timer to run at a speed of 25 cycles per second.
-					 */
-					case KeyEvent.VK_S:
-						if (!isPaused && dropCooldown == 0) {
-							logicTimer.setCyclesPerSecond(25.0f);
-						}
-						break;
+	private FramePublisher frames;
 
-					/*
-					 * Move Left - When pressed, we check to see that the game is
-					 * not paused and that the position to the left of the current
-					 * position is valid. If so, we decrement the current column by 1.
-					 */
-					case KeyEvent.VK_A:
-						if (!isPaused
-								&& board.isValidAndEmpty(currentType, currentCol - 1, currentRow, currentRotation)) {
-							currentCol--;
-						}
-						break;
+	private SnapshotView view;
 
-					/*
-					 * Move Right - When pressed, we check to see that the game is
-					 * not paused and that the position to the right of the current
-					 * position is valid. If so, we increment the current column by 1.
-					 */
-					case KeyEvent.VK_D:
-						if (!isPaused
-								&& board.isValidAndEmpty(currentType, currentCol + 1, currentRow, currentRotation)) {
-							currentCol++;
-						}
-						break;
+	private WarmUp warmUp;
 
-					/*
-					 * Rotate Anticlockwise - When pressed, check to see that the game is not paused
-					 * and then attempt to rotate the piece anticlockwise. Because of the size and
-					 * complexity of the rotation code, as well as it's similarity to clockwise
-					 * rotation, the code for rotating the piece is handled in another method.
-					 */
-					case KeyEvent.VK_Q:
-						if (!isPaused) {
-							rotatePiece((currentRotation == 0) ? 3 : currentRotation - 1);
-						}
-						break;
+	private Thread warmUpThread;
 
-					/*
-					 * Rotate Clockwise - When pressed, check to see that the game is not paused
-					 * and then attempt to rotate the piece clockwise. Because of the size and
-					 * complexity of the rotation code, as well as it's similarity to anticlockwise
-					 * rotation, the code for rotating the piece is handled in another method.
-					 */
-					case KeyEvent.VK_E:
-						if (!isPaused) {
-							rotatePiece((currentRotation == 3) ? 0 : currentRotation + 1);
-						}
-						break;
+	private final BlockingQueue<Integer> keys = new ArrayBlockingQueue<Integer>(KEY_QUEUE_SIZE);
 
-					/*
-					 * Pause Game - When pressed, check to see that we're currently playing a game.
-					 * If so, toggle the pause variable and update the logic timer to reflect this
-					 * change, otherwise the game will execute a huge number of updates and
-					 * essentially
-					 * cause an instant game over when we unpause if we stay paused for more than a
-					 * minute or so.
-					 */
-					case KeyEvent.VK_P:
-						if (!isGameOver && !isNewGame) {
-							isPaused = !isPaused;
-							logicTimer.setPaused(isPaused);
-						}
-						break;
+	public Tetris() {
+		this(BoardPanel.COL_COUNT, BoardPanel.VISIBLE_ROW_COUNT, BoardPanel.TILE_SIZE, PieceSet.STANDARD);
+	}
 
-					/*
-					 * Start Game - When pressed, check to see that we're in either a game over or
-					 * new
-					 * game state. If so, reset the game.
-					 */
-					case KeyEvent.VK_ENTER:
-						if (isGameOver || isNewGame) {
-							resetGame();
-						}
-						break;
+	/**
+	 * Creates a new game on a board of the given size. Boards too large for
+	 * the window are shown in a scroll pane that follows the current piece.
+	 *
+	 * @param colCount        The number of columns.
+	 * @param visibleRowCount The number of visible rows.
+	 * @param tileSize        The number of pixels that a tile takes up.
+	 * @param pieces          The piece set to play with.
+	 */
+	public Tetris(int colCount, int visibleRowCount, int tileSize, PieceSet pieces) {
+		this(colCount, visibleRowCount, tileSize, pieces, null, null);
+	}
 
-				}
+	/**
+	 * Creates a new game on a board of the given size, played by a bot rather
+	 * than the keyboard. The bot decides on its own thread, so a slow bot
+	 * never holds up the game.
+	 *
+	 * @param colCount        The number of columns.
+	 * @param visibleRowCount The number of visible rows.
+	 * @param tileSize        The number of pixels that a tile takes up.
+	 * @param pieces          The piece set to play with.
+	 * @param bot             The bot, or null to play with the keyboard.
+	 * @param exportDirectory The directory to record training samples of
+	 *                        every placement to, or null to not record them.
+	 */
+	public Tetris(int colCount, int visibleRowCount, int tileSize, PieceSet pieces, Bot bot, File exportDirectory) {
+		super("Tetris");
+		this.exportDirectory = exportDirectory;
+		setDefaultCloseOperation(EXIT_ON_CLOSE);
+		setResizable(false);
+		this.engine = new GameEngine(new Board(colCount, visibleRowCount + BoardPanel.HIDDEN_ROW_COUNT, pieces));
+		this.events = new EventBus(EVENT_CAPACITY);
+		engine.setEventBus(events);
+		this.stats = new PlayerStats(engine.getBoard());
+		this.statsEvents = events.subscribe();
+		this.undoBuffer = new SnapshotRing(engine,
+				Math.max(2, Math.min(UNDO_DEPTH, UNDO_BUDGET / engine.getSnapshotSize())));
+		this.seeds = new Random();
+		try {
+			this.scores = new ScoreStore(new File(SCORES_DIRECTORY));
+		} catch (IOException e) {
+			// Play on without a leaderboard.
+			e.printStackTrace();
+		}
+
+		/*
+		 * The panels paint from snapshots of the game rather than the game
+		 * itself, since the game runs on its own thread. Frames are painted on
+		 * the event dispatch thread.
+		 */
+		this.frames = new FramePublisher(this, new Executor() {
+			@Override
+			public void execute(Runnable frame) {
+				SwingUtilities.invokeLater(frame);
+			}
+		}, new Runnable() {
+			@Override
+			public void run() {
+				renderGame();
 			}
+		});
+		this.view = frames.getView();
+		this.board = new BoardPanel(view, tileSize);
+		this.side = new SidePanel(view);
+		if (bot != null) {
+			this.bot = new BotHost(bot, BOT_BUDGET);
+		}
+
+		/*
+		 * The warm-up always plays standard pieces on a standard board, since
+		 * its panels are painted into images of their full size, which a large
+		 * board could never fit in memory. It only has to compile the loop, so
+		 * it's never worth holding up the game for.
+		 */
+		this.warmUp = new WarmUp(BoardPanel.COL_COUNT, BoardPanel.ROW_COUNT, PieceSet.STANDARD, tileSize,
+				WARMUP_TIME);
+
+		/*
+		 * Only the part of a large board inside the viewport is painted, since
+		 * the panel culls everything outside its clip.
+		 */
+		Dimension size = board.getPreferredSize();
+		if (size.width > MAX_VIEW_WIDTH || size.height > MAX_VIEW_HEIGHT) {
+			JScrollPane scroller = new JScrollPane(board);
+			scroller.setPreferredSize(new Dimension(Math.min(size.width, MAX_VIEW_WIDTH) + 20,
+					Math.min(size.height, MAX_VIEW_HEIGHT) + 20));
+			scroller.getVerticalScrollBar().setUnitIncrement(tileSize);
+			scroller.getHorizontalScrollBar().setUnitIncrement(tileSize);
+			scroller.setFocusable(false);
+			add(scroller, BorderLayout.CENTER);
+		} else {
+			add(board, BorderLayout.CENTER);
+		}
+		add(side, BorderLayout.EAST);
+
+		/*
+		 * Keys are handed to the logic thread, which applies them at the start
+		 * of its next tick, so the game is only ever changed by that thread. The
+		 * effects are only drawn, so they're toggled here.
+		 */
+		addKeyListener(new KeyAdapter() {
 
 			@Override
-			public void keyReleased(KeyEvent e) {
-				switch (e.getKeyCode()) {
-
-					/*
-					 * Drop - When released, we set the speed of the logic timer
-					 * back to whatever the current game speed is and clear out
-					 * any cycles that might still be elapsed.
-					 */
-					case KeyEvent.VK_S:
-						logicTimer.setCyclesPerSecond(gameSpeed);
-						logicTimer.reset();
-						break;
+			public void keyPressed(KeyEvent e) {
+				if (e.getKeyCode() == KeyEvent.VK_F) {
+					board.getEffects().setEnabled(!board.getEffects().isEnabled());
+				} else {
+					keys.offer(e.getKeyCode());
 				}
+			}
 
+			@Override
+			public void keyReleased(KeyEvent e) {
+				keys.offer(-e.getKeyCode());
 			}
 
 		});
@@ -189,252 +281,456 @@ public class Tetris extends JFrame {
 	 */
 	void startGame() {
 		/*
-		 * Initialize our random number generator, logic timer, and new game variables.
+		 * Initialize our new game variables.
 		 */
-		this.random = new Random();
 		this.isNewGame = true;
-		switch (level) {
-			case 1:
-				this.gameSpeed = 1.0f;
-				break;
-			case 2:
-				this.gameSpeed = 1.5f;
-				break;
-			case 3:
-				this.gameSpeed = 2.0f;
-				break;
-			default:
-				this.gameSpeed = 1.0f; // Default to level 1 if level is not recognized
-				break;
-		}
 		/*
-		 * Setup the timer to keep the game from running before the user presses enter
-		 * to start it.
+		 * The game runs on its own thread, so painting can never hold up a tick.
+		 * Each tick ends by publishing a snapshot for the panels to paint.
 		 */
+		this.logicThread = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
 
-		this.logicTimer = new Clock(gameSpeed);
-		logicTimer.setPaused(true);
-
-		Timer gameTimer = new Timer((int) FRAME_TIME, new ActionListener() {
 			@Override
-			public void actionPerformed(ActionEvent e) {
-				// Update the logic timer.
-				logicTimer.update();
-
-				/*
-				 * If a cycle has elapsed on the timer, we can update the game and
-				 * move our current piece down.
-				 */
-				if (logicTimer.hasElapsedCycle()) {
-					updateGame();
-				}
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "Game logic");
+				thread.setDaemon(true);
+				return thread;
+			}
 
-				// Decrement the drop cool down if necessary.
-				if (dropCooldown > 0) {
-					dropCooldown--;
+		});
+		logicThread.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					tick();
+				} catch (RuntimeException e) {
+					// Keep the game running rather than silently stopping the schedule.
+					e.printStackTrace();
 				}
-
-				// Display the window to the user.
-				renderGame();
 			}
-		});
+		}, 0L, FRAME_TIME, TimeUnit.MILLISECONDS);
 		playMusic("asset/song.wav");
-		gameTimer.setRepeats(true);
-		gameTimer.start();
-
 	}
 
 	/**
-	 * Updates the game and handles logic.
+	 * Runs a frame of the game on the logic thread: applies the keys pressed
+	 * since the last frame, updates the game, and publishes a snapshot of it
+	 * for the panels.
 	 */
-	private void updateGame() {
+	private void tick() {
+		for (Integer key = keys.poll(); key != null; key = keys.poll()) {
+			if (key > 0) {
+				pressKey(key);
+			} else {
+				releaseKey(-key);
+			}
+		}
+
+		// Count the time spent actually playing for the score record.
+		long now = System.nanoTime();
+		if (!isPaused && !isNewGame && !engine.isGameOver()) {
+			playTime += now - lastFrame;
+		}
+		lastFrame = now;
+
 		/*
-		 * Check to see if the piece's position can move down to the next row.
+		 * Let the bot, if there is one, send an input in place of the
+		 * keyboard. It never waits for the bot to decide.
 		 */
-		if (board.isValidAndEmpty(currentType, currentCol, currentRow + 1, currentRotation)) {
-			// Increment the current row if it's safe to do so.
-			currentRow++;
-		} else {
+		if (bot != null && !isPaused && !isNewGame && !engine.isGameOver()) {
+			applyInput(bot.nextInput(engine));
+		}
+
+		/*
+		 * Tick the game, which lets the current piece fall by however many rows
+		 * the current speed calls for. Nothing moves while the game is paused,
+		 * waiting to start or over.
+		 */
+		if (!isPaused && !isNewGame && !engine.isGameOver()) {
+			updateGame(false);
+		}
+
+		// Decrement the drop cool down if necessary.
+		if (dropCooldown > 0) {
+			dropCooldown--;
+		}
+
+		updateStats();
+		publishFrame();
+	}
+
+	/**
+	 * Applies a key press. This is called on the logic thread.
+	 *
+	 * @param code The key code.
+	 */
+	private void pressKey(int code) {
+		switch (code) {
+
 			/*
-			 * We've either reached the bottom of the board, or landed on another piece, so
-			 * we need to add the piece to the board.
+			 * Drop - When pressed, we check to see that the game is not
+			 * paused and that there is no drop cooldown, then soft drop
+			 * the piece until the key is released or the piece locks.
 			 */
-			board.addPiece(currentType, currentCol, currentRow, currentRotation);
+			case KeyEvent.VK_S:
+				if (!isPaused && dropCooldown == 0) {
+					isSoftDropping = true;
+					publishInput(VersusProtocol.INPUT_DROP);
+				}
+				break;
 
 			/*
-			 * Check to see if adding the new piece resulted in any cleared lines. If so,
-			 * increase the player's score. (Up to 4 lines can be cleared in a single go;
-			 * [1 = 100pts, 2 = 200pts, 3 = 400pts, 4 = 800pts]).
+			 * Move Left - When pressed, we check to see that the game is
+			 * not paused and that the position to the left of the current
+			 * position is valid. If so, we decrement the current column by 1.
 			 */
-			int cleared = board.checkLines();
-			if (cleared > 0) {
-				score += 50 << cleared;
-			}
+			case KeyEvent.VK_A:
+				if (!isPaused) {
+					engine.moveLeft();
+					publishInput(VersusProtocol.INPUT_LEFT);
+				}
+				break;
+
+			/*
+			 * Move Right - When pressed, we check to see that the game is
+			 * not paused and that the position to the right of the current
+			 * position is valid. If so, we increment the current column by 1.
+			 */
+			case KeyEvent.VK_D:
+				if (!isPaused) {
+					engine.moveRight();
+					publishInput(VersusProtocol.INPUT_RIGHT);
+				}
+				break;
 
 			/*
-			 * Increase the speed slightly for the next piece and update the game's timer
-			 * to reflect the increase.
+			 * Rotate Anticlockwise - When pressed, check to see that the game is not paused
+			 * and then attempt to rotate the piece anticlockwise. Because of the size and
+			 * complexity of the rotation code, as well as it's similarity to clockwise
+			 * rotation, the code for rotating the piece is handled in another method.
 			 */
-			gameSpeed += 0.035f;
-			logicTimer.setCyclesPerSecond(gameSpeed);
-			logicTimer.reset();
+			case KeyEvent.VK_Q:
+				if (!isPaused) {
+					int rotation = engine.getPieceRotation();
+					engine.rotatePiece((rotation == 0) ? 3 : rotation - 1);
+					publishInput(VersusProtocol.INPUT_ROTATE_ACW);
+				}
+				break;
 
 			/*
-			 * Set the drop cooldown so the next piece doesn't automatically come flying
-			 * in from the heavens immediately after this piece hits if we've not reacted
-			 * yet. (~0.5 second buffer).
+			 * Rotate Clockwise - When pressed, check to see that the game is not paused
+			 * and then attempt to rotate the piece clockwise. Because of the size and
+			 * complexity of the rotation code, as well as it's similarity to anticlockwise
+			 * rotation, the code for rotating the piece is handled in another method.
 			 */
-			dropCooldown = 25;
+			case KeyEvent.VK_E:
+				if (!isPaused) {
+					int rotation = engine.getPieceRotation();
+					engine.rotatePiece((rotation == 3) ? 0 : rotation + 1);
+					publishInput(VersusProtocol.INPUT_ROTATE_CW);
+				}
+				break;
 
 			/*
-			 * Update the difficulty level. This has no effect on the game, and is only
-			 * used in the "Level" string in the SidePanel.
+			 * Pause Game - When pressed, check to see that we're currently playing a game.
+			 * If so, toggle the pause variable. The game isn't ticked while it's paused.
 			 */
-			level = (int) (gameSpeed * 1.70f);
+			case KeyEvent.VK_P:
+				if (!engine.isGameOver() && !isNewGame) {
+					isPaused = !isPaused;
+				}
+				break;
 
 			/*
-			 * Spawn a new piece to control.
+			 * Start Game - When pressed, check to see that we're in either a game over or
+			 * new
+			 * game state. If so, reset the game.
 			 */
-			spawnPiece();
+			case KeyEvent.VK_ENTER:
+				if (engine.isGameOver() || isNewGame) {
+					resetGame();
+				}
+				break;
+
+			/*
+			 * Undo - When pressed, check to see that we're currently playing a game
+			 * and that there is an earlier piece to go back to. The newest snapshot
+			 * is the spawn of the current piece, so we skip past it, restore the one
+			 * before, and record that again so that undo can be repeated. The score,
+			 * lines and level go back with the board, but the stats aren't rewound:
+			 * they count every piece and input that was played, undone or not.
+			 */
+			case KeyEvent.VK_U:
+				if (!isPaused && !isNewGame && !engine.isGameOver() && undoBuffer.size() > 1) {
+					undoBuffer.pop(engine);
+					undoBuffer.pop(engine);
+					undoBuffer.push(engine);
+				}
+				break;
 		}
 	}
 
 	/**
-	 * Forces the BoardPanel and SidePanel to repaint.
+	 * Applies a key release. This is called on the logic thread.
+	 *
+	 * @param code The key code.
 	 */
-	private void renderGame() {
-		board.repaint();
-		side.repaint();
-	}
+	private void releaseKey(int code) {
+		switch (code) {
 
-	/**
-	 * Resets the game variables to their default values at the start
-	 * of a new game.
-	 */
-	private void resetGame() {
-		switch (level) {
-			case 1:
-				this.gameSpeed = 1.0f;
-				break;
-			case 2:
-				this.gameSpeed = 1.5f;
-				break;
-			case 3:
-				this.gameSpeed = 2.0f;
-				break;
-			default:
-				this.gameSpeed = 1.0f; // Default to level 1 if level is not recognized
-				break;
-		}
-		this.score = 0;
-		switch (level) {
-			case 1:
-				this.gameSpeed = 1.0f;
-				break;
-			case 2:
-				this.gameSpeed = 1.5f;
-				break;
-			case 3:
-				this.gameSpeed = 2.0f;
-				break;
-			default:
-				this.gameSpeed = 1.0f; // Default to level 1 if level is not recognized
+			/*
+			 * Drop - When released, the piece goes back to falling at
+			 * the speed of the game.
+			 */
+			case KeyEvent.VK_S:
+				isSoftDropping = false;
 				break;
 		}
-		this.nextType = TileType.values()[random.nextInt(TYPE_COUNT)];
-		this.isNewGame = false;
-		this.isGameOver = false;
-		board.clear();
-		logicTimer.reset();
-		logicTimer.setCyclesPerSecond(gameSpeed);
-		spawnPiece();
 	}
 
 	/**
-	 * Spawns a new piece and resets our piece's variables to their default
-	 * values.
+	 * Updates the game and handles logic.
+	 *
+	 * @param step Whether to move the piece down exactly one row, as a bot's
+	 *             drop does, rather than ticking it.
 	 */
-	private void spawnPiece() {
+	private void updateGame(boolean step) {
 		/*
-		 * Poll the last piece and reset our position and rotation to
-		 * their default variables, then pick the next piece to use.
+		 * A piece only locks once it's resting on the stack at the start of an
+		 * update, so that's when it's captured as a sample. It can rest for the
+		 * whole lock delay, so it's captured when it comes to rest and again
+		 * only if it moves.
 		 */
-		this.currentType = nextType;
-		this.currentCol = currentType.getSpawnColumn();
-		this.currentRow = currentType.getSpawnRow();
-		this.currentRotation = 0;
-		this.nextType = TileType.values()[random.nextInt(TYPE_COUNT)];
+		TileType type = engine.getPieceType();
+		if (samples != null && engine.getPieceRow() == engine.getLandingRow()
+				&& engine.getLandingVersion() != sampledVersion) {
+			sampledVersion = engine.getLandingVersion();
+			recordSample();
+		}
+		if (!(step ? engine.update() : engine.tick(isSoftDropping))) {
+			return;
+		}
+		if (samples != null) {
+			commitSample();
+		}
 
 		/*
-		 * If the spawn point is invalid, we need to pause the game and flag that we've
-		 * lost
-		 * because it means that the pieces on the board have gotten too high.
+		 * Start an effect for each cleared line. The effects are only drawn, so
+		 * they're started on the thread that paints, and the piece that was just
+		 * locked doesn't wait for them to finish.
 		 */
-		if (!board.isValidAndEmpty(currentType, currentCol, currentRow, currentRotation)) {
-			this.isGameOver = true;
-			logicTimer.setPaused(true);
+		for (int i = 0; i < engine.getLinesCleared(); i++) {
+			final int row = engine.getClearedRow(i) - BoardPanel.HIDDEN_ROW_COUNT;
+			final int colCount = getBoard().getColCount();
+			final Color color = type.getBaseColor();
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					board.getEffects().addLineClear(row, colCount, color);
+				}
+			});
 		}
-	}
 
-	/**
-	 * Attempts to set the rotation of the current piece to newRotation.
-	 * 
-	 * @param newRotation The rotation of the new peice.
-	 */
-	private void rotatePiece(int newRotation) {
 		/*
-		 * Sometimes pieces will need to be moved when rotated to avoid clipping
-		 * out of the board (the I piece is a good example of this). Here we store
-		 * a temporary row and column in case we need to move the tile as well.
+		 * The piece was locked and a new one spawned, so stop soft dropping
+		 * until the drop key is pressed again.
 		 */
-		int newColumn = currentCol;
-		int newRow = currentRow;
+		isSoftDropping = false;
 
 		/*
-		 * Get the insets for each of the sides. These are used to determine how
-		 * many empty rows or columns there are on a given side.
+		 * Set the drop cooldown so the next piece doesn't automatically come flying
+		 * in from the heavens immediately after this piece hits if we've not reacted
+		 * yet. (~0.5 second buffer).
 		 */
-		int left = currentType.getLeftInset(newRotation);
-		int right = currentType.getRightInset(newRotation);
-		int top = currentType.getTopInset(newRotation);
-		int bottom = currentType.getBottomInset(newRotation);
+		dropCooldown = 25;
 
 		/*
-		 * If the current piece is too far to the left or right, move the piece away
-		 * from the edges
-		 * so that the piece doesn't clip out of the map and automatically become
-		 * invalid.
+		 * If the new piece couldn't spawn, the game is over. Otherwise remember
+		 * the spawn so it can be undone.
 		 */
-		if (currentCol < -left) {
-			newColumn -= currentCol - left;
-		} else if (currentCol + currentType.getDimension() - right >= BoardPanel.COL_COUNT) {
-			newColumn -= (currentCol + currentType.getDimension() - right) - BoardPanel.COL_COUNT + 1;
+		if (engine.isGameOver()) {
+			updateStats();
+			recordScore();
+			closeSamples();
+		} else {
+			undoBuffer.push(engine);
 		}
+	}
 
-		/*
-		 * If the current piece is too far to the top or bottom, move the piece away
-		 * from the edges
-		 * so that the piece doesn't clip out of the map and automatically become
-		 * invalid.
-		 */
-		if (currentRow < -top) {
-			newRow -= currentRow - top;
-		} else if (currentRow + currentType.getDimension() - bottom >= BoardPanel.ROW_COUNT) {
-			newRow -= (currentRow + currentType.getDimension() - bottom) - BoardPanel.ROW_COUNT + 1;
+	/**
+	 * Applies an input from a bot, just as the matching key would.
+	 *
+	 * @param input One of the {@code VersusProtocol.INPUT_*} constants, or 0
+	 *              for no input.
+	 */
+	private void applyInput(byte input) {
+		if (input != 0) {
+			publishInput(input);
 		}
+		int rotation = engine.getPieceRotation();
+		switch (input) {
+			case VersusProtocol.INPUT_LEFT:
+				engine.moveLeft();
+				break;
+			case VersusProtocol.INPUT_RIGHT:
+				engine.moveRight();
+				break;
+			case VersusProtocol.INPUT_ROTATE_ACW:
+				engine.rotatePiece((rotation == 0) ? 3 : rotation - 1);
+				break;
+			case VersusProtocol.INPUT_ROTATE_CW:
+				engine.rotatePiece((rotation == 3) ? 0 : rotation + 1);
+				break;
+			case VersusProtocol.INPUT_DROP:
+				if (dropCooldown == 0) {
+					updateGame(true);
+				}
+				break;
+		}
+	}
 
-		/*
-		 * Check to see if the new position is acceptable. If it is, update the rotation
-		 * and
-		 * position of the piece.
-		 */
-		if (board.isValidAndEmpty(currentType, newColumn, newRow, newRotation)) {
-			currentRotation = newRotation;
-			currentRow = newRow;
-			currentCol = newColumn;
+	/**
+	 * Publishes an input made during a game, so that it's counted in the
+	 * player's stats. Inputs made before the game starts or after it ends
+	 * aren't counted.
+	 *
+	 * @param input One of the {@code VersusProtocol.INPUT_*} constants.
+	 */
+	private void publishInput(int input) {
+		if (!isNewGame && !engine.isGameOver()) {
+			events.publish(EventBus.INPUT, input, 0L);
 		}
 	}
 
+	/**
+	 * Brings the player's stats up to date with the events published since
+	 * the last frame. Each event is counted once, as it arrives, so this does
+	 * no more work however long the game has gone on.
+	 */
+	private void updateStats() {
+		statsEvents.poll(stats);
+		stats.setPlayTime(playTime);
+	}
+
+	/**
+	 * Captures the state of the game as a training sample, since the current
+	 * piece is about to lock.
+	 */
+	private void recordSample() {
+		try {
+			samples.capture(engine);
+		} catch (IOException e) {
+			e.printStackTrace();
+			closeSamples();
+		}
+	}
+
+	/**
+	 * Finishes the captured training sample, rewarding it with the number of
+	 * lines the piece cleared.
+	 */
+	private void commitSample() {
+		try {
+			samples.commit(engine.getLinesCleared());
+		} catch (IOException e) {
+			e.printStackTrace();
+			closeSamples();
+		}
+	}
+
+	/**
+	 * Writes out the training samples of the game, if they're being recorded.
+	 */
+	private void closeSamples() {
+		if (samples == null) {
+			return;
+		}
+		try {
+			samples.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		samples = null;
+	}
+
+	/**
+	 * Records the finished game in the leaderboard, and appends a summary of
+	 * it and the player's stats to the summary file. When a bot played, the
+	 * summary ends with how long its decisions took.
+	 */
+	private void recordScore() {
+		if (scores == null) {
+			return;
+		}
+
+		ScoreRecord record = new ScoreRecord(engine.getScore(), engine.getStartLevel(), engine.getTotalLines(),
+				playTime / 1000000L, engine.getSeed());
+		try {
+			scores.record(record);
+			bestScore = scores.getBest(engine.getStartLevel());
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		try (Writer summaries = new FileWriter(new File(SCORES_DIRECTORY, SUMMARY_FILE), true)) {
+			summaries.write(record + " " + stats + ((bot != null) ? " " + bot : "") + System.lineSeparator());
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Publishes a snapshot of the game for the panels, and asks for a frame to
+	 * be painted from it. If the last frame hasn't been painted yet, it will
+	 * pick up this snapshot instead, so a slow paint never queues up frames.
+	 */
+	private void publishFrame() {
+		frames.publish();
+	}
+
+	/**
+	 * Forces the BoardPanel and SidePanel to repaint from the latest
+	 * snapshot. This is called on the event dispatch thread.
+	 */
+	private void renderGame() {
+		view.refresh();
+		board.followPiece();
+		board.repaint();
+		side.repaint();
+	}
+
+	/**
+	 * Resets the game variables to their default values at the start
+	 * of a new game.
+	 */
+	private void resetGame() {
+		this.isNewGame = false;
+		this.playTime = 0L;
+		statsEvents.poll(stats);
+		stats.reset();
+		engine.setSeed(seeds.nextLong());
+		engine.reset();
+		closeSamples();
+		if (exportDirectory != null) {
+			try {
+				samples = new SampleWriter(exportDirectory, "game-" + Long.toHexString(engine.getSeed()),
+						Long.MAX_VALUE, getBoard());
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		if (scores != null) {
+			try {
+				bestScore = scores.getBest(engine.getStartLevel());
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		undoBuffer.clear();
+		undoBuffer.push(engine);
+		isSoftDropping = false;
+	}
+
 	/**
 	 * Checks to see whether or not the game is paused.
 	 * 
@@ -450,7 +746,7 @@ public class Tetris extends JFrame {
 	 * @return Whether or not the game is over.
 	 */
 	public boolean isGameOver() {
-		return isGameOver;
+		return engine.isGameOver();
 	}
 
 	/**
@@ -468,7 +764,38 @@ public class Tetris extends JFrame {
 	 * @return The score.
 	 */
 	public int getScore() {
-		return score;
+		return engine.getScore();
+	}
+
+	/**
+	 * Gets the best recorded score on the level the game was started on.
+	 * 
+	 * @return The best score.
+	 */
+	public int getBestScore() {
+		return bestScore;
+	}
+
+	/**
+	 * Gets the bus the game's events are published to. Consumers such as
+	 * audio, statistics or a replay recorder can subscribe to it and read on
+	 * their own threads without slowing the game.
+	 * 
+	 * @return The bus.
+	 */
+	public EventBus getEventBus() {
+		return events;
+	}
+
+	/**
+	 * Gets the live stats of the player. They're only kept up to date on the
+	 * thread that runs the game; other threads should read them from a
+	 * snapshot.
+	 * 
+	 * @return The stats.
+	 */
+	public PlayerStats getStats() {
+		return stats;
 	}
 
 	/**
@@ -477,7 +804,16 @@ public class Tetris extends JFrame {
 	 * @return The level.
 	 */
 	public int getLevel() {
-		return level;
+		return engine.getLevel();
+	}
+
+	/**
+	 * Gets the board the game is played on.
+	 * 
+	 * @return The board.
+	 */
+	public Board getBoard() {
+		return engine.getBoard();
 	}
 
 	/**
@@ -486,7 +822,7 @@ public class Tetris extends JFrame {
 	 * @return The piece type.
 	 */
 	public TileType getPieceType() {
-		return currentType;
+		return engine.getPieceType();
 	}
 
 	/**
@@ -495,7 +831,7 @@ public class Tetris extends JFrame {
 	 * @return The next piece.
 	 */
 	public TileType getNextPieceType() {
-		return nextType;
+		return engine.getNextPieceType();
 	}
 
 	/**
@@ -504,7 +840,7 @@ public class Tetris extends JFrame {
 	 * @return The column.
 	 */
 	public int getPieceCol() {
-		return currentCol;
+		return engine.getPieceCol();
 	}
 
 	/**
@@ -513,7 +849,12 @@ public class Tetris extends JFrame {
 	 * @return The row.
 	 */
 	public int getPieceRow() {
-		return currentRow;
+		return engine.getPieceRow();
+	}
+
+	@Override
+	public int getLandingRow() {
+		return engine.getLandingRow();
 	}
 
 	/**
@@ -522,7 +863,7 @@ public class Tetris extends JFrame {
 	 * @return The rotation.
 	 */
 	public int getPieceRotation() {
-		return currentRotation;
+		return engine.getPieceRotation();
 	}
 
 	public void playMusic(String filePath) {
@@ -547,6 +888,12 @@ public class Tetris extends JFrame {
 	public void showMenu() {
 		playMusic("/Users/ink_project/Desktop/Source Code/asset/song.mp3");
 
+		/*
+		 * Play a game nobody sees while the menu waits, so that the code the
+		 * game spends its frames in is compiled before the real one starts.
+		 */
+		warmUpThread = WarmUp.start(warmUp);
+
 		JFrame menuFrame = new JFrame("Tetris Menu");
 		JPanel menuPanel = new JPanel();
 		menuPanel.setLayout(new GridBagLayout());
@@ -560,6 +907,7 @@ public class Tetris extends JFrame {
 			public void actionPerformed(ActionEvent e) {
 				menuFrame.setVisible(false); // Hide the menu window
 				menuFrame.dispose(); // Dispose of the menu window resources
+				warmUpThread.interrupt(); // Stop warming up, as the game needs the CPU now
 				requestFocus(); // Request focus on the main game window
 				startGame(); // Start the game
 			}
@@ -577,16 +925,13 @@ public class Tetris extends JFrame {
 				// Update the level based on user selection and adjust game parameters
 				switch (selectedOption) {
 					case 0:
-						level = 1;
-						gameSpeed = 1.0f;
+						engine.setLevel(1);
 						break;
 					case 1:
-						level = 2;
-						gameSpeed = 1.5f;
+						engine.setLevel(2);
 						break;
 					case 2:
-						level = 3;
-						gameSpeed = 2.0f;
+						engine.setLevel(3);
 						break;
 				}
 			}
@@ -636,11 +981,48 @@ public class Tetris extends JFrame {
 		menuFrame.getRootPane().setDefaultButton(startButton);
 	}
 
-	public static void main(String[] args) {
+	/**
+	 * Starts the game.
+	 *
+	 * The game is played by a bot if one other than "none" is given, either
+	 * by the name of a {@code HeuristicBot} preset or by the name of a class
+	 * that implements {@code Bot} and has a public no-argument constructor.
+	 *
+	 * Training samples of every placement are recorded to the export
+	 * directory, if one is given, with a shard for each game.
+	 *
+	 * Usage: {@code Tetris [columns] [visible rows] [tile size] [piece file] [bot] [export directory]}
+	 *
+	 * @param args The command line arguments.
+	 * @throws Exception If the piece file or the bot couldn't be loaded.
+	 */
+	public static void main(String[] args) throws Exception {
+		final int colCount = (args.length > 0) ? Integer.parseInt(args[0]) : BoardPanel.COL_COUNT;
+		final int rowCount = (args.length > 1) ? Integer.parseInt(args[1]) : BoardPanel.VISIBLE_ROW_COUNT;
+		final int tileSize = (args.length > 2) ? Integer.parseInt(args[2]) : BoardPanel.TILE_SIZE;
+		final PieceSet pieces = (args.length > 3) ? PieceSet.load(new File(args[3])) : PieceSet.STANDARD;
+		final Bot bot = (args.length > 4 && !args[4].equals("none")) ? loadBot(args[4]) : null;
+		final File export = (args.length > 5) ? new File(args[5]) : null;
 		SwingUtilities.invokeLater(new Runnable() {
 			public void run() {
-				new Tetris();
+				new Tetris(colCount, rowCount, tileSize, pieces, bot, export);
 			}
 		});
 	}
+
+	/**
+	 * Loads a bot by name.
+	 *
+	 * @param name The name of a {@code HeuristicBot} preset, or of a class
+	 *             that implements {@code Bot}.
+	 * @return The bot.
+	 * @throws Exception If there's no such bot or it couldn't be created.
+	 */
+	private static Bot loadBot(String name) throws Exception {
+		Bot preset = HeuristicBot.forName(name);
+		if (preset != null) {
+			return preset;
+		}
+		return Class.forName(name).asSubclass(Bot.class).getDeclaredConstructor().newInstance();
+	}
 }
\ No newline at end of file
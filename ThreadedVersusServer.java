@@ -0,0 +1,492 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ThreadedVersusServer implements Runnable {
+
+	/**
+	 * The number of nanoseconds between ticks.
+	 */
+	private static final long TICK_NANOS = 1000000000L / VersusMatch.TICKS_PER_SECOND;
+
+	/**
+	 * The number of nanoseconds a write may block for before the client is
+	 * dropped. Writes are blocking, so a client that stops reading would
+	 * otherwise hold up its match loop, and its opponent, forever.
+	 */
+	private static final long WRITE_TIMEOUT = 1000000000L;
+
+	/**
+	 * The number of milliseconds between checks for stalled writes.
+	 */
+	private static final long WATCHDOG_INTERVAL = 100L;
+
+	/**
+	 * The socket accepting new connections.
+	 */
+	private final ServerSocket server;
+
+	/**
+	 * The executor that runs every match loop and every connection's reader.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * How late each tick ran compared to when it was scheduled.
+	 */
+	private final LatencyRecorder tickLateness = new LatencyRecorder();
+
+	/**
+	 * The total number of ticks run across all matches.
+	 */
+	private final AtomicLong ticks = new AtomicLong();
+
+	/**
+	 * The seed of the next match.
+	 */
+	private final AtomicLong seeds = new AtomicLong(System.nanoTime());
+
+	/**
+	 * Every open connection, which the watchdog checks for stalled writes.
+	 */
+	private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The thread that closes connections whose writes have stalled.
+	 */
+	private final Thread watchdog;
+
+	/**
+	 * The connection waiting for an opponent, if any. Guarded by {@code this}.
+	 */
+	private Connection waiting;
+
+	/**
+	 * Whether or not the server should keep running.
+	 */
+	private volatile boolean isRunning;
+
+	/**
+	 * Creates a new ThreadedVersusServer and binds it to the address.
+	 *
+	 * @param address  The address to listen on.
+	 * @param executor The executor to run match loops and readers on. Every
+	 *                 match needs three tasks that block for its whole
+	 *                 duration, so this should start a new thread per task.
+	 * @throws IOException If the server could not be bound.
+	 */
+	public ThreadedVersusServer(InetSocketAddress address, ExecutorService executor) throws IOException {
+		this.server = new ServerSocket();
+		server.bind(address, 1024);
+		this.executor = executor;
+		this.watchdog = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				watch();
+			}
+		}, "write-watchdog");
+		watchdog.setDaemon(true);
+	}
+
+	/**
+	 * Creates a new ThreadedVersusServer that runs every match loop and every
+	 * reader on its own virtual thread. Virtual threads need Java 21; on older
+	 * JVMs each task gets its own platform thread instead.
+	 *
+	 * @param address The address to listen on.
+	 * @return The server.
+	 * @throws IOException If the server could not be bound.
+	 */
+	public static ThreadedVersusServer withVirtualThreads(InetSocketAddress address) throws IOException {
+		ExecutorService executor = newVirtualThreadExecutor();
+		return new ThreadedVersusServer(address, (executor != null) ? executor : Executors.newCachedThreadPool());
+	}
+
+	/**
+	 * Creates an executor that runs every task on its own virtual thread. The
+	 * tree still builds on Java 17, so the factory is looked up at run time.
+	 *
+	 * @return The executor, or null if this JVM has no virtual threads.
+	 */
+	public static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the port the server is listening on.
+	 *
+	 * @return The port.
+	 */
+	public int getPort() {
+		return server.getLocalPort();
+	}
+
+	/**
+	 * Gets how late ticks ran compared to when they were scheduled.
+	 *
+	 * @return The recorder.
+	 */
+	public LatencyRecorder getTickLateness() {
+		return tickLateness;
+	}
+
+	/**
+	 * Gets the total number of ticks run across all matches.
+	 *
+	 * @return The number of ticks.
+	 */
+	public long getTickCount() {
+		return ticks.get();
+	}
+
+	/**
+	 * Accepts connections until {@code stop} is called, starting a reader for
+	 * each one.
+	 */
+	@Override
+	public void run() {
+		isRunning = true;
+		watchdog.start();
+		try {
+			while (isRunning) {
+				Socket socket = server.accept();
+				socket.setTcpNoDelay(true);
+				final Connection connection = new Connection(socket);
+				connections.add(connection);
+				if (!isRunning) {
+					/* Stopped after accepting this, so stop may have missed it. */
+					connection.close();
+					break;
+				}
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						read(connection);
+					}
+				});
+			}
+		} catch (IOException e) {
+			if (isRunning) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Stops accepting connections, interrupts every match, and closes every
+	 * connection. Readers on platform threads don't wake up when interrupted,
+	 * so closing their sockets is what fails their reads.
+	 */
+	public void stop() {
+		isRunning = false;
+		try {
+			server.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		watchdog.interrupt();
+		executor.shutdownNow();
+		for (Connection connection : connections) {
+			connection.close();
+		}
+	}
+
+	/**
+	 * Closes every connection whose current write has been blocked for longer
+	 * than {@code WRITE_TIMEOUT}, until the server stops. Closing the socket
+	 * fails the write, and {@code send} then forfeits the player's match.
+	 */
+	private void watch() {
+		try {
+			while (isRunning) {
+				Thread.sleep(WATCHDOG_INTERVAL);
+				long now = System.nanoTime();
+				for (Connection connection : connections) {
+					long started = connection.writeStarted;
+					if (started != 0L && now - started > WRITE_TIMEOUT) {
+						connection.close();
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			// The server stopped.
+		}
+	}
+
+	/**
+	 * Reads a connection's inputs until it closes. The first input decides
+	 * whether it joins the queue; spectating isn't supported by this server,
+	 * so spectators are turned away.
+	 *
+	 * @param connection The connection.
+	 */
+	private void read(Connection connection) {
+		try {
+			InputStream in = connection.in;
+			int input = in.read();
+			if (input < 0 || input == VersusProtocol.INPUT_SPECTATE) {
+				connection.close();
+				return;
+			}
+			enqueue(connection);
+
+			while ((input = in.read()) >= 0) {
+				Room room = connection.room;
+				if (room != null) {
+					synchronized (room.match) {
+						room.match.input(connection.seat, (byte) input);
+					}
+				}
+			}
+		} catch (IOException e) {
+			// The connection was closed.
+		}
+
+		connection.close();
+		connections.remove(connection);
+		Room room = connection.room;
+		if (room != null) {
+			synchronized (room.match) {
+				room.match.forfeit(connection.seat);
+			}
+		}
+	}
+
+	/**
+	 * Pairs a connection with the waiting connection and starts their match, or
+	 * makes it wait if no one else is.
+	 *
+	 * @param connection The connection.
+	 */
+	private void enqueue(Connection connection) {
+		Room room;
+		synchronized (this) {
+			if (waiting == null || waiting.isClosed) {
+				waiting = connection;
+				return;
+			}
+			room = new Room(new VersusMatch(seeds.getAndIncrement()), waiting, connection);
+			waiting = null;
+		}
+
+		/*
+		 * The seat has to be set before the room, since a reader that sees the
+		 * room applies its inputs to the seat it reads next.
+		 */
+		for (int seat = 0; seat < VersusMatch.SEATS; seat++) {
+			room.players[seat].seat = seat;
+			room.players[seat].room = room;
+		}
+
+		final Room started = room;
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				play(started);
+			}
+		});
+	}
+
+	/**
+	 * Runs a match to completion. Each tick the loop sleeps until the tick is
+	 * due, advances the match, and writes the changed states to both players
+	 * with blocking writes.
+	 *
+	 * @param room The room of the match.
+	 */
+	private void play(Room room) {
+		VersusMatch match = room.match;
+		ByteBuffer out = room.out;
+		byte[] scratch = new byte[match.getEngine(0).getSnapshotSize()];
+
+		for (int seat = 0; seat < VersusMatch.SEATS; seat++) {
+			out.clear();
+			VersusProtocol.writeControl(out, VersusProtocol.MSG_MATCH_START, seat);
+			send(room.players[seat], out);
+		}
+
+		long next = System.nanoTime();
+		boolean isOver = false;
+		try {
+			while (!isOver) {
+				next += TICK_NANOS;
+				long delay = next - System.nanoTime();
+				if (delay > 0) {
+					Thread.sleep(delay / 1000000L, (int) (delay % 1000000L));
+				}
+				tickLateness.record(System.nanoTime() - next);
+				ticks.incrementAndGet();
+
+				out.clear();
+				synchronized (match) {
+					match.tick();
+					for (int seat = 0; seat < VersusMatch.SEATS; seat++) {
+						if (match.pollChanged(seat)) {
+							VersusProtocol.writeState(out, seat, match.getEngine(seat), scratch);
+						}
+					}
+					isOver = match.isOver();
+					if (isOver) {
+						VersusProtocol.writeControl(out, VersusProtocol.MSG_MATCH_OVER, match.getWinner());
+					}
+				}
+
+				for (Connection player : room.players) {
+					send(player, out);
+				}
+			}
+		} catch (InterruptedException e) {
+			return;
+		}
+
+		for (Connection player : room.players) {
+			player.room = null;
+			if (!player.isClosed) {
+				enqueue(player);
+			}
+		}
+	}
+
+	/**
+	 * Writes the contents of a buffer to a player, closing the connection (and
+	 * forfeiting its match) if the write fails or the watchdog finds it
+	 * stalled.
+	 *
+	 * @param connection The player.
+	 * @param out        The buffer, positioned after the last byte to send.
+	 */
+	private void send(Connection connection, ByteBuffer out) {
+		if (out.position() == 0 || connection.isClosed) {
+			return;
+		}
+
+		try {
+			connection.writeStarted = System.nanoTime();
+			connection.out.write(out.array(), 0, out.position());
+			connection.out.flush();
+			connection.writeStarted = 0L;
+		} catch (IOException e) {
+			connection.writeStarted = 0L;
+			connection.close();
+			Room room = connection.room;
+			if (room != null) {
+				synchronized (room.match) {
+					room.match.forfeit(connection.seat);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A client connected to the server.
+	 */
+	private static class Connection {
+
+		/**
+		 * The socket of the client.
+		 */
+		private final Socket socket;
+
+		/**
+		 * The stream inputs are read from.
+		 */
+		private final InputStream in;
+
+		/**
+		 * The stream messages are written to.
+		 */
+		private final OutputStream out;
+
+		/**
+		 * The room of the match being played, or null if waiting.
+		 */
+		private volatile Room room;
+
+		/**
+		 * The seat of the client in its match.
+		 */
+		private volatile int seat;
+
+		/**
+		 * When the write in progress started, in nanoseconds, or zero if none
+		 * is.
+		 */
+		private volatile long writeStarted;
+
+		/**
+		 * Whether or not the connection has been closed.
+		 */
+		private volatile boolean isClosed;
+
+		private Connection(Socket socket) throws IOException {
+			this.socket = socket;
+			this.in = new BufferedInputStream(socket.getInputStream(), 64);
+			this.out = socket.getOutputStream();
+		}
+
+		/**
+		 * Closes the connection.
+		 */
+		private void close() {
+			isClosed = true;
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Nothing left to do with the socket.
+			}
+		}
+
+	}
+
+	/**
+	 * A match and the connections playing it.
+	 */
+	private static class Room {
+
+		/**
+		 * The match. Inputs and ticks are applied while holding its lock.
+		 */
+		private final VersusMatch match;
+
+		/**
+		 * The players, indexed by seat.
+		 */
+		private final Connection[] players;
+
+		/**
+		 * The buffer each tick's messages are encoded into before being written
+		 * to both players.
+		 */
+		private final ByteBuffer out;
+
+		private Room(VersusMatch match, Connection first, Connection second) {
+			this.match = match;
+			this.players = new Connection[] { first, second };
+			this.out = ByteBuffer.allocate(VersusMatch.SEATS * VersusProtocol.getStateSize(match.getEngine(0))
+					+ VersusProtocol.CONTROL_SIZE);
+		}
+
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = (args.length > 0) ? Integer.parseInt(args[0]) : VersusServer.DEFAULT_PORT;
+		ThreadedVersusServer server = withVirtualThreads(new InetSocketAddress(port));
+		System.out.println("Listening on port " + server.getPort());
+		server.run();
+	}
+
+}
@@ -1,259 +1,282 @@
 import java.awt.Color;
 
-public enum TileType {
+public final class TileType {
+
+	/**
+	 * The largest dimension a piece can have. Each row of a piece is stored as
+	 * a bitmask, so this keeps every row inside an int with room to shift.
+	 */
+	public static final int MAX_DIMENSION = 16;
+
+	/**
+	 * The number of rotations of every piece.
+	 */
+	public static final int ROTATION_COUNT = 4;
 
 	/**
 	 * Piece TypeI.
 	 */
-	TypeI(new Color(BoardPanel.COLOR_MIN, BoardPanel.COLOR_MAX, BoardPanel.COLOR_MAX), 4, 4, 1, new boolean[][] {
-		{
-			false,	false,	false,	false,
-			true,	true,	true,	true,
-			false,	false,	false,	false,
-			false,	false,	false,	false,
-		},
-		{
-			false,	false,	true,	false,
-			false,	false,	true,	false,
-			false,	false,	true,	false,
-			false,	false,	true,	false,
-		},
-		{
-			false,	false,	false,	false,
-			false,	false,	false,	false,
-			true,	true,	true,	true,
-			false,	false,	false,	false,
-		},
-		{
-			false,	true,	false,	false,
-			false,	true,	false,	false,
-			false,	true,	false,	false,
-			false,	true,	false,	false,
-		}
-	}),
-	
+	public static final TileType TypeI = new TileType("TypeI", 0,
+			new Color(BoardPanel.COLOR_MIN, BoardPanel.COLOR_MAX, BoardPanel.COLOR_MAX), new String[] {
+		"....",
+		"####",
+		"....",
+		"....",
+	});
+
 	/**
 	 * Piece TypeJ.
 	 */
-	TypeJ(new Color(BoardPanel.COLOR_MIN, BoardPanel.COLOR_MIN, BoardPanel.COLOR_MAX), 3, 3, 2, new boolean[][] {
-		{
-			true,	false,	false,
-			true,	true,	true,
-			false,	false,	false,
-		},
-		{
-			false,	true,	true,
-			false,	true,	false,
-			false,	true,	false,
-		},
-		{
-			false,	false,	false,
-			true,	true,	true,
-			false,	false,	true,
-		},
-		{
-			false,	true,	false,
-			false,	true,	false,
-			true,	true,	false,
-		}
-	}),
-	
+	public static final TileType TypeJ = new TileType("TypeJ", 1,
+			new Color(BoardPanel.COLOR_MIN, BoardPanel.COLOR_MIN, BoardPanel.COLOR_MAX), new String[] {
+		"#..",
+		"###",
+		"...",
+	});
+
 	/**
 	 * Piece TypeL.
 	 */
-	TypeL(new Color(BoardPanel.COLOR_MAX, 127, BoardPanel.COLOR_MIN), 3, 3, 2, new boolean[][] {
-		{
-			false,	false,	true,
-			true,	true,	true,
-			false,	false,	false,
-		},
-		{
-			false,	true,	false,
-			false,	true,	false,
-			false,	true,	true,
-		},
-		{
-			false,	false,	false,
-			true,	true,	true,
-			true,	false,	false,
-		},
-		{
-			true,	true,	false,
-			false,	true,	false,
-			false,	true,	false,
-		}
-	}),
-	
+	public static final TileType TypeL = new TileType("TypeL", 2,
+			new Color(BoardPanel.COLOR_MAX, 127, BoardPanel.COLOR_MIN), new String[] {
+		"..#",
+		"###",
+		"...",
+	});
+
 	/**
 	 * Piece TypeO.
 	 */
-	TypeO(new Color(BoardPanel.COLOR_MAX, BoardPanel.COLOR_MAX, BoardPanel.COLOR_MIN), 2, 2, 2, new boolean[][] {
-		{
-			true,	true,
-			true,	true,
-		},
-		{
-			true,	true,
-			true,	true,
-		},
-		{	
-			true,	true,
-			true,	true,
-		},
-		{
-			true,	true,
-			true,	true,
-		}
-	}),
-	
+	public static final TileType TypeO = new TileType("TypeO", 3,
+			new Color(BoardPanel.COLOR_MAX, BoardPanel.COLOR_MAX, BoardPanel.COLOR_MIN), new String[] {
+		"##",
+		"##",
+	});
+
 	/**
 	 * Piece TypeS.
 	 */
-	TypeS(new Color(BoardPanel.COLOR_MIN, BoardPanel.COLOR_MAX, BoardPanel.COLOR_MIN), 3, 3, 2, new boolean[][] {
-		{
-			false,	true,	true,
-			true,	true,	false,
-			false,	false,	false,
-		},
-		{
-			false,	true,	false,
-			false,	true,	true,
-			false,	false,	true,
-		},
-		{
-			false,	false,	false,
-			false,	true,	true,
-			true,	true,	false,
-		},
-		{
-			true,	false,	false,
-			true,	true,	false,
-			false,	true,	false,
-		}
-	}),
-	
+	public static final TileType TypeS = new TileType("TypeS", 4,
+			new Color(BoardPanel.COLOR_MIN, BoardPanel.COLOR_MAX, BoardPanel.COLOR_MIN), new String[] {
+		".##",
+		"##.",
+		"...",
+	});
+
 	/**
 	 * Piece TypeT.
 	 */
-	TypeT(new Color(128, BoardPanel.COLOR_MIN, 128), 3, 3, 2, new boolean[][] {
-		{
-			false,	true,	false,
-			true,	true,	true,
-			false,	false,	false,
-		},
-		{
-			false,	true,	false,
-			false,	true,	true,
-			false,	true,	false,
-		},
-		{
-			false,	false,	false,
-			true,	true,	true,
-			false,	true,	false,
-		},
-		{
-			false,	true,	false,
-			true,	true,	false,
-			false,	true,	false,
-		}
-	}),
-	
+	public static final TileType TypeT = new TileType("TypeT", 5,
+			new Color(128, BoardPanel.COLOR_MIN, 128), new String[] {
+		".#.",
+		"###",
+		"...",
+	});
+
 	/**
 	 * Piece TypeZ.
 	 */
-	TypeZ(new Color(BoardPanel.COLOR_MAX, BoardPanel.COLOR_MIN, BoardPanel.COLOR_MIN), 3, 3, 2, new boolean[][] {
-		{
-			true,	true,	false,
-			false,	true,	true,
-			false,	false,	false,
-		},
-		{
-			false,	false,	true,
-			false,	true,	true,
-			false,	true,	false,
-		},
-		{
-			false,	false,	false,
-			true,	true,	false,
-			false,	true,	true,
-		},
-		{
-			false,	true,	false,
-			true,	true,	false,
-			true,	false,	false,
-		}
+	public static final TileType TypeZ = new TileType("TypeZ", 6,
+			new Color(BoardPanel.COLOR_MAX, BoardPanel.COLOR_MIN, BoardPanel.COLOR_MIN), new String[] {
+		"##.",
+		".##",
+		"...",
 	});
-		
+
+	/**
+	 * The name of this type.
+	 */
+	private final String name;
+
+	/**
+	 * The index of this type in its piece set.
+	 */
+	private final int index;
+
 	/**
 	 * The base color of tiles of this type.
 	 */
-	private Color baseColor;
-	
+	private final Color baseColor;
+
 	/**
 	 * The light shading color of tiles of this type.
 	 */
-	private Color lightColor;
-	
+	private final Color lightColor;
+
 	/**
 	 * The dark shading color of tiles of this type.
 	 */
-	private Color darkColor;
-	
-	/**
-	 * The column that this type spawns in.
-	 */
-	private int spawnCol;
-	
+	private final Color darkColor;
+
 	/**
 	 * The row that this type spawns in.
 	 */
-	private int spawnRow;
-	
+	private final int spawnRow;
+
 	/**
 	 * The dimensions of the array for this piece.
 	 */
-	private int dimension;
-	
+	private final int dimension;
+
 	/**
 	 * The number of rows in this piece. (Only valid when rotation is 0 or 2,
 	 * but it's fine since we're only using it for displaying the next piece
 	 * preview, which uses rotation 0).
 	 */
-	private int rows;
-	
+	private final int rows;
+
 	/**
 	 * The number of columns in this piece. (Only valid when rotation is 0 or 2,
 	 * but it's fine since we're only using it for displaying the next piece
 	 * preview, which uses rotation 0).
 	 */
-	private int cols;
-	
+	private final int cols;
+
+	/**
+	 * The tiles for this piece, as a bitmask for each row of each rotation. The
+	 * leftmost column is held in the highest bit, as on the board.
+	 */
+	private final int[][] masks;
+
+	/**
+	 * The wall kicks of this piece, indexed by {@code from * ROTATION_COUNT + to}.
+	 * Each entry holds the column and row offsets to try, in order.
+	 */
+	private final int[][] kicks;
+
+	/**
+	 * The left inset of each rotation.
+	 */
+	private final int[] leftInsets = new int[ROTATION_COUNT];
+
+	/**
+	 * The right inset of each rotation.
+	 */
+	private final int[] rightInsets = new int[ROTATION_COUNT];
+
+	/**
+	 * The top inset of each rotation.
+	 */
+	private final int[] topInsets = new int[ROTATION_COUNT];
+
+	/**
+	 * The bottom inset of each rotation.
+	 */
+	private final int[] bottomInsets = new int[ROTATION_COUNT];
+
+	/**
+	 * The lowest rotation with the same shape as each rotation.
+	 */
+	private final int[] shapeRotations = new int[ROTATION_COUNT];
+
 	/**
-	 * The tiles for this piece. Each piece has an array of tiles for each rotation.
+	 * Creates a new TileType from the tiles of its spawn rotation. The other
+	 * rotations are generated by turning the piece clockwise about the center
+	 * of its square, and then every mask and inset is worked out up front so
+	 * that nothing needs to be searched for during play.
+	 * @param name The name of the type.
+	 * @param index The index of the type in its piece set.
+	 * @param color The base color of the tile.
+	 * @param shape The rows of the spawn rotation, with '#' for a tile. The
+	 * rows must form a square.
 	 */
-	private boolean[][] tiles;
-	
+	public TileType(String name, int index, Color color, String[] shape) {
+		this(name, index, color, shape, WallKicks.forDimension(shape.length));
+	}
+
 	/**
-	 * Creates a new TileType.
+	 * Creates a new TileType with its own wall kicks.
+	 * @param name The name of the type.
+	 * @param index The index of the type in its piece set.
 	 * @param color The base color of the tile.
-	 * @param dimension The dimensions of the tiles array.
-	 * @param cols The number of columns.
-	 * @param rows The number of rows.
-	 * @param tiles The tiles.
+	 * @param shape The rows of the spawn rotation, with '#' for a tile. The
+	 * rows must form a square.
+	 * @param kicks The wall kicks, one of the {@code WallKicks} tables.
 	 */
-	private TileType(Color color, int dimension, int cols, int rows, boolean[][] tiles) {
+	public TileType(String name, int index, Color color, String[] shape, int[][] kicks) {
+		this.name = name;
+		this.kicks = kicks;
+		this.index = index;
 		this.baseColor = color;
 		this.lightColor = color.brighter();
 		this.darkColor = color.darker();
-		this.dimension = dimension;
-		this.tiles = tiles;
-		this.cols = cols;
-		this.rows = rows;
-		
-		this.spawnCol = 5 - (dimension >> 1);
+		this.dimension = shape.length;
+		if(dimension == 0 || dimension > MAX_DIMENSION) {
+			throw new IllegalArgumentException(name + " must be between 1 and " + MAX_DIMENSION + " tiles square");
+		}
+
+		/*
+		 * Build the spawn rotation, then turn each rotation clockwise to get the
+		 * next: the tile at (x, y) moves to (dimension - 1 - y, x).
+		 */
+		this.masks = new int[ROTATION_COUNT][dimension];
+		for(int y = 0; y < dimension; y++) {
+			if(shape[y].length() != dimension) {
+				throw new IllegalArgumentException(name + " must be square");
+			}
+			for(int x = 0; x < dimension; x++) {
+				if(shape[y].charAt(x) == '#') {
+					masks[0][y] |= bit(x);
+				}
+			}
+		}
+		for(int rotation = 1; rotation < ROTATION_COUNT; rotation++) {
+			for(int y = 0; y < dimension; y++) {
+				for(int x = 0; x < dimension; x++) {
+					if(isTile(x, y, rotation - 1)) {
+						masks[rotation][x] |= bit(dimension - 1 - y);
+					}
+				}
+			}
+		}
+
+		for(int rotation = 0; rotation < ROTATION_COUNT; rotation++) {
+			leftInsets[rotation] = findLeftInset(rotation);
+			rightInsets[rotation] = findRightInset(rotation);
+			topInsets[rotation] = findTopInset(rotation);
+			bottomInsets[rotation] = findBottomInset(rotation);
+		}
+		if(topInsets[0] < 0) {
+			throw new IllegalArgumentException(name + " has no tiles");
+		}
+		for(int rotation = 0; rotation < ROTATION_COUNT; rotation++) {
+			int other = 0;
+			while(!isSameShape(rotation, other)) {
+				other++;
+			}
+			shapeRotations[rotation] = other;
+		}
+
+		this.cols = dimension - leftInsets[0] - rightInsets[0] + 1;
+		this.rows = dimension - topInsets[0] - bottomInsets[0] + 1;
 		this.spawnRow = getTopInset(0);
 	}
-	
+
+	/**
+	 * Gets the bit of a column in a row mask.
+	 * @param x The column.
+	 * @return The bit.
+	 */
+	private int bit(int x) {
+		return 1 << (dimension - 1 - x);
+	}
+
+	/**
+	 * Gets the name of this type.
+	 * @return The name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the index of this type in its piece set.
+	 * @return The index.
+	 */
+	public int getIndex() {
+		return index;
+	}
+
 	/**
 	 * Gets the base color of this type.
 	 * @return The base color.
@@ -261,7 +284,7 @@ public enum TileType {
 	public Color getBaseColor() {
 		return baseColor;
 	}
-	
+
 	/**
 	 * Gets the light shading color of this type.
 	 * @return The light color.
@@ -269,7 +292,7 @@ public enum TileType {
 	public Color getLightColor() {
 		return lightColor;
 	}
-	
+
 	/**
 	 * Gets the dark shading color of this type.
 	 * @return The dark color.
@@ -277,7 +300,7 @@ public enum TileType {
 	public Color getDarkColor() {
 		return darkColor;
 	}
-	
+
 	/**
 	 * Gets the dimension of this type.
 	 * @return The dimension.
@@ -285,15 +308,7 @@ public enum TileType {
 	public int getDimension() {
 		return dimension;
 	}
-	
-	/**
-	 * Gets the spawn column of this type.
-	 * @return The spawn column.
-	 */
-	public int getSpawnColumn() {
-		return spawnCol;
-	}
-	
+
 	/**
 	 * Gets the spawn row of this type.
 	 * @return The spawn row.
@@ -301,7 +316,7 @@ public enum TileType {
 	public int getSpawnRow() {
 		return spawnRow;
 	}
-	
+
 	/**
 	 * Gets the number of rows in this piece. (Only valid when rotation is 0 or 2,
 	 * but it's fine since this is only used for the preview which uses rotation 0).
@@ -310,7 +325,7 @@ public enum TileType {
 	public int getRows() {
 		return rows;
 	}
-	
+
 	/**
 	 * Gets the number of columns in this piece. (Only valid when rotation is 0 or 2,
 	 * but it's fine since this is only used for the preview which uses rotation 0).
@@ -319,7 +334,7 @@ public enum TileType {
 	public int getCols() {
 		return cols;
 	}
-	
+
 	/**
 	 * Checks to see if the given coordinates and rotation contain a tile.
 	 * @param x The x coordinate of the tile.
@@ -328,9 +343,86 @@ public enum TileType {
 	 * @return Whether or not a tile resides there.
 	 */
 	public boolean isTile(int x, int y, int rotation) {
-		return tiles[rotation][y * dimension + x];
+		return (masks[rotation][y] & bit(x)) != 0;
+	}
+
+	/**
+	 * Gets the lowest rotation that has the same shape as a rotation, so
+	 * that rotations of symmetric pieces which cover the same cells once moved
+	 * can be told apart from ones that don't.
+	 * @param rotation The rotation.
+	 * @return The lowest rotation with the same shape.
+	 */
+	public int getShapeRotation(int rotation) {
+		return shapeRotations[rotation];
+	}
+
+	/**
+	 * Checks whether two rotations have the same shape, by lining up their
+	 * top left tiles and comparing their rows. Every rotation has the same
+	 * number of tiles, so if each row matches, none were moved out of the
+	 * square.
+	 * @param rotation The first rotation.
+	 * @param other The second rotation.
+	 * @return Whether or not the shapes match.
+	 */
+	private boolean isSameShape(int rotation, int other) {
+		int dx = leftInsets[rotation] - leftInsets[other];
+		int dy = topInsets[rotation] - topInsets[other];
+		for(int y = 0; y < dimension; y++) {
+			int otherY = y - dy;
+			int otherMask = (otherY >= 0 && otherY < dimension) ? masks[other][otherY] : 0;
+			int shifted = (dx >= 0) ? otherMask >>> dx : otherMask << -dx;
+			if(masks[rotation][y] != (shifted & ((1 << dimension) - 1))) {
+				return false;
+			}
+		}
+		return true;
 	}
-	
+
+	/**
+	 * Gets the tiles in a row of a rotation as a bitmask, with the leftmost
+	 * column in bit {@code dimension - 1}.
+	 * @param row The row.
+	 * @param rotation The rotation.
+	 * @return The mask.
+	 */
+	public int getRowMask(int row, int rotation) {
+		return masks[rotation][row];
+	}
+
+	/**
+	 * Gets the number of positions to try when rotating between two rotations.
+	 * @param from The current rotation.
+	 * @param to The new rotation.
+	 * @return The number of kicks.
+	 */
+	public int getKickCount(int from, int to) {
+		return kicks[from * ROTATION_COUNT + to].length >> 1;
+	}
+
+	/**
+	 * Gets the column offset of a kick.
+	 * @param from The current rotation.
+	 * @param to The new rotation.
+	 * @param kick The kick, in the order they should be tried.
+	 * @return The column offset.
+	 */
+	public int getKickX(int from, int to, int kick) {
+		return kicks[from * ROTATION_COUNT + to][kick << 1];
+	}
+
+	/**
+	 * Gets the row offset of a kick, with positive rows being further down.
+	 * @param from The current rotation.
+	 * @param to The new rotation.
+	 * @param kick The kick, in the order they should be tried.
+	 * @return The row offset.
+	 */
+	public int getKickY(int from, int to, int kick) {
+		return kicks[from * ROTATION_COUNT + to][(kick << 1) + 1];
+	}
+
 	/**
 	 * The left inset is represented by the number of empty columns on the left
 	 * side of the array for the given rotation.
@@ -338,6 +430,45 @@ public enum TileType {
 	 * @return The left inset.
 	 */
 	public int getLeftInset(int rotation) {
+		return leftInsets[rotation];
+	}
+
+	/**
+	 * The right inset is represented by the number of empty columns on the left
+	 * side of the array for the given rotation.
+	 * @param rotation The rotation.
+	 * @return The right inset.
+	 */
+	public int getRightInset(int rotation) {
+		return rightInsets[rotation];
+	}
+
+	/**
+	 * The left inset is represented by the number of empty rows on the top
+	 * side of the array for the given rotation.
+	 * @param rotation The rotation.
+	 * @return The top inset.
+	 */
+	public int getTopInset(int rotation) {
+		return topInsets[rotation];
+	}
+
+	/**
+	 * The botom inset is represented by the number of empty rows on the bottom
+	 * side of the array for the given rotation.
+	 * @param rotation The rotation.
+	 * @return The bottom inset.
+	 */
+	public int getBottomInset(int rotation) {
+		return bottomInsets[rotation];
+	}
+
+	/**
+	 * Works out the left inset of a rotation.
+	 * @param rotation The rotation.
+	 * @return The left inset.
+	 */
+	private int findLeftInset(int rotation) {
 		/*
 		 * Loop through from left to right until we find a tile then return
 		 * the column.
@@ -351,14 +482,13 @@ public enum TileType {
 		}
 		return -1;
 	}
-	
+
 	/**
-	 * The right inset is represented by the number of empty columns on the left
-	 * side of the array for the given rotation.
+	 * Works out the right inset of a rotation.
 	 * @param rotation The rotation.
 	 * @return The right inset.
 	 */
-	public int getRightInset(int rotation) {
+	private int findRightInset(int rotation) {
 		/*
 		 * Loop through from right to left until we find a tile then return
 		 * the column.
@@ -372,47 +502,46 @@ public enum TileType {
 		}
 		return -1;
 	}
-	
+
 	/**
-	 * The left inset is represented by the number of empty rows on the top
-	 * side of the array for the given rotation.
+	 * Works out the top inset of a rotation.
 	 * @param rotation The rotation.
 	 * @return The top inset.
 	 */
-	public int getTopInset(int rotation) {
+	private int findTopInset(int rotation) {
 		/*
 		 * Loop through from top to bottom until we find a tile then return
 		 * the row.
 		 */
 		for(int y = 0; y < dimension; y++) {
-			for(int x = 0; x < dimension; x++) {
-				if(isTile(x, y, rotation)) {
-					return y;
-				}
+			if(masks[rotation][y] != 0) {
+				return y;
 			}
 		}
 		return -1;
 	}
-	
+
 	/**
-	 * The botom inset is represented by the number of empty rows on the bottom
-	 * side of the array for the given rotation.
+	 * Works out the bottom inset of a rotation.
 	 * @param rotation The rotation.
 	 * @return The bottom inset.
 	 */
-	public int getBottomInset(int rotation) {
+	private int findBottomInset(int rotation) {
 		/*
 		 * Loop through from bottom to top until we find a tile then return
 		 * the row.
 		 */
 		for(int y = dimension - 1; y >= 0; y--) {
-			for(int x = 0; x < dimension; x++) {
-				if(isTile(x, y, rotation)) {
-					return dimension - y;
-				}
+			if(masks[rotation][y] != 0) {
+				return dimension - y;
 			}
 		}
 		return -1;
 	}
-	
-}
\ No newline at end of file
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+}
@@ -0,0 +1,354 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class Tournament {
+
+	/**
+	 * The number of inputs each bot may send per tick, including the drops
+	 * that move its piece down.
+	 */
+	private static final int INPUTS_PER_TICK = 4;
+
+	/**
+	 * The longest a match may run, in ticks, before it's called a draw.
+	 */
+	private static final int MAX_TICKS = VersusMatch.TICKS_PER_SECOND * 60 * 10;
+
+	/**
+	 * The rating every player starts on.
+	 */
+	private static final double START_RATING = 1500.0;
+
+	/**
+	 * The rating deviation every player starts on, which is as uncertain as a
+	 * rating gets.
+	 */
+	private static final double START_DEVIATION = 350.0;
+
+	/**
+	 * How much a rating's deviation grows between rounds. This is small, since
+	 * a bot's strength doesn't change.
+	 */
+	private static final double DEVIATION_GROWTH = 10.0;
+
+	/**
+	 * The Glicko scaling constant, ln(10) / 400.
+	 */
+	private static final double Q = Math.log(10.0) / 400.0;
+
+	/**
+	 * The bots that are entered.
+	 */
+	private static final HeuristicBot[] BOTS = HeuristicBot.PRESETS;
+
+	/**
+	 * Plays a round-robin tournament between bots in versus matches. In each
+	 * round every pair of bots plays one match, and every match in a round
+	 * uses the same piece seed, so each pairing sees the same pieces. Matches
+	 * run in parallel across a pool of threads, and the players' Glicko
+	 * ratings are updated once per round from that round's results, so the
+	 * ratings don't depend on which matches happened to finish first.
+	 *
+	 * The standings are printed with a 95% confidence interval for each
+	 * rating, and every match and the final standings are written to the
+	 * results file.
+	 *
+	 * Usage: {@code Tournament [rounds] [threads] [results file] [seed]}
+	 *
+	 * @param args The command line arguments.
+	 * @throws Exception If the results couldn't be written.
+	 */
+	public static void main(String[] args) throws Exception {
+		int rounds = (args.length > 0) ? Integer.parseInt(args[0]) : 10;
+		int threads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		File results = new File((args.length > 2) ? args[2] : "tournament.txt");
+		long seed = (args.length > 3) ? Long.parseLong(args[3]) : 1L;
+
+		Player[] players = new Player[BOTS.length];
+		for (int i = 0; i < players.length; i++) {
+			players[i] = new Player(BOTS[i]);
+		}
+
+		/*
+		 * Queue every match of every round up front, so that the pool is never
+		 * idle waiting for a round to be rated.
+		 */
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<int[]>> matches = new ArrayList<Future<int[]>>();
+		for (int round = 0; round < rounds; round++) {
+			final long matchSeed = seed + round;
+			for (int a = 0; a < players.length; a++) {
+				for (int b = a + 1; b < players.length; b++) {
+					final int first = a;
+					final int second = b;
+					matches.add(pool.submit(new Callable<int[]>() {
+
+						@Override
+						public int[] call() {
+							return play(BOTS[first], BOTS[second], matchSeed);
+						}
+
+					}));
+				}
+			}
+		}
+
+		long start = System.nanoTime();
+		long ticks = 0;
+		int perRound = players.length * (players.length - 1) / 2;
+		try (PrintWriter out = new PrintWriter(new FileWriter(results))) {
+			out.println("# round seed first second winner ticks");
+			for (int round = 0; round < rounds; round++) {
+				for (Player player : players) {
+					player.startRound();
+				}
+
+				int index = round * perRound;
+				for (int a = 0; a < players.length; a++) {
+					for (int b = a + 1; b < players.length; b++) {
+						int[] result = get(matches.get(index++));
+						double score = (result[0] == 0) ? 1.0 : (result[0] == 1) ? 0.0 : 0.5;
+						players[a].addResult(players[b], score);
+						players[b].addResult(players[a], 1.0 - score);
+						ticks += result[1];
+						out.printf("%d %d %s %s %s %d%n", round, seed + round, BOTS[a].getName(), BOTS[b].getName(),
+								(result[0] < 0) ? "draw" : BOTS[(result[0] == 0) ? a : b].getName(), result[1]);
+					}
+				}
+
+				/*
+				 * Every player's new rating is worked out from the ratings everyone
+				 * had before the round, and only then are they all applied.
+				 */
+				for (Player player : players) {
+					player.rate();
+				}
+				for (Player player : players) {
+					player.endRound();
+				}
+			}
+
+			double seconds = (System.nanoTime() - start) / 1e9;
+			Player[] standings = players.clone();
+			Arrays.sort(standings, new Comparator<Player>() {
+
+				@Override
+				public int compare(Player a, Player b) {
+					return Double.compare(b.rating, a.rating);
+				}
+
+			});
+
+			out.println("# name rating low high wins losses draws");
+			System.out.printf("%-10s %7s %17s %5s %5s %5s%n", "Bot", "Rating", "95% interval", "Won", "Lost",
+					"Drawn");
+			for (Player player : standings) {
+				double margin = 1.96 * player.deviation;
+				System.out.printf("%-10s %7.0f %8.0f - %6.0f %5d %5d %5d%n", player.bot.getName(), player.rating,
+						player.rating - margin, player.rating + margin, player.wins, player.losses, player.draws);
+				out.printf("%s %.1f %.1f %.1f %d %d %d%n", player.bot.getName(), player.rating,
+						player.rating - margin, player.rating + margin, player.wins, player.losses, player.draws);
+			}
+			System.out.printf("%d matches on %d threads in %.2fs (%.1f matches/s, %.0f ticks/s)%n", matches.size(),
+					threads, seconds, matches.size() / seconds, ticks / seconds);
+		} finally {
+			pool.shutdownNow();
+		}
+		System.out.println("Results written to " + results);
+	}
+
+	/**
+	 * Plays a match between two bots.
+	 *
+	 * @param first  The bot in seat 0.
+	 * @param second The bot in seat 1.
+	 * @param seed   The piece seed.
+	 * @return The winning seat, or -1 for a draw, followed by the number of
+	 *         ticks the match lasted.
+	 */
+	private static int[] play(HeuristicBot first, HeuristicBot second, long seed) {
+		/*
+		 * Bots keep scratch state between moves, so each match plays with its
+		 * own copies.
+		 */
+		HeuristicBot[] bots = { first.copy(), second.copy() };
+		VersusMatch match = new VersusMatch(seed);
+		int[] placements = new int[VersusMatch.SEATS];
+		int[] lastRows = new int[VersusMatch.SEATS];
+		Arrays.fill(lastRows, Integer.MAX_VALUE);
+
+		int tick = 0;
+		for (; tick < MAX_TICKS && !match.isOver(); tick++) {
+			for (int seat = 0; seat < VersusMatch.SEATS && !match.isOver(); seat++) {
+				GameEngine engine = match.getEngine(seat);
+				for (int i = 0; i < INPUTS_PER_TICK && !match.isOver(); i++) {
+					/*
+					 * A piece that's higher than it was is a new one, or has been
+					 * pushed up by garbage, so the bot decides where it should go.
+					 */
+					if (engine.getPieceRow() < lastRows[seat]) {
+						placements[seat] = bots[seat].choose(engine);
+					}
+					lastRows[seat] = engine.getPieceRow();
+					match.input(seat, BotMove.inputToward(engine, HeuristicBot.getColumn(placements[seat]),
+							HeuristicBot.getRotation(placements[seat])));
+					if (engine.getPieceRow() < lastRows[seat]) {
+						break;
+					}
+				}
+			}
+			match.tick();
+		}
+		return new int[] { match.isOver() ? match.getWinner() : -1, tick };
+	}
+
+	/**
+	 * Waits for a match to finish.
+	 *
+	 * @param match The match.
+	 * @return The result of the match.
+	 * @throws IOException If the match failed.
+	 */
+	private static int[] get(Future<int[]> match) throws IOException {
+		try {
+			return match.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for a match", e);
+		} catch (ExecutionException e) {
+			throw new IOException("A match failed", e.getCause());
+		}
+	}
+
+	/**
+	 * A bot entered in the tournament, and its Glicko rating.
+	 */
+	private static class Player {
+
+		/**
+		 * The bot.
+		 */
+		private final HeuristicBot bot;
+
+		/**
+		 * The rating.
+		 */
+		private double rating = START_RATING;
+
+		/**
+		 * The rating deviation, which is the standard deviation of the rating.
+		 */
+		private double deviation = START_DEVIATION;
+
+		/**
+		 * The rating after the current round, which isn't applied until every
+		 * player has been rated.
+		 */
+		private double nextRating;
+
+		/**
+		 * The rating deviation after the current round.
+		 */
+		private double nextDeviation;
+
+		/**
+		 * The sum over this round's games of g(RD)^2 E (1 - E).
+		 */
+		private double variance;
+
+		/**
+		 * The sum over this round's games of g(RD) (s - E).
+		 */
+		private double improvement;
+
+		/**
+		 * The number of matches won.
+		 */
+		private int wins;
+
+		/**
+		 * The number of matches lost.
+		 */
+		private int losses;
+
+		/**
+		 * The number of matches drawn.
+		 */
+		private int draws;
+
+		/**
+		 * Creates a new Player.
+		 *
+		 * @param bot The bot.
+		 */
+		private Player(HeuristicBot bot) {
+			this.bot = bot;
+		}
+
+		/**
+		 * Starts a rating period. The deviation grows a little to account for
+		 * the time since the last one.
+		 */
+		private void startRound() {
+			deviation = Math.min(Math.sqrt(deviation * deviation + DEVIATION_GROWTH * DEVIATION_GROWTH),
+					START_DEVIATION);
+			variance = 0.0;
+			improvement = 0.0;
+		}
+
+		/**
+		 * Adds the result of a match to the current rating period.
+		 *
+		 * @param opponent The opponent.
+		 * @param score    1 for a win, 0 for a loss or 0.5 for a draw.
+		 */
+		private void addResult(Player opponent, double score) {
+			double g = 1.0 / Math.sqrt(1.0 + 3.0 * Q * Q * opponent.deviation * opponent.deviation / (Math.PI * Math.PI));
+			double expected = 1.0 / (1.0 + Math.pow(10.0, -g * (rating - opponent.rating) / 400.0));
+			variance += g * g * expected * (1.0 - expected);
+			improvement += g * (score - expected);
+			if (score == 1.0) {
+				wins++;
+			} else if (score == 0.0) {
+				losses++;
+			} else {
+				draws++;
+			}
+		}
+
+		/**
+		 * Works out the rating after the current rating period.
+		 */
+		private void rate() {
+			if (variance == 0.0) {
+				nextRating = rating;
+				nextDeviation = deviation;
+				return;
+			}
+			double inverse = 1.0 / (deviation * deviation) + Q * Q * variance;
+			nextRating = rating + Q / inverse * improvement;
+			nextDeviation = Math.sqrt(1.0 / inverse);
+		}
+
+		/**
+		 * Applies the rating worked out for the current rating period.
+		 */
+		private void endRound() {
+			rating = nextRating;
+			deviation = nextDeviation;
+		}
+
+	}
+
+}
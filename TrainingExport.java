@@ -0,0 +1,143 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TrainingExport {
+
+	/**
+	 * The number of samples in each shard if no count is given.
+	 */
+	private static final long SAMPLES_PER_SHARD = 1000000L;
+
+	/**
+	 * Plays simulated games with a bot and streams a sample for every piece
+	 * it places to binary shards. Each sample is the board before the piece
+	 * locked, one bit-packed row mask per row, then the current and next
+	 * piece indices, the column and rotation the piece locked at, and the
+	 * number of lines it cleared as a float reward. Every shard starts with a
+	 * header giving the board size and the record size, so a shard can be
+	 * read as a flat array of fixed-width records.
+	 *
+	 * Each thread plays its own games and has its own writer, whose shards
+	 * are written on a background thread while the next buffer fills.
+	 *
+	 * Usage:
+	 * {@code TrainingExport <directory> [samples] [bot] [samples per shard] [threads]}
+	 *
+	 * @param args The command line arguments.
+	 * @throws Exception If the shards couldn't be written.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.out.println("Usage: TrainingExport <directory> [samples] [bot] [samples per shard] [threads]");
+			System.exit(2);
+		}
+		final File directory = new File(args[0]);
+		long samples = (args.length > 1) ? Long.parseLong(args[1]) : 1000000L;
+		final String botName = (args.length > 2) ? args[2] : "balanced";
+		final long perShard = (args.length > 3) ? Long.parseLong(args[3]) : SAMPLES_PER_SHARD;
+		int threads = (args.length > 4) ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+		if (HeuristicBot.forName(botName) == null) {
+			System.out.println("Unknown bot " + botName);
+			System.exit(2);
+		}
+
+		long start = System.nanoTime();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		Future<?>[] workers = new Future<?>[threads];
+		final SampleWriter[] writers = new SampleWriter[threads];
+		for (int i = 0; i < threads; i++) {
+			final int index = i;
+			final long count = samples / threads + ((i < samples % threads) ? 1 : 0);
+			workers[i] = pool.submit(new Callable<Void>() {
+
+				@Override
+				public Void call() throws IOException {
+					GameEngine engine = new GameEngine();
+					writers[index] = new SampleWriter(directory, "t" + index, perShard, engine.getBoard());
+					try {
+						simulate(engine, HeuristicBot.forName(botName), writers[index], count, index,
+								workers.length);
+					} finally {
+						writers[index].close();
+					}
+					return null;
+				}
+
+			});
+		}
+
+		try {
+			for (Future<?> worker : workers) {
+				worker.get();
+			}
+		} catch (ExecutionException e) {
+			throw new IOException("Export failed", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+		long shards = 0;
+		long stall = 0;
+		for (SampleWriter writer : writers) {
+			shards += writer.getShards();
+			stall += writer.getStallTime();
+		}
+		double megabytes = samples * (double) writers[0].getRecordSize() / (1 << 20);
+		System.out.printf("%d samples of %d bytes in %d shards, %.2fs (%.0f samples/s, %.1f MB/s), %.1fms stalled%n",
+				samples, writers[0].getRecordSize(), shards, seconds, samples / seconds, megabytes / seconds,
+				stall / 1e6);
+	}
+
+	/**
+	 * Plays games with a bot until enough samples have been recorded. Each
+	 * piece is moved to where the bot chose, dropped until it lands, and
+	 * captured just before it locks.
+	 *
+	 * @param engine  The engine to play on.
+	 * @param bot     The bot.
+	 * @param writer  The writer to record to.
+	 * @param samples The number of samples to record.
+	 * @param seed    The seed of the first game.
+	 * @param step    The amount the seed goes up by for each later game.
+	 * @throws IOException If the samples couldn't be written.
+	 */
+	private static void simulate(GameEngine engine, HeuristicBot bot, SampleWriter writer, long samples, long seed,
+			long step) throws IOException {
+		engine.setSeed(seed);
+		engine.reset();
+		for (long i = 0; i < samples; i++) {
+			int placement = bot.choose(engine);
+			int col = HeuristicBot.getColumn(placement);
+			int rotation = HeuristicBot.getRotation(placement);
+			for (int turn = 0; turn < TileType.ROTATION_COUNT && engine.getPieceRotation() != rotation; turn++) {
+				engine.rotatePiece((engine.getPieceRotation() + 1) % TileType.ROTATION_COUNT);
+			}
+			boolean moved = true;
+			while (moved && engine.getPieceCol() != col) {
+				moved = (engine.getPieceCol() > col) ? engine.moveLeft() : engine.moveRight();
+			}
+
+			Board board = engine.getBoard();
+			while (board.isValidAndEmpty(engine.getPieceType(), engine.getPieceCol(), engine.getPieceRow() + 1,
+					engine.getPieceRotation())) {
+				engine.update();
+			}
+			writer.capture(engine);
+			engine.update();
+			writer.commit(engine.getLinesCleared());
+
+			if (engine.isGameOver()) {
+				seed += step;
+				engine.setSeed(seed);
+				engine.reset();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,86 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TripleBuffer<T> {
+
+	/**
+	 * The bit of {@code middle} that is set when the middle buffer holds
+	 * something the reader hasn't taken yet.
+	 */
+	private static final int FRESH = 4;
+
+	/**
+	 * The bits of {@code middle} that hold the index of the middle buffer.
+	 */
+	private static final int INDEX = 3;
+
+	/**
+	 * The three buffers.
+	 */
+	private final Object[] buffers;
+
+	/**
+	 * The index of the buffer waiting between the writer and the reader, and
+	 * whether it's fresh. This is the only state the two threads share.
+	 */
+	private final AtomicInteger middle = new AtomicInteger(1);
+
+	/**
+	 * The index of the buffer the writer is filling, which only the writer
+	 * uses.
+	 */
+	private int back = 2;
+
+	/**
+	 * The index of the buffer the reader is reading, which only the reader
+	 * uses.
+	 */
+	private int front = 0;
+
+	/**
+	 * Creates a new TripleBuffer. The writer and the reader each always have
+	 * a buffer of their own, so neither ever waits for the other, and the
+	 * reader always gets the latest buffer published.
+	 *
+	 * @param first  The buffer the reader starts with.
+	 * @param second The buffer that starts between them.
+	 * @param third  The buffer the writer starts with.
+	 */
+	public TripleBuffer(T first, T second, T third) {
+		this.buffers = new Object[] { first, second, third };
+	}
+
+	/**
+	 * Gets the buffer to fill. This is only called by the writer.
+	 *
+	 * @return The buffer.
+	 */
+	@SuppressWarnings("unchecked")
+	public T getBack() {
+		return (T) buffers[back];
+	}
+
+	/**
+	 * Hands the filled buffer to the reader, replacing any it hasn't taken
+	 * yet, and takes that one to fill next. This is only called by the
+	 * writer.
+	 */
+	public void publish() {
+		back = middle.getAndSet(back | FRESH) & INDEX;
+	}
+
+	/**
+	 * Takes the latest buffer published, if there's one the reader doesn't
+	 * have yet. The writer doesn't touch the buffer until the reader takes
+	 * another. This is only called by the reader.
+	 *
+	 * @return The buffer to read.
+	 */
+	@SuppressWarnings("unchecked")
+	public T acquire() {
+		if ((middle.get() & FRESH) != 0) {
+			front = middle.getAndSet(front) & INDEX;
+		}
+		return (T) buffers[front];
+	}
+
+}
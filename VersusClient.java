@@ -0,0 +1,152 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Random;
+
+public class VersusClient {
+
+	/**
+	 * The size of each client's input buffer. This must hold at least one
+	 * complete state message.
+	 */
+	private static final int IN_CAPACITY = 8192;
+
+	/**
+	 * The number of milliseconds between inputs sent by each client.
+	 */
+	private static final long INPUT_INTERVAL = 100L;
+
+	/**
+	 * Connects many simulated players and spectators to a versus server over
+	 * loopback and reports how many messages they received. Each player sends
+	 * a random input every 100ms.
+	 *
+	 * Usage: {@code VersusClient [port] [clients] [seconds] [spectators]}
+	 *
+	 * @param args The command line arguments.
+	 * @throws IOException If a connection failed.
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = (args.length > 0) ? Integer.parseInt(args[0]) : VersusServer.DEFAULT_PORT;
+		int count = (args.length > 1) ? Integer.parseInt(args[1]) : 1000;
+		int seconds = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+		int watchers = (args.length > 3) ? Integer.parseInt(args[3]) : 0;
+
+		/*
+		 * If nothing is listening on the port, host a server in this process so the
+		 * tool can be run on its own.
+		 */
+		VersusServer server = null;
+		InetSocketAddress address = new InetSocketAddress("127.0.0.1", port);
+		try {
+			/* This only connects if a server is already running. */
+			SocketChannel.open(address).close();
+		} catch (IOException e) {
+			server = new VersusServer(address);
+			new Thread(server, "versus-server").start();
+		}
+
+		Selector selector = Selector.open();
+		SocketChannel[] channels = new SocketChannel[count];
+		for (int i = 0; i < count; i++) {
+			channels[i] = SocketChannel.open(address);
+			channels[i].configureBlocking(false);
+			channels[i].register(selector, SelectionKey.OP_READ, ByteBuffer.allocate(IN_CAPACITY));
+		}
+
+		/*
+		 * Spectators announce themselves with their first byte and never send
+		 * anything else.
+		 */
+		ByteBuffer spectate = ByteBuffer.allocate(1);
+		SocketChannel[] spectators = new SocketChannel[watchers];
+		for (int i = 0; i < watchers; i++) {
+			spectators[i] = SocketChannel.open(address);
+			spectate.clear();
+			spectate.put(VersusProtocol.INPUT_SPECTATE);
+			spectate.flip();
+			spectators[i].write(spectate);
+			spectators[i].configureBlocking(false);
+			spectators[i].register(selector, SelectionKey.OP_READ, ByteBuffer.allocate(IN_CAPACITY));
+		}
+
+		Random random = new Random();
+		ByteBuffer input = ByteBuffer.allocate(1);
+		long[] received = new long[VersusProtocol.MSG_DELTA + 1];
+		long spectatorBytes = 0;
+		long end = System.currentTimeMillis() + seconds * 1000L;
+		long nextInput = System.currentTimeMillis();
+		while (System.currentTimeMillis() < end) {
+			selector.select(10L);
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				ByteBuffer in = (ByteBuffer) key.attachment();
+				int read = ((SocketChannel) key.channel()).read(in);
+				if (read < 0) {
+					key.cancel();
+					continue;
+				}
+
+				/*
+				 * Count every complete message, and keep any partial message for
+				 * the next read.
+				 */
+				in.flip();
+				while (in.remaining() >= VersusProtocol.HEADER_SIZE) {
+					int length = in.getShort(in.position()) & 0xFFFF;
+					if (in.remaining() < VersusProtocol.HEADER_SIZE + length) {
+						break;
+					}
+					byte type = in.get(in.position() + 2);
+					received[type]++;
+					if (type == VersusProtocol.MSG_KEYFRAME || type == VersusProtocol.MSG_DELTA) {
+						spectatorBytes += VersusProtocol.HEADER_SIZE + length;
+					}
+					in.position(in.position() + VersusProtocol.HEADER_SIZE + length);
+				}
+				in.compact();
+			}
+
+			if (System.currentTimeMillis() >= nextInput) {
+				nextInput += INPUT_INTERVAL;
+				for (SocketChannel channel : channels) {
+					input.clear();
+					input.put((byte) (1 + random.nextInt(VersusProtocol.INPUT_DROP)));
+					input.flip();
+					channel.write(input);
+				}
+			}
+		}
+
+		System.out.println("Clients: " + count + ", seconds: " + seconds);
+		System.out.println("Matches started: " + received[VersusProtocol.MSG_MATCH_START]);
+		System.out.println("Matches finished: " + received[VersusProtocol.MSG_MATCH_OVER]);
+		System.out.println("States received: " + received[VersusProtocol.MSG_STATE] + " ("
+				+ received[VersusProtocol.MSG_STATE] / seconds + "/s)");
+
+		if (watchers > 0) {
+			System.out.println("Spectators: " + watchers + ", keyframes: " + received[VersusProtocol.MSG_KEYFRAME]
+					+ ", deltas: " + received[VersusProtocol.MSG_DELTA] + ", bytes: " + spectatorBytes);
+		}
+
+		for (SocketChannel channel : channels) {
+			channel.close();
+		}
+		for (SocketChannel channel : spectators) {
+			channel.close();
+		}
+		selector.close();
+		if (server != null) {
+			System.out.println("Matches in progress: " + server.getMatchCount() + ", dropped states: "
+					+ server.getDroppedStates());
+			server.stop();
+		}
+	}
+
+}
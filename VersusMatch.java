@@ -0,0 +1,233 @@
+import java.util.Random;
+
+public class VersusMatch {
+
+	/**
+	 * The number of times per second a match is ticked. This matches the frame
+	 * rate of the local game.
+	 */
+	public static final int TICKS_PER_SECOND = GameEngine.TICKS_PER_SECOND;
+
+	/**
+	 * The number of players in a match.
+	 */
+	public static final int SEATS = 2;
+
+	/**
+	 * The number of garbage lines sent to the opponent, indexed by the number of
+	 * lines cleared at once.
+	 */
+	private static final int[] GARBAGE_SENT = { 0, 0, 1, 2, 4 };
+
+	/**
+	 * The engine of each player.
+	 */
+	private final GameEngine[] engines = new GameEngine[SEATS];
+
+	/**
+	 * Whether or not each player's state has changed since it was last polled.
+	 */
+	private final boolean[] changed = new boolean[SEATS];
+
+	/**
+	 * The random number generator used to place the holes in garbage lines.
+	 */
+	private final Random random;
+
+	/**
+	 * Whether or not the match is over.
+	 */
+	private boolean isOver;
+
+	/**
+	 * The seat of the winner, once the match is over.
+	 */
+	private int winner;
+
+	/**
+	 * Creates a new VersusMatch. Both players receive the same sequence of
+	 * pieces.
+	 *
+	 * @param seed The seed for the piece sequence.
+	 */
+	public VersusMatch(long seed) {
+		this.random = new Random(~seed);
+		for (int seat = 0; seat < SEATS; seat++) {
+			engines[seat] = new GameEngine();
+			engines[seat].setSeed(seed);
+			engines[seat].reset();
+			changed[seat] = true;
+		}
+	}
+
+	/**
+	 * Applies an input from a player. Unknown inputs are ignored.
+	 *
+	 * @param seat  The seat of the player.
+	 * @param input The input, one of the {@code VersusProtocol.INPUT_*}
+	 *              constants.
+	 */
+	public void input(int seat, byte input) {
+		if (isOver) {
+			return;
+		}
+
+		GameEngine engine = engines[seat];
+		int rotation = engine.getPieceRotation();
+		switch (input) {
+			case VersusProtocol.INPUT_LEFT:
+				changed[seat] |= engine.moveLeft();
+				break;
+			case VersusProtocol.INPUT_RIGHT:
+				changed[seat] |= engine.moveRight();
+				break;
+			case VersusProtocol.INPUT_ROTATE_ACW:
+				changed[seat] |= engine.rotatePiece((rotation == 0) ? 3 : rotation - 1);
+				break;
+			case VersusProtocol.INPUT_ROTATE_CW:
+				changed[seat] |= engine.rotatePiece((rotation == 3) ? 0 : rotation + 1);
+				break;
+			case VersusProtocol.INPUT_DROP:
+				step(seat);
+				break;
+		}
+		checkOver();
+	}
+
+	/**
+	 * Advances the match by one tick. Each player's piece falls by the gravity
+	 * of their current speed and locks once its lock delay runs out, as in
+	 * {@code GameEngine.tick}, so a tick costs the same at any speed.
+	 */
+	public void tick() {
+		if (isOver) {
+			return;
+		}
+
+		for (int seat = 0; seat < SEATS; seat++) {
+			GameEngine engine = engines[seat];
+			if (engine.isGameOver()) {
+				continue;
+			}
+			int row = engine.getPieceRow();
+			if (engine.tick(false)) {
+				locked(seat);
+			} else if (engine.getPieceRow() != row) {
+				changed[seat] = true;
+			}
+		}
+		checkOver();
+	}
+
+	/**
+	 * Moves a player's piece down by one row, or locks it if it's resting on
+	 * the stack.
+	 *
+	 * @param seat The seat of the player.
+	 */
+	private void step(int seat) {
+		changed[seat] = true;
+		if (engines[seat].update()) {
+			locked(seat);
+		}
+	}
+
+	/**
+	 * Handles a player's piece being locked, sending garbage to the opponent if
+	 * it cleared any lines.
+	 *
+	 * @param seat The seat of the player.
+	 */
+	private void locked(int seat) {
+		GameEngine engine = engines[seat];
+		changed[seat] = true;
+		int sent = GARBAGE_SENT[Math.min(engine.getLinesCleared(), GARBAGE_SENT.length - 1)];
+		if (sent > 0) {
+			GameEngine opponent = engines[1 - seat];
+			opponent.addGarbage(sent, random.nextInt(opponent.getBoard().getColCount()));
+			changed[1 - seat] = true;
+		}
+	}
+
+	/**
+	 * Ends the match if either player has topped out. If both did on the same
+	 * tick, the higher score wins.
+	 */
+	private void checkOver() {
+		boolean lost0 = engines[0].isGameOver();
+		boolean lost1 = engines[1].isGameOver();
+		if (lost0 || lost1) {
+			this.isOver = true;
+			if (lost0 && lost1) {
+				this.winner = (engines[1].getScore() > engines[0].getScore()) ? 1 : 0;
+			} else {
+				this.winner = lost0 ? 1 : 0;
+			}
+		}
+	}
+
+	/**
+	 * Checks whether or not a player's state has changed since the last call,
+	 * and clears the flag.
+	 *
+	 * @param seat The seat of the player.
+	 * @return Whether or not the state changed.
+	 */
+	public boolean pollChanged(int seat) {
+		boolean result = changed[seat];
+		changed[seat] = false;
+		return result;
+	}
+
+	/**
+	 * Flags a player's state as changed, so that the next poll reports it
+	 * again. This is for when a state that was polled couldn't be sent.
+	 *
+	 * @param seat The seat of the player.
+	 */
+	public void markChanged(int seat) {
+		changed[seat] = true;
+	}
+
+	/**
+	 * Forfeits the match on behalf of a player, for example when they
+	 * disconnect.
+	 *
+	 * @param seat The seat of the player.
+	 */
+	public void forfeit(int seat) {
+		if (!isOver) {
+			this.isOver = true;
+			this.winner = 1 - seat;
+		}
+	}
+
+	/**
+	 * Gets the engine of a player.
+	 *
+	 * @param seat The seat of the player.
+	 * @return The engine.
+	 */
+	public GameEngine getEngine(int seat) {
+		return engines[seat];
+	}
+
+	/**
+	 * Checks to see whether or not the match is over.
+	 *
+	 * @return Whether or not the match is over.
+	 */
+	public boolean isOver() {
+		return isOver;
+	}
+
+	/**
+	 * Gets the seat of the winner. Only valid once the match is over.
+	 *
+	 * @return The seat of the winner.
+	 */
+	public int getWinner() {
+		return winner;
+	}
+
+}
@@ -0,0 +1,124 @@
+import java.nio.ByteBuffer;
+
+public final class VersusProtocol {
+
+	/**
+	 * Input sent by a client to move its piece one column to the left.
+	 */
+	public static final byte INPUT_LEFT = 1;
+
+	/**
+	 * Input sent by a client to move its piece one column to the right.
+	 */
+	public static final byte INPUT_RIGHT = 2;
+
+	/**
+	 * Input sent by a client to rotate its piece anticlockwise.
+	 */
+	public static final byte INPUT_ROTATE_ACW = 3;
+
+	/**
+	 * Input sent by a client to rotate its piece clockwise.
+	 */
+	public static final byte INPUT_ROTATE_CW = 4;
+
+	/**
+	 * Input sent by a client to drop its piece down by one row.
+	 */
+	public static final byte INPUT_DROP = 5;
+
+	/**
+	 * Input sent as the very first byte by a client that wants to watch
+	 * matches rather than play. Any other first byte joins the queue for a
+	 * match (and is otherwise ignored).
+	 */
+	public static final byte INPUT_SPECTATE = 6;
+
+	/**
+	 * Message sent to both players when a match starts. The payload is the
+	 * seat of the receiving player.
+	 */
+	public static final byte MSG_MATCH_START = 1;
+
+	/**
+	 * Message carrying the state of one player. The payload is the seat of the
+	 * player followed by a {@code GameEngine} snapshot.
+	 */
+	public static final byte MSG_STATE = 2;
+
+	/**
+	 * Message sent to both players when a match ends. The payload is the seat
+	 * of the winner.
+	 */
+	public static final byte MSG_MATCH_OVER = 3;
+
+	/**
+	 * Spectator message holding every row of both boards. The payload is the
+	 * tick, followed by each seat's score, current piece, next piece,
+	 * rotation, column, row, game over flag, and a count of rows followed by
+	 * that many (row index, row mask) pairs.
+	 */
+	public static final byte MSG_KEYFRAME = 4;
+
+	/**
+	 * Spectator message laid out like {@code MSG_KEYFRAME}, but only holding
+	 * the rows that changed since the previous frame.
+	 */
+	public static final byte MSG_DELTA = 5;
+
+	/**
+	 * The number of bytes in a message header (a two byte length followed by
+	 * the message type).
+	 */
+	public static final int HEADER_SIZE = 3;
+
+	/**
+	 * The number of bytes in a match start or match over message.
+	 */
+	public static final int CONTROL_SIZE = HEADER_SIZE + 1;
+
+	private VersusProtocol() {
+	}
+
+	/**
+	 * Gets the number of bytes in a state message for the engine.
+	 *
+	 * @param engine The engine.
+	 * @return The message size in bytes.
+	 */
+	public static int getStateSize(GameEngine engine) {
+		return HEADER_SIZE + 1 + engine.getSnapshotSize();
+	}
+
+	/**
+	 * Writes a match start or match over message.
+	 *
+	 * @param out  The buffer to write to.
+	 * @param type The message type.
+	 * @param seat The seat the message refers to.
+	 */
+	public static void writeControl(ByteBuffer out, byte type, int seat) {
+		out.putShort((short) (CONTROL_SIZE - HEADER_SIZE));
+		out.put(type);
+		out.put((byte) seat);
+	}
+
+	/**
+	 * Writes a state message for one player.
+	 *
+	 * @param out     The buffer to write to.
+	 * @param seat    The seat of the player.
+	 * @param engine  The engine of the player.
+	 * @param scratch A scratch array at least {@code engine.getSnapshotSize()}
+	 *                bytes long.
+	 */
+	public static void writeState(ByteBuffer out, int seat, GameEngine engine, byte[] scratch) {
+		int size = engine.getSnapshotSize();
+		engine.snapshot(scratch);
+		out.putShort((short) (size + 1));
+		out.put(MSG_STATE);
+		out.put((byte) seat);
+		out.put(scratch, 0, size);
+	}
+
+}
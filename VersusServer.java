@@ -0,0 +1,622 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+
+public class VersusServer implements Runnable {
+
+	/**
+	 * The default port to listen on.
+	 */
+	public static final int DEFAULT_PORT = 7777;
+
+	/**
+	 * The size of each connection's input buffer. Inputs are single bytes, so
+	 * this bounds how many inputs are handled per read.
+	 */
+	private static final int IN_CAPACITY = 64;
+
+	/**
+	 * The size of each connection's output buffer. When a client falls behind,
+	 * state messages are dropped rather than queued, since every state message
+	 * replaces the previous one. A dropped state is sent again on the next
+	 * tick, so the client always catches up with the latest one.
+	 */
+	private static final int OUT_CAPACITY = 4096;
+
+	/**
+	 * The number of nanoseconds between ticks.
+	 */
+	private static final long TICK_NANOS = 1000000000L / VersusMatch.TICKS_PER_SECOND;
+
+	/**
+	 * The selector that every channel is registered with.
+	 */
+	private final Selector selector;
+
+	/**
+	 * The channel accepting new connections.
+	 */
+	private final ServerSocketChannel server;
+
+	/**
+	 * The matches currently being played.
+	 */
+	private final ArrayList<Room> rooms = new ArrayList<Room>();
+
+	/**
+	 * The spectators waiting for a match to start.
+	 */
+	private final ArrayList<Connection> lobby = new ArrayList<Connection>();
+
+	/**
+	 * The random number generator used to seed new matches.
+	 */
+	private final Random seeds = new Random();
+
+	/**
+	 * A scratch array to snapshot engines into while writing state messages.
+	 */
+	private final byte[] scratch = new byte[new GameEngine().getSnapshotSize()];
+
+	/**
+	 * The connection waiting for an opponent, if any.
+	 */
+	private Connection waiting;
+
+	/**
+	 * The number of state messages dropped because a client fell behind.
+	 */
+	private long droppedStates;
+
+	/**
+	 * Whether or not the server should keep running.
+	 */
+	private volatile boolean isRunning;
+
+	/**
+	 * Creates a new VersusServer and binds it to the address.
+	 *
+	 * @param address The address to listen on.
+	 * @throws IOException If the server could not be bound.
+	 */
+	public VersusServer(InetSocketAddress address) throws IOException {
+		this.selector = Selector.open();
+		this.server = ServerSocketChannel.open();
+		server.bind(address, 1024);
+		server.configureBlocking(false);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+	}
+
+	/**
+	 * Gets the port the server is listening on.
+	 *
+	 * @return The port.
+	 */
+	public int getPort() {
+		return server.socket().getLocalPort();
+	}
+
+	/**
+	 * Gets the number of matches currently being played.
+	 *
+	 * @return The number of matches.
+	 */
+	public int getMatchCount() {
+		return rooms.size();
+	}
+
+	/**
+	 * Gets the number of state messages dropped because a client's output
+	 * buffer was full.
+	 *
+	 * @return The number of dropped messages.
+	 */
+	public long getDroppedStates() {
+		return droppedStates;
+	}
+
+	/**
+	 * Runs the server until {@code stop} is called. Network events are handled
+	 * between ticks, and every match is ticked at a fixed rate.
+	 */
+	@Override
+	public void run() {
+		isRunning = true;
+		long nextTick = System.nanoTime() + TICK_NANOS;
+		try {
+			while (isRunning) {
+				long wait = (nextTick - System.nanoTime()) / 1000000L;
+				if (wait > 0) {
+					selector.select(wait);
+				} else {
+					selector.selectNow();
+				}
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					handle(key);
+				}
+
+				if (System.nanoTime() - nextTick >= 0) {
+					nextTick += TICK_NANOS;
+					tick();
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			close();
+		}
+	}
+
+	/**
+	 * Stops the server. The server closes every connection before
+	 * {@code run} returns.
+	 */
+	public void stop() {
+		isRunning = false;
+		selector.wakeup();
+	}
+
+	/**
+	 * Handles a network event.
+	 *
+	 * @param key The key of the channel the event occurred on.
+	 * @throws IOException If accepting a connection failed.
+	 */
+	private void handle(SelectionKey key) throws IOException {
+		if (!key.isValid()) {
+			return;
+		}
+
+		if (key.isAcceptable()) {
+			SocketChannel channel;
+			while ((channel = server.accept()) != null) {
+				channel.configureBlocking(false);
+				channel.socket().setTcpNoDelay(true);
+				Connection connection = new Connection(channel);
+				connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+			}
+			return;
+		}
+
+		Connection connection = (Connection) key.attachment();
+		try {
+			if (key.isReadable()) {
+				read(connection);
+			}
+			if (key.isValid() && key.isWritable()) {
+				flush(connection);
+			}
+		} catch (IOException e) {
+			disconnect(connection);
+		}
+	}
+
+	/**
+	 * Reads the pending inputs from a connection and applies them to its match.
+	 * The first input from a new connection decides its role: a spectate input
+	 * makes it a spectator, and anything else puts it in the queue for a match.
+	 *
+	 * @param connection The connection.
+	 * @throws IOException If the read failed.
+	 */
+	private void read(Connection connection) throws IOException {
+		ByteBuffer in = connection.in;
+		if (connection.channel.read(in) < 0) {
+			disconnect(connection);
+			return;
+		}
+
+		in.flip();
+		if (connection.isNew && in.hasRemaining()) {
+			connection.isNew = false;
+			if (in.get() == VersusProtocol.INPUT_SPECTATE) {
+				connection.subscriber = new SpectatorFeed.Subscriber();
+				spectate(connection);
+			} else {
+				enqueue(connection);
+			}
+		}
+
+		Room room = connection.room;
+		while (in.hasRemaining()) {
+			byte input = in.get();
+			if (room != null) {
+				room.match.input(connection.seat, input);
+			}
+		}
+		in.clear();
+	}
+
+	/**
+	 * Ticks every match, pushes the updated states to the players, and ends
+	 * any matches that are over.
+	 */
+	private void tick() {
+		for (int i = 0; i < rooms.size(); i++) {
+			Room room = rooms.get(i);
+			VersusMatch match = room.match;
+			match.tick();
+
+			for (int seat = 0; seat < VersusMatch.SEATS; seat++) {
+				if (match.pollChanged(seat)) {
+					for (Connection player : room.players) {
+						if (!sendState(player, seat, match.getEngine(seat))) {
+							match.markChanged(seat);
+						}
+					}
+				}
+			}
+
+			/*
+			 * Encode the frame for the spectators once, then let each of them
+			 * send as much of it as their socket takes.
+			 */
+			room.feed.publish();
+			for (int j = 0; j < room.spectators.size(); j++) {
+				Connection spectator = room.spectators.get(j);
+				if (spectator.subscriber.isStalled()) {
+					disconnect(spectator);
+				} else {
+					flushQuietly(spectator);
+				}
+				if (!spectator.channel.isOpen()) {
+					j--;
+				}
+			}
+
+			if (match.isOver()) {
+				endMatch(room);
+			} else {
+				for (Connection player : room.players) {
+					flushQuietly(player);
+				}
+			}
+
+			/*
+			 * Ending a match moves the last room into its slot, so visit this
+			 * index again if that happened.
+			 */
+			if (i < rooms.size() && rooms.get(i) != room) {
+				i--;
+			}
+		}
+	}
+
+	/**
+	 * Pairs a connection with the waiting connection, or makes it wait if no
+	 * one else is.
+	 *
+	 * @param connection The connection.
+	 */
+	private void enqueue(Connection connection) {
+		if (waiting == null || !waiting.channel.isOpen()) {
+			waiting = connection;
+			return;
+		}
+
+		Room room = new Room(new VersusMatch(seeds.nextLong()), waiting, connection);
+		waiting = null;
+		room.index = rooms.size();
+		rooms.add(room);
+		for (int seat = 0; seat < VersusMatch.SEATS; seat++) {
+			Connection player = room.players[seat];
+			player.room = room;
+			player.seat = seat;
+			sendControl(player, VersusProtocol.MSG_MATCH_START, seat);
+		}
+
+		while (!lobby.isEmpty()) {
+			spectate(lobby.remove(lobby.size() - 1));
+		}
+	}
+
+	/**
+	 * Starts a spectator watching a match, or puts it in the lobby until a
+	 * match starts.
+	 *
+	 * @param connection The spectator.
+	 */
+	private void spectate(Connection connection) {
+		if (rooms.isEmpty()) {
+			lobby.add(connection);
+			return;
+		}
+
+		Room room = rooms.get(0);
+		connection.watching = room;
+		room.spectators.add(connection);
+		room.feed.subscribe(connection.subscriber);
+	}
+
+	/**
+	 * Tells both players who won, removes the match, and puts the players that
+	 * are still connected back in the queue.
+	 *
+	 * @param room The room of the match.
+	 */
+	private void endMatch(Room room) {
+		int last = rooms.size() - 1;
+		Room moved = rooms.remove(last);
+		if (moved != room) {
+			rooms.set(room.index, moved);
+			moved.index = room.index;
+		}
+
+		for (Connection player : room.players) {
+			player.room = null;
+			if (player.channel.isOpen()) {
+				sendControl(player, VersusProtocol.MSG_MATCH_OVER, room.match.getWinner());
+				flushQuietly(player);
+			}
+		}
+		for (Connection player : room.players) {
+			if (player.channel.isOpen()) {
+				enqueue(player);
+			}
+		}
+
+		/*
+		 * The spectators are told who won once their queued frames have been
+		 * sent, then moved on to another match.
+		 */
+		for (Connection spectator : room.spectators) {
+			room.feed.unsubscribe(spectator.subscriber);
+			spectator.watching = null;
+			sendControl(spectator, VersusProtocol.MSG_MATCH_OVER, room.match.getWinner());
+			flushQuietly(spectator);
+			if (spectator.channel.isOpen()) {
+				spectate(spectator);
+			}
+		}
+		room.spectators.clear();
+	}
+
+	/**
+	 * Closes a connection, forfeiting its match if it was playing one.
+	 *
+	 * @param connection The connection.
+	 */
+	private void disconnect(Connection connection) {
+		if (!connection.channel.isOpen()) {
+			return;
+		}
+
+		connection.key.cancel();
+		try {
+			connection.channel.close();
+		} catch (IOException e) {
+			// Nothing left to do with the channel.
+		}
+
+		if (waiting == connection) {
+			waiting = null;
+		}
+		lobby.remove(connection);
+		if (connection.watching != null) {
+			connection.watching.spectators.remove(connection);
+			connection.watching.feed.unsubscribe(connection.subscriber);
+			connection.watching = null;
+		}
+		Room room = connection.room;
+		if (room != null) {
+			room.match.forfeit(connection.seat);
+			endMatch(room);
+		}
+	}
+
+	/**
+	 * Queues a state message for a player, dropping it if the player's output
+	 * buffer is too full. Control messages always keep room reserved.
+	 *
+	 * @param connection The player.
+	 * @param seat       The seat the state belongs to.
+	 * @param engine     The engine to send the state of.
+	 * @return Whether or not the state was queued.
+	 */
+	private boolean sendState(Connection connection, int seat, GameEngine engine) {
+		ByteBuffer out = connection.out;
+		if (out.remaining() < VersusProtocol.getStateSize(engine) + VersusProtocol.CONTROL_SIZE * 2) {
+			droppedStates++;
+			return false;
+		}
+		VersusProtocol.writeState(out, seat, engine, scratch);
+		return true;
+	}
+
+	/**
+	 * Queues a control message for a player. A player too far behind to
+	 * receive one is disconnected.
+	 *
+	 * @param connection The player.
+	 * @param type       The message type.
+	 * @param seat       The seat the message refers to.
+	 */
+	private void sendControl(Connection connection, byte type, int seat) {
+		if (connection.out.remaining() < VersusProtocol.CONTROL_SIZE) {
+			disconnect(connection);
+			return;
+		}
+		VersusProtocol.writeControl(connection.out, type, seat);
+	}
+
+	/**
+	 * Writes as much of a connection's queued output as the socket accepts,
+	 * and waits for the socket to become writable if anything is left. A
+	 * spectator's frames are sent before its queued messages.
+	 *
+	 * @param connection The connection.
+	 * @throws IOException If the write failed.
+	 */
+	private void flush(Connection connection) throws IOException {
+		SpectatorFeed.Subscriber subscriber = connection.subscriber;
+		ByteBuffer frame;
+		while (subscriber != null && (frame = subscriber.peek()) != null) {
+			connection.channel.write(frame);
+			if (frame.hasRemaining()) {
+				break;
+			}
+			subscriber.poll();
+		}
+
+		ByteBuffer out = connection.out;
+		if (out.position() > 0 && (subscriber == null || !subscriber.hasPending())) {
+			out.flip();
+			connection.channel.write(out);
+			out.compact();
+		}
+
+		boolean isPending = out.position() > 0 || (subscriber != null && subscriber.hasPending());
+		int ops = isPending ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+		if (connection.key.interestOps() != ops) {
+			connection.key.interestOps(ops);
+		}
+	}
+
+	/**
+	 * Flushes a connection, disconnecting it if the write fails.
+	 *
+	 * @param connection The connection.
+	 */
+	private void flushQuietly(Connection connection) {
+		if (!connection.channel.isOpen()) {
+			return;
+		}
+
+		try {
+			flush(connection);
+		} catch (IOException e) {
+			disconnect(connection);
+		}
+	}
+
+	/**
+	 * Closes the server and every connection.
+	 */
+	private void close() {
+		for (SelectionKey key : selector.keys()) {
+			try {
+				key.channel().close();
+			} catch (IOException e) {
+				// Nothing left to do with the channel.
+			}
+		}
+		try {
+			selector.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * A client connected to the server.
+	 */
+	private static class Connection {
+
+		/**
+		 * The channel of the client.
+		 */
+		private final SocketChannel channel;
+
+		/**
+		 * The buffer inputs are read into.
+		 */
+		private final ByteBuffer in = ByteBuffer.allocate(IN_CAPACITY);
+
+		/**
+		 * The buffer messages are queued in until the socket accepts them.
+		 */
+		private final ByteBuffer out = ByteBuffer.allocate(OUT_CAPACITY);
+
+		/**
+		 * The selection key of the channel.
+		 */
+		private SelectionKey key;
+
+		/**
+		 * Whether or not the client has yet to send its first input.
+		 */
+		private boolean isNew = true;
+
+		/**
+		 * The room of the match being played, or null if waiting.
+		 */
+		private Room room;
+
+		/**
+		 * The room of the match being watched, if the client is a spectator.
+		 */
+		private Room watching;
+
+		/**
+		 * The frames queued for the client, if it is a spectator.
+		 */
+		private SpectatorFeed.Subscriber subscriber;
+
+		/**
+		 * The seat of the client in its match.
+		 */
+		private int seat;
+
+		private Connection(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+	}
+
+	/**
+	 * A match and the connections playing it.
+	 */
+	private static class Room {
+
+		/**
+		 * The match.
+		 */
+		private final VersusMatch match;
+
+		/**
+		 * The players, indexed by seat.
+		 */
+		private final Connection[] players;
+
+		/**
+		 * The feed sent to the spectators of the match.
+		 */
+		private final SpectatorFeed feed;
+
+		/**
+		 * The spectators watching the match.
+		 */
+		private final ArrayList<Connection> spectators = new ArrayList<Connection>();
+
+		/**
+		 * The index of this room in the list of rooms.
+		 */
+		private int index;
+
+		private Room(VersusMatch match, Connection first, Connection second) {
+			this.match = match;
+			this.feed = new SpectatorFeed(match);
+			this.players = new Connection[] { first, second };
+		}
+
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		VersusServer server = new VersusServer(new InetSocketAddress(port));
+		System.out.println("Listening on port " + server.getPort());
+		server.run();
+	}
+
+}
@@ -0,0 +1,114 @@
+public final class WallKicks {
+
+	/**
+	 * The Super Rotation System kicks of the J, L, S, T and Z pieces, which are
+	 * shared by every piece in a 3x3 square.
+	 */
+	public static final int[][] SRS = compile(new int[][][] {
+		/* 0 -> R */ { { 0, 0 }, { -1, 0 }, { -1, 1 }, { 0, -2 }, { -1, -2 } },
+		/* R -> 2 */ { { 0, 0 }, { 1, 0 }, { 1, -1 }, { 0, 2 }, { 1, 2 } },
+		/* 2 -> L */ { { 0, 0 }, { 1, 0 }, { 1, 1 }, { 0, -2 }, { 1, -2 } },
+		/* L -> 0 */ { { 0, 0 }, { -1, 0 }, { -1, -1 }, { 0, 2 }, { -1, 2 } },
+	});
+
+	/**
+	 * The Super Rotation System kicks of the I piece, which are shared by every
+	 * piece in a 4x4 square.
+	 */
+	public static final int[][] SRS_I = compile(new int[][][] {
+		/* 0 -> R */ { { 0, 0 }, { -2, 0 }, { 1, 0 }, { -2, -1 }, { 1, 2 } },
+		/* R -> 2 */ { { 0, 0 }, { -1, 0 }, { 2, 0 }, { -1, 2 }, { 2, -1 } },
+		/* 2 -> L */ { { 0, 0 }, { 2, 0 }, { -1, 0 }, { 2, 1 }, { -1, -2 } },
+		/* L -> 0 */ { { 0, 0 }, { 1, 0 }, { -2, 0 }, { 1, -2 }, { -2, 1 } },
+	});
+
+	/**
+	 * No kicks: a rotation only succeeds in place. This is what the O piece
+	 * uses.
+	 */
+	public static final int[][] NONE = compile(new int[][][] {
+		{ { 0, 0 } },
+		{ { 0, 0 } },
+		{ { 0, 0 } },
+		{ { 0, 0 } },
+	});
+
+	private WallKicks() {
+	}
+
+	/**
+	 * Gets the kicks a piece uses when its definition doesn't name any. Pieces
+	 * in a 2x2 square don't kick, pieces in a 4x4 square kick like the I piece,
+	 * and everything else kicks like the J, L, S, T and Z pieces.
+	 *
+	 * @param dimension The dimension of the piece.
+	 * @return The kick table.
+	 */
+	public static int[][] forDimension(int dimension) {
+		switch (dimension) {
+			case 2:
+				return NONE;
+			case 4:
+				return SRS_I;
+			default:
+				return SRS;
+		}
+	}
+
+	/**
+	 * Gets a kick table by the name used in piece definition files.
+	 *
+	 * @param name The name: "srs", "srs-i" or "none".
+	 * @return The kick table, or null if there is none with the name.
+	 */
+	public static int[][] forName(String name) {
+		switch (name) {
+			case "srs":
+				return SRS;
+			case "srs-i":
+				return SRS_I;
+			case "none":
+				return NONE;
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Expands the clockwise kicks of each rotation into a table indexed by
+	 * {@code from * 4 + to}. Each entry holds the column and row offsets of
+	 * each kick in turn. The offsets are given with y pointing up, as in the
+	 * SRS guideline, and flipped so that they can be added straight to board
+	 * rows. Anticlockwise kicks are the reverse of the clockwise kicks into
+	 * the same rotation, and a half turn or a turn to the same rotation is
+	 * only tried in place.
+	 *
+	 * @param clockwise The kicks of each clockwise turn, from rotation 0.
+	 * @return The table.
+	 */
+	private static int[][] compile(int[][][] clockwise) {
+		int[][] table = new int[TileType.ROTATION_COUNT * TileType.ROTATION_COUNT][];
+		for (int from = 0; from < TileType.ROTATION_COUNT; from++) {
+			for (int to = 0; to < TileType.ROTATION_COUNT; to++) {
+				table[from * TileType.ROTATION_COUNT + to] = new int[] { 0, 0 };
+			}
+		}
+
+		for (int from = 0; from < TileType.ROTATION_COUNT; from++) {
+			int to = (from + 1) % TileType.ROTATION_COUNT;
+			int[][] kicks = clockwise[from];
+			int[] forward = new int[kicks.length * 2];
+			int[] back = new int[kicks.length * 2];
+			for (int i = 0; i < kicks.length; i++) {
+				forward[i * 2] = kicks[i][0];
+				forward[i * 2 + 1] = -kicks[i][1];
+				back[i * 2] = -kicks[i][0];
+				back[i * 2 + 1] = kicks[i][1];
+			}
+			table[from * TileType.ROTATION_COUNT + to] = forward;
+			table[to * TileType.ROTATION_COUNT + from] = back;
+		}
+		return table;
+	}
+
+}
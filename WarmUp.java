@@ -0,0 +1,210 @@
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.Executor;
+
+public class WarmUp implements Runnable {
+
+	/**
+	 * The size of the event bus the game publishes to.
+	 */
+	private static final int EVENT_CAPACITY = 1024;
+
+	/**
+	 * The play time each frame adds to the stats, in nanoseconds.
+	 */
+	private static final long FRAME_NANOS = 20000000L;
+
+	/**
+	 * The game being played.
+	 */
+	private final GameEngine engine;
+
+	/**
+	 * The bus the game publishes to, so that publishing and the stats get
+	 * compiled as well.
+	 */
+	private final EventBus events;
+
+	/**
+	 * The subscription the stats are counted from.
+	 */
+	private final EventBus.Subscription statsEvents;
+
+	/**
+	 * The stats of the game.
+	 */
+	private final PlayerStats stats;
+
+	/**
+	 * Publishes snapshots of the game for the panels, the same way the game
+	 * does, except that frames are painted on this thread.
+	 */
+	private final FramePublisher publisher;
+
+	/**
+	 * The view of the latest snapshot.
+	 */
+	private final SnapshotView view;
+
+	/**
+	 * The board panel, which is never shown.
+	 */
+	private final BoardPanel board;
+
+	/**
+	 * The side panel, which is never shown.
+	 */
+	private final SidePanel side;
+
+	/**
+	 * The graphics the board is painted into.
+	 */
+	private final Graphics boardGraphics;
+
+	/**
+	 * The graphics the side panel is painted into.
+	 */
+	private final Graphics sideGraphics;
+
+	/**
+	 * How long {@code run} keeps going for, in nanoseconds.
+	 */
+	private final long budget;
+
+	/**
+	 * The number of frames run.
+	 */
+	private volatile int frames;
+
+	/**
+	 * Creates a new WarmUp, with a game and panels of its own. Nothing it does
+	 * is ever shown, but the panels are painted into images of their full
+	 * size, so the board should be a small one.
+	 *
+	 * @param colCount The number of columns.
+	 * @param rowCount The number of rows, including the hidden ones.
+	 * @param pieces   The piece set to play with.
+	 * @param tileSize The number of pixels that a tile takes up.
+	 * @param budget   How long {@code run} keeps going for, in nanoseconds.
+	 */
+	public WarmUp(int colCount, int rowCount, PieceSet pieces, int tileSize, long budget) {
+		this.budget = budget;
+		this.engine = new GameEngine(new Board(colCount, rowCount, pieces));
+		this.events = new EventBus(EVENT_CAPACITY);
+		engine.setEventBus(events);
+		engine.setSeed(0L);
+		engine.reset();
+		this.stats = new PlayerStats(engine.getBoard());
+		this.statsEvents = events.subscribe();
+
+		/*
+		 * Frames are painted as soon as they're published, rather than on the
+		 * event dispatch thread, as nothing here is ever shown.
+		 */
+		this.publisher = new FramePublisher(new EngineView(engine, stats), new Executor() {
+			@Override
+			public void execute(Runnable frame) {
+				frame.run();
+			}
+		}, new Runnable() {
+			@Override
+			public void run() {
+				paint();
+			}
+		});
+		this.view = publisher.getView();
+		this.board = new BoardPanel(view, tileSize);
+		this.side = new SidePanel(view);
+		board.setSize(board.getPreferredSize());
+		side.setSize(side.getPreferredSize());
+		this.boardGraphics = new BufferedImage(board.getWidth(), board.getHeight(), BufferedImage.TYPE_INT_RGB)
+				.createGraphics();
+		this.sideGraphics = new BufferedImage(side.getWidth(), side.getHeight(), BufferedImage.TYPE_INT_RGB)
+				.createGraphics();
+	}
+
+	/**
+	 * Starts warming up on a daemon thread of the lowest priority, which
+	 * yields after every frame so that it never holds up the menu.
+	 * Interrupting the thread stops it after the frame it's on.
+	 *
+	 * @param warmUp The warm-up to run.
+	 * @return The thread.
+	 */
+	public static Thread start(WarmUp warmUp) {
+		Thread thread = new Thread(warmUp, "Warm-up");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Runs frames until the budget runs out or the thread is interrupted.
+	 */
+	@Override
+	public void run() {
+		long end = System.nanoTime() + budget;
+		while (!Thread.currentThread().isInterrupted() && System.nanoTime() < end) {
+			frame();
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Runs a frame of the game loop: feeds the game an input, ticks it with
+	 * the drop key held, starts a new game when one ends, counts its events in
+	 * the stats, publishes a snapshot of it, and paints both panels from the
+	 * latest snapshot. These are the paths the game spends its frames on, so
+	 * running them compiles them. Once warmed up, a frame allocates nothing,
+	 * which {@code AllocationCheck} checks.
+	 */
+	public void frame() {
+		int frame = frames;
+		byte input = ScriptedInput.play(engine, frame);
+		if (input != ScriptedInput.NONE) {
+			events.publish(EventBus.INPUT, input, 0L);
+		}
+
+		/*
+		 * The effects are drawn in the color of the piece that locked, which is
+		 * no longer current once the tick has spawned the next one.
+		 */
+		TileType type = engine.getPieceType();
+		if (engine.tick(true)) {
+			for (int i = 0; i < engine.getLinesCleared(); i++) {
+				board.getEffects().addLineClear(engine.getClearedRow(i) - BoardPanel.HIDDEN_ROW_COUNT,
+						engine.getBoard().getColCount(), type.getBaseColor());
+			}
+			if (engine.isGameOver()) {
+				statsEvents.poll(stats);
+				stats.reset();
+				engine.reset();
+			}
+		}
+
+		statsEvents.poll(stats);
+		stats.setPlayTime(frame * FRAME_NANOS);
+		publisher.publish();
+		frames = frame + 1;
+	}
+
+	/**
+	 * Paints both panels from the latest snapshot.
+	 */
+	private void paint() {
+		view.refresh();
+		board.paintComponent(boardGraphics);
+		side.paintComponent(sideGraphics);
+	}
+
+	/**
+	 * Gets the number of frames run.
+	 *
+	 * @return The number of frames.
+	 */
+	public int getFrames() {
+		return frames;
+	}
+
+}
@@ -0,0 +1,115 @@
+import java.io.File;
+import java.util.concurrent.locks.LockSupport;
+
+public class WarmUpCheck {
+
+	/**
+	 * The time between frames, in nanoseconds, as in the game loop.
+	 */
+	private static final long FRAME_NANOS = 20000000L;
+
+	/**
+	 * The number of seconds at the start of play that are also reported on
+	 * their own, since that's when code still runs interpreted.
+	 */
+	private static final int EARLY_SECONDS = 5;
+
+	/**
+	 * Measures how long the frames of the first minute of play take, with and
+	 * without the game being warmed up during the menu. Each mode runs in a
+	 * fresh JVM, so nothing is compiled before it starts. The frames are
+	 * paced as in the game loop, leaving the compiler the rest of each frame
+	 * to work in, and the percentiles of their times are reported for the
+	 * first few seconds and for the whole run.
+	 *
+	 * The mode is {@code cold} to start playing straight away, {@code warm}
+	 * to warm up first, or {@code both} to run each in its own JVM.
+	 *
+	 * Usage: {@code WarmUpCheck [mode] [seconds] [warm-up ms]}
+	 *
+	 * @param args The command line arguments.
+	 * @throws Exception If a child JVM couldn't be run.
+	 */
+	public static void main(String[] args) throws Exception {
+		String mode = (args.length > 0) ? args[0] : "both";
+		int seconds = (args.length > 1) ? Integer.parseInt(args[1]) : 60;
+		long warmUpMillis = (args.length > 2) ? Long.parseLong(args[2]) : Tetris.WARMUP_TIME / 1000000L;
+
+		if (mode.equals("both")) {
+			fork("cold", seconds, warmUpMillis);
+			fork("warm", seconds, warmUpMillis);
+		} else if (mode.equals("cold") || mode.equals("warm")) {
+			measure(mode.equals("warm"), seconds, warmUpMillis);
+		} else {
+			System.out.println("Unknown mode " + mode);
+			System.exit(2);
+		}
+	}
+
+	/**
+	 * Runs one mode in a new JVM, with the same class path, and waits for it.
+	 *
+	 * @param mode         The mode.
+	 * @param seconds      The number of seconds of play to measure.
+	 * @param warmUpMillis How long to warm up for, in milliseconds.
+	 * @throws Exception If the JVM couldn't be run.
+	 */
+	private static void fork(String mode, int seconds, long warmUpMillis) throws Exception {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		Process process = new ProcessBuilder(java, "-Djava.awt.headless=true", "-cp",
+				System.getProperty("java.class.path"), WarmUpCheck.class.getName(), mode, Integer.toString(seconds),
+				Long.toString(warmUpMillis)).inheritIO().start();
+		if (process.waitFor() != 0) {
+			throw new IllegalStateException(mode + " run failed with exit status " + process.exitValue());
+		}
+	}
+
+	/**
+	 * Measures the frames of a game in this JVM, warming up first if asked
+	 * to, just as the game does while the menu is shown.
+	 *
+	 * @param warm         Whether or not to warm up first.
+	 * @param seconds      The number of seconds of play to measure.
+	 * @param warmUpMillis How long to warm up for, in milliseconds.
+	 */
+	private static void measure(boolean warm, int seconds, long warmUpMillis) {
+		if (warm) {
+			WarmUp warmUp = new WarmUp(BoardPanel.COL_COUNT, BoardPanel.VISIBLE_ROW_COUNT + BoardPanel.HIDDEN_ROW_COUNT,
+					PieceSet.STANDARD, BoardPanel.TILE_SIZE, warmUpMillis * 1000000L);
+			warmUp.run();
+			System.out.printf("warm: warmed up over %d frames%n", warmUp.getFrames());
+		}
+
+		WarmUp game = new WarmUp(BoardPanel.COL_COUNT, BoardPanel.VISIBLE_ROW_COUNT + BoardPanel.HIDDEN_ROW_COUNT,
+				PieceSet.STANDARD, BoardPanel.TILE_SIZE, 0L);
+		LatencyRecorder early = new LatencyRecorder();
+		LatencyRecorder all = new LatencyRecorder();
+		long worst = 0L;
+		int frames = (int) (seconds * 1000000000L / FRAME_NANOS);
+		int earlyFrames = (int) (EARLY_SECONDS * 1000000000L / FRAME_NANOS);
+		long deadline = System.nanoTime();
+		for (int frame = 0; frame < frames; frame++) {
+			long start = System.nanoTime();
+			game.frame();
+			long elapsed = System.nanoTime() - start;
+			all.record(elapsed);
+			if (frame < earlyFrames) {
+				early.record(elapsed);
+			}
+			worst = Math.max(worst, elapsed);
+
+			/*
+			 * Wait for the next frame. A frame that overran starts the next one
+			 * straight away, rather than the loop trying to catch up.
+			 */
+			deadline = Math.max(deadline + FRAME_NANOS, System.nanoTime());
+			LockSupport.parkNanos(deadline - System.nanoTime());
+		}
+
+		String name = warm ? "warm" : "cold";
+		System.out.printf("%s: first %ds %s%n", name, EARLY_SECONDS, early);
+		System.out.printf("%s: all %ds   %s p90=%dus max=%dus%n", name, seconds, all, all.getPercentile(0.90) / 1000L,
+				worst / 1000L);
+	}
+
+}